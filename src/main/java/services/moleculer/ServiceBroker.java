@@ -64,6 +64,7 @@ import services.moleculer.service.MoleculerLifecycle;
 import services.moleculer.service.Name;
 import services.moleculer.service.Service;
 import services.moleculer.service.ServiceRegistry;
+import services.moleculer.service.ServiceStartup;
 import services.moleculer.strategy.StrategyFactory;
 import services.moleculer.transporter.Transporter;
 
@@ -339,12 +340,16 @@ public class ServiceBroker extends ContextSource implements MetricConstants {
 			}
 
 			// Register and start enqued services and listeners
-			for (Map.Entry<String, Service> entry : services.entrySet()) {
-				Service service = entry.getValue();
-				String serviceName = entry.getKey();
-				serviceRegistry.addActions(serviceName, service).then(deployed -> {
-					eventbus.addListeners(serviceName, service);
-				});
+			if (config.isParallelStartup() && config.getExecutor() != null) {
+				new ServiceStartup(serviceRegistry, eventbus, config.getExecutor(), nodeID, services).start();
+			} else {
+				for (Map.Entry<String, Service> entry : services.entrySet()) {
+					Service service = entry.getValue();
+					String serviceName = entry.getKey();
+					serviceRegistry.addActions(serviceName, service).then(deployed -> {
+						eventbus.addListeners(serviceName, service);
+					});
+				}
 			}
 
 			// Start transporter's connection loop
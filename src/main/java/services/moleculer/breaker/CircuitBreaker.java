@@ -218,7 +218,7 @@ public class CircuitBreaker extends DefaultServiceInvoker implements Runnable {
 			// Invoke Endpoint
 			final ErrorCounter currentCounter = errorCounter;
 			final EndpointKey currentKey = endpointKey;
-			return Promise.resolve(action.handler(ctx)).then(rsp -> {
+			return invoke(ctx, action, targetID).then(rsp -> {
 				
 				// Reset error counter
 				if (currentCounter != null) {
@@ -0,0 +1,284 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.breaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free health state of an Action Endpoint (used by the
+ * {@link SlidingWindowCircuitBreaker}). The results of the calls are counted in
+ * time-buckets; the buckets of the time-window form a ring. Counters of a
+ * bucket are reset when the bucket is reused (the counting is approximate at
+ * the bucket boundaries, but it never blocks).
+ */
+public class EndpointHealth {
+
+	// --- STATES ---
+
+	/**
+	 * Endpoint is healthy, calls are allowed.
+	 */
+	public static final int CLOSED = 0;
+
+	/**
+	 * Endpoint is broken, calls are rejected until the lock timeout.
+	 */
+	public static final int OPEN = 1;
+
+	/**
+	 * Lock timeout elapsed, a limited number of trial calls are allowed.
+	 */
+	public static final int HALF_OPEN = 2;
+
+	// --- BUCKET STRUCTURE (EPOCH, CALLS, FAILURES, SLOW CALLS) ---
+
+	protected static final int EPOCH = 0;
+	protected static final int CALLS = 1;
+	protected static final int FAILURES = 2;
+	protected static final int SLOW_CALLS = 3;
+	protected static final int FIELDS = 4;
+
+	// --- PROPERTIES ---
+
+	protected final int bucketCount;
+	protected final long bucketLength;
+	protected final long lockTimeout;
+	protected final int minCalls;
+	protected final int errorRateThreshold;
+	protected final int slowCallRateThreshold;
+	protected final int halfOpenTrials;
+
+	// --- TIME-BUCKETS ---
+
+	protected final AtomicLongArray buckets;
+
+	// --- STATE ---
+
+	protected final AtomicInteger state = new AtomicInteger(CLOSED);
+	protected final AtomicInteger trialPermits = new AtomicInteger();
+	protected final AtomicInteger trialSuccesses = new AtomicInteger();
+
+	protected volatile long openedAt;
+	protected volatile long lastCall;
+
+	/**
+	 * Removed from the states of the breaker (the endpoints must not use the
+	 * cached reference anymore)
+	 */
+	protected volatile boolean removed;
+
+	// --- CONSTRUCTOR ---
+
+	protected EndpointHealth(long windowLength, int bucketCount, long lockTimeout, int minCalls,
+			int errorRateThreshold, int slowCallRateThreshold, int halfOpenTrials) {
+		this.bucketCount = Math.max(1, bucketCount);
+		this.bucketLength = Math.max(1, windowLength / this.bucketCount);
+		this.lockTimeout = lockTimeout;
+		this.minCalls = Math.max(1, minCalls);
+		this.errorRateThreshold = errorRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.halfOpenTrials = Math.max(1, halfOpenTrials);
+		this.buckets = new AtomicLongArray(this.bucketCount * FIELDS);
+		for (int i = 0; i < this.bucketCount; i++) {
+			buckets.set(i * FIELDS + EPOCH, -1);
+		}
+	}
+
+	// --- CHECK ENDPOINT STATUS ---
+
+	/**
+	 * Checks the availability of the endpoint. In HALF_OPEN state every
+	 * positive answer consumes one trial permit.
+	 * 
+	 * @param now
+	 *            current time in MILLISECONDS
+	 * 
+	 * @return true if the endpoint can be called
+	 */
+	protected boolean isAvailable(long now) {
+		switch (state.get()) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (now - openedAt < lockTimeout) {
+				return false;
+			}
+			if (state.compareAndSet(OPEN, HALF_OPEN)) {
+				trialSuccesses.set(0);
+				trialPermits.set(halfOpenTrials - 1);
+				return true;
+			}
+
+			// Falls through (another thread switched to HALF_OPEN state)
+		default:
+			int permits;
+			do {
+				permits = trialPermits.get();
+				if (permits < 1) {
+					return false;
+				}
+			} while (!trialPermits.compareAndSet(permits, permits - 1));
+			return true;
+		}
+	}
+
+	// --- REGISTER RESULTS ---
+
+	protected void onSuccess(long now, boolean slow) {
+		lastCall = now;
+		int current = state.get();
+		if (current == HALF_OPEN) {
+			if (slow) {
+				open(now, HALF_OPEN);
+			} else if (trialSuccesses.incrementAndGet() >= halfOpenTrials && state.compareAndSet(HALF_OPEN, CLOSED)) {
+				reset();
+			}
+			return;
+		}
+		record(now, false, slow);
+		if (slow && current == CLOSED) {
+			evaluate(now);
+		}
+	}
+
+	protected void onError(long now) {
+		lastCall = now;
+		int current = state.get();
+		if (current == HALF_OPEN) {
+			open(now, HALF_OPEN);
+			return;
+		}
+		record(now, true, false);
+		if (current == CLOSED) {
+			evaluate(now);
+		}
+	}
+
+	// --- STATE TRANSITIONS ---
+
+	protected void evaluate(long now) {
+		long epoch = now / bucketLength;
+		long calls = 0;
+		long failures = 0;
+		long slowCalls = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			int base = i * FIELDS;
+			if (epoch - buckets.get(base + EPOCH) < bucketCount) {
+				calls += buckets.get(base + CALLS);
+				failures += buckets.get(base + FAILURES);
+				slowCalls += buckets.get(base + SLOW_CALLS);
+			}
+		}
+		if (calls < minCalls) {
+			return;
+		}
+		if (failures * 100 >= errorRateThreshold * calls
+				|| (slowCallRateThreshold > 0 && slowCalls * 100 >= slowCallRateThreshold * calls)) {
+			open(now, CLOSED);
+		}
+	}
+
+	protected void open(long now, int expected) {
+		openedAt = now;
+		trialPermits.set(0);
+		state.compareAndSet(expected, OPEN);
+	}
+
+	protected void reset() {
+		for (int i = 0; i < bucketCount; i++) {
+			int base = i * FIELDS;
+			buckets.set(base + EPOCH, -1);
+			buckets.set(base + CALLS, 0);
+			buckets.set(base + FAILURES, 0);
+			buckets.set(base + SLOW_CALLS, 0);
+		}
+	}
+
+	// --- COUNT IN TIME-BUCKET ---
+
+	protected void record(long now, boolean failure, boolean slow) {
+		long epoch = now / bucketLength;
+		int base = (int) (epoch % bucketCount) * FIELDS;
+		long stored = buckets.get(base + EPOCH);
+		if (stored != epoch) {
+			if (stored > epoch) {
+
+				// Delayed thread, the bucket is reused already
+				return;
+			}
+			if (buckets.compareAndSet(base + EPOCH, stored, epoch)) {
+				buckets.set(base + CALLS, 0);
+				buckets.set(base + FAILURES, 0);
+				buckets.set(base + SLOW_CALLS, 0);
+			}
+		}
+		buckets.incrementAndGet(base + CALLS);
+		if (failure) {
+			buckets.incrementAndGet(base + FAILURES);
+		}
+		if (slow) {
+			buckets.incrementAndGet(base + SLOW_CALLS);
+		}
+	}
+
+	// --- FOR CLEANUP ---
+
+	protected boolean canRemove(long now) {
+		return state.get() == CLOSED && now - lastCall > bucketLength * bucketCount;
+	}
+
+	// --- GETTERS ---
+
+	public int getState() {
+		return state.get();
+	}
+
+	public long getCalls(long now) {
+		return sum(now, CALLS);
+	}
+
+	public long getFailures(long now) {
+		return sum(now, FAILURES);
+	}
+
+	public long getSlowCalls(long now) {
+		return sum(now, SLOW_CALLS);
+	}
+
+	protected long sum(long now, int field) {
+		long epoch = now / bucketLength;
+		long sum = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			int base = i * FIELDS;
+			if (epoch - buckets.get(base + EPOCH) < bucketCount) {
+				sum += buckets.get(base + field);
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,283 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.breaker;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.datatree.Promise;
+import services.moleculer.context.Context;
+import services.moleculer.service.ActionEndpoint;
+import services.moleculer.service.Name;
+
+/**
+ * Circuit breaker with lock-free, time-bucketed sliding windows. The state of
+ * each endpoint is stored in a concurrent map, and cached in the
+ * {@link ActionEndpoint}, so the lookup does not allocate and does not lock.
+ * An endpoint is locked when the error rate (or the rate of the slow calls)
+ * reaches the threshold in the time-window. After the "lockTimeout" the
+ * breaker lets through "halfOpenTrials" trial calls; the endpoint is unlocked
+ * when all trial calls succeed. Sample:
+ * 
+ * <pre>
+ * SlidingWindowCircuitBreaker cb = new SlidingWindowCircuitBreaker();
+ * cb.setErrorRateThreshold(50);
+ * cb.setSlowCallDuration(2000);
+ * ServiceBroker broker = ServiceBroker.builder().invoker(cb).build();
+ * </pre>
+ */
+@Name("Sliding Window Circuit Breaker")
+public class SlidingWindowCircuitBreaker extends CircuitBreaker {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Number of time-buckets in the time-window
+	 */
+	protected int buckets = 10;
+
+	/**
+	 * Minimum number of calls in the time-window before the rates are
+	 * evaluated
+	 */
+	protected int minCalls = 5;
+
+	/**
+	 * Error rate threshold in PERCENT
+	 */
+	protected int errorRateThreshold = 50;
+
+	/**
+	 * Calls slower than this are counted as slow calls, in MILLISECONDS (0 =
+	 * disable slow call detection)
+	 */
+	protected long slowCallDuration;
+
+	/**
+	 * Slow call rate threshold in PERCENT
+	 */
+	protected int slowCallRateThreshold = 80;
+
+	/**
+	 * Number of trial calls in half-open state
+	 */
+	protected int halfOpenTrials = 3;
+
+	// --- STATES OF ENDPOINTS ---
+
+	protected final ConcurrentHashMap<EndpointKey, EndpointHealth> states = new ConcurrentHashMap<>(1024, 0.75f, 16);
+
+	// --- STOP BREAKER ---
+
+	@Override
+	public void stopped() {
+		super.stopped();
+		states.clear();
+	}
+
+	// --- CLEANUP STATES ---
+
+	@Override
+	public void run() {
+		long now = System.currentTimeMillis();
+		Iterator<EndpointHealth> i = states.values().iterator();
+		while (i.hasNext()) {
+			EndpointHealth health = i.next();
+			if (health.canRemove(now)) {
+
+				// Invalidate the references cached in the endpoints
+				health.removed = true;
+				i.remove();
+			}
+		}
+	}
+
+	// --- CALL SERVICE ---
+
+	@Override
+	protected Promise call(Context ctx, String targetID, int remaining) {
+		EndpointHealth health = null;
+		try {
+
+			// Get the first recommended Endpoint and its state
+			ActionEndpoint action = (ActionEndpoint) serviceRegistry.getAction(ctx.name, targetID);
+			health = getHealth(action, ctx.name);
+			long now = System.currentTimeMillis();
+
+			// Check availability of the Endpoint (if endpoint isn't targetted)
+			if (targetID == null) {
+				LinkedHashSet<String> nodeIDs = null;
+				int sameNodeCounter = 0;
+				for (int i = 0; i < maxTries; i++) {
+					if (health.isAvailable(now)) {
+
+						// Endpoint is available
+						break;
+					}
+
+					// Store nodeID
+					if (nodeIDs == null) {
+						nodeIDs = new LinkedHashSet<>(maxSameNodes * 2);
+					}
+					if (!nodeIDs.add(action.getNodeID())) {
+						sameNodeCounter++;
+						if (sameNodeCounter >= maxSameNodes) {
+
+							// The "maxSameNodes" limit is reached
+							break;
+						}
+					}
+
+					// Try to choose another endpoint
+					action = (ActionEndpoint) serviceRegistry.getAction(ctx.name, null);
+					health = getHealth(action, ctx.name);
+				}
+			}
+
+			// Invoke Endpoint
+			final EndpointHealth current = health;
+			final long start = now;
+			return invoke(ctx, action, targetID).then(rsp -> {
+
+				// Register success (or slow call)
+				long end = System.currentTimeMillis();
+				current.onSuccess(end, slowCallDuration > 0 && end - start >= slowCallDuration);
+
+				// Return response
+				return rsp;
+
+			}).catchError(cause -> {
+
+				// Register error
+				onError(current, cause);
+
+				// Retry
+				return retry(ctx, targetID, remaining, cause);
+			});
+
+		} catch (Throwable cause) {
+
+			// Register error
+			onError(health, cause);
+
+			// Retry
+			return retry(ctx, targetID, remaining, cause);
+		}
+	}
+
+	protected EndpointHealth getHealth(ActionEndpoint action, String name) {
+		Object state = action.getBreakerState();
+		if (state instanceof EndpointHealth && !((EndpointHealth) state).removed) {
+			return (EndpointHealth) state;
+		}
+		EndpointKey key = new EndpointKey(action.getNodeID(), name);
+		EndpointHealth health = states.get(key);
+		if (health == null) {
+			health = new EndpointHealth(windowLength, buckets, lockTimeout, minCalls, errorRateThreshold,
+					slowCallDuration > 0 ? slowCallRateThreshold : 0, halfOpenTrials);
+			EndpointHealth prev = states.putIfAbsent(key, health);
+			if (prev != null) {
+				health = prev;
+			}
+		}
+		action.setBreakerState(health);
+		return health;
+	}
+
+	protected void onError(EndpointHealth health, Throwable cause) {
+		if (health != null) {
+			long now = System.currentTimeMillis();
+
+			// Check error type
+			if (!ignoredTypes.isEmpty()) {
+				Class<? extends Throwable> test = cause.getClass();
+				for (Class<? extends Throwable> type : ignoredTypes) {
+					if (type.isAssignableFrom(test)) {
+
+						// Ignored errors are handled as successful calls
+						health.onSuccess(now, false);
+						return;
+					}
+				}
+			}
+
+			// Increment error counter
+			health.onError(now);
+		}
+	}
+
+	// --- GETTERS / SETTERS ---
+
+	public int getBuckets() {
+		return buckets;
+	}
+
+	public void setBuckets(int buckets) {
+		this.buckets = buckets;
+	}
+
+	public int getMinCalls() {
+		return minCalls;
+	}
+
+	public void setMinCalls(int minCalls) {
+		this.minCalls = minCalls;
+	}
+
+	public int getErrorRateThreshold() {
+		return errorRateThreshold;
+	}
+
+	public void setErrorRateThreshold(int errorRateThreshold) {
+		this.errorRateThreshold = errorRateThreshold;
+	}
+
+	public long getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	public void setSlowCallDuration(long slowCallDuration) {
+		this.slowCallDuration = slowCallDuration;
+	}
+
+	public int getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	public int getHalfOpenTrials() {
+		return halfOpenTrials;
+	}
+
+	public void setHalfOpenTrials(int halfOpenTrials) {
+		this.halfOpenTrials = halfOpenTrials;
+	}
+
+}
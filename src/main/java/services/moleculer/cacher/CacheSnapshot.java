@@ -0,0 +1,294 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.cacher;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary snapshot file of a local cache. Used by the MemoryCacher and
+ * the OHCacher to survive restarts without a "cold" cache. The file is written
+ * and read sequentially (via a direct ByteBuffer and a FileChannel), so neither
+ * the writer nor the reader loads the whole content into the heap. File
+ * format:
+ * <ul>
+ * <li>header: magic number (int), version (byte), cacher type (byte),
+ * timestamp (long)
+ * <li>records: key length (int), key bytes, expiration timestamp (long, 0 =
+ * never expires), value length (int), value bytes
+ * <li>terminator: -1 (int)
+ * </ul>
+ * The writer creates a temporary file and renames it when the snapshot is
+ * complete, so a crash during the save never damages the previous snapshot.
+ */
+public class CacheSnapshot {
+
+	// --- CONSTANTS ---
+
+	public static final int MAGIC = 0x4D435348;
+
+	public static final byte VERSION = 1;
+
+	public static final byte TYPE_MEMORY = 1;
+
+	public static final byte TYPE_OFF_HEAP = 2;
+
+	protected static final int BUFFER_SIZE = 64 * 1024;
+
+	// --- SNAPSHOT WRITER ---
+
+	public static class Writer implements Closeable {
+
+		protected final File file;
+		protected final File temp;
+		protected final FileChannel channel;
+		protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		protected int count;
+		protected boolean completed;
+
+		public Writer(File file, byte type) throws IOException {
+			this.file = file;
+			File dir = file.getAbsoluteFile().getParentFile();
+			if (dir != null && !dir.isDirectory()) {
+				dir.mkdirs();
+			}
+			temp = new File(file.getAbsolutePath() + ".tmp");
+			channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			buffer.putInt(MAGIC);
+			buffer.put(VERSION);
+			buffer.put(type);
+			buffer.putLong(System.currentTimeMillis());
+		}
+
+		public void write(byte[] key, long expireAt, byte[] value) throws IOException {
+			ensureCapacity(16);
+			buffer.putInt(key.length);
+			put(key);
+			ensureCapacity(12);
+			buffer.putLong(expireAt);
+			buffer.putInt(value.length);
+			put(value);
+			count++;
+		}
+
+		protected void put(byte[] bytes) throws IOException {
+			if (bytes.length <= buffer.remaining()) {
+				buffer.put(bytes);
+				return;
+			}
+			flush();
+			if (bytes.length <= buffer.remaining()) {
+				buffer.put(bytes);
+				return;
+			}
+
+			// Large record, write it directly
+			ByteBuffer wrapper = ByteBuffer.wrap(bytes);
+			while (wrapper.hasRemaining()) {
+				channel.write(wrapper);
+			}
+		}
+
+		protected void ensureCapacity(int size) throws IOException {
+			if (buffer.remaining() < size) {
+				flush();
+			}
+		}
+
+		protected void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		/**
+		 * Writes the terminator, and replaces the previous snapshot with the
+		 * new file.
+		 *
+		 * @throws IOException
+		 *             if the file cannot be written or renamed
+		 */
+		public void commit() throws IOException {
+			ensureCapacity(4);
+			buffer.putInt(-1);
+			flush();
+			channel.force(false);
+			channel.close();
+			Path target = file.toPath();
+			try {
+				Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException notSupported) {
+				Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			completed = true;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!completed) {
+				try {
+					channel.close();
+				} finally {
+					temp.delete();
+				}
+			}
+		}
+
+	}
+
+	// --- SNAPSHOT READER ---
+
+	public static class Reader implements Closeable {
+
+		protected final FileChannel channel;
+		protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		protected final byte type;
+		protected final long timestamp;
+
+		protected byte[] key;
+		protected long expireAt;
+		protected byte[] value;
+
+		public Reader(File file) throws IOException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			buffer.limit(0);
+			try {
+				require(14);
+				if (buffer.getInt() != MAGIC) {
+					throw new IOException("Invalid cache snapshot (" + file + ")!");
+				}
+				byte version = buffer.get();
+				if (version != VERSION) {
+					throw new IOException("Unsupported cache snapshot version (" + version + ")!");
+				}
+				type = buffer.get();
+				timestamp = buffer.getLong();
+			} catch (IOException cause) {
+				channel.close();
+				throw cause;
+			}
+		}
+
+		/**
+		 * Reads the next record.
+		 *
+		 * @return <code>false</code> at the end of the snapshot
+		 *
+		 * @throws IOException
+		 *             on read error, or if the snapshot is truncated
+		 */
+		public boolean next() throws IOException {
+			require(4);
+			int len = buffer.getInt();
+			if (len < 0) {
+				return false;
+			}
+			key = get(len);
+			require(12);
+			expireAt = buffer.getLong();
+			value = get(buffer.getInt());
+			return true;
+		}
+
+		protected byte[] get(int len) throws IOException {
+			if (len < 0 || len > buffer.remaining() + channel.size() - channel.position()) {
+				throw new IOException("Invalid record length in cache snapshot (" + len + ")!");
+			}
+			byte[] bytes = new byte[len];
+			int pos = Math.min(len, buffer.remaining());
+			buffer.get(bytes, 0, pos);
+			if (pos < len) {
+
+				// Large record, read it directly
+				ByteBuffer wrapper = ByteBuffer.wrap(bytes, pos, len - pos);
+				while (wrapper.hasRemaining()) {
+					if (channel.read(wrapper) < 0) {
+						throw new EOFException("Unexpected end of cache snapshot!");
+					}
+				}
+			}
+			return bytes;
+		}
+
+		protected void require(int size) throws IOException {
+			if (buffer.remaining() >= size) {
+				return;
+			}
+			buffer.compact();
+			while (buffer.position() < size) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("Unexpected end of cache snapshot!");
+				}
+			}
+			buffer.flip();
+		}
+
+		public byte getType() {
+			return type;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public byte[] getKey() {
+			return key;
+		}
+
+		public long getExpireAt() {
+			return expireAt;
+		}
+
+		public byte[] getValue() {
+			return value;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
@@ -113,23 +113,7 @@ public abstract class Cacher extends Middleware implements MetricConstants {
 
 				@Override
 				public Object handler(Context ctx) throws Exception {
-					String key = getCacheKey(ctx.name, ctx.params, keys);
-					return new Promise(resolver -> {
-						get(key).then(in -> {
-							if (in == null || in.isNull()) {
-								new Promise(action.handler(ctx)).then(tree -> {
-									set(key, tree, ttl);
-									resolver.resolve(tree);
-								}).catchError(err -> {
-									resolver.reject(err);
-								});
-							} else {
-								resolver.resolve(in);
-							}
-						}).catchError(err -> {
-							resolver.reject(err);
-						});
-					});
+					return handleCached(ctx, action, getCacheKey(ctx.name, ctx.params, keys), ttl);
 				}
 			};
 		}
@@ -139,25 +123,73 @@ public abstract class Cacher extends Middleware implements MetricConstants {
 
 			@Override
 			public Object handler(Context ctx) throws Exception {			
-				String key = getCacheKey(ctx.name, ctx.params, keys);
-				return new Promise(resolver -> {
-					get(key).then(in -> {
-						if (in == null || in.isNull()) {
-							new Promise(action.handler(ctx)).then(tree -> {
-								set(key, tree, ttl);
-								resolver.resolve(tree);
-							}).catchError(err -> {
-								resolver.reject(err);
-							});
-						} else {
-							resolver.resolve(in);
-						}
+				return handleCached(ctx, action, getCacheKey(ctx.name, ctx.params, keys), ttl);
+			}
+		};
+	}
+
+	/**
+	 * Invokes the Action through the cache. Hits of synchronous cachers (eg.
+	 * MemoryCacher) are returned without Promise wrapping.
+	 * 
+	 * @param ctx
+	 *            invocation context
+	 * @param action
+	 *            the cached Action
+	 * @param key
+	 *            cache key
+	 * @param ttl
+	 *            time-to-live in seconds (0 = default TTL)
+	 * 
+	 * @return cached value or Promise
+	 * 
+	 * @throws Exception
+	 *             any I/O error
+	 */
+	protected Object handleCached(Context ctx, Action action, String key, int ttl) throws Exception {
+		Promise cached = get(ctx, key);
+		if (cached.isResolved()) {
+			Tree in = cached.waitFor();
+			if (in != null && !in.isNull()) {
+				return in;
+			}
+		}
+		return new Promise(resolver -> {
+			cached.then(in -> {
+				if (in == null || in.isNull()) {
+					new Promise(action.handler(ctx)).then(tree -> {
+						set(key, tree, ttl);
+						resolver.resolve(tree);
 					}).catchError(err -> {
 						resolver.reject(err);
 					});
-				});
-			}
-		};
+				} else {
+					resolver.resolve(in);
+				}
+			}).catchError(err -> {
+				resolver.reject(err);
+			});
+		});
+	}
+
+	/**
+	 * Reads the cached value for the middleware. Requests received from remote
+	 * nodes get the value in serialized form (if the cacher supports it),
+	 * because the response will be serialized again. Nested calls (even in
+	 * remotely invoked actions) always get a parsed Tree.
+	 *
+	 * @param ctx
+	 *            invocation context
+	 * @param key
+	 *            cache key
+	 * 
+	 * @return Promise with cached value
+	 */
+	protected Promise get(Context ctx, String key) {
+		if (ctx.remote) {
+			return getSerialized(key);
+		}
+		return get(key);
 	}
 
 	// --- GENERATE CACHE KEY ---
@@ -303,6 +335,23 @@ public abstract class Cacher extends Middleware implements MetricConstants {
 	 */
 	public abstract Promise get(String key);
 
+	/**
+	 * Gets a cached content by a key, without deserialization (if possible).
+	 * Cachers which store serialized values (eg. OHCacher) return the value
+	 * as a {@link services.moleculer.serializer.SerializedValue SerializedValue}
+	 * object, which can be sent to the remote callers without
+	 * deserialization. The default implementation is the same as the
+	 * {@link #get(String)} method.
+	 *
+	 * @param key
+	 *            cache key
+	 * 
+	 * @return Promise with cached value (Tree or SerializedValue, or null)
+	 */
+	public Promise getSerialized(String key) {
+		return get(key);
+	}
+
 	/**
 	 * Sets a content by key into the cache.
 	 *
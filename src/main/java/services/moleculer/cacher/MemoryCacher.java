@@ -25,11 +25,20 @@
  */
 package services.moleculer.cacher;
 
+import static services.moleculer.util.CommonUtils.nameOf;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -42,7 +51,10 @@ import services.moleculer.error.MoleculerServerError;
 import services.moleculer.eventbus.Matcher;
 import services.moleculer.metrics.MetricCounter;
 import services.moleculer.metrics.StoppableTimer;
+import services.moleculer.serializer.JsonSerializer;
+import services.moleculer.serializer.Serializer;
 import services.moleculer.service.Name;
+import services.moleculer.util.CheckedTree;
 
 /**
  * On-heap memory cache. MemoryCacher is the fastest cache implementation in
@@ -56,6 +68,10 @@ import services.moleculer.service.Name;
  * <li>ttl: Expire time of entries in memory, in seconds (default: 0 = never
  * expires)
  * <li>cleanup: Cleanup period, in seconds
+ * <li>snapshotFile: Path of the snapshot file (default: null = the content of
+ * the cache is lost on restart)
+ * <li>snapshotInterval: Period of saving snapshots, in seconds (default: 0 =
+ * save the snapshot only at shutdown)
  * </ul>
  * Performance (small and large data): 5.5 million gets / second (per thread /
  * core) <br>
@@ -67,6 +83,10 @@ import services.moleculer.service.Name;
 @Name("On-heap Memory Cacher")
 public class MemoryCacher extends Cacher implements Runnable {
 
+	// --- CONTENT CONTAINER NAME ---
+
+	protected static final String CONTENT = "_";
+
 	// --- PROPERTIES ---
 
 	/**
@@ -99,6 +119,22 @@ public class MemoryCacher extends Cacher implements Runnable {
 	 */
 	protected boolean accessOrder = true;
 
+	/**
+	 * Path of the snapshot file (null = disable "warm restarts"). The content
+	 * of the cache is written to this file at shutdown, and it is loaded back
+	 * (in the background) at startup.
+	 */
+	protected String snapshotFile;
+
+	/**
+	 * Snapshot period, in SECONDS (0 = save the snapshot only at shutdown)
+	 */
+	protected int snapshotInterval;
+
+	// --- SNAPSHOT SERIALIZER / DESERIALIZER ---
+
+	protected Serializer serializer = new JsonSerializer();
+
 	// --- READ/WRITE LOCK ---
 
 	protected final StampedLock lock = new StampedLock();
@@ -118,6 +154,23 @@ public class MemoryCacher extends Cacher implements Runnable {
 
 	protected AtomicBoolean timerStopped = new AtomicBoolean();
 
+	// --- SNAPSHOT HANDLING ---
+
+	/**
+	 * Cancelable snapshot timer
+	 */
+	protected volatile ScheduledFuture<?> snapshotTimer;
+
+	/**
+	 * Background loader of the snapshot
+	 */
+	protected volatile Future<?> snapshotLoader;
+
+	/**
+	 * Snapshot loaded (or there was nothing to load)
+	 */
+	protected volatile boolean snapshotLoaded;
+
 	// --- COUNTERS ---
 
 	protected MetricCounter counterExpired;
@@ -178,6 +231,26 @@ public class MemoryCacher extends Cacher implements Runnable {
 			counterClean = metrics.increment(MOLECULER_CACHER_CLEAN_TOTAL, MOLECULER_CACHER_CLEAN_TOTAL_DESC, 0);
 			counterFound = metrics.increment(MOLECULER_CACHER_FOUND_TOTAL, MOLECULER_CACHER_FOUND_TOTAL_DESC, 0);
 		}
+
+		// Restore entries from the previous snapshot
+		if (snapshotFile != null && !snapshotFile.isEmpty()) {
+			serializer.started(broker);
+			File file = new File(snapshotFile);
+			if (file.isFile()) {
+				logger.info("Loading cache snapshot from \"" + file.getAbsolutePath() + "\" (using "
+						+ nameOf(serializer, false) + ")...");
+				snapshotLoader = broker.getConfig().getExecutor().submit(() -> {
+					loadSnapshot(file);
+				});
+			} else {
+				snapshotLoaded = true;
+			}
+			if (snapshotInterval > 0) {
+				ScheduledExecutorService scheduler = broker.getConfig().getScheduler();
+				snapshotTimer = scheduler.scheduleWithFixedDelay(this::saveSnapshot, snapshotInterval,
+						snapshotInterval, TimeUnit.SECONDS);
+			}
+		}
 	}
 
 	// --- REMOVE OLD ENTRIES ---
@@ -222,6 +295,21 @@ public class MemoryCacher extends Cacher implements Runnable {
 			timer = null;
 		}
 
+		// Save snapshot
+		if (snapshotTimer != null) {
+			snapshotTimer.cancel(false);
+			snapshotTimer = null;
+		}
+		Future<?> loader = snapshotLoader;
+		if (loader != null) {
+			try {
+				loader.get();
+			} catch (Throwable ignored) {
+			}
+			snapshotLoader = null;
+		}
+		saveSnapshot();
+
 		// Clear partitions
 		final long stamp = lock.writeLock();
 		try {
@@ -280,20 +368,7 @@ public class MemoryCacher extends Cacher implements Runnable {
 			// Prefix is the name of the partition / region (eg.
 			// "user" from the "user.name" cache key)
 			String prefix = key.substring(0, pos);
-			MemoryPartition partition = getPartition(prefix);
-			if (partition == null) {
-				partition = new MemoryPartition(this);
-				MemoryPartition previous;
-				final long stamp = lock.writeLock();
-				try {
-					previous = partitions.putIfAbsent(prefix, partition);
-				} finally {
-					lock.unlockWrite(stamp);
-				}
-				if (previous != null) {
-					partition = previous;
-				}
-			}
+			MemoryPartition partition = getOrCreatePartition(prefix);
 			int entryTTL;
 			if (ttl > 0) {
 
@@ -321,6 +396,24 @@ public class MemoryCacher extends Cacher implements Runnable {
 		return Promise.resolve();
 	}
 
+	protected MemoryPartition getOrCreatePartition(String prefix) {
+		MemoryPartition partition = getPartition(prefix);
+		if (partition == null) {
+			partition = new MemoryPartition(this);
+			MemoryPartition previous;
+			final long stamp = lock.writeLock();
+			try {
+				previous = partitions.putIfAbsent(prefix, partition);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+			if (previous != null) {
+				partition = previous;
+			}
+		}
+		return partition;
+	}
+
 	@Override
 	public Promise del(String key) {
 		try {
@@ -396,6 +489,128 @@ public class MemoryCacher extends Cacher implements Runnable {
 		return i;
 	}
 
+	// --- SAVE / LOAD SNAPSHOT ---
+
+	/**
+	 * Writes the (non-expired) entries of the cache into the snapshot file.
+	 * Entries are written in LRU order, so the least recently used entries are
+	 * evicted first when the snapshot is loaded into a smaller cache.
+	 */
+	protected synchronized void saveSnapshot() {
+		if (snapshotFile == null || snapshotFile.isEmpty()) {
+			return;
+		}
+		if (!snapshotLoaded) {
+
+			// Do not overwrite a partially loaded snapshot
+			logger.warn("Cache snapshot is not loaded yet, the snapshot will not be saved.");
+			return;
+		}
+		long start = System.nanoTime();
+		HashMap<String, MemoryPartition> copy;
+		final long stamp = lock.readLock();
+		try {
+			copy = new HashMap<>(partitions);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		try (CacheSnapshot.Writer writer = new CacheSnapshot.Writer(new File(snapshotFile),
+				CacheSnapshot.TYPE_MEMORY)) {
+			long now = System.currentTimeMillis();
+			PartitionEntry pEntry;
+			for (Map.Entry<String, MemoryPartition> partition : copy.entrySet()) {
+				String prefix = partition.getKey() + '.';
+				for (Map.Entry<String, PartitionEntry> entry : partition.getValue().entries()) {
+					pEntry = entry.getValue();
+					if (pEntry.expireAt > 0 && pEntry.expireAt <= now) {
+						continue;
+					}
+					writer.write((prefix + entry.getKey()).getBytes(StandardCharsets.UTF_8), pEntry.expireAt,
+							valueToBytes(pEntry.value));
+				}
+			}
+			writer.commit();
+			long duration = (System.nanoTime() - start) / 1000000L;
+			logger.info(writer.getCount() + " entries saved to cache snapshot in " + duration + " milliseconds.");
+		} catch (Throwable cause) {
+			logger.warn("Unable to save cache snapshot!", cause);
+		}
+	}
+
+	/**
+	 * Loads entries from the snapshot file. Skips the expired entries, and the
+	 * entries which are already stored in the cache (the newer values).
+	 *
+	 * @param file
+	 *            snapshot file
+	 */
+	protected void loadSnapshot(File file) {
+		long start = System.nanoTime();
+		int restored = 0;
+		int skipped = 0;
+		boolean completed = false;
+		try (CacheSnapshot.Reader reader = new CacheSnapshot.Reader(file)) {
+			if (reader.getType() != CacheSnapshot.TYPE_MEMORY) {
+				logger.warn("Invalid cache snapshot type (" + reader.getType() + ")!");
+				completed = true;
+				return;
+			}
+			long now = System.currentTimeMillis();
+			long expireAt;
+			String key;
+			int pos;
+			while (reader.next()) {
+				if (timerStopped.get()) {
+					return;
+				}
+				expireAt = reader.getExpireAt();
+				if (expireAt > 0 && expireAt <= now) {
+					skipped++;
+					continue;
+				}
+				key = new String(reader.getKey(), StandardCharsets.UTF_8);
+				pos = partitionPosition(key, false);
+				if (pos < 1) {
+					skipped++;
+					continue;
+				}
+				MemoryPartition partition = getOrCreatePartition(key.substring(0, pos));
+				if (partition.restore(key.substring(pos + 1), bytesToValue(reader.getValue()), expireAt)) {
+					restored++;
+
+					// Start cleanup process
+					if (expireAt > 0 && !timerStarted.get()) {
+						startTimer(ttl > 0 ? ttl : 5);
+					}
+				} else {
+					skipped++;
+				}
+			}
+			completed = true;
+			long duration = (System.nanoTime() - start) / 1000000L;
+			logger.info(restored + " entries restored from cache snapshot in " + duration + " milliseconds ("
+					+ skipped + " expired or outdated entries skipped).");
+		} catch (Throwable cause) {
+			completed = true;
+			logger.warn("Unable to load cache snapshot!", cause);
+		} finally {
+			snapshotLoaded = completed;
+		}
+	}
+
+	protected byte[] valueToBytes(Tree tree) throws Exception {
+		return serializer.write(new CheckedTree(Collections.singletonMap(CONTENT, tree.asObject())));
+	}
+
+	protected Tree bytesToValue(byte[] bytes) throws Exception {
+		Tree root = serializer.read(bytes);
+		Tree content = root.get(CONTENT);
+		if (content != null) {
+			return content;
+		}
+		return root;
+	}
+
 	// --- MEMORY PARTITION ---
 
 	protected static class MemoryPartition {
@@ -562,6 +777,31 @@ public class MemoryCacher extends Cacher implements Runnable {
 			}
 		}
 
+		protected boolean restore(String key, Tree value, long expireAt) {
+			final long stamp = lock.writeLock();
+			try {
+				if (cache.containsKey(key)) {
+					return false;
+				}
+				cache.put(key, new PartitionEntry(value, expireAt));
+				return true;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		protected ArrayList<Map.Entry<String, PartitionEntry>> entries() {
+
+			// Write lock is required (in access-order mode the "get" modifies
+			// the order of the entries)
+			final long stamp = lock.writeLock();
+			try {
+				return new ArrayList<>(cache.entrySet());
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
 		protected void del(String key) {
 
 			// Metrics
@@ -673,4 +913,28 @@ public class MemoryCacher extends Cacher implements Runnable {
 		this.accessOrder = accessOrder;
 	}
 
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public void setSnapshotFile(String snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	public Serializer getSerializer() {
+		return serializer;
+	}
+
+	public void setSerializer(Serializer serializer) {
+		this.serializer = Objects.requireNonNull(serializer);
+	}
+
 }
\ No newline at end of file
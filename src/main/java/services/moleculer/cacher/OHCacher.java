@@ -33,11 +33,14 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -55,6 +58,7 @@ import services.moleculer.metrics.MetricCounter;
 import services.moleculer.metrics.MetricGauge;
 import services.moleculer.metrics.StoppableTimer;
 import services.moleculer.serializer.JsonSerializer;
+import services.moleculer.serializer.SerializedValue;
 import services.moleculer.serializer.Serializer;
 import services.moleculer.service.Name;
 import services.moleculer.util.CheckedTree;
@@ -73,6 +77,10 @@ import services.moleculer.util.CheckedTree;
  * number-of-cores * 2
  * <li>hashTableSize: hash table size (must be a power of 2), defaults to 8192
  * <li>compressAbove: compress key and/or value above this size (BYTES)
+ * <li>snapshotFile: path of the snapshot file (default: null = the content of
+ * the cache is lost on restart)
+ * <li>snapshotInterval: period of saving snapshots, in seconds (default: 0 =
+ * save the snapshot only at shutdown)
  * </ul>
  * Performance (per thread / core):<br>
  * <br>
@@ -141,6 +149,18 @@ public class OHCacher extends Cacher {
 	 */
 	protected int compressionLevel = Deflater.BEST_SPEED;
 
+	/**
+	 * Path of the snapshot file (null = disable "warm restarts"). The content
+	 * of the cache is written to this file at shutdown, and it is loaded back
+	 * (in the background) at startup.
+	 */
+	protected String snapshotFile;
+
+	/**
+	 * Snapshot period, in SECONDS (0 = save the snapshot only at shutdown)
+	 */
+	protected int snapshotInterval;
+
 	// --- SERIALIZER / DESERIALIZER ---
 
 	protected Serializer serializer = new JsonSerializer();
@@ -156,6 +176,28 @@ public class OHCacher extends Cacher {
 	 */
 	protected volatile ScheduledFuture<?> timer;
 
+	// --- SNAPSHOT HANDLING ---
+
+	/**
+	 * Cancelable snapshot timer
+	 */
+	protected volatile ScheduledFuture<?> snapshotTimer;
+
+	/**
+	 * Background loader of the snapshot
+	 */
+	protected volatile Future<?> snapshotLoader;
+
+	/**
+	 * Snapshot loaded (or there was nothing to load)
+	 */
+	protected volatile boolean snapshotLoaded;
+
+	/**
+	 * Cacher is stopping
+	 */
+	protected volatile boolean stopping;
+
 	// --- COUNTERS ---
 
 	protected MetricGauge gaugeExpired;
@@ -282,6 +324,24 @@ public class OHCacher extends Cacher {
 				
 			}, 5, 5, TimeUnit.SECONDS);
 		}
+
+		// Restore entries from the previous snapshot
+		stopping = false;
+		if (snapshotFile != null && !snapshotFile.isEmpty()) {
+			File file = new File(snapshotFile);
+			if (file.isFile()) {
+				logger.info("Loading cache snapshot from \"" + file.getAbsolutePath() + "\"...");
+				snapshotLoader = broker.getConfig().getExecutor().submit(() -> {
+					loadSnapshot(file);
+				});
+			} else {
+				snapshotLoaded = true;
+			}
+			if (snapshotInterval > 0) {
+				snapshotTimer = scheduler.scheduleWithFixedDelay(this::saveSnapshot, snapshotInterval,
+						snapshotInterval, TimeUnit.SECONDS);
+			}
+		}
 	}
 
 	// --- CLOSE CACHE INSTANCE ---
@@ -292,6 +352,24 @@ public class OHCacher extends Cacher {
 			timer.cancel(false);
 			timer = null;
 		}
+
+		// Save snapshot
+		stopping = true;
+		if (snapshotTimer != null) {
+			snapshotTimer.cancel(false);
+			snapshotTimer = null;
+		}
+		Future<?> loader = snapshotLoader;
+		if (loader != null) {
+			try {
+				loader.get();
+			} catch (Throwable ignored) {
+			}
+			snapshotLoader = null;
+		}
+		saveSnapshot();
+
+		// Close cache
 		if (cache != null) {
 			try {
 				cache.close();
@@ -331,6 +409,39 @@ public class OHCacher extends Cacher {
 		return Promise.resolve((Object) null);
 	}
 
+	@Override
+	public Promise getSerialized(String key) {
+
+		// Metrics
+		StoppableTimer getTimer = null;
+		if (metrics != null) {
+			counterGet.increment();
+			getTimer = metrics.timer(MOLECULER_CACHER_GET_TIME, MOLECULER_CACHER_GET_TIME_DESC);
+		}
+
+		try {
+			byte[] bytes = cache.get(keyToBytes(key));
+			if (bytes != null) {
+				if (counterFound != null) {
+					counterFound.increment();
+				}
+				if ((bytes[0] & 4) != 0) {
+
+					// Structure (without container) -> parse it lazily
+					return Promise.resolve(new SerializedValue(serializer, contentOf(bytes)));
+				}
+				return Promise.resolve(bytesToValue(bytes));
+			}
+		} catch (Throwable cause) {
+			logger.warn("Unable to read data from off-heap cache!", cause);
+		} finally {
+			if (getTimer != null) {
+				getTimer.stop();
+			}
+		}
+		return Promise.resolve((Object) null);
+	}
+
 	@Override
 	public Promise set(String key, Tree value, int ttl) {
 
@@ -349,11 +460,12 @@ public class OHCacher extends Cacher {
 
 					// Entry-level TTL (in seconds)
 					long expireAt = ttl * 1000L + System.currentTimeMillis();
-					cache.put(keyToBytes(key), valueToBytes(value), expireAt);
+					cache.put(keyToBytes(key), valueToBytes(value, expireAt), expireAt);
 				} else {
 
 					// Use the default TTL
-					cache.put(keyToBytes(key), valueToBytes(value));
+					long expireAt = this.ttl > 0 ? this.ttl * 1000L + System.currentTimeMillis() : 0;
+					cache.put(keyToBytes(key), valueToBytes(value, expireAt));
 				}
 			}
 		} catch (Throwable cause) {
@@ -481,10 +593,22 @@ public class OHCacher extends Cacher {
 	}
 
 	protected byte[] valueToBytes(Tree tree) throws Exception {
+		return valueToBytes(tree, 0);
+	}
+
+	protected byte[] valueToBytes(Tree tree, long expireAt) throws Exception {
+
+		// Structures are stored "as is", other values in a container
+		Object object = tree.asObject();
+		boolean plain = object instanceof Map;
+		byte[] bytes;
+		if (plain) {
+			bytes = serializer.write(tree);
+		} else {
+			bytes = serializer.write(new CheckedTree(Collections.singletonMap(CONTENT, object)));
+		}
 
 		// Compress content
-		Tree root = new CheckedTree(Collections.singletonMap(CONTENT, tree.asObject()));
-		byte[] bytes = serializer.write(root);
 		boolean compressed;
 		if (compressAbove > 0 && bytes.length > compressAbove) {
 			bytes = compress(bytes, compressionLevel);
@@ -492,27 +616,64 @@ public class OHCacher extends Cacher {
 		} else {
 			compressed = false;
 		}
-		byte[] copy = new byte[bytes.length + 1];
-		System.arraycopy(bytes, 0, copy, 1, bytes.length);
+		// Expiration is stored only when the snapshot is enabled
+		int offset = expireAt > 0 && snapshotFile != null ? 9 : 1;
+		byte[] copy = new byte[bytes.length + offset];
+		System.arraycopy(bytes, 0, copy, offset, bytes.length);
 		if (compressed) {
 
-			// Compressed -> first byte = 1
+			// Compressed -> first bit = 1
 			copy[0] = (byte) 1;
 		}
+		if (plain) {
+
+			// Not in container -> third bit = 1
+			copy[0] |= (byte) 4;
+		}
+		if (offset > 1) {
+
+			// Expiration follows -> second bit = 1
+			copy[0] |= (byte) 2;
+			for (int i = 8; i > 0; i--) {
+				copy[i] = (byte) expireAt;
+				expireAt >>>= 8;
+			}
+		}
+		return copy;
+	}
+
+	protected long expireAtOf(byte[] bytes) {
+		if ((bytes[0] & 2) == 0) {
+			return 0;
+		}
+		long expireAt = 0;
+		for (int i = 1; i < 9; i++) {
+			expireAt = (expireAt << 8) | (bytes[i] & 0xFF);
+		}
+		return expireAt;
+	}
+
+	protected byte[] contentOf(byte[] bytes) throws Exception {
+		int offset = (bytes[0] & 2) == 0 ? 1 : 9;
+		int length = bytes.length - offset;
+		if ((bytes[0] & 1) != 0) {
+
+			// First bit == 1 -> compressed
+			return decompress(bytes, offset, length, null);
+		}
+		byte[] copy = new byte[length];
+		System.arraycopy(bytes, offset, copy, 0, length);
 		return copy;
 	}
 
 	protected Tree bytesToValue(byte[] bytes) throws Exception {
 
-		// Decompress content
-		byte[] copy = new byte[bytes.length - 1];
-		System.arraycopy(bytes, 1, copy, 0, bytes.length - 1);
-		if (bytes[0] == 1) {
+		Tree root = serializer.read(contentOf(bytes));
+		if ((bytes[0] & 4) != 0) {
 
-			// First byte == 1 -> compressed
-			copy = decompress(copy);
+			// Third bit == 1 -> not in container
+			return root;
 		}
-		Tree root = serializer.read(copy);
 		Tree content = root.get(CONTENT);
 		if (content != null) {
 			return content;
@@ -520,6 +681,104 @@ public class OHCacher extends Cacher {
 		return root;
 	}
 
+	// --- SAVE / LOAD SNAPSHOT ---
+
+	/**
+	 * Writes the (non-expired) entries of the cache into the snapshot file.
+	 * Keys and values are written in their stored (serialized and compressed)
+	 * form.
+	 */
+	protected synchronized void saveSnapshot() {
+		if (snapshotFile == null || snapshotFile.isEmpty() || cache == null) {
+			return;
+		}
+		if (!snapshotLoaded) {
+
+			// Do not overwrite a partially loaded snapshot
+			logger.warn("Cache snapshot is not loaded yet, the snapshot will not be saved.");
+			return;
+		}
+		long start = System.nanoTime();
+		try (CacheSnapshot.Writer writer = new CacheSnapshot.Writer(new File(snapshotFile),
+				CacheSnapshot.TYPE_OFF_HEAP)) {
+			long now = System.currentTimeMillis();
+			Iterator<byte[]> i = cache.keyIterator();
+			byte[] key, value;
+			long expireAt;
+			while (i.hasNext()) {
+				key = i.next();
+				value = cache.get(key);
+				if (value == null) {
+					continue;
+				}
+				expireAt = expireAtOf(value);
+				if (expireAt > 0 && expireAt <= now) {
+					continue;
+				}
+				writer.write(key, expireAt, value);
+			}
+			writer.commit();
+			long duration = (System.nanoTime() - start) / 1000000L;
+			logger.info(writer.getCount() + " entries saved to cache snapshot in " + duration + " milliseconds.");
+		} catch (Throwable cause) {
+			logger.warn("Unable to save cache snapshot!", cause);
+		}
+	}
+
+	/**
+	 * Loads entries from the snapshot file. Skips the expired entries, and the
+	 * entries which are already stored in the cache (the newer values). The
+	 * capacity of the cache is limited by the eviction of the OHC.
+	 *
+	 * @param file
+	 *            snapshot file
+	 */
+	protected void loadSnapshot(File file) {
+		long start = System.nanoTime();
+		int restored = 0;
+		int skipped = 0;
+		boolean completed = false;
+		try (CacheSnapshot.Reader reader = new CacheSnapshot.Reader(file)) {
+			if (reader.getType() != CacheSnapshot.TYPE_OFF_HEAP) {
+				logger.warn("Invalid cache snapshot type (" + reader.getType() + ")!");
+				completed = true;
+				return;
+			}
+			long now = System.currentTimeMillis();
+			long expireAt;
+			boolean added;
+			while (reader.next()) {
+				if (stopping) {
+					return;
+				}
+				expireAt = reader.getExpireAt();
+				if (expireAt > 0 && expireAt <= now) {
+					skipped++;
+					continue;
+				}
+				if (expireAt > 0) {
+					added = cache.putIfAbsent(reader.getKey(), reader.getValue(), expireAt);
+				} else {
+					added = cache.putIfAbsent(reader.getKey(), reader.getValue());
+				}
+				if (added) {
+					restored++;
+				} else {
+					skipped++;
+				}
+			}
+			completed = true;
+			long duration = (System.nanoTime() - start) / 1000000L;
+			logger.info(restored + " entries restored from cache snapshot in " + duration + " milliseconds ("
+					+ skipped + " expired or outdated entries skipped).");
+		} catch (Throwable cause) {
+			completed = true;
+			logger.warn("Unable to load cache snapshot!", cause);
+		} finally {
+			snapshotLoaded = completed;
+		}
+	}
+
 	protected static class ArraySerializer implements CacheSerializer<byte[]> {
 
 		@Override
@@ -592,6 +851,22 @@ public class OHCacher extends Cacher {
 		this.serializer = Objects.requireNonNull(serializer);
 	}
 
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public void setSnapshotFile(String snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
 	public int getCompressionLevel() {
 		return compressionLevel;
 	}
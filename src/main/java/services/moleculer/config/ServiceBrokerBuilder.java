@@ -75,6 +75,11 @@ public class ServiceBrokerBuilder {
 		return this;
 	}
 
+	public ServiceBrokerBuilder parallelStartup(boolean parallelStartup) {
+		config.setParallelStartup(parallelStartup);
+		return this;
+	}
+
 	public ServiceBrokerBuilder scheduler(ScheduledExecutorService scheduler) {
 		config.setScheduler(scheduler);
 		return this;
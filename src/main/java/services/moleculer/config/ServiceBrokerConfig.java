@@ -83,6 +83,11 @@ public class ServiceBrokerConfig {
 	 */
 	protected boolean internalServices = true;
 
+	/**
+	 * Start services in parallel (in the order of their dependencies)?
+	 */
+	protected boolean parallelStartup = true;
+
 	// --- JSON API SERIALIZER / DESERIALIZER ---
 
 	/**
@@ -251,6 +256,14 @@ public class ServiceBrokerConfig {
 		this.internalServices = internalServices;
 	}
 
+	public boolean isParallelStartup() {
+		return parallelStartup;
+	}
+
+	public void setParallelStartup(boolean parallelStartup) {
+		this.parallelStartup = parallelStartup;
+	}
+
 	public String getJsonReaders() {
 		return jsonReaders;
 	}
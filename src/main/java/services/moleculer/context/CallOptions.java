@@ -26,7 +26,8 @@
 package services.moleculer.context;
 
 /**
- * Calling options (timeout, target nodeID, number of retries). Usage:<br>
+ * Calling options (timeout, target nodeID, number of retries, hedging).
+ * Usage:<br>
  * 
  * <pre>
  * broker.call("math.add", "a", 3, "b", 5,
@@ -63,26 +64,41 @@ public class CallOptions {
 		 */
 		public final int retryCount;
 
-		// --- CONSTRUCTOR ---
+		/**
+		 * Latency percentile (1...99) that triggers a hedged request (0 = use
+		 * the Action's "Hedge" annotation, -1 = disable hedging)
+		 */
+		public final int hedge;
+
+		// --- CONSTRUCTORS ---
 
 		protected Options(String nodeID, long timeoutMillis, int retryCount) {
+			this(nodeID, timeoutMillis, retryCount, 0);
+		}
+
+		protected Options(String nodeID, long timeoutMillis, int retryCount, int hedge) {
 			this.nodeID = nodeID;
 			this.timeout = timeoutMillis;
 			this.retryCount = retryCount;
+			this.hedge = hedge;
 		}
 
 		// --- VARIABLE SETTERS ---
 
 		public Options nodeID(String nodeID) {
-			return new Options(nodeID, timeout, retryCount);
+			return new Options(nodeID, timeout, retryCount, hedge);
 		}
 
 		public Options timeout(long timeoutMillis) {
-			return new Options(nodeID, timeoutMillis, retryCount);
+			return new Options(nodeID, timeoutMillis, retryCount, hedge);
 		}
 
 		public Options retryCount(int retryCount) {
-			return new Options(nodeID, timeout, retryCount);
+			return new Options(nodeID, timeout, retryCount, hedge);
+		}
+
+		public Options hedge(int percentile) {
+			return new Options(nodeID, timeout, retryCount, percentile);
 		}
 
 	}
@@ -106,4 +122,8 @@ public class CallOptions {
 		return new Options(null, 0, retryCount);
 	}
 
+	public static Options hedge(int percentile) {
+		return new Options(null, 0, 0, percentile);
+	}
+
 }
\ No newline at end of file
@@ -26,7 +26,6 @@
  */
 package services.moleculer.context;
 
-import io.datatree.Promise;
 import io.datatree.Tree;
 import services.moleculer.error.RequestRejectedError;
 import services.moleculer.eventbus.Eventbus;
@@ -85,6 +84,12 @@ public class Context extends ContextSource {
 	 * Source nodeID
 	 */
 	public final String nodeID;
+
+	/**
+	 * The request was received from a remote node (true only in the top-level
+	 * context of an incoming request, the nested contexts do not inherit it)
+	 */
+	public final boolean remote;
 	
 	// --- TIMESTAMP ---
 
@@ -97,6 +102,13 @@ public class Context extends ContextSource {
 
 	public Context(ServiceInvoker serviceInvoker, Eventbus eventbus, UidGenerator uidGenerator, String id, String name,
 			Tree params, int level, String parentID, String requestID, PacketStream stream, CallOptions.Options opts, String nodeID) {
+		this(serviceInvoker, eventbus, uidGenerator, id, name, params, level, parentID, requestID, stream, opts, nodeID,
+				false);
+	}
+
+	public Context(ServiceInvoker serviceInvoker, Eventbus eventbus, UidGenerator uidGenerator, String id, String name,
+			Tree params, int level, String parentID, String requestID, PacketStream stream, CallOptions.Options opts,
+			String nodeID, boolean remote) {
 		super(serviceInvoker, eventbus, uidGenerator, nodeID);
 
 		// Set properties
@@ -109,6 +121,7 @@ public class Context extends ContextSource {
 		this.stream = stream;
 		this.opts = opts;
 		this.nodeID = nodeID;
+		this.remote = remote;
 
 		// Store timestamp
 		if (opts != null && opts.timeout > 0) {
@@ -135,10 +148,11 @@ public class Context extends ContextSource {
 				mergeMeta(payload), level + 1, null, null, stream, opts, nodeID), groups, local);
 	}
 
-	// --- CALL (WITH MERGED META AND DISTRIBUTED TIMEOUT) ---
+	// --- CREATE NESTED CONTEXT (WITH MERGED META AND DISTRIBUTED TIMEOUT) ---
 
 	/**
-	 * Calls an action (local or remote).
+	 * Creates a nested Context for calling an action (local or remote). Throws
+	 * a {@link RequestRejectedError} if the distributed timeout has expired.
 	 * 
 	 * @param name
 	 *            action name (eg. "math.add" in "service.action" syntax)
@@ -150,10 +164,10 @@ public class Context extends ContextSource {
 	 * @param stream
 	 *            streamed data (optional)
 	 * 
-	 * @return response Promise
+	 * @return new Context
 	 */
 	@Override
-	protected Promise call(String name, Tree params, CallOptions.Options opts, PacketStream stream) {
+	protected Context createContext(String name, Tree params, CallOptions.Options opts, PacketStream stream) {
 
 		// Recalculate distributed timeout
 		if (createdAt > 0) {
@@ -164,7 +178,7 @@ public class Context extends ContextSource {
 			final long distTimeout = this.opts.timeout - duration;
 
 			if (distTimeout <= 0) {
-				return Promise.reject(new RequestRejectedError(serviceInvoker.getBroker().getNodeID(), name));
+				throw new RequestRejectedError(serviceInvoker.getBroker().getNodeID(), name);
 			}
 
 			if (opts == null) {
@@ -173,8 +187,8 @@ public class Context extends ContextSource {
 				opts = opts.timeout(distTimeout);
 			}
 		}
-		return serviceInvoker.call(new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(), name,
-				mergeMeta(params), level + 1, id, requestID, stream, opts, nodeID));
+		return new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(), name, mergeMeta(params),
+				level + 1, id, requestID, stream, opts, nodeID);
 	}
 
 	protected Tree mergeMeta(Tree newParams) {
@@ -207,10 +221,13 @@ public class Context extends ContextSource {
 			tree.putUnsafe("params", params);
 		}
 		if (opts != null) {
-			FastBuildTree o = new FastBuildTree(4);
+			FastBuildTree o = new FastBuildTree(5);
 			o.put("nodeID", opts.nodeID);
 			o.put("retryCount", opts.retryCount);
 			o.put("timeout", opts.timeout);
+			if (opts.hedge != 0) {
+				o.put("hedge", opts.hedge);
+			}
 			tree.putUnsafe("opts", o);			
 		}
 		if (stream != null) {
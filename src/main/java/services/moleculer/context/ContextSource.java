@@ -27,6 +27,11 @@ package services.moleculer.context;
 
 import static services.moleculer.util.CommonUtils.extractStream;
 import static services.moleculer.util.CommonUtils.parseParams;
+import static services.moleculer.util.CommonUtils.throwableToTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
@@ -379,6 +384,9 @@ public abstract class ContextSource {
 	 * @return response Promise
 	 */
 	public Promise call(String name, Tree params) {
+		if (params == null || !(params.asObject() instanceof PacketStream)) {
+			return call(name, params, null, null);
+		}
 		ParseResult res = extractStream(params);
 		return call(name, res.data, null, res.stream);
 	}
@@ -397,6 +405,9 @@ public abstract class ContextSource {
 	 * @return response Promise
 	 */
 	public Promise call(String name, Tree params, CallOptions.Options opts) {
+		if (params == null || !(params.asObject() instanceof PacketStream)) {
+			return call(name, params, opts, null);
+		}
 		ParseResult res = extractStream(params);
 		return call(name, res.data, opts, res.stream);
 	}
@@ -432,6 +443,150 @@ public abstract class ContextSource {
 		return call(name, null, opts, stream);
 	}
 
+	// --- MULTIPLE CALLS ---
+
+	/**
+	 * Calls multiple actions (local or remote) at once. Requests addressed to
+	 * the same remote node are sent in one packet. The "calls" parameter is a
+	 * map (or a list) of call definitions, the response has the same structure.
+	 * Sample code:<br>
+	 * 
+	 * <pre>
+	 * Tree calls = new Tree();
+	 * calls.putMap("sum").put("action", "math.add").putMap("params").put("a", 1).put("b", 2);
+	 * calls.putMap("user").put("action", "users.get").putMap("params").put("id", 123);
+	 * 
+	 * broker.mcall(calls).then(rsp -&gt; {
+	 *   int sum = rsp.get("sum", 0);
+	 *   String name = rsp.get("user.name", "");
+	 * });
+	 * </pre>
+	 * 
+	 * @param calls
+	 *            map or list of calls (each entry contains an "action" name, an
+	 *            optional "params" block and an optional "nodeID")
+	 * 
+	 * @return response Promise
+	 */
+	public Promise mcall(Tree calls) {
+		return mcall(calls, null, false);
+	}
+
+	/**
+	 * Calls multiple actions (local or remote) at once.
+	 * 
+	 * @param calls
+	 *            map or list of calls (each entry contains an "action" name, an
+	 *            optional "params" block and an optional "nodeID")
+	 * @param opts
+	 *            calling options of all calls (call timeout, number of retries)
+	 * 
+	 * @return response Promise
+	 */
+	public Promise mcall(Tree calls, CallOptions.Options opts) {
+		return mcall(calls, opts, false);
+	}
+
+	/**
+	 * Calls multiple actions (local or remote) at once. If the "settled" flag
+	 * is false, the returned Promise is rejected at the first failed call.
+	 * Otherwise the result of each call is a structure like
+	 * {"status":"fulfilled","value":...} or
+	 * {"status":"rejected","reason":...}.
+	 * 
+	 * @param calls
+	 *            map or list of calls (each entry contains an "action" name, an
+	 *            optional "params" block and an optional "nodeID")
+	 * @param opts
+	 *            calling options of all calls (call timeout, number of retries)
+	 * @param settled
+	 *            wait for all calls and return the status of each call
+	 * 
+	 * @return response Promise
+	 */
+	public Promise mcall(Tree calls, CallOptions.Options opts, boolean settled) {
+		int size = calls == null ? 0 : calls.size();
+		ArrayList<Context> contexts = new ArrayList<>(size);
+		ArrayList<String> keys = new ArrayList<>(size);
+		try {
+			if (calls != null) {
+				for (Tree call : calls) {
+					String name = call.get("action", (String) null);
+					if (name == null || name.isEmpty()) {
+						throw new IllegalArgumentException("Missing \"action\" property (" + call.getPath() + ")!");
+					}
+					CallOptions.Options callOpts = opts;
+					String targetID = call.get("nodeID", (String) null);
+					if (targetID != null) {
+						callOpts = callOpts == null ? CallOptions.nodeID(targetID) : callOpts.nodeID(targetID);
+					}
+					ParseResult res = extractStream(call.get("params"));
+					contexts.add(createContext(name, res.data, callOpts, res.stream));
+					keys.add(call.getName());
+				}
+			}
+		} catch (Throwable cause) {
+			return Promise.reject(cause);
+		}
+		List<Promise> promises = serviceInvoker.mcall(contexts);
+
+		// Collect responses
+		boolean isMap = calls != null && calls.isMap();
+		Tree[] results = new Tree[size];
+		return new Promise(resolver -> {
+			if (size == 0) {
+				resolver.resolve(toResponse(isMap, keys, results));
+				return;
+			}
+			AtomicInteger pending = new AtomicInteger(size);
+			for (int i = 0; i < size; i++) {
+				final int index = i;
+				promises.get(i).then(data -> {
+					if (settled) {
+						Tree status = new Tree();
+						status.put("status", "fulfilled");
+						status.putObject("value", data == null ? null : data.asObject());
+						results[index] = status;
+					} else {
+						results[index] = data;
+					}
+					if (pending.decrementAndGet() == 0) {
+						resolver.resolve(toResponse(isMap, keys, results));
+					}
+				}).catchError(cause -> {
+					if (settled) {
+						Tree status = new Tree();
+						status.put("status", "rejected");
+						Tree reason = throwableToTree(null, nodeID, null, cause).get("error");
+						status.putObject("reason", reason == null ? null : reason.asObject());
+						results[index] = status;
+						if (pending.decrementAndGet() == 0) {
+							resolver.resolve(toResponse(isMap, keys, results));
+						}
+					} else {
+						resolver.reject(cause);
+					}
+				});
+			}
+		});
+	}
+
+	protected Tree toResponse(boolean isMap, List<String> keys, Tree[] results) {
+		Tree rsp = new Tree();
+		if (!isMap) {
+			rsp = rsp.putList("result");
+		}
+		for (int i = 0; i < results.length; i++) {
+			Object value = results[i] == null ? null : results[i].asObject();
+			if (isMap) {
+				rsp.putObject(keys.get(i), value);
+			} else {
+				rsp.addObject(value);
+			}
+		}
+		return rsp;
+	}
+
 	// --- STREAMED REQUEST OR RESPONSE ---
 
 	/**
@@ -475,8 +630,18 @@ public abstract class ContextSource {
 	}
 
 	protected Promise call(String name, Tree params, CallOptions.Options opts, PacketStream stream) {
-		return serviceInvoker.call(new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(), name,
-				params, 1, null, null, stream, opts, nodeID));
+		Context ctx;
+		try {
+			ctx = createContext(name, params, opts, stream);
+		} catch (Throwable cause) {
+			return Promise.reject(cause);
+		}
+		return serviceInvoker.call(ctx);
+	}
+
+	protected Context createContext(String name, Tree params, CallOptions.Options opts, PacketStream stream) {
+		return new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(), name, params, 1, null, null,
+				stream, opts, nodeID);
 	}
 
 }
\ No newline at end of file
@@ -55,6 +55,13 @@ public class ListenerNotAvailableError extends MoleculerError {
 		this.event = payload.get("event", "unknown");
 	}
 
+	// --- STACKLESS CONTROL-FLOW ERROR ---
+
+	@Override
+	protected boolean isControlFlowError() {
+		return true;
+	}
+
 	// --- PROPERTY GETTERS ---
 
 	public String getEvent() {
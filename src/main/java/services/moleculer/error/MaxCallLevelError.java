@@ -57,6 +57,13 @@ public class MaxCallLevelError extends MoleculerError {
 		this.level = data == null ? -1 : data.get("level", -1);
 	}
 
+	// --- STACKLESS CONTROL-FLOW ERROR ---
+
+	@Override
+	protected boolean isControlFlowError() {
+		return true;
+	}
+
 	// --- PROPERTY GETTERS ---
 
 	public int getLevel() {
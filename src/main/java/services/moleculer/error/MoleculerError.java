@@ -64,6 +64,16 @@ public class MoleculerError extends RuntimeException {
 
 	protected String stackTrace;
 
+	// --- STACKLESS CONTROL-FLOW ERRORS ---
+
+	/**
+	 * Do not capture the stack trace of the errors generated by the framework
+	 * (timeouts, unavailable services, rejected requests, etc.). These errors
+	 * are frequent during outages and their stack traces are useless. This is
+	 * a JVM-wide setting.
+	 */
+	protected static volatile boolean stacklessControlErrors = true;
+
 	// --- CONSTRUCTORS FOR LOCAL EXCEPTIONS ---
 
 	public MoleculerError(String message, String nodeID, boolean retryable) {
@@ -114,6 +124,33 @@ public class MoleculerError extends RuntimeException {
 
 	// --- STACK TRACE ---
 
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		if (stacklessControlErrors && isControlFlowError()) {
+			return this;
+		}
+		return super.fillInStackTrace();
+	}
+
+	/**
+	 * Returns true if this error is generated by the framework to control the
+	 * flow of calls (eg. timeout). Called from the constructor of
+	 * {@link Throwable}, so the implementations must not use instance fields.
+	 * 
+	 * @return true if the stack trace can be omitted
+	 */
+	protected boolean isControlFlowError() {
+		return false;
+	}
+
+	public static boolean isStacklessControlErrors() {
+		return stacklessControlErrors;
+	}
+
+	public static void setStacklessControlErrors(boolean stacklessControlErrors) {
+		MoleculerError.stacklessControlErrors = stacklessControlErrors;
+	}
+
 	@Override
 	public void printStackTrace() {
 		if (stack == null) {
@@ -150,13 +187,19 @@ public class MoleculerError extends RuntimeException {
 	}
 
 	public void toTree(Tree target) {
+		toTree(target, true);
+	}
+
+	public void toTree(Tree target, boolean includeStack) {
 		target.put("name", name);
 		target.put("message", getMessage());
 		target.put("nodeID", nodeID);
 		target.put("code", code);
 		target.put("type", type);
 		target.put("retryable", retryable);
-		target.put("stack", getStack());
+		if (includeStack) {
+			target.put("stack", getStack());
+		}
 		target.putObject("data", data);
 	}
 
@@ -57,6 +57,13 @@ public class QueueIsFullError extends MoleculerRetryableError {
 		this.action = payload.get("action", "unknown");
 	}
 
+	// --- STACKLESS CONTROL-FLOW ERROR ---
+
+	@Override
+	protected boolean isControlFlowError() {
+		return true;
+	}
+
 	// --- PROPERTY GETTERS ---
 
 	public String getAction() {
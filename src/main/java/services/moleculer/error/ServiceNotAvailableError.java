@@ -58,6 +58,13 @@ public class ServiceNotAvailableError extends MoleculerRetryableError {
 		this.action = payload.get("action", "unknown");
 	}
 
+	// --- STACKLESS CONTROL-FLOW ERROR ---
+
+	@Override
+	protected boolean isControlFlowError() {
+		return true;
+	}
+
 	// --- PROPERTY GETTERS ---
 
 	public String getAction() {
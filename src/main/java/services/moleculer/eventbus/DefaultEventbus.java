@@ -59,12 +59,15 @@ import services.moleculer.metrics.MetricConstants;
 import services.moleculer.metrics.Metrics;
 import services.moleculer.service.Name;
 import services.moleculer.service.Service;
+import services.moleculer.service.ServiceDescriptor;
+import services.moleculer.service.ServiceDiff;
 import services.moleculer.service.ServiceInvoker;
 import services.moleculer.strategy.Strategy;
 import services.moleculer.strategy.StrategyFactory;
 import services.moleculer.stream.IncomingStream;
 import services.moleculer.stream.PacketStream;
 import services.moleculer.transporter.Transporter;
+import services.moleculer.transporter.outbox.EventOutbox;
 import services.moleculer.uid.UidGenerator;
 import services.moleculer.util.CheckedTree;
 
@@ -78,6 +81,22 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 
 	protected final HashMap<String, HashMap<String, Strategy<ListenerEndpoint>>> listeners = new HashMap<>(256);
 
+	// --- LISTENERS OF THE DEPARTED NODES ---
+
+	/**
+	 * Remote listeners of the recently departed (offline) nodes (nodeID -&gt;
+	 * listeners). Used only when the Transporter has an event outbox: the
+	 * stored events are routed to these listeners (and kept in the outbox
+	 * until the node is online again) when there is no other listener in
+	 * their groups.
+	 */
+	protected final LinkedHashMap<String, ListenerEndpoint[]> departedListeners = new LinkedHashMap<>();
+
+	/**
+	 * Departure times of the offline nodes (nodeID -&gt; timestamp)
+	 */
+	protected final HashMap<String, Long> departureTimes = new HashMap<>();
+
 	// --- CACHES ---
 
 	protected final Cache<String, Strategy<ListenerEndpoint>[]> emitterCache = new Cache<>(Config.CACHE_SIZE);
@@ -112,6 +131,12 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 	 */
 	protected long streamTimeout;
 
+	/**
+	 * Max number of out-of-order stream chunks per stream. The stream fails
+	 * when more chunks would have to be buffered.
+	 */
+	protected int streamReorderWindow = IncomingStream.DEFAULT_REORDER_WINDOW;
+
 	/**
 	 * Max call level (for nested events)
 	 */
@@ -222,6 +247,8 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		registryWriteLock.lock();
 		try {
 			listeners.clear();
+			departedListeners.clear();
+			departureTimes.clear();
 		} finally {
 
 			// Clear caches
@@ -281,6 +308,20 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 			return;
 		}
 
+		// Batched events (sent in the original order)
+		Tree batch = message.get("batch");
+		if (batch != null) {
+			String ver = message.get("ver", protocolVersion);
+			for (Tree item : batch) {
+				if (item.isMap()) {
+					item.put("ver", ver);
+					item.put("sender", sender);
+					receiveEvent(item);
+				}
+			}
+			return;
+		}
+
 		// Incoming stream handling
 		IncomingStream requestStream;
 		if (id == null || "0".equals(id)) {
@@ -320,7 +361,7 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 				try {
 					requestStream = requestStreams.get(id);
 					if (requestStream == null) {
-						requestStream = new IncomingStream(nodeID, scheduler, streamTimeout);
+						requestStream = new IncomingStream(nodeID, scheduler, streamTimeout, streamReorderWindow);
 						requestStreams.put(id, requestStream);
 					}
 				} finally {
@@ -408,6 +449,13 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		// Service name with version
 		String name = (serviceName == null || serviceName.isEmpty()) ? service.getName() : serviceName;
 		Class<? extends Service> clazz = service.getClass();
+
+		// Compile-time generated descriptor (or null)
+		ServiceDescriptor descriptor = ServiceDescriptor.of(clazz);
+		if (descriptor != null) {
+			addListeners(name, service, descriptor);
+			return;
+		}
 		LinkedHashMap<String, Field> fields = new LinkedHashMap<>(64);
 		for (Field field : clazz.getDeclaredFields()) {
 			if (Listener.class.isAssignableFrom(field.getType())) {
@@ -460,23 +508,47 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 				// Private (hidden) listener?
 				boolean privateAccess = Modifier.isPrivate(field.getModifiers());
 
-				// Get or create group map
-				HashMap<String, Strategy<ListenerEndpoint>> groups = listeners.get(subscribe);
-				if (groups == null) {
-					groups = new HashMap<String, Strategy<ListenerEndpoint>>();
-					listeners.put(subscribe, groups);
-				}
+				// Add endpoint to strategy
+				addLocalListener(name, subscribe, group, listener, privateAccess);
+			}
+		} catch (Exception cause) {
+			logger.error("Unable to register local listener!", cause);
+		} finally {
+
+			// Clear caches
+			emitterCache.clear();
+			broadcasterCache.clear();
+			localBroadcasterCache.clear();
+
+			// Unlock reader threads
+			registryWriteLock.unlock();
+		}
+	}
+
+	protected void addListeners(String name, Service service, ServiceDescriptor descriptor) {
+		ServiceDescriptor.Member[] members = descriptor.getListeners();
+		if (members.length == 0) {
+			return;
+		}
+
+		// Initialize listeners in service
+		registryWriteLock.lock();
+		try {
+			for (ServiceDescriptor.Member member : members) {
 
-				// Get or create strategy
-				Strategy<ListenerEndpoint> strategy = groups.get(group);
-				if (strategy == null) {
-					strategy = this.strategy.create();
-					groups.put(group, strategy);
+				// Name of the listener (eg. "service.listener")
+				String listenerName = nameOf(name, member.getName());
+				String subscribe = member.getSubscribe();
+				if (subscribe == null || subscribe.isEmpty()) {
+					subscribe = listenerName;
+				}
+				String group = member.getGroup();
+				if (group == null || group.isEmpty()) {
+					group = name;
 				}
 
 				// Add endpoint to strategy
-				strategy.addEndpoint(
-						new LocalListenerEndpoint(nodeID, name, group, subscribe, listener, privateAccess, metrics));
+				addLocalListener(name, subscribe, group, (Listener) member.get(service), member.isPrivateAccess());
 			}
 		} catch (Exception cause) {
 			logger.error("Unable to register local listener!", cause);
@@ -492,6 +564,28 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		}
 	}
 
+	protected void addLocalListener(String name, String subscribe, String group, Listener listener,
+			boolean privateAccess) {
+
+		// Get or create group map
+		HashMap<String, Strategy<ListenerEndpoint>> groups = listeners.get(subscribe);
+		if (groups == null) {
+			groups = new HashMap<String, Strategy<ListenerEndpoint>>();
+			listeners.put(subscribe, groups);
+		}
+
+		// Get or create strategy
+		Strategy<ListenerEndpoint> strategy = groups.get(group);
+		if (strategy == null) {
+			strategy = this.strategy.create();
+			groups.put(group, strategy);
+		}
+
+		// Add endpoint to strategy
+		strategy.addEndpoint(
+				new LocalListenerEndpoint(nodeID, name, group, subscribe, listener, privateAccess, metrics));
+	}
+
 	// --- ADD REMOTE LISTENER ---
 
 	@Override
@@ -501,28 +595,13 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 			String serviceName = Objects.requireNonNull(config.get("name", (String) null));
 			registryWriteLock.lock();
 			try {
-				for (Tree listenerConfig : events) {
-					String subscribe = listenerConfig.get("name", "");
-					String group = listenerConfig.get("group", serviceName);
-
-					// Register remote listener
-					RemoteListenerEndpoint endpoint = new RemoteListenerEndpoint(nodeID, serviceName, group, subscribe,
-							transporter);
-
-					// Get or create group map
-					HashMap<String, Strategy<ListenerEndpoint>> groups = listeners.get(subscribe);
-					if (groups == null) {
-						groups = new HashMap<String, Strategy<ListenerEndpoint>>();
-						listeners.put(subscribe, groups);
-					}
 
-					// Get or create strategy
-					Strategy<ListenerEndpoint> listenerStrategy = groups.get(group);
-					if (listenerStrategy == null) {
-						listenerStrategy = strategy.create();
-						groups.put(group, listenerStrategy);
-					}
-					listenerStrategy.addEndpoint(endpoint);
+				// The node is online again
+				departedListeners.remove(nodeID);
+				departureTimes.remove(nodeID);
+
+				for (Tree listenerConfig : events) {
+					addRemoteListener(nodeID, serviceName, listenerConfig);
 				}
 			} finally {
 
@@ -537,11 +616,100 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		}
 	}
 
+	protected void addRemoteListener(String nodeID, String serviceName, Tree listenerConfig) {
+		String subscribe = listenerConfig.get("name", "");
+		String group = listenerConfig.get("group", serviceName);
+
+		// Register remote listener
+		RemoteListenerEndpoint endpoint = new RemoteListenerEndpoint(nodeID, serviceName, group, subscribe,
+				transporter);
+
+		// Get or create group map
+		HashMap<String, Strategy<ListenerEndpoint>> groups = listeners.get(subscribe);
+		if (groups == null) {
+			groups = new HashMap<String, Strategy<ListenerEndpoint>>();
+			listeners.put(subscribe, groups);
+		}
+
+		// Get or create strategy
+		Strategy<ListenerEndpoint> listenerStrategy = groups.get(group);
+		if (listenerStrategy == null) {
+			listenerStrategy = strategy.create();
+			groups.put(group, listenerStrategy);
+		}
+		listenerStrategy.addEndpoint(endpoint);
+	}
+
+	// --- APPLY CHANGES OF A REMOTE NODE'S SERVICES ---
+
+	@Override
+	public void updateListeners(String nodeID, ServiceDiff diff) {
+		if (diff.getRemovedListeners().isEmpty() && diff.getAddedListeners().isEmpty()) {
+			return;
+		}
+		registryWriteLock.lock();
+		try {
+
+			// The node is online
+			departedListeners.remove(nodeID);
+			departureTimes.remove(nodeID);
+
+			// Remove deleted and changed listeners
+			for (ServiceDiff.Change change : diff.getRemovedListeners()) {
+				String subscribe = change.config.get("name", change.name);
+				String group = change.config.get("group", change.service);
+				HashMap<String, Strategy<ListenerEndpoint>> groups = listeners.get(subscribe);
+				if (groups == null) {
+					continue;
+				}
+				Strategy<ListenerEndpoint> listenerStrategy = groups.get(group);
+				if (listenerStrategy == null) {
+					continue;
+				}
+
+				// Keep the listeners of other services of the same node
+				LinkedList<ListenerEndpoint> others = new LinkedList<>();
+				for (ListenerEndpoint endpoint : listenerStrategy.getAllEndpoints()) {
+					if (nodeID.equals(endpoint.getNodeID()) && !change.service.equals(endpoint.serviceName)) {
+						others.addLast(endpoint);
+					}
+				}
+				listenerStrategy.remove(nodeID);
+				for (ListenerEndpoint endpoint : others) {
+					listenerStrategy.addEndpoint(endpoint);
+				}
+				if (listenerStrategy.isEmpty()) {
+					groups.remove(group);
+					if (groups.isEmpty()) {
+						listeners.remove(subscribe);
+					}
+				}
+			}
+
+			// Register new and changed listeners
+			for (ServiceDiff.Change change : diff.getAddedListeners()) {
+				addRemoteListener(nodeID, change.service, change.config);
+			}
+
+		} finally {
+
+			// Clear caches
+			emitterCache.clear();
+			broadcasterCache.clear();
+			localBroadcasterCache.clear();
+
+			// Unlock reader threads
+			registryWriteLock.unlock();
+		}
+	}
+
 	// --- REMOVE ALL REMOTE SERVICES/ACTIONS OF A NODE ---
 
 	@Override
 	public void removeListeners(String nodeID) {
 		boolean found = false;
+		EventOutbox outbox = transporter == null ? null : transporter.getOutbox();
+		LinkedList<ListenerEndpoint> departed = outbox == null ? null : new LinkedList<>();
 		registryWriteLock.lock();
 		try {
 			Iterator<HashMap<String, Strategy<ListenerEndpoint>>> groupIterator = listeners.values().iterator();
@@ -550,6 +718,13 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 				Iterator<Strategy<ListenerEndpoint>> strategyIterator = groups.values().iterator();
 				while (strategyIterator.hasNext()) {
 					Strategy<ListenerEndpoint> strategy = strategyIterator.next();
+					if (departed != null) {
+						for (ListenerEndpoint endpoint : strategy.getAllEndpoints()) {
+							if (nodeID.equals(endpoint.getNodeID())) {
+								departed.addLast(endpoint);
+							}
+						}
+					}
 					if (strategy.remove(nodeID)) {
 						found = true;
 						if (strategy.isEmpty()) {
@@ -561,6 +736,18 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 					groupIterator.remove();
 				}
 			}
+
+			// Keep the listeners of the departed node (for the outbox)
+			if (outbox != null) {
+				removeExpiredListeners(outbox);
+				if (!departed.isEmpty()) {
+					ListenerEndpoint[] array = new ListenerEndpoint[departed.size()];
+					departed.toArray(array);
+					departedListeners.remove(nodeID);
+					departedListeners.put(nodeID, array);
+					departureTimes.put(nodeID, System.currentTimeMillis());
+				}
+			}
 		} finally {
 
 			// Clear caches
@@ -574,6 +761,21 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		}
 	}
 
+	protected void removeExpiredListeners(EventOutbox outbox) {
+		int maxRecordAge = outbox.getMaxRecordAge();
+		if (maxRecordAge > 0) {
+			long expiration = System.currentTimeMillis() - maxRecordAge * 1000L;
+			Iterator<Map.Entry<String, Long>> i = departureTimes.entrySet().iterator();
+			while (i.hasNext()) {
+				Map.Entry<String, Long> entry = i.next();
+				if (entry.getValue() < expiration) {
+					departedListeners.remove(entry.getKey());
+					i.remove();
+				}
+			}
+		}
+	}
+
 	// --- SEND EVENT TO ONE LISTENER IN THE SPECIFIED GROUP ---
 
 	@Override
@@ -639,6 +841,11 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 			list.toArray(strategies);
 			emitterCache.put(key, strategies);
 		}
+
+		// Store the event for the departed nodes
+		if (!local) {
+			sendToDepartedListeners(ctx, groups, false);
+		}
 		if (strategies.length == 0) {
 			stopStreaming(ctx);
 			return;
@@ -736,6 +943,99 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		}
 	}
 
+	// --- STORE EVENT FOR THE DEPARTED NODES ---
+
+	/**
+	 * Sends an event, which is stored by the Transporter's outbox, to the
+	 * listeners of the recently departed nodes. The outbox keeps the event
+	 * until the node is online again (or until the event expires). When
+	 * emitting, a departed listener is used only if there is no other
+	 * listener in its group.
+	 *
+	 * @param ctx
+	 *            context of the event
+	 * @param groups
+	 *            target groups (or null)
+	 * @param broadcast
+	 *            broadcast or emit
+	 */
+	protected void sendToDepartedListeners(Context ctx, Groups groups, boolean broadcast) {
+		if (ctx.stream != null || transporter == null) {
+			return;
+		}
+		EventOutbox outbox = transporter.getOutbox();
+		if (outbox == null || !outbox.isStored(ctx.name)) {
+			return;
+		}
+
+		// nodeID -> group set
+		LinkedHashMap<String, HashSet<String>> groupsByNodeID = new LinkedHashMap<>();
+		HashMap<String, ListenerEndpoint> endpointsByNodeID = new HashMap<>();
+		registryReadLock.lock();
+		try {
+			if (departedListeners.isEmpty()) {
+				return;
+			}
+			int maxRecordAge = outbox.getMaxRecordAge();
+			long expiration = maxRecordAge > 0 ? System.currentTimeMillis() - maxRecordAge * 1000L : 0;
+			HashSet<String> targetGroups = new HashSet<>();
+			for (Map.Entry<String, ListenerEndpoint[]> entry : departedListeners.entrySet()) {
+				String departedNodeID = entry.getKey();
+				Long departedAt = departureTimes.get(departedNodeID);
+				if (departedAt == null || departedAt < expiration) {
+					continue;
+				}
+				for (ListenerEndpoint endpoint : entry.getValue()) {
+					if (!Matcher.matches(ctx.name, endpoint.subscribe)) {
+						continue;
+					}
+					if (groups != null && !Arrays.asList(groups.groups()).contains(endpoint.group)) {
+						continue;
+					}
+					if (!broadcast) {
+
+						// Is there any available listener in the group?
+						HashMap<String, Strategy<ListenerEndpoint>> available = listeners.get(endpoint.subscribe);
+						if (available != null && available.containsKey(endpoint.group)) {
+							continue;
+						}
+
+						// Only one departed listener per group
+						if (!targetGroups.add(endpoint.subscribe + '|' + endpoint.group)) {
+							continue;
+						}
+					}
+					HashSet<String> groupSet = groupsByNodeID.get(departedNodeID);
+					if (groupSet == null) {
+						groupSet = new HashSet<>();
+						groupsByNodeID.put(departedNodeID, groupSet);
+						endpointsByNodeID.put(departedNodeID, endpoint);
+					}
+					groupSet.add(endpoint.group);
+				}
+			}
+		} finally {
+			registryReadLock.unlock();
+		}
+
+		// Send events to the outbox
+		for (Map.Entry<String, HashSet<String>> entry : groupsByNodeID.entrySet()) {
+			try {
+				ListenerEndpoint endpoint = endpointsByNodeID.get(entry.getKey());
+				if (broadcast) {
+					endpoint.on(ctx, groups, true);
+				} else {
+					HashSet<String> groupSet = entry.getValue();
+					String[] array = new String[groupSet.size()];
+					groupSet.toArray(array);
+					endpoint.on(ctx, Groups.of(array), false);
+				}
+			} catch (Exception cause) {
+				logger.error("Unable to store event for the departed node!", cause);
+			}
+		}
+	}
+
 	protected void stopStreaming(Context ctx) {
 		if (ctx.stream != null) {
 			ctx.stream.sendError(new ListenerNotAvailableError(nodeID, ctx.name));
@@ -839,6 +1139,11 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 				broadcasterCache.put(key, endpoints);
 			}
 		}
+
+		// Store the event for the departed nodes
+		if (!local) {
+			sendToDepartedListeners(ctx, groups, true);
+		}
 		if (endpoints.length == 0) {
 			stopStreaming(ctx);
 			return;
@@ -944,6 +1249,14 @@ public class DefaultEventbus extends Eventbus implements MetricConstants {
 		this.streamTimeout = streamTimeout;
 	}
 
+	public int getStreamReorderWindow() {
+		return streamReorderWindow;
+	}
+
+	public void setStreamReorderWindow(int streamReorderWindow) {
+		this.streamReorderWindow = streamReorderWindow;
+	}
+
 	public int getMaxCallLevel() {
 		return maxCallLevel;
 	}
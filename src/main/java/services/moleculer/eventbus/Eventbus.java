@@ -32,6 +32,7 @@ import services.moleculer.context.Context;
 import services.moleculer.service.MoleculerComponent;
 import services.moleculer.service.Name;
 import services.moleculer.service.Service;
+import services.moleculer.service.ServiceDiff;
 
 /**
  * Base superclass of all Event Bus implementations.
@@ -57,6 +58,28 @@ public abstract class Eventbus extends MoleculerComponent {
 
 	public abstract void removeListeners(String nodeID);
 
+	// --- APPLY CHANGES OF A REMOTE NODE'S SERVICES ---
+
+	/**
+	 * Applies the changed listeners of an updated remote node. The default
+	 * implementation removes and re-registers all listeners of the node;
+	 * implementations may apply only the delta.
+	 * 
+	 * @param nodeID
+	 *            node ID
+	 * @param diff
+	 *            difference of the previous and the new "services" block
+	 */
+	public void updateListeners(String nodeID, ServiceDiff diff) {
+		removeListeners(nodeID);
+		Tree services = diff.getServices();
+		if (services != null) {
+			for (Tree service : services) {
+				addListeners(nodeID, service);
+			}
+		}
+	}
+
 	// --- SEND EVENT TO ONE LISTENER IN THE SPECIFIED GROUP ---
 
 	public abstract void emit(Context ctx, Groups groups, boolean local);
@@ -30,7 +30,8 @@ import static services.moleculer.transporter.Transporter.PACKET_EVENT;
 import java.util.concurrent.atomic.AtomicLong;
 
 import services.moleculer.context.Context;
-import services.moleculer.stream.PacketListener;
+import services.moleculer.stream.FileRegion;
+import services.moleculer.stream.FileRegionListener;
 import services.moleculer.transporter.Transporter;
 
 public class RemoteListenerEndpoint extends ListenerEndpoint {
@@ -59,7 +60,7 @@ public class RemoteListenerEndpoint extends ListenerEndpoint {
 		
 		// Streamed content
 		if (ctx.stream != null) {
-			ctx.stream.onPacket(new PacketListener() {
+			ctx.stream.onPacket(new FileRegionListener() {
 
 				// Create sequence counter
 				private final AtomicLong sequence = new AtomicLong();
@@ -76,6 +77,15 @@ public class RemoteListenerEndpoint extends ListenerEndpoint {
 					}
 				}
 
+				@Override
+				public final boolean onFileRegion(FileRegion region) {
+					if (transporter.sendDataRegion(PACKET_EVENT, nodeID, ctx, region, sequence.get() + 1)) {
+						sequence.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+
 			});
 		}
 	}
@@ -29,6 +29,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -38,6 +45,9 @@ import java.util.StringTokenizer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -62,10 +72,32 @@ import java.util.zip.ZipOutputStream;
  * services.moleculer.logger.AsyncFileLogger.deleteAfter = 365 days<br>
  * services.moleculer.logger.AsyncFileLogger.logToConsole = true<br>
  * services.moleculer.logger.AsyncFileLogger.level = INFO<br>
- * .level = INFO
+ * .level = INFO<br>
+ * <br>
+ * Optional properties of the log buffer:<br>
+ * <br>
+ * services.moleculer.logger.AsyncFileLogger.bufferSize = 8192<br>
+ * services.moleculer.logger.AsyncFileLogger.overflow = BLOCK<br>
+ * services.moleculer.logger.AsyncFileLogger.sampleRate = 10<br>
+ * services.moleculer.logger.AsyncFileLogger.writeBufferSize = 65536<br>
+ * services.moleculer.logger.AsyncFileLogger.flushInterval = 200<br>
+ * <br>
+ * The log records are collected in a lock-free ring buffer ("bufferSize"
+ * records). When the buffer is full, the "overflow" policy decides what
+ * happens: BLOCK (the logging thread waits), DROP_DEBUG (records below INFO
+ * level are dropped) or SAMPLE (only every Nth record below WARNING level is
+ * kept, where N is the "sampleRate"). The writer thread encodes the records
+ * into a direct buffer, and writes it to the file when the buffer is full or
+ * "flushInterval" milliseconds elapsed.
  */
 public class AsyncFileLogger extends Handler implements Runnable {
 
+	// --- OVERFLOW POLICIES ---
+
+	public enum OverflowPolicy {
+		BLOCK, DROP_DEBUG, SAMPLE
+	}
+
 	// --- FILE NAME FORMATTER ---
 
 	protected DateFormat FILE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
@@ -79,12 +111,29 @@ public class AsyncFileLogger extends Handler implements Runnable {
 	protected boolean logToConsole;
 	protected String fileEncoding;
 	protected boolean enableColors = true;
+	protected int bufferSize = 8192;
+	protected OverflowPolicy overflow = OverflowPolicy.BLOCK;
+	protected int sampleRate = 10;
+	protected int writeBufferSize = 64 * 1024;
+	protected long flushInterval = 200;
 
 	protected static final long DAY = 1000L * 60 * 60 * 24;
 
 	// --- LOG EVENT QUEUE ---
 
-	protected final LinkedList<LogRecord> messages = new LinkedList<>();
+	protected LogRingBuffer<LogRecord> messages;
+
+	// --- STATE OF THE WRITER THREAD ---
+
+	protected volatile Thread writer;
+	protected volatile boolean waiting;
+	protected volatile boolean closed;
+	protected volatile boolean flushRequested;
+
+	// --- COUNTERS OF THE OVERFLOW HANDLING ---
+
+	protected final AtomicLong dropped = new AtomicLong();
+	protected final AtomicLong sampled = new AtomicLong();
 
 	// --- LOG DIRECTORY ---
 
@@ -94,6 +143,13 @@ public class AsyncFileLogger extends Handler implements Runnable {
 
 	protected String openedFile = "";
 	protected FileOutputStream openedStream;
+	protected FileChannel openedChannel;
+
+	// --- WRITE BUFFER ---
+
+	protected ByteBuffer buffer;
+	protected CharsetEncoder encoder;
+	protected long lastWrite;
 
 	// --- OTHER VARIABLES ---
 
@@ -149,93 +205,201 @@ public class AsyncFileLogger extends Handler implements Runnable {
 		if (!isLoggable(record)) {
 			return;
 		}
-		synchronized (messages) {
-			messages.addLast(record);
-			messages.notifyAll();
+		if (!messages.offer(record)) {
+
+			// Buffer is full
+			if (!accept(record)) {
+				dropped.incrementAndGet();
+				return;
+			}
+			while (!messages.offer(record)) {
+				Thread current = Thread.currentThread();
+				if (closed || current == writer || current.isInterrupted()) {
+
+					// Avoid deadlock (the writer thread cannot wait for itself)
+					dropped.incrementAndGet();
+					return;
+				}
+				LockSupport.unpark(writer);
+				LockSupport.parkNanos(50000);
+			}
+		}
+		if (waiting) {
+			waiting = false;
+			LockSupport.unpark(writer);
+		}
+	}
+
+	/**
+	 * Decides whether the record should be kept when the buffer is full (in
+	 * this case the caller thread waits for a free slot).
+	 * 
+	 * @param record
+	 *            the log record
+	 * 
+	 * @return true = wait for free slot, false = drop record
+	 */
+	protected boolean accept(LogRecord record) {
+		int level = record.getLevel().intValue();
+		switch (overflow) {
+		case DROP_DEBUG:
+			return level >= Level.INFO.intValue();
+		case SAMPLE:
+			return level >= Level.WARNING.intValue() || sampled.incrementAndGet() % sampleRate == 0;
+		default:
+			return true;
 		}
 	}
 
 	public void run() {
+		writer = Thread.currentThread();
 		LinkedList<LogRecord> records = new LinkedList<>();
-		try {
-			Formatter formatter = getFormatter();
-			StringBuilder lines = new StringBuilder(512);
-			while (true) {
+		Formatter formatter = getFormatter();
+		StringBuilder lines = new StringBuilder(512);
+		while (true) {
+			try {
 
 				// Get next records
-				synchronized (messages) {
-					while (messages.isEmpty()) {
-						messages.wait(15000);
-					}
-					records.addAll(messages);
-					messages.clear();
+				boolean stop = closed;
+				LogRecord record;
+				while (records.size() < 1024 && (record = messages.poll()) != null) {
+					records.addLast(record);
+				}
+				addDroppedWarning(records);
+
+				// Write records to console and/or buffer
+				if (!records.isEmpty()) {
+					writeLines(records, lines, formatter);
 				}
 
-				// Write records to console and/or file
-				writeLines(records, lines, formatter);
+				// Flush buffer (by time or on request)
+				if (buffer != null && buffer.position() > 0 && (flushRequested || stop
+						|| System.currentTimeMillis() - lastWrite >= flushInterval)) {
+					flushRequested = false;
+					writeBuffer();
+				}
+				if (stop && messages.isEmpty()) {
+					return;
+				}
 
 				// Waiting for other log records
-				Thread.sleep(400);
+				if (records.isEmpty() && messages.isEmpty()) {
+					waiting = true;
+					if (messages.isEmpty() && !closed) {
+						LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+					}
+					waiting = false;
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				records.clear();
 			}
-		} catch (InterruptedException interrupt) {
-			return;
-		} catch (Exception e) {
-			records.clear();
-			e.printStackTrace();
+		}
+	}
+
+	protected void addDroppedWarning(LinkedList<LogRecord> records) {
+		long count = dropped.getAndSet(0);
+		if (count > 0) {
+			LogRecord warning = new LogRecord(Level.WARNING,
+					count + " log records dropped (log buffer is full, overflow policy: " + overflow + ").");
+			warning.setSourceClassName(AsyncFileLogger.class.getName());
+			records.addLast(warning);
 		}
 	}
 
 	protected void writeLines(LinkedList<LogRecord> records, StringBuilder lines, Formatter formatter)
 			throws Exception {
-		try {
-			lines.setLength(0);
-			for (LogRecord record : records) {
-				lines.append(formatter.format(record));
-			}
-			String packet = lines.toString();
+		lines.setLength(0);
+		for (LogRecord record : records) {
+			lines.append(formatter.format(record));
+		}
 
-			// Write records to log file
-			if (logDirectory != null) {
-				String date = FILE_FORMAT.format(new Date());
-				appendToFile(prefix + date + ".log", packet.getBytes(fileEncoding));
-			}
+		// Write records to log file
+		if (logDirectory != null) {
+			String date = FILE_FORMAT.format(new Date());
+			appendToFile(prefix + date + ".log", lines);
+		}
 
-			// Write records to console
-			if (console != null) {
-				console.log(records, lines);
-			}
-		} finally {
-			records.clear();
+		// Write records to console
+		if (console != null) {
+			console.log(records, lines);
 		}
 	}
 
-	protected void appendToFile(String fileName, byte[] bytes) {
+	protected void appendToFile(String fileName, CharSequence lines) {
 		try {
 			if (!openedFile.equals(fileName)) {
+				if (buffer != null && buffer.position() > 0) {
+					writeBuffer();
+				}
 				closeStream();
 				File file = new File(logDirectory, fileName);
+				boolean cleanup = !file.isFile();
 				openedStream = new FileOutputStream(file, true);
+				openedChannel = openedStream.getChannel();
 				openedFile = fileName;
-				boolean cleanup = !file.isFile();
 				if (cleanup) {
 					compressOrDeleteOldFiles();
 				}
 			}
-			openedStream.write(bytes);
-			openedStream.flush();
+			if (buffer == null) {
+				buffer = ByteBuffer.allocateDirect(writeBufferSize);
+				encoder = Charset.forName(fileEncoding).newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				lastWrite = System.currentTimeMillis();
+			}
+
+			// Encode characters into the direct buffer
+			CharBuffer chars = CharBuffer.wrap(lines);
+			encoder.reset();
+			CoderResult result;
+			do {
+				result = encoder.encode(chars, buffer, true);
+				if (result.isOverflow()) {
+					writeBuffer();
+				}
+			} while (result.isOverflow());
+			while (encoder.flush(buffer).isOverflow()) {
+				writeBuffer();
+			}
+
+			// Write buffer (by size)
+			if (buffer.remaining() < writeBufferSize / 4) {
+				writeBuffer();
+			}
 		} catch (Exception e) {
+			if (buffer != null) {
+				buffer.clear();
+			}
 			closeStream();
 			e.printStackTrace();
 		}
 	}
 
+	protected void writeBuffer() throws Exception {
+		buffer.flip();
+		try {
+			if (openedChannel != null) {
+				while (buffer.hasRemaining()) {
+					openedChannel.write(buffer);
+				}
+			}
+		} finally {
+			buffer.clear();
+			lastWrite = System.currentTimeMillis();
+		}
+	}
+
 	protected void closeStream() {
 		if (openedStream != null) {
 			openedFile = "";
+			openedChannel = null;
 			try {
 				openedStream.close();
 			} catch (Exception ignored) {
 			}
+			openedStream = null;
 		}
 	}
 
@@ -320,31 +484,28 @@ public class AsyncFileLogger extends Handler implements Runnable {
 	@Override
 	public void flush() {
 
-		// Do nothing
+		// Write buffer to file (asynchronously)
+		flushRequested = true;
+		LockSupport.unpark(writer);
 	}
 
 	@Override
 	public void close() throws SecurityException {
+		if (closed) {
+			return;
+		}
+		closed = true;
 
-		// Stop executor
+		// Stop executor (the writer thread writes the rest of the log)
 		if (executor != null) {
+			LockSupport.unpark(writer);
 			executor.shutdown();
-			executor = null;
-		}
-
-		// Write rest of the log
-		LinkedList<LogRecord> records = new LinkedList<>();
-		synchronized (messages) {
-			if (!messages.isEmpty()) {
-				records.addAll(messages);
-				messages.clear();
-			}
-		}
-		if (!records.isEmpty()) {
 			try {
-				writeLines(records, new StringBuilder(), getFormatter());
-			} catch (Exception ignored) {
+				executor.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException interrupt) {
+				Thread.currentThread().interrupt();
 			}
+			executor = null;
 		}
 
 		// Close stream
@@ -476,6 +637,17 @@ public class AsyncFileLogger extends Handler implements Runnable {
 		// Enable colors
 		enableColors = Boolean.parseBoolean(getProperty(className + ".enableColors", "true"));
 
+		// Log buffer
+		bufferSize = Integer.parseInt(getProperty(className + ".bufferSize", Integer.toString(bufferSize)));
+		overflow = OverflowPolicy.valueOf(getProperty(className + ".overflow", overflow.toString()).toUpperCase());
+		sampleRate = Math.max(1,
+				Integer.parseInt(getProperty(className + ".sampleRate", Integer.toString(sampleRate))));
+		writeBufferSize = Math.max(1024,
+				Integer.parseInt(getProperty(className + ".writeBufferSize", Integer.toString(writeBufferSize))));
+		flushInterval = Math.max(1,
+				Long.parseLong(getProperty(className + ".flushInterval", Long.toString(flushInterval))));
+		messages = new LogRingBuffer<>(bufferSize);
+
 		// Set level
 		setLevel(Level.parse(getProperty(className + ".level", Level.INFO.toString())));
 
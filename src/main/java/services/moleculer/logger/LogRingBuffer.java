@@ -0,0 +1,125 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer / single-consumer ring buffer. Producers
+ * claim a slot with a CAS on the tail counter, then publish the element into
+ * the claimed slot. The (only) consumer thread removes the elements in the
+ * order of the claimed sequence numbers.
+ * 
+ * @param <T>
+ *            type of the elements
+ */
+public class LogRingBuffer<T> {
+
+	// --- SLOTS ---
+
+	protected final AtomicReferenceArray<T> slots;
+	protected final int mask;
+
+	// --- SEQUENCES ---
+
+	protected final AtomicLong tail = new AtomicLong();
+	protected volatile long head;
+
+	// --- CONSTRUCTOR ---
+
+	/**
+	 * Creates a ring buffer.
+	 * 
+	 * @param capacity
+	 *            max number of elements (rounded up to the next power of two)
+	 */
+	public LogRingBuffer(int capacity) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2!");
+		}
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	// --- ADD (ANY THREAD) ---
+
+	/**
+	 * Adds an element to the buffer without blocking.
+	 * 
+	 * @param element
+	 *            element to add (not null)
+	 * 
+	 * @return false if the buffer is full
+	 */
+	public boolean offer(T element) {
+		long t;
+		do {
+			t = tail.get();
+			if (t - head >= slots.length()) {
+				return false;
+			}
+		} while (!tail.compareAndSet(t, t + 1));
+		slots.lazySet((int) t & mask, element);
+		return true;
+	}
+
+	// --- REMOVE (CONSUMER THREAD ONLY) ---
+
+	/**
+	 * Removes the next element. Must be called from the consumer thread.
+	 * 
+	 * @return the next element, or null if the buffer is empty (or the next
+	 *         element is not published yet)
+	 */
+	public T poll() {
+		long h = head;
+		int index = (int) h & mask;
+		T element = slots.get(index);
+		if (element == null) {
+			return null;
+		}
+		slots.lazySet(index, null);
+		head = h + 1;
+		return element;
+	}
+
+	// --- SIZE ---
+
+	public boolean isEmpty() {
+		return tail.get() == head;
+	}
+
+	public int size() {
+		return (int) (tail.get() - head);
+	}
+
+	public int capacity() {
+		return slots.length();
+	}
+
+}
@@ -106,9 +106,7 @@ public class DefaultMetrics extends CompositeMeterRegistry implements Metrics {
 
 	@Override
 	public StoppableTimer timer(String name, String description, Duration duration, String... tags) {
-		Timer timer = Timer.builder(name).description(description).tags(tags).publishPercentileHistogram(true)
-				.percentilePrecision(2).distributionStatisticBufferLength(5).distributionStatisticExpiry(duration)
-				.publishPercentiles(0.75, 0.95, 0.98, 0.99, 0.999).register(this);
+		Timer timer = createTimer(name, description, duration, tags);
 		long start = System.nanoTime();
 		AtomicBoolean submitted = new AtomicBoolean();
 		return () -> {
@@ -118,6 +116,17 @@ public class DefaultMetrics extends CompositeMeterRegistry implements Metrics {
 		};
 	}
 
+	@Override
+	public void record(String name, String description, long duration, TimeUnit unit, String... tags) {
+		createTimer(name, description, ONE_SECOND, tags).record(duration, unit);
+	}
+
+	protected Timer createTimer(String name, String description, Duration duration, String... tags) {
+		return Timer.builder(name).description(description).tags(tags).publishPercentileHistogram(true)
+				.percentilePrecision(2).distributionStatisticBufferLength(5).distributionStatisticExpiry(duration)
+				.publishPercentiles(0.75, 0.95, 0.98, 0.99, 0.999).register(this);
+	}
+
 	// --- METRIC REGISTRY ---
 
 	@SuppressWarnings("unchecked")
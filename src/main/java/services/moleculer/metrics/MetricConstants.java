@@ -111,11 +111,39 @@ public interface MetricConstants {
 	public static final String MOLECULER_REQUEST_RETRY_ATTEMPTS_TOTAL = "moleculer.request.retry.attempts.total";
 	public static final String MOLECULER_REQUEST_RETRY_ATTEMPTS_TOTAL_DESC = "Number of retries";
 
+	// --- MOLECULER HEDGING METRICS ---
+
+	public static final String MOLECULER_REQUEST_HEDGE_TOTAL = "moleculer.request.hedge.total";
+	public static final String MOLECULER_REQUEST_HEDGE_TOTAL_DESC = "Number of hedged requests";
+
+	public static final String MOLECULER_REQUEST_HEDGE_WINS_TOTAL = "moleculer.request.hedge.wins.total";
+	public static final String MOLECULER_REQUEST_HEDGE_WINS_TOTAL_DESC = "Number of hedged requests answered before the original request";
+
 	// --- MOLECULER TIMEOUT METRICS ---
 
 	public static final String MOLECULER_REQUEST_TIMEOUT_TOTAL = "moleculer.request.timeout.total";
 	public static final String MOLECULER_REQUEST_TIMEOUT_TOTAL_DESC = "Total number of request timeouts";
 
+	public static final String MOLECULER_REQUEST_QUEUE_TIME = "moleculer.request.queue.time";
+	public static final String MOLECULER_REQUEST_QUEUE_TIME_DESC = "Time spent by incoming requests in queues before execution";
+
+	public static final String MOLECULER_REQUEST_EXPIRED_TOTAL = "moleculer.request.expired.total";
+	public static final String MOLECULER_REQUEST_EXPIRED_TOTAL_DESC = "Number of incoming requests dropped because their deadline had already passed";
+
+	// --- MOLECULER ISOLATED EXECUTOR METRICS ---
+
+	public static final String MOLECULER_EXECUTOR_QUEUE_SIZE = "moleculer.executor.queue.size";
+	public static final String MOLECULER_EXECUTOR_QUEUE_SIZE_DESC = "Number of tasks waiting in the queue of the thread pool";
+
+	public static final String MOLECULER_EXECUTOR_ACTIVE = "moleculer.executor.active";
+	public static final String MOLECULER_EXECUTOR_ACTIVE_DESC = "Number of running tasks of the thread pool";
+
+	public static final String MOLECULER_EXECUTOR_WAIT_TIME = "moleculer.executor.wait.time";
+	public static final String MOLECULER_EXECUTOR_WAIT_TIME_DESC = "Time spent by tasks in the queue of the thread pool";
+
+	public static final String MOLECULER_EXECUTOR_REJECTED_TOTAL = "moleculer.executor.rejected.total";
+	public static final String MOLECULER_EXECUTOR_REJECTED_TOTAL_DESC = "Number of tasks rejected by the thread pool";
+
 	// --- MOLECULER CACHER METRICS ---
 
 	public static final String MOLECULER_CACHER_GET_TOTAL = "moleculer.cacher.get.total";
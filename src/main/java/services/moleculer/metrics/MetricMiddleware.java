@@ -25,6 +25,8 @@
  */
 package services.moleculer.metrics;
 
+import java.util.concurrent.CompletionStage;
+
 import io.datatree.Promise;
 import io.datatree.Tree;
 import services.moleculer.ServiceBroker;
@@ -56,61 +58,78 @@ public class MetricMiddleware extends Middleware implements MetricConstants {
 
 			@Override
 			public final Object handler(Context ctx) throws Exception {
-				return new Promise(resolver -> {
 
-					// Before call
-					String callType = localNodeID.equals(ctx.nodeID) ? "local" : "remote";
-					String[] tags = new String[] { "action", actionName, "type", callType, "caller", ctx.nodeID };
-					metrics.increment(MOLECULER_REQUEST_TOTAL, MOLECULER_REQUEST_TOTAL_DESC, tags);
+				// Before call
+				String callType = localNodeID.equals(ctx.nodeID) ? "local" : "remote";
+				String[] tags = new String[] { "action", actionName, "type", callType, "caller", ctx.nodeID };
+				metrics.increment(MOLECULER_REQUEST_TOTAL, MOLECULER_REQUEST_TOTAL_DESC, tags);
 
-					MetricCounter requestActive = metrics.increment(MOLECULER_REQUEST_ACTIVE,
-							MOLECULER_REQUEST_ACTIVE_DESC, tags);
+				MetricCounter requestActive = metrics.increment(MOLECULER_REQUEST_ACTIVE, MOLECULER_REQUEST_ACTIVE_DESC,
+						tags);
 
-					metrics.increment(MOLECULER_REQUEST_LEVELS, MOLECULER_REQUEST_LEVELS_DESC, "action",
-							actionName, "caller", ctx.nodeID, "level", Integer.toString(ctx.level));
+				metrics.increment(MOLECULER_REQUEST_LEVELS, MOLECULER_REQUEST_LEVELS_DESC, "action", actionName,
+						"caller", ctx.nodeID, "level", Integer.toString(ctx.level));
 
-					StoppableTimer timer = metrics.timer(MOLECULER_REQUEST_TIME, MOLECULER_REQUEST_TIME_DESC, tags);
+				StoppableTimer timer = metrics.timer(MOLECULER_REQUEST_TIME, MOLECULER_REQUEST_TIME_DESC, tags);
 
-					new Promise(action.handler(ctx)).then(tree -> {
+				Object rsp;
+				try {
+					rsp = action.handler(ctx);
+				} catch (Throwable err) {
+					finished(ctx, timer, requestActive, callType, err);
+					throw err;
+				}
+				if (!(rsp instanceof Promise) && !(rsp instanceof CompletionStage)) {
 
-						// After call (normal response)
-						timer.stop();
-						requestActive.decrement();
+					// Synchronous response (without Promise wrapping)
+					finished(ctx, timer, requestActive, callType, null);
+					return rsp;
+				}
+				return new Promise(resolver -> {
+					new Promise(rsp).then(tree -> {
 
+						// After call (normal response)
+						finished(ctx, timer, requestActive, callType, null);
 						resolver.resolve(tree);
 					}).catchError(err -> {
 
 						// After call (error)
-						timer.stop();
-						requestActive.decrement();
-
-						String errorName = null;
-						int errorCode = 500;
-						String errorType = null;
-						if (err instanceof MoleculerError) {
-							MoleculerError me = (MoleculerError) err;
-							errorName = me.getName();
-							errorCode = me.getCode();
-							errorType = me.getType();
-						}
-						if (errorName == null || errorName.isEmpty()) {
-							errorName = "MoleculerError";
-						}
-						if (errorType == null || errorType.isEmpty()) {
-							errorType = err.getMessage();
-							if (errorType == null || errorType.isEmpty()) {
-								errorType = "MOLECULER_ERROR";
-							}
-						}
-						metrics.increment(MOLECULER_REQUEST_ERROR_TOTAL, MOLECULER_REQUEST_ERROR_TOTAL_DESC, "action",
-								actionName, "type", callType, "caller", ctx.nodeID, "errorName", errorName, "errorCode",
-								Integer.toString(errorCode), "errorType", errorType);
-
+						finished(ctx, timer, requestActive, callType, err);
 						resolver.reject(err);
 					});
 				});
 			}
 
+			protected final void finished(Context ctx, StoppableTimer timer, MetricCounter requestActive,
+					String callType, Throwable err) {
+				timer.stop();
+				requestActive.decrement();
+				if (err == null) {
+					return;
+				}
+				String errorName = null;
+				int errorCode = 500;
+				String errorType = null;
+				if (err instanceof MoleculerError) {
+					MoleculerError me = (MoleculerError) err;
+					errorName = me.getName();
+					errorCode = me.getCode();
+					errorType = me.getType();
+				}
+				if (errorName == null || errorName.isEmpty()) {
+					errorName = "MoleculerError";
+				}
+				if (errorType == null || errorType.isEmpty()) {
+					errorType = err.getMessage();
+					if (errorType == null || errorType.isEmpty()) {
+						errorType = "MOLECULER_ERROR";
+					}
+				}
+				metrics.increment(MOLECULER_REQUEST_ERROR_TOTAL, MOLECULER_REQUEST_ERROR_TOTAL_DESC, "action",
+						actionName, "type", callType, "caller", ctx.nodeID, "errorName", errorName, "errorCode",
+						Integer.toString(errorCode), "errorType", errorType);
+			}
+
 		};
 	}
 
@@ -26,6 +26,7 @@
 package services.moleculer.metrics;
 
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 import services.moleculer.service.MoleculerLifecycle;
 import services.moleculer.service.Name;
@@ -56,5 +57,26 @@ public interface Metrics extends MoleculerLifecycle {
 	}
 	
 	public StoppableTimer timer(String name, String description, Duration duration, String... tags);
+
+	/**
+	 * Records an already measured duration (eg. a queue time). The default
+	 * implementation ignores the value, registries which support it should
+	 * override this method.
+	 * 
+	 * @param name
+	 *            name of the timer
+	 * @param description
+	 *            description of the timer
+	 * @param duration
+	 *            measured duration
+	 * @param unit
+	 *            time unit of the duration
+	 * @param tags
+	 *            tags of the timer (key-value pairs)
+	 */
+	public default void record(String name, String description, long duration, TimeUnit unit, String... tags) {
+
+		// Not supported by default
+	}
 	
 }
\ No newline at end of file
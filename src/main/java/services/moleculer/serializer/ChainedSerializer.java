@@ -72,6 +72,19 @@ public abstract class ChainedSerializer extends Serializer {
 		return parent.getFormat();
 	}
 	
+	// --- EMBED PRE-SERIALIZED VALUE ---
+
+	@Override
+	public boolean canEmbed(SerializedValue value) {
+		return parent.canEmbed(value);
+	}
+
+	// --- PARENT SERIALIZER ---
+
+	public Serializer getParent() {
+		return parent;
+	}
+
 	// --- DEBUG MODE ---
 	
 	@Override
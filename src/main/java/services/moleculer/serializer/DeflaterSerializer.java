@@ -29,6 +29,16 @@ import static services.moleculer.util.CommonUtils.compress;
 import static services.moleculer.util.CommonUtils.decompress;
 import static services.moleculer.util.CommonUtils.formatNamoSec;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
 import io.datatree.Tree;
@@ -52,6 +62,17 @@ import services.moleculer.service.Name;
  * BlockCipherSerializer cipher = new BlockCipherSerializer(deflater);
  * trans.setSerializer(cipher);
  * </pre>
+ * 
+ * Small packets can be compressed efficiently with a preset dictionary (which
+ * contains the frequent keys and values of the packets). The dictionary must be
+ * the same on all nodes; the nodes advertise the ID of their dictionary in the
+ * INFO packets, and the dictionary is used only when all known nodes have the
+ * same dictionary:
+ * 
+ * <pre>
+ * DeflaterSerializer deflater = new DeflaterSerializer();
+ * deflater.setDictionary(Files.readAllBytes(Paths.get("packets.dict")));
+ * </pre>
  */
 @Name("Deflater Serializer")
 public class DeflaterSerializer extends ChainedSerializer {
@@ -69,6 +90,22 @@ public class DeflaterSerializer extends ChainedSerializer {
 	 */
 	protected int compressionLevel = Deflater.BEST_SPEED;
 
+	/**
+	 * Compress packets above this size (BYTES) when the preset dictionary is
+	 * used
+	 */
+	protected int dictionaryThreshold = 64;
+
+	// --- PRESET DICTIONARY ---
+
+	protected byte[] dictionary;
+	protected int dictionaryCrc;
+
+	/**
+	 * Dictionary is supported by all known nodes (set by the Transporter)
+	 */
+	protected volatile boolean dictionaryEnabled;
+
 	// --- CONSTRUCTORS ---
 
 	/**
@@ -141,23 +178,39 @@ public class DeflaterSerializer extends ChainedSerializer {
 		// Serialize content
 		byte[] bytes = parent.write(value);
 
+		// Use preset dictionary?
+		byte[] dict = dictionaryEnabled ? dictionary : null;
+
 		// Compress content
 		boolean compressed;
-		if (threshold > 0 && bytes.length > threshold) {
+		if (threshold > 0 && bytes.length > (dict == null ? threshold : Math.min(threshold, dictionaryThreshold))) {
 			if (debug) {
 				long start = System.nanoTime();
-				byte[] compressedBytes = compress(bytes, compressionLevel);
+				byte[] compressedBytes = compress(bytes, 0, bytes.length, compressionLevel, dict);
 				long duration = System.nanoTime() - start;
 				logger.info("Packet compressed in " + formatNamoSec(duration) + " (from " + bytes.length + " bytes to "
 						+ compressedBytes.length + " bytes).");
 				bytes = compressedBytes;
 			} else {
-				bytes = compress(bytes, compressionLevel);
+				bytes = compress(bytes, 0, bytes.length, compressionLevel, dict);
 			}
 			compressed = true;
 		} else {
 			compressed = false;
 		}
+		if (compressed && dict != null) {
+
+			// Compressed with dictionary = first byte is "2", then the
+			// dictionary ID (CRC32)
+			byte[] copy = new byte[bytes.length + 5];
+			System.arraycopy(bytes, 0, copy, 5, bytes.length);
+			copy[0] = 2;
+			copy[1] = (byte) (dictionaryCrc >>> 24);
+			copy[2] = (byte) (dictionaryCrc >>> 16);
+			copy[3] = (byte) (dictionaryCrc >>> 8);
+			copy[4] = (byte) dictionaryCrc;
+			return copy;
+		}
 		byte[] copy = new byte[bytes.length + 1];
 		System.arraycopy(bytes, 0, copy, 1, bytes.length);
 		if (compressed) {
@@ -172,26 +225,131 @@ public class DeflaterSerializer extends ChainedSerializer {
 
 	public Tree read(byte[] source) throws Exception {
 
-		// Decompress content
-		byte[] copy = new byte[source.length - 1];
-		System.arraycopy(source, 1, copy, 0, source.length - 1);
-		if (source[0] == 1) {
+		// Decompress content (from offset, without copying)
+		byte[] bytes;
+		if (source[0] != 1 && source[0] != 2) {
 
-			// First byte == 1 -> compressed
+			// First byte == 0 -> uncompressed
+			bytes = Arrays.copyOfRange(source, 1, source.length);
+
+		} else {
+
+			// First byte == 1 -> compressed, 2 -> compressed with dictionary
+			int offset = 1;
+			byte[] dict = null;
+			if (source[0] == 2) {
+				int crc = ((source[1] & 0xFF) << 24) | ((source[2] & 0xFF) << 16) | ((source[3] & 0xFF) << 8)
+						| (source[4] & 0xFF);
+				if (dictionary == null || crc != dictionaryCrc) {
+					throw new IOException("Unknown compression dictionary (" + Integer.toHexString(crc) + ")!");
+				}
+				dict = dictionary;
+				offset = 5;
+			}
 			if (debug) {
 				long start = System.nanoTime();
-				byte[] decompressed = decompress(copy);
+				bytes = decompress(source, offset, source.length - offset, dict);
 				long duration = System.nanoTime() - start;
-				logger.info("Packet extracted in " + formatNamoSec(duration) + " (from " + copy.length + " bytes to "
-						+ decompressed.length + " bytes).");
-				copy = decompressed;
+				logger.info("Packet extracted in " + formatNamoSec(duration) + " (from " + (source.length - offset)
+						+ " bytes to " + bytes.length + " bytes).");
 			} else {
-				copy = decompress(copy);
+				bytes = decompress(source, offset, source.length - offset, dict);
 			}
 		}
 
 		// Deserialize content
-		return parent.read(copy);
+		return parent.read(bytes);
+	}
+
+	// --- DICTIONARY TRAINING ---
+
+	/**
+	 * Creates a preset dictionary from sample packets. The dictionary contains
+	 * the byte sequences which occur in many packets (the most frequent
+	 * sequences are at the end of the dictionary, as zlib recommends).
+	 * 
+	 * @param samples
+	 *            sample packets (eg. typical requests, responses and events)
+	 * @param maxSize
+	 *            max size of the dictionary in BYTES (max. 32768)
+	 * 
+	 * @return the dictionary
+	 * 
+	 * @throws Exception
+	 *             serialization error
+	 */
+	public byte[] trainDictionary(Collection<Tree> samples, int maxSize) throws Exception {
+		final int k = 8;
+
+		// Serialize samples
+		ArrayList<byte[]> packets = new ArrayList<>(samples.size());
+		for (Tree sample : samples) {
+			packets.add(parent.write(sample));
+		}
+
+		// Count in how many packets the 8-byte sequences occur
+		HashMap<Long, Integer> frequencies = new HashMap<>();
+		HashSet<Long> seen = new HashSet<>();
+		for (byte[] packet : packets) {
+			seen.clear();
+			for (int i = 0; i + k <= packet.length; i++) {
+				Long hash = hash(packet, i, k);
+				if (seen.add(hash)) {
+					frequencies.merge(hash, 1, Integer::sum);
+				}
+			}
+		}
+		int minFrequency = Math.max(packets.size() > 1 ? 2 : 1, packets.size() / 4);
+
+		// Collect runs of frequent sequences
+		LinkedHashMap<ByteBuffer, Integer> segments = new LinkedHashMap<>();
+		for (byte[] packet : packets) {
+			int i = 0;
+			while (i + k <= packet.length) {
+				int frequency = frequencies.get(hash(packet, i, k));
+				if (frequency < minFrequency) {
+					i++;
+					continue;
+				}
+				int start = i;
+				int score = 0;
+				while (i + k <= packet.length) {
+					frequency = frequencies.get(hash(packet, i, k));
+					if (frequency < minFrequency) {
+						break;
+					}
+					score += frequency;
+					i++;
+				}
+				ByteBuffer segment = ByteBuffer.wrap(Arrays.copyOfRange(packet, start, i + k - 1));
+				segments.merge(segment, score, Integer::sum);
+				i += k - 1;
+			}
+		}
+
+		// Most frequent segments at the end
+		ArrayList<Map.Entry<ByteBuffer, Integer>> list = new ArrayList<>(segments.entrySet());
+		list.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+		int size = Math.min(maxSize, 32768);
+		byte[] dict = new byte[size];
+		int pos = size;
+		for (Map.Entry<ByteBuffer, Integer> entry : list) {
+			byte[] segment = entry.getKey().array();
+			if (pos < segment.length) {
+				break;
+			}
+			pos -= segment.length;
+			System.arraycopy(segment, 0, dict, pos, segment.length);
+		}
+		return Arrays.copyOfRange(dict, pos, size);
+	}
+
+	protected static final long hash(byte[] bytes, int offset, int length) {
+		long hash = 1125899906842597L;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
 	}
 
 	// --- GETTERS / SETTERS ---
@@ -212,4 +370,47 @@ public class DeflaterSerializer extends ChainedSerializer {
 		this.threshold = threshold;
 	}
 
+	public int getDictionaryThreshold() {
+		return dictionaryThreshold;
+	}
+
+	public void setDictionaryThreshold(int dictionaryThreshold) {
+		this.dictionaryThreshold = dictionaryThreshold;
+	}
+
+	public byte[] getDictionary() {
+		return dictionary;
+	}
+
+	public void setDictionary(byte[] dictionary) {
+		if (dictionary == null || dictionary.length == 0) {
+			this.dictionary = null;
+			this.dictionaryCrc = 0;
+			this.dictionaryEnabled = false;
+		} else {
+			CRC32 crc = new CRC32();
+			crc.update(dictionary);
+			this.dictionaryCrc = (int) crc.getValue();
+			this.dictionary = dictionary;
+		}
+	}
+
+	/**
+	 * Returns the ID of the preset dictionary (which is sent in the INFO
+	 * packets).
+	 * 
+	 * @return ID of the dictionary (or null)
+	 */
+	public String getDictionaryID() {
+		return dictionary == null ? null : Integer.toHexString(dictionaryCrc);
+	}
+
+	public boolean isDictionaryEnabled() {
+		return dictionaryEnabled;
+	}
+
+	public void setDictionaryEnabled(boolean dictionaryEnabled) {
+		this.dictionaryEnabled = dictionaryEnabled && dictionary != null;
+	}
+
 }
\ No newline at end of file
@@ -25,6 +25,8 @@
  */
 package services.moleculer.serializer;
 
+import java.util.Arrays;
+
 import services.moleculer.service.Name;
 
 /**
@@ -58,4 +60,121 @@ public class JsonSerializer extends Serializer {
 		super("json");
 	}
 
+	// --- LAZY PACKET DECODING ---
+
+	protected static final byte[] NULL_VALUE = { 'n', 'u', 'l', 'l' };
+
+	@Override
+	protected byte[] nullValue() {
+		return NULL_VALUE;
+	}
+
+	@Override
+	protected int[] findLazyValues(byte[] source) {
+		int pos = skipWhitespace(source, 0);
+		if (source[pos] != '{') {
+			return null;
+		}
+		int[] ranges = null;
+		int count = 0;
+		pos = skipWhitespace(source, pos + 1);
+		if (source[pos] == '}') {
+			return null;
+		}
+		while (true) {
+
+			// Read key
+			if (source[pos] != '"') {
+				return null;
+			}
+			int keyStart = pos + 1;
+			pos = skipString(source, pos);
+			int keyLength = pos - keyStart - 1;
+			pos = skipWhitespace(source, pos);
+			if (source[pos] != ':') {
+				return null;
+			}
+
+			// Skip value
+			int valueStart = skipWhitespace(source, pos + 1);
+			pos = skipValue(source, valueStart);
+			byte first = source[valueStart];
+			if (first == '{' || first == '[') {
+				int key = lazyKeyIndex(source, keyStart, keyLength);
+				if (key > -1) {
+					ranges = addRange(ranges, count++, key, valueStart, pos);
+				}
+			}
+
+			// Next key or end of object
+			pos = skipWhitespace(source, pos);
+			if (source[pos] == ',') {
+				pos = skipWhitespace(source, pos + 1);
+				continue;
+			}
+			if (source[pos] == '}') {
+				break;
+			}
+			return null;
+		}
+		return count == 0 ? null : Arrays.copyOf(ranges, count * 3);
+	}
+
+	protected static int skipWhitespace(byte[] source, int pos) {
+		byte b = source[pos];
+		while (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+			b = source[++pos];
+		}
+		return pos;
+	}
+
+	protected static int skipString(byte[] source, int pos) {
+		pos++;
+		while (true) {
+			byte b = source[pos];
+			if (b == '\\') {
+				pos += 2;
+			} else if (b == '"') {
+				return pos + 1;
+			} else {
+				pos++;
+			}
+		}
+	}
+
+	protected static int skipValue(byte[] source, int pos) {
+		byte b = source[pos];
+		if (b == '"') {
+			return skipString(source, pos);
+		}
+		if (b == '{' || b == '[') {
+			int depth = 0;
+			while (true) {
+				b = source[pos];
+				if (b == '"') {
+					pos = skipString(source, pos);
+					continue;
+				}
+				if (b == '{' || b == '[') {
+					depth++;
+				} else if (b == '}' || b == ']') {
+					if (--depth == 0) {
+						return pos + 1;
+					}
+				}
+				pos++;
+			}
+		}
+
+		// Number, true, false or null
+		while (pos < source.length) {
+			b = source[pos];
+			if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				return pos;
+			}
+			pos++;
+		}
+		return pos;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Root map of a lazily decoded incoming packet. The envelope fields (eg. "id",
+ * "sender", "action", "ver", "timeout", "level") are decoded eagerly, the
+ * large structures ("params", "data", "meta") are stored in serialized form
+ * and parsed only on first access. If a packet is rejected (eg. unknown
+ * action, version mismatch, timeout) its payload is never parsed.
+ *
+ * @see Serializer#readPacket(byte[])
+ */
+public class LazyPacketMap extends AbstractMap<String, Object> {
+
+	// --- DECODED AND SERIALIZED VALUES ---
+
+	protected final LinkedHashMap<String, Object> map;
+
+	// --- SERIALIZED VALUE ---
+
+	protected static final class LazyValue {
+
+		protected final Serializer serializer;
+		protected final byte[] source;
+		protected final int start;
+		protected final int end;
+
+		protected LazyValue(Serializer serializer, byte[] source, int start, int end) {
+			this.serializer = serializer;
+			this.source = source;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected Object parse() {
+			try {
+				return serializer.read(Arrays.copyOfRange(source, start, end)).asObject();
+			} catch (RuntimeException cause) {
+				throw cause;
+			} catch (Exception cause) {
+				throw new IllegalArgumentException("Unable to parse packet!", cause);
+			}
+		}
+
+	}
+
+	// --- CONSTRUCTOR ---
+
+	protected LazyPacketMap(Map<String, Object> envelope) {
+		map = new LinkedHashMap<>(envelope);
+	}
+
+	protected void putLazy(String key, Serializer serializer, byte[] source, int start, int end) {
+		map.put(key, new LazyValue(serializer, source, start, end));
+	}
+
+	// --- LAZY DESERIALIZATION ---
+
+	@Override
+	public Object get(Object key) {
+		Object value = map.get(key);
+		if (value instanceof LazyValue) {
+			return decode((String) key, (LazyValue) value);
+		}
+		return value;
+	}
+
+	protected synchronized Object decode(String key, LazyValue lazy) {
+		Object value = map.get(key);
+		if (value == lazy) {
+			value = lazy.parse();
+			map.put(key, value);
+		}
+		return value;
+	}
+
+	protected void decodeAll() {
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof LazyValue) {
+
+				// Replacing the value is not a structural modification
+				decode(entry.getKey(), (LazyValue) value);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the specified value is parsed (or it wasn't stored in
+	 * serialized form).
+	 * 
+	 * @param key
+	 *            key of the value (eg. "params")
+	 * 
+	 * @return true if the value is decoded
+	 */
+	public boolean isDecoded(String key) {
+		return !(map.get(key) instanceof LazyValue);
+	}
+
+	// --- MAP IMPLEMENTATION ---
+
+	@Override
+	public Object put(String key, Object value) {
+		return map.put(key, value);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object value = map.remove(key);
+		if (value instanceof LazyValue) {
+			return ((LazyValue) value).parse();
+		}
+		return value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		decodeAll();
+		return map.containsValue(value);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return map.keySet();
+	}
+
+	@Override
+	public Collection<Object> values() {
+		decodeAll();
+		return map.values();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		decodeAll();
+		return map.entrySet();
+	}
+
+}
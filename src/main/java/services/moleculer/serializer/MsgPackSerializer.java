@@ -25,6 +25,8 @@
  */
 package services.moleculer.serializer;
 
+import java.util.Arrays;
+
 import services.moleculer.service.Name;
 
 /**
@@ -61,4 +63,186 @@ public class MsgPackSerializer extends Serializer {
 		super("msgpack");
 	}
 
+	// --- LAZY PACKET DECODING ---
+
+	protected static final byte[] NULL_VALUE = { (byte) 0xc0 };
+
+	@Override
+	protected byte[] nullValue() {
+		return NULL_VALUE;
+	}
+
+	@Override
+	protected int[] findLazyValues(byte[] source) {
+		int b = source[0] & 0xFF;
+		int size;
+		int pos;
+		if (b >= 0x80 && b <= 0x8f) {
+			size = b & 0x0F;
+			pos = 1;
+		} else if (b == 0xde) {
+			size = readLength(source, 1, 2);
+			pos = 3;
+		} else if (b == 0xdf) {
+			size = readLength(source, 1, 4);
+			pos = 5;
+		} else {
+			return null;
+		}
+		int[] ranges = null;
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+
+			// Read key
+			b = source[pos] & 0xFF;
+			int keyStart;
+			int keyLength;
+			if (b >= 0xa0 && b <= 0xbf) {
+				keyStart = pos + 1;
+				keyLength = b & 0x1F;
+			} else if (b == 0xd9) {
+				keyStart = pos + 2;
+				keyLength = readLength(source, pos + 1, 1);
+			} else {
+				keyStart = -1;
+				keyLength = 0;
+			}
+			pos = skipValue(source, pos);
+
+			// Skip value
+			int valueStart = pos;
+			pos = skipValue(source, valueStart);
+			b = source[valueStart] & 0xFF;
+			if (keyStart > -1 && ((b >= 0x80 && b <= 0x9f) || (b >= 0xdc && b <= 0xdf))) {
+				int key = lazyKeyIndex(source, keyStart, keyLength);
+				if (key > -1) {
+					ranges = addRange(ranges, count++, key, valueStart, pos);
+				}
+			}
+		}
+		return count == 0 ? null : Arrays.copyOf(ranges, count * 3);
+	}
+
+	protected static int skipValue(byte[] source, int pos) {
+		long remaining = 1;
+		while (remaining > 0) {
+			remaining--;
+			int b = source[pos] & 0xFF;
+			if (b <= 0x7f || b >= 0xe0) {
+
+				// Positive or negative fixint
+				pos++;
+			} else if (b <= 0x8f) {
+
+				// Fixmap
+				remaining += 2L * (b & 0x0F);
+				pos++;
+			} else if (b <= 0x9f) {
+
+				// Fixarray
+				remaining += b & 0x0F;
+				pos++;
+			} else if (b <= 0xbf) {
+
+				// Fixstr
+				pos += 1 + (b & 0x1F);
+			} else {
+				switch (b) {
+				case 0xc0: // nil
+				case 0xc2: // false
+				case 0xc3: // true
+					pos++;
+					break;
+				case 0xc4: // bin 8
+				case 0xd9: // str 8
+					pos += 2 + readLength(source, pos + 1, 1);
+					break;
+				case 0xc5: // bin 16
+				case 0xda: // str 16
+					pos += 3 + readLength(source, pos + 1, 2);
+					break;
+				case 0xc6: // bin 32
+				case 0xdb: // str 32
+					pos += 5 + readLength(source, pos + 1, 4);
+					break;
+				case 0xc7: // ext 8
+					pos += 3 + readLength(source, pos + 1, 1);
+					break;
+				case 0xc8: // ext 16
+					pos += 4 + readLength(source, pos + 1, 2);
+					break;
+				case 0xc9: // ext 32
+					pos += 6 + readLength(source, pos + 1, 4);
+					break;
+				case 0xcc: // uint 8
+				case 0xd0: // int 8
+					pos += 2;
+					break;
+				case 0xcd: // uint 16
+				case 0xd1: // int 16
+					pos += 3;
+					break;
+				case 0xca: // float 32
+				case 0xce: // uint 32
+				case 0xd2: // int 32
+					pos += 5;
+					break;
+				case 0xcb: // float 64
+				case 0xcf: // uint 64
+				case 0xd3: // int 64
+					pos += 9;
+					break;
+				case 0xd4: // fixext 1
+					pos += 3;
+					break;
+				case 0xd5: // fixext 2
+					pos += 4;
+					break;
+				case 0xd6: // fixext 4
+					pos += 6;
+					break;
+				case 0xd7: // fixext 8
+					pos += 10;
+					break;
+				case 0xd8: // fixext 16
+					pos += 18;
+					break;
+				case 0xdc: // array 16
+					remaining += readLength(source, pos + 1, 2);
+					pos += 3;
+					break;
+				case 0xdd: // array 32
+					remaining += readLength(source, pos + 1, 4);
+					pos += 5;
+					break;
+				case 0xde: // map 16
+					remaining += 2L * readLength(source, pos + 1, 2);
+					pos += 3;
+					break;
+				case 0xdf: // map 32
+					remaining += 2L * readLength(source, pos + 1, 4);
+					pos += 5;
+					break;
+				default:
+					throw new IllegalArgumentException("Invalid MessagePack type (" + b + ")!");
+				}
+			}
+			if (pos > source.length) {
+				throw new IllegalArgumentException("Truncated MessagePack data!");
+			}
+		}
+		return pos;
+	}
+
+	protected static int readLength(byte[] source, int pos, int bytes) {
+		long length = 0;
+		for (int i = 0; i < bytes; i++) {
+			length = (length << 8) | (source[pos + i] & 0xFF);
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid MessagePack length (" + length + ")!");
+		}
+		return (int) length;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import java.util.Objects;
+
+import io.datatree.Tree;
+
+/**
+ * Pre-serialized value (eg. a cached response, stored in serialized form in
+ * the OHCacher). When this value is sent back to a remote node as the "data"
+ * block of a response packet, and the format of the Transporter's Serializer
+ * matches the format of the value, the bytes are embedded into the packet
+ * without a deserialize / re-serialize cycle. The value is parsed into a Tree
+ * only when somebody calls the {@link #asTree()} method.
+ *
+ * @see Serializer#canEmbed(SerializedValue)
+ */
+public class SerializedValue {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Serializer / deserializer of the value.
+	 */
+	protected final Serializer serializer;
+
+	/**
+	 * Serialized value (must be a structure, eg. a JSON object).
+	 */
+	protected final byte[] bytes;
+
+	/**
+	 * Parsed value (lazily created).
+	 */
+	protected volatile Tree tree;
+
+	// --- CONSTRUCTOR ---
+
+	public SerializedValue(Serializer serializer, byte[] bytes) {
+		this.serializer = Objects.requireNonNull(serializer);
+		this.bytes = Objects.requireNonNull(bytes);
+	}
+
+	// --- LAZY DESERIALIZATION ---
+
+	public Tree asTree() throws Exception {
+		Tree t = tree;
+		if (t == null) {
+			t = serializer.read(bytes);
+			tree = t;
+		}
+		return t;
+	}
+
+	// --- GETTERS ---
+
+	public String getFormat() {
+		return serializer.getFormat();
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public boolean isParsed() {
+		return tree != null;
+	}
+
+	// --- TO STRING ---
+
+	@Override
+	public String toString() {
+		try {
+			return asTree().toString();
+		} catch (Exception cause) {
+			return bytes.length + " bytes of " + getFormat();
+		}
+	}
+
+}
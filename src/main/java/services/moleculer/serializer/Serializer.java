@@ -25,6 +25,11 @@
  */
 package services.moleculer.serializer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
 import io.datatree.Tree;
 import io.datatree.dom.TreeReader;
 import io.datatree.dom.TreeReaderRegistry;
@@ -33,6 +38,7 @@ import io.datatree.dom.TreeWriterRegistry;
 import services.moleculer.ServiceBroker;
 import services.moleculer.service.MoleculerComponent;
 import services.moleculer.util.CheckedTree;
+import services.moleculer.util.FastBuildMap;
 
 /**
  * Base superclass of all data serializer implementations.
@@ -65,7 +71,29 @@ public abstract class Serializer extends MoleculerComponent {
 	 * Enable debug mode.
 	 */
 	protected boolean debug;
-	
+
+	/**
+	 * Minimum size of the lazily decoded incoming packets in bytes (0 =
+	 * disabled). The "params", "data" and "meta" blocks of these packets are
+	 * parsed only on first access.
+	 */
+	protected int lazyDecodingThreshold = 1024;
+
+	// --- LAZILY DECODED PACKET FIELDS ---
+
+	protected static final String[] LAZY_KEYS = { "params", "data", "meta" };
+
+	// --- PLACEHOLDER OF EMBEDDED VALUES ---
+
+	/**
+	 * Placeholder of the pre-serialized values (20 characters, so it has a
+	 * one-byte header in JSON, MessagePack and CBOR format).
+	 */
+	protected final String placeholder = String.format("$raw$%015x",
+			ThreadLocalRandom.current().nextLong() & 0xFFFFFFFFFFFFFFFL);
+
+	protected final byte[] placeholderBytes = placeholder.getBytes(StandardCharsets.UTF_8);
+
 	// --- CONSTRUCTOR ---
 
 	protected Serializer(String format) {
@@ -89,7 +117,91 @@ public abstract class Serializer extends MoleculerComponent {
 	// --- SERIALIZE TREE TO BYTE ARRAY ---
 
 	public byte[] write(Tree value) throws Exception {
-		return writer.toBinary(value.asObject(), null, true);
+		Object root = value.asObject();
+		if (root instanceof FastBuildMap) {
+
+			// Packet with pre-serialized "data" block?
+			FastBuildMap map = (FastBuildMap) root;
+			int size = map.size();
+			for (int i = 0; i < size; i++) {
+				if (map.getValue(i) instanceof SerializedValue) {
+					return writeEmbedded(map, i);
+				}
+			}
+		}
+		return writer.toBinary(root, null, true);
+	}
+
+	// --- EMBED PRE-SERIALIZED VALUE ---
+
+	/**
+	 * Returns <code>true</code> if the specified value can be inserted into
+	 * the output of this Serializer without deserialization. Only the
+	 * self-delimited formats are supported, where the length of the parent
+	 * structure does not depend on the length of the value.
+	 *
+	 * @param value
+	 *            pre-serialized value
+	 *
+	 * @return value is embeddable
+	 */
+	public boolean canEmbed(SerializedValue value) {
+		if (value.serializer instanceof ChainedSerializer || !format.equals(value.getFormat())) {
+
+			// Format mismatch, or compressed / encrypted content
+			return false;
+		}
+		return "json".equals(format) || "msgpack".equals(format) || "cbor".equals(format);
+	}
+
+	protected byte[] writeEmbedded(FastBuildMap map, int index) throws Exception {
+		SerializedValue value = (SerializedValue) map.getValue(index);
+		try {
+			if (canEmbed(value)) {
+
+				// Serialize packet with a placeholder
+				map.setValue(index, placeholder);
+				byte[] packet = writer.toBinary(map, null, true);
+				int pos = indexOf(packet, placeholderBytes);
+				if (pos > 0) {
+
+					// Replace placeholder (and its header) with the value
+					int start = pos - 1;
+					int end = pos + placeholderBytes.length + ("json".equals(format) ? 1 : 0);
+					byte[] bytes = value.getBytes();
+					byte[] out = new byte[packet.length - (end - start) + bytes.length];
+					System.arraycopy(packet, 0, out, 0, start);
+					System.arraycopy(bytes, 0, out, start, bytes.length);
+					System.arraycopy(packet, end, out, start + bytes.length, packet.length - end);
+					return out;
+				}
+			}
+
+			// Format mismatch, deserialize value
+			map.setValue(index, value.asTree().asObject());
+			return writer.toBinary(map, null, true);
+
+		} finally {
+			map.setValue(index, value);
+		}
+	}
+
+	protected static int indexOf(byte[] array, byte[] part) {
+		int max = array.length - part.length;
+		byte first = part[0];
+		for (int i = 0; i <= max; i++) {
+			if (array[i] != first) {
+				continue;
+			}
+			int j = 1;
+			while (j < part.length && array[i + j] == part[j]) {
+				j++;
+			}
+			if (j == part.length) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	// --- DESERIALIZE BYTE ARRAY TO TREE ---
@@ -98,6 +210,136 @@ public abstract class Serializer extends MoleculerComponent {
 		return new CheckedTree(reader.parse(source));
 	}
 
+	// --- DESERIALIZE INCOMING PACKET ---
+
+	/**
+	 * Deserializes an incoming packet. If the serializer supports it and the
+	 * packet is large enough, only the envelope fields are decoded, and the
+	 * "params", "data" and "meta" structures are parsed on first access.
+	 * 
+	 * @param source
+	 *            serialized packet
+	 * 
+	 * @return packet (maybe lazily decoded)
+	 * 
+	 * @throws Exception
+	 *             any parsing error
+	 * 
+	 * @see LazyPacketMap
+	 */
+	public Tree readPacket(byte[] source) throws Exception {
+		if (lazyDecodingThreshold > 0 && source.length >= lazyDecodingThreshold) {
+			int[] ranges;
+			try {
+				ranges = findLazyValues(source);
+			} catch (RuntimeException malformed) {
+
+				// Let the parser report the error
+				ranges = null;
+			}
+			if (ranges != null) {
+				Tree packet = readEnvelope(source, ranges);
+				if (packet != null) {
+					return packet;
+				}
+			}
+		}
+		return read(source);
+	}
+
+	/**
+	 * Finds the top-level "params", "data" and "meta" structures (objects or
+	 * arrays) in a serialized packet, without parsing them.
+	 * 
+	 * @param source
+	 *            serialized packet
+	 * 
+	 * @return array of {key index, start, end} triplets in ascending order, or
+	 *         null if the format is not supported or there is nothing to skip
+	 */
+	protected int[] findLazyValues(byte[] source) {
+		return null;
+	}
+
+	/**
+	 * Returns the serialized form of the "null" value (used as placeholder of
+	 * the skipped structures).
+	 * 
+	 * @return serialized null value, or null if the format does not support
+	 *         lazy decoding
+	 */
+	protected byte[] nullValue() {
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Tree readEnvelope(byte[] source, int[] ranges) throws Exception {
+		byte[] nil = nullValue();
+		if (nil == null) {
+
+			// Lazy decoding is not supported
+			return null;
+		}
+
+		// Replace the skipped structures with null values
+		int length = source.length;
+		for (int i = 0; i < ranges.length; i += 3) {
+			length -= ranges[i + 2] - ranges[i + 1] - nil.length;
+		}
+		byte[] envelope = new byte[length];
+		int src = 0;
+		int dst = 0;
+		for (int i = 0; i < ranges.length; i += 3) {
+			int len = ranges[i + 1] - src;
+			System.arraycopy(source, src, envelope, dst, len);
+			dst += len;
+			System.arraycopy(nil, 0, envelope, dst, nil.length);
+			dst += nil.length;
+			src = ranges[i + 2];
+		}
+		System.arraycopy(source, src, envelope, dst, source.length - src);
+
+		// Parse envelope
+		Object root = reader.parse(envelope);
+		if (!(root instanceof Map)) {
+			return null;
+		}
+		LazyPacketMap map = new LazyPacketMap((Map<String, Object>) root);
+		for (int i = 0; i < ranges.length; i += 3) {
+			map.putLazy(LAZY_KEYS[ranges[i]], this, source, ranges[i + 1], ranges[i + 2]);
+		}
+		return new CheckedTree(map);
+	}
+
+	protected static int lazyKeyIndex(byte[] source, int start, int length) {
+		for (int i = 0; i < LAZY_KEYS.length; i++) {
+			String key = LAZY_KEYS[i];
+			if (key.length() != length) {
+				continue;
+			}
+			int j = 0;
+			while (j < length && source[start + j] == key.charAt(j)) {
+				j++;
+			}
+			if (j == length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	protected static int[] addRange(int[] ranges, int count, int key, int start, int end) {
+		int[] array = ranges == null ? new int[LAZY_KEYS.length * 3] : ranges;
+		int i = count * 3;
+		if (i + 3 > array.length) {
+			array = Arrays.copyOf(array, array.length * 2);
+		}
+		array[i] = key;
+		array[i + 1] = start;
+		array[i + 2] = end;
+		return array;
+	}
+
 	// --- GET FORMAT NAME ---
 
 	public String getFormat() {
@@ -114,4 +356,14 @@ public abstract class Serializer extends MoleculerComponent {
 		this.debug = debug;
 	}
 
+	// --- LAZY DECODING ---
+
+	public int getLazyDecodingThreshold() {
+		return lazyDecodingThreshold;
+	}
+
+	public void setLazyDecodingThreshold(int lazyDecodingThreshold) {
+		this.lazyDecodingThreshold = lazyDecodingThreshold;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,276 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.datatree.Promise;
+import io.datatree.Tree;
+import services.moleculer.context.CallOptions;
+import services.moleculer.context.Context;
+import services.moleculer.error.MoleculerError;
+import services.moleculer.eventbus.Eventbus;
+import services.moleculer.uid.UidGenerator;
+import services.moleculer.util.CheckedTree;
+
+/**
+ * Collects the calls of a {@link Batch} Action endpoint (on the caller side),
+ * and invokes the endpoint once with the list of the parameters. The list
+ * response is split back into the Promises of the individual calls. Calls
+ * with streams or meta, already batched calls (with list parameters), and
+ * requests received from remote nodes (which are batched on the caller's node)
+ * are not batched. Calls made inside a remotely invoked Action are batched. The merged call inherits the tracing IDs (parentID, requestID) of
+ * the first collected call.
+ */
+public class ActionBatcher implements Action {
+
+	// --- PROPERTIES ---
+
+	protected final String name;
+	protected final String nodeID;
+	protected final int maxSize;
+	protected final long maxDelay;
+
+	// --- WRAPPED ACTION (LOCAL OR REMOTE INVOCATION) ---
+
+	protected final Action action;
+
+	// --- COMPONENTS ---
+
+	protected final ServiceInvoker serviceInvoker;
+	protected final Eventbus eventbus;
+	protected final UidGenerator uidGenerator;
+	protected final ScheduledExecutorService scheduler;
+
+	// --- COLLECTED CALLS ---
+
+	protected ArrayList<PendingCall> pending;
+
+	// --- CONSTRUCTOR ---
+
+	public ActionBatcher(String name, String nodeID, Tree config, Action action, ServiceInvoker serviceInvoker,
+			Eventbus eventbus, UidGenerator uidGenerator, ScheduledExecutorService scheduler) {
+		this.name = name;
+		this.nodeID = nodeID;
+		this.maxSize = Math.max(1, config.get("maxSize", 100));
+		this.maxDelay = Math.max(0, config.get("maxDelay", 2L));
+		this.action = action;
+		this.serviceInvoker = serviceInvoker;
+		this.eventbus = eventbus;
+		this.uidGenerator = uidGenerator;
+		this.scheduler = scheduler;
+	}
+
+	// --- COLLECT CALL ---
+
+	@Override
+	public Object handler(Context ctx) throws Exception {
+		if (ctx.stream != null || ctx.remote || (ctx.params != null
+				&& (ctx.params.isEnumeration() || ctx.params.getMeta(false) != null))) {
+
+			// Already batched (or received from a remote node, or has meta or
+			// stream)
+			return action.handler(ctx);
+		}
+		Promise promise = new Promise();
+		ArrayList<PendingCall> batch = null;
+		boolean schedule = false;
+		synchronized (this) {
+			if (pending == null) {
+				pending = new ArrayList<>(Math.min(maxSize, 64));
+				schedule = true;
+			}
+			pending.add(new PendingCall(ctx, promise));
+			if (pending.size() >= maxSize) {
+				batch = pending;
+				pending = null;
+				schedule = false;
+			}
+		}
+		if (batch != null) {
+			invoke(batch);
+		} else if (schedule) {
+			scheduler.schedule(this::flush, maxDelay, TimeUnit.MILLISECONDS);
+		}
+		return promise;
+	}
+
+	protected void flush() {
+		ArrayList<PendingCall> batch;
+		synchronized (this) {
+			batch = pending;
+			pending = null;
+		}
+		if (batch != null) {
+			invoke(batch);
+		}
+	}
+
+	// --- INVOKE ACTION ---
+
+	protected void invoke(ArrayList<PendingCall> batch) {
+
+		// Only one call
+		if (batch.size() == 1) {
+			PendingCall call = batch.get(0);
+			try {
+				Promise.resolve(action.handler(call.ctx)).then(rsp -> {
+					call.promise.complete(rsp);
+				}).catchError(err -> {
+					call.promise.complete(err);
+				});
+			} catch (Throwable cause) {
+				call.promise.complete(cause);
+			}
+			return;
+		}
+
+		// Merge parameters and options
+		ArrayList<Object> list = new ArrayList<>(batch.size());
+		long timeout = 0;
+		int level = 1;
+		for (PendingCall call : batch) {
+			Context ctx = call.ctx;
+			list.add(ctx.params == null ? null : ctx.params.asObject());
+			if (ctx.opts == null || ctx.opts.timeout < 1) {
+				timeout = -1;
+			} else if (timeout > -1) {
+				timeout = Math.max(timeout, ctx.opts.timeout);
+			}
+			level = Math.max(level, ctx.level);
+		}
+		CallOptions.Options opts = timeout > 0 ? CallOptions.timeout(timeout) : null;
+		Context first = batch.get(0).ctx;
+		Context ctx = new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(), name,
+				new CheckedTree(list), level, first.parentID, first.requestID, null, opts, nodeID);
+
+		// Split response
+		try {
+			Promise.resolve(action.handler(ctx)).then(rsp -> {
+				if (rsp == null || !rsp.isEnumeration() || rsp.size() != batch.size()) {
+					MoleculerError error = new MoleculerError(
+							"Batch Action \"" + name + "\" must return a list of " + batch.size() + " elements!",
+							null, "MoleculerError", nodeID, false, 500, "INVALID_BATCH_RESPONSE", "action", name);
+					for (PendingCall call : batch) {
+						call.promise.complete(error);
+					}
+					return;
+				}
+				int i = 0;
+				for (Tree item : rsp) {
+					batch.get(i++).promise.complete(item);
+				}
+			}).catchError(err -> {
+				for (PendingCall call : batch) {
+					call.promise.complete(err);
+				}
+			});
+		} catch (Throwable cause) {
+			for (PendingCall call : batch) {
+				call.promise.complete(cause);
+			}
+		}
+	}
+
+	// --- SINGLE CALLS ON THE RECEIVER SIDE ---
+
+	/**
+	 * Wraps a local {@link Batch} Action, so it also accepts single
+	 * (non-batched) calls. The parameters of a single call are passed to the
+	 * Action as a list with one element, and the first element of the
+	 * response is returned.
+	 * 
+	 * @param action
+	 *            local Action
+	 * @param serviceInvoker
+	 *            invoker of the Broker
+	 * @param eventbus
+	 *            event bus of the Broker
+	 * @param uidGenerator
+	 *            UID generator of the Broker
+	 * 
+	 * @return wrapped Action
+	 */
+	public static Action acceptSingleCalls(Action action, ServiceInvoker serviceInvoker, Eventbus eventbus,
+			UidGenerator uidGenerator) {
+		return ctx -> {
+			if (ctx.params != null && ctx.params.isEnumeration()) {
+				return action.handler(ctx);
+			}
+			ArrayList<Object> list = new ArrayList<>(1);
+			Tree meta = null;
+			if (ctx.params != null) {
+				list.add(ctx.params.asObject());
+				meta = ctx.params.getMeta(false);
+			}
+			Tree params = new CheckedTree(list, meta == null ? null : meta.asObject());
+			Context single = new Context(serviceInvoker, eventbus, uidGenerator, ctx.id, ctx.name, params, ctx.level,
+					ctx.parentID, ctx.requestID, ctx.stream, ctx.opts, ctx.nodeID);
+			return Promise.resolve(action.handler(single)).then(rsp -> {
+				if (rsp == null || !rsp.isEnumeration() || rsp.size() < 1) {
+					return rsp;
+				}
+				return rsp.get(0);
+			});
+		};
+	}
+
+	// --- PENDING CALL ---
+
+	protected static final class PendingCall {
+
+		protected final Context ctx;
+		protected final Promise promise;
+
+		protected PendingCall(Context ctx, Promise promise) {
+			this.ctx = ctx;
+			this.promise = promise;
+		}
+
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * Returns the number of the collected (not yet sent) calls.
+	 * 
+	 * @return number of pending calls
+	 */
+	public synchronized int getPendingCalls() {
+		return pending == null ? 0 : pending.size();
+	}
+
+}
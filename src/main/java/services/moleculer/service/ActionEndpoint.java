@@ -55,6 +55,24 @@ public abstract class ActionEndpoint extends Endpoint implements Action {
 	 */
 	protected final boolean localOnly;
 
+	/**
+	 * Latency percentile that triggers a hedged request (0 = disabled).
+	 */
+	protected final int hedgePercentile;
+
+	/**
+	 * Minimum delay of the hedged request in MILLISECONDS.
+	 */
+	protected final long hedgeMinDelay;
+
+	// --- STATE OF THE CIRCUIT BREAKER ---
+
+	/**
+	 * Per-endpoint state of the circuit breaker (cached here to avoid map
+	 * lookups on every call).
+	 */
+	protected volatile Object breakerState;
+
 	// --- ACTION WITH MIDDLEWARES ---
 
 	protected Action current;
@@ -73,6 +91,16 @@ public abstract class ActionEndpoint extends Endpoint implements Action {
 		
 		// Can be called only locally (from local services)
 		this.localOnly = "protected".equals(config.get("visibility", "published"));
+
+		// Hedged (speculative) requests
+		Tree hedge = config.get("hedge");
+		if (hedge != null && hedge.isMap()) {
+			this.hedgePercentile = hedge.get("percentile", 95);
+			this.hedgeMinDelay = hedge.get("minDelay", 5L);
+		} else {
+			this.hedgePercentile = 0;
+			this.hedgeMinDelay = 0;
+		}
 		
 		// Generate hashcode
 		this.hashCode = 31 * nodeID.hashCode() + name.hashCode();
@@ -138,4 +166,22 @@ public abstract class ActionEndpoint extends Endpoint implements Action {
 		return localOnly;
 	}
 
+	public int getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	public long getHedgeMinDelay() {
+		return hedgeMinDelay;
+	}
+
+	// --- BREAKER STATE ---
+
+	public Object getBreakerState() {
+		return breakerState;
+	}
+
+	public void setBreakerState(Object breakerState) {
+		this.breakerState = breakerState;
+	}
+
 }
\ No newline at end of file
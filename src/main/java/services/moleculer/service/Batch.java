@@ -0,0 +1,75 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The "Batch" annotation marks an Action that can process multiple requests
+ * at once (eg. loading many records by ID with one database query). The
+ * Action receives a list of parameters, and must return a list of responses
+ * in the same order. Callers use the Action as usual; the calls of the same
+ * Action (on the same node) are collected by the caller for a short time,
+ * and sent as one request. Usage:<br>
+ * 
+ * <pre>
+ * &#64;Batch(maxSize = 100, maxDelay = 2)
+ * public Action get = ctx -&gt; {
+ *   Tree rsp = new Tree().putList("users");
+ *   for (Tree params : ctx.params) {
+ *     rsp.add(...);
+ *   }
+ *   return rsp;
+ * };
+ * </pre>
+ * 
+ * Single (non-batched) calls are also accepted, they are passed to the Action
+ * as a list with one element.
+ * 
+ * @see ActionBatcher
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD })
+public @interface Batch {
+
+	/**
+	 * Max number of calls in one batch.
+	 *
+	 * @return max size of the batch
+	 */
+	int maxSize() default 100;
+
+	/**
+	 * Max time to wait for more calls, in milliseconds.
+	 *
+	 * @return max delay in milliseconds
+	 */
+	long maxDelay() default 2;
+
+}
@@ -25,8 +25,17 @@
  */
 package services.moleculer.service;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 import io.datatree.Promise;
@@ -38,10 +47,14 @@ import services.moleculer.error.MoleculerError;
 import services.moleculer.eventbus.Eventbus;
 import services.moleculer.metrics.MetricConstants;
 import services.moleculer.metrics.Metrics;
+import services.moleculer.transporter.Transporter;
 import services.moleculer.uid.UidGenerator;
+import services.moleculer.util.SampledErrorLogger;
 
 /**
- * Default service invoker with retry logic.
+ * Default service invoker with retry logic and hedged (speculative) requests.
+ * 
+ * @see Hedge
  */
 @Name("Default Service Invoker")
 public class DefaultServiceInvoker extends ServiceInvoker implements MetricConstants {
@@ -53,17 +66,54 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 	 */
 	protected boolean writeErrorsToLog = true;
 
+	/**
+	 * Rate-limited error logger (repeated errors are written to the log once
+	 * per "errorLogInterval" milliseconds)
+	 */
+	protected final SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 10000);
+
 	/**
 	 * Max call level (for nested calls)
 	 */
 	protected int maxCallLevel = 100;
 
+	/**
+	 * Max percent of extra load generated by hedged requests (0 = disable
+	 * hedging)
+	 */
+	protected int hedgeBudget = 10;
+
+	/**
+	 * Max number of hedged requests that can be sent in a burst
+	 */
+	protected int hedgeBurst = 10;
+
+	/**
+	 * Invoke local Actions (without timeout, retries, hedging and streams)
+	 * directly, with minimal Promise wrapping
+	 */
+	protected boolean localFastPath = true;
+
 	// --- COMPONENTS ---
 
 	protected ServiceRegistry serviceRegistry;
 	protected Eventbus eventbus;
 	protected UidGenerator uidGenerator;
+	protected ScheduledExecutorService scheduler;
 	protected Metrics metrics;
+	protected Transporter transporter;
+
+	// --- VARIABLES OF HEDGING ---
+
+	/**
+	 * Recent response times per Action
+	 */
+	protected final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>(256);
+
+	/**
+	 * Credits of hedged requests (100 credits = one hedged request)
+	 */
+	protected final AtomicLong hedgeCredits = new AtomicLong();
 
 	// --- RETRY LOGIC (BY ERROR) ---
 
@@ -94,11 +144,36 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 		this.serviceRegistry = cfg.getServiceRegistry();
 		this.eventbus = cfg.getEventbus();
 		this.uidGenerator = cfg.getUidGenerator();
+		this.scheduler = cfg.getScheduler();
+		this.transporter = cfg.getTransporter();
 		if (cfg.isMetricsEnabled()) {
 			metrics = cfg.getMetrics();
 		}
 	}
 
+	// --- CALL MULTIPLE ACTIONS ---
+
+	/**
+	 * Calls multiple actions at once. Remote requests are collected during the
+	 * invocation, then sent in one packet per target node.
+	 */
+	@Override
+	public List<Promise> mcall(List<Context> contexts) {
+		if (transporter == null || contexts.size() < 2) {
+			return super.mcall(contexts);
+		}
+		RequestBatch batch = new RequestBatch(contexts);
+		List<Promise> promises;
+		batch.begin();
+		try {
+			promises = super.mcall(contexts);
+		} finally {
+			batch.end();
+			batch.flush(transporter);
+		}
+		return promises;
+	}
+
 	// --- CALL SERVICE ---
 
 	@Override
@@ -125,10 +200,15 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 	protected Promise call(Context ctx, String targetID, int remaining) {
 		try {
 			Action action = serviceRegistry.getAction(ctx.name, targetID);
+			if (localFastPath && remaining < 1 && ctx.opts == null && ctx.stream == null
+					&& action instanceof LocalActionEndpoint
+					&& (hedgeBudget < 1 || ((LocalActionEndpoint) action).hedgePercentile < 1)) {
+				return invokeLocal(ctx, action);
+			}
 			if (remaining < 1 && !writeErrorsToLog) {
-				return Promise.resolve(action.handler(ctx));
+				return invoke(ctx, action, targetID);
 			}
-			return Promise.resolve(action.handler(ctx)).catchError(cause -> {
+			return invoke(ctx, action, targetID).catchError(cause -> {
 				return retry(ctx, targetID, remaining, cause);
 			});
 		} catch (Throwable cause) {
@@ -136,13 +216,196 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 		}
 	}
 
+	// --- INVOKE LOCAL ACTION (FAST PATH) ---
+
+	/**
+	 * Invokes a local Action without timeout, retries, hedging and streams.
+	 * The handler is called on the caller's thread; plain (non-Promise)
+	 * responses are wrapped into only one resolved Promise, and no error
+	 * handler is attached to the Promise if the response is already resolved.
+	 * 
+	 * @param ctx
+	 *            invocation context
+	 * @param action
+	 *            local Action endpoint
+	 * 
+	 * @return response Promise
+	 */
+	protected Promise invokeLocal(Context ctx, Action action) {
+		try {
+			Object rsp = action.handler(ctx);
+			if (!(rsp instanceof Promise)) {
+				if (!(rsp instanceof CompletionStage)) {
+					return Promise.resolve(rsp);
+				}
+				rsp = Promise.resolve(rsp);
+			}
+			Promise promise = (Promise) rsp;
+			if (!writeErrorsToLog || promise.isResolved()) {
+				return promise;
+			}
+			return promise.catchError(cause -> {
+				return retry(ctx, null, 0, cause);
+			});
+		} catch (Throwable cause) {
+			return retry(ctx, null, 0, cause);
+		}
+	}
+
+	// --- INVOKE ACTION (WITH HEDGING) ---
+
+	/**
+	 * Invokes the selected Action endpoint. If hedging is enabled for the
+	 * Action, and the call has not answered within the configured percentile
+	 * of the Action's recent response times, sends a duplicate request to
+	 * another endpoint. The first response wins, the other one is ignored.
+	 * 
+	 * @param ctx
+	 *            invocation context
+	 * @param action
+	 *            the selected Action endpoint
+	 * @param targetID
+	 *            target nodeID (hedging is disabled if it is not null)
+	 * 
+	 * @return response Promise
+	 * 
+	 * @throws Exception
+	 *             any error from the handler
+	 */
+	protected Promise invoke(Context ctx, Action action, String targetID) throws Exception {
+
+		// Is hedging enabled?
+		int percentile = 0;
+		long minDelay = 0;
+		if (hedgeBudget > 0 && targetID == null && ctx.stream == null && action instanceof ActionEndpoint) {
+			ActionEndpoint endpoint = (ActionEndpoint) action;
+			if (ctx.opts == null || ctx.opts.hedge == 0) {
+				percentile = endpoint.hedgePercentile;
+			} else {
+				percentile = ctx.opts.hedge;
+			}
+			minDelay = endpoint.hedgeMinDelay;
+		}
+		if (percentile < 1) {
+			return Promise.resolve(action.handler(ctx));
+		}
+
+		// Collect hedging credits
+		long maxCredits = 100L * hedgeBurst;
+		hedgeCredits.getAndUpdate(credits -> Math.min(maxCredits, credits + hedgeBudget));
+
+		// Invoke the first endpoint
+		LatencyWindow window = latencies.computeIfAbsent(ctx.name, name -> new LatencyWindow());
+		long start = System.currentTimeMillis();
+		Promise first = Promise.resolve(action.handler(ctx)).then(rsp -> {
+			window.add(System.currentTimeMillis() - start);
+		});
+		if (first.isDone()) {
+			return first;
+		}
+		long delay = window.getPercentile(percentile);
+		if (delay < 0) {
+
+			// Not enough samples
+			return first;
+		}
+		delay = Math.max(delay, minDelay);
+
+		// Number of pending requests
+		AtomicInteger pending = new AtomicInteger(1);
+		Promise winner = new Promise();
+
+		// Schedule hedged request
+		String nodeID = ((ActionEndpoint) action).getNodeID();
+		ScheduledFuture<?> timer = scheduler.schedule(() -> {
+			if (winner.isDone() || !acquireHedgeCredit()) {
+				return;
+			}
+			try {
+
+				// Choose an endpoint on another node
+				List<ActionEndpoint> endpoints = serviceRegistry.getActionEndpoints(ctx.name);
+				ActionEndpoint other = null;
+				int size = endpoints.size();
+				if (size > 1) {
+					int offset = ThreadLocalRandom.current().nextInt(size);
+					for (int i = 0; i < size; i++) {
+						ActionEndpoint test = endpoints.get((offset + i) % size);
+						if (!nodeID.equals(test.getNodeID())) {
+							other = test;
+							break;
+						}
+					}
+				}
+				if (other == null) {
+
+					// No other endpoint is available
+					hedgeCredits.addAndGet(100);
+					return;
+				}
+
+				// Metrics
+				if (metrics != null) {
+					metrics.increment(MOLECULER_REQUEST_HEDGE_TOTAL, MOLECULER_REQUEST_HEDGE_TOTAL_DESC, "action",
+							ctx.name);
+				}
+
+				// Create new Context (with new id)
+				Context hedged = new Context(this, eventbus, uidGenerator, uidGenerator.nextUID(), ctx.name,
+						ctx.params, ctx.level, ctx.parentID, ctx.requestID, null, ctx.opts, ctx.nodeID);
+				pending.incrementAndGet();
+				Promise response;
+				try {
+					response = Promise.resolve(other.handler(hedged));
+				} catch (Throwable cause) {
+					response = Promise.reject(cause);
+				}
+				response.then(rsp -> {
+					if (winner.complete(rsp) && metrics != null) {
+						metrics.increment(MOLECULER_REQUEST_HEDGE_WINS_TOTAL,
+								MOLECULER_REQUEST_HEDGE_WINS_TOTAL_DESC, "action", ctx.name);
+					}
+				}).catchError(cause -> {
+					if (pending.decrementAndGet() == 0) {
+						winner.complete(cause);
+					}
+				});
+			} catch (Throwable cause) {
+				logger.debug("Unable to send hedged request!", cause);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+
+		// Wait for the first response
+		first.then(rsp -> {
+			timer.cancel(false);
+			winner.complete(rsp);
+		}).catchError(cause -> {
+			timer.cancel(false);
+			if (pending.decrementAndGet() == 0) {
+				winner.complete(cause);
+			}
+		});
+		return winner;
+	}
+
+	protected boolean acquireHedgeCredit() {
+		long credits;
+		do {
+			credits = hedgeCredits.get();
+			if (credits < 100) {
+				return false;
+			}
+		} while (!hedgeCredits.compareAndSet(credits, credits - 100));
+		return true;
+	}
+
 	// --- RETRY CALL ---
 
 	protected Promise retry(Context ctx, String targetID, int remaining, Throwable cause) {
 
 		// Write error to log file
 		if (writeErrorsToLog) {
-			logger.error("Unexpected error occurred while invoking \"" + ctx.name + "\" action!", cause);
+			errorLogger.error("Unexpected error occurred while invoking \"" + ctx.name + "\" action!", cause);
 		}
 
 		// Check error type and error counter
@@ -153,7 +416,7 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 		// Call again...
 		int newRemaining = remaining - 1;
 		if (writeErrorsToLog) {
-			logger.warn("Retrying request (" + newRemaining + " attempts left)...");
+			errorLogger.warn("retry:" + ctx.name, "Retrying request (" + newRemaining + " attempts left)...");
 		}
 
 		// Metrics
@@ -168,6 +431,14 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 
 	// --- GETTERS / SETTERS ---
 
+	public boolean isLocalFastPath() {
+		return localFastPath;
+	}
+
+	public void setLocalFastPath(boolean localFastPath) {
+		this.localFastPath = localFastPath;
+	}
+
 	public boolean isWriteErrorsToLog() {
 		return writeErrorsToLog;
 	}
@@ -176,6 +447,14 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 		this.writeErrorsToLog = writeErrorsToLog;
 	}
 
+	public long getErrorLogInterval() {
+		return errorLogger.getInterval();
+	}
+
+	public void setErrorLogInterval(long errorLogInterval) {
+		errorLogger.setInterval(errorLogInterval);
+	}
+
 	public Predicate<Throwable> getRetryLogic() {
 		return retryLogic;
 	}
@@ -192,4 +471,20 @@ public class DefaultServiceInvoker extends ServiceInvoker implements MetricConst
 		this.maxCallLevel = maxCallLevel;
 	}
 
+	public int getHedgeBudget() {
+		return hedgeBudget;
+	}
+
+	public void setHedgeBudget(int hedgeBudget) {
+		this.hedgeBudget = hedgeBudget;
+	}
+
+	public int getHedgeBurst() {
+		return hedgeBurst;
+	}
+
+	public void setHedgeBurst(int hedgeBurst) {
+		this.hedgeBurst = hedgeBurst;
+	}
+
 }
\ No newline at end of file
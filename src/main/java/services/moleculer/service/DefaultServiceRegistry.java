@@ -34,10 +34,12 @@ import static services.moleculer.util.CommonUtils.mergeMeta;
 import static services.moleculer.util.CommonUtils.nameOf;
 import static services.moleculer.util.CommonUtils.throwableToTree;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -58,10 +60,10 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-import java.util.concurrent.locks.StampedLock;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
@@ -74,6 +76,7 @@ import services.moleculer.error.MoleculerError;
 import services.moleculer.error.MoleculerErrorUtils;
 import services.moleculer.error.ProtocolVersionMismatchError;
 import services.moleculer.error.RequestRejectedError;
+import services.moleculer.error.RequestSkippedError;
 import services.moleculer.error.RequestTimeoutError;
 import services.moleculer.error.ServiceNotAvailableError;
 import services.moleculer.error.ServiceNotFoundError;
@@ -82,15 +85,18 @@ import services.moleculer.metrics.MetricConstants;
 import services.moleculer.metrics.MetricCounter;
 import services.moleculer.metrics.MetricGauge;
 import services.moleculer.metrics.Metrics;
+import services.moleculer.serializer.SerializedValue;
 import services.moleculer.strategy.Strategy;
 import services.moleculer.strategy.StrategyFactory;
+import services.moleculer.stream.FileRegion;
+import services.moleculer.stream.FileRegionListener;
 import services.moleculer.stream.IncomingStream;
-import services.moleculer.stream.PacketListener;
 import services.moleculer.stream.PacketStream;
 import services.moleculer.transporter.Transporter;
 import services.moleculer.uid.UidGenerator;
 import services.moleculer.util.CheckedTree;
 import services.moleculer.util.FastBuildTree;
+import services.moleculer.util.SampledErrorLogger;
 
 /**
  * Default implementation of the Service Registry.
@@ -106,9 +112,22 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 	protected final LinkedHashMap<String, Service> services = new LinkedHashMap<>(64);
 
-	// --- REGISTERED STRATEGIES PER ACTIONS ---
+	// --- EXECUTORS OF ISOLATED SERVICES (BY POOL NAME) ---
 
-	protected final HashMap<String, Strategy<ActionEndpoint>> strategies = new HashMap<>(256);
+	protected final HashMap<String, IsolatedExecutor> isolatedExecutors = new HashMap<>();
+
+	// --- REGISTERED ENDPOINTS PER ACTIONS ---
+
+	/**
+	 * Local and remote endpoints per action names (used only by the writer
+	 * threads; the readers use the "routingTable")
+	 */
+	protected final HashMap<String, LinkedList<ActionEndpoint>> endpoints = new HashMap<>(256);
+
+	/**
+	 * Names of the actions changed since the last published routing table
+	 */
+	protected final HashSet<String> changedActions = new HashSet<>();
 
 	// --- REGISTERED LOCAL AND REMOTE SERVICE NAMES ---
 
@@ -153,15 +172,43 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 	 */
 	protected boolean writeErrorsToLog = true;
 
+	/**
+	 * Rate-limited error logger (repeated errors are written to the log once
+	 * per "errorLogInterval" milliseconds)
+	 */
+	protected final SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 10000);
+
 	/**
 	 * Stream inactivity/read timeout in MILLISECONDS (0 = no timeout). It may
 	 * be useful if you want to remove the wrong packages from the memory.
 	 */
 	protected long streamTimeout;
 
-	// --- READ/WRITE LOCK ---
+	/**
+	 * Max number of out-of-order stream chunks per stream. The stream fails
+	 * when more chunks would have to be buffered.
+	 */
+	protected int streamReorderWindow = IncomingStream.DEFAULT_REORDER_WINDOW;
+
+	/**
+	 * Maximum expected clock difference between nodes, in MILLISECONDS. When
+	 * it is set (0 or greater), the network transit time of incoming requests
+	 * (calculated from the "sentAt" field, minus this tolerance) is also
+	 * deducted from the caller's timeout. The default value (-1) means that
+	 * only the local queuing time is deducted, because the clocks of the
+	 * nodes may not be synchronized.
+	 */
+	protected long maxClockSkew = -1;
+
+	/**
+	 * Collect the calls of the Actions annotated with {@link Batch}, and send
+	 * them in batches (see {@link ActionBatcher})
+	 */
+	protected boolean actionBatching = true;
+
+	// --- WRITER LOCK ---
 
-	protected final StampedLock lock = new StampedLock();
+	protected final ReentrantLock lock = new ReentrantLock();
 
 	// --- LOCAL NODE ID ---
 
@@ -210,9 +257,13 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 	 */
 	protected AtomicLong timestamp = new AtomicLong();
 
-	// --- CACHED SERVICE DESCRIPTOR ---
+	// --- ROUTING TABLE ---
 
-	protected volatile FastBuildTree cachedDescriptor;
+	/**
+	 * Immutable snapshot of the action routes and "names" (read without
+	 * locking, replaced after each topology change)
+	 */
+	protected volatile RoutingTable routingTable = RoutingTable.EMPTY;
 
 	// --- METRICS ---
 	
@@ -313,12 +364,21 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		// Stop registered services
 		stopAllLocalServices();
 
+		// Stop isolated executors
+		synchronized (isolatedExecutors) {
+			for (IsolatedExecutor isolatedExecutor : isolatedExecutors.values()) {
+				isolatedExecutor.shutdown();
+			}
+			isolatedExecutors.clear();
+		}
+
 		// Clear registries
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
 
-			// Delete strategies (and registered actions)
-			strategies.clear();
+			// Delete registered actions
+			changedActions.addAll(endpoints.keySet());
+			endpoints.clear();
 
 			// Delete all service names
 			names.clear();
@@ -330,7 +390,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			clearDescriptorCache();
 
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 	}
 
@@ -519,6 +579,11 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 	@Override
 	public void receiveRequest(Tree message) {
+		receiveRequest(message, 0);
+	}
+
+	@Override
+	public void receiveRequest(Tree message, long receivedAt) {
 
 		// Get request's unique ID
 		String id = message.get("id", (String) null);
@@ -539,12 +604,19 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			String ver = message.get("ver", "unknown");
 			if (!protocolVersion.equals(ver)) {
 				logger.warn("Invalid protocol version (" + ver + ")!");
-				transporter.publish(PACKET_RESPONSE, sender, throwableToTree(id, nodeID, protocolVersion,
-						new ProtocolVersionMismatchError(nodeID, protocolVersion, ver)));
+				transporter.publish(PACKET_RESPONSE, sender,
+						errorResponse(id, new ProtocolVersionMismatchError(nodeID, protocolVersion, ver)));
 				return;
 			}
 		}
 
+		// Batched requests (sent by "mcall")
+		Tree batch = message.get("batch");
+		if (batch != null) {
+			receiveBatchRequest(sender, batch, receivedAt);
+			return;
+		}
+
 		// Incoming stream handling
 		IncomingStream requestStream;
 		requestStreamReadLock.lock();
@@ -564,7 +636,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 				// Send error
 				try {
-					transporter.publish(PACKET_RESPONSE, sender, throwableToTree(id, nodeID, protocolVersion, error));
+					transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, error));
 				} catch (Throwable ignored) {
 					logger.debug("Unable to send response!", ignored);
 				}
@@ -588,7 +660,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			try {
 				requestStream = requestStreams.get(id);
 				if (requestStream == null) {
-					requestStream = new IncomingStream(nodeID, scheduler, streamTimeout);
+					requestStream = new IncomingStream(nodeID, scheduler, streamTimeout, streamReorderWindow);
 					requestStreams.put(id, requestStream);
 				}
 			} finally {
@@ -614,8 +686,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		if (action == null || action.isEmpty()) {
 			if (requestStream == null) {
 				logger.warn("Missing \"action\" property!\r\n" + message);
-				transporter.publish(PACKET_RESPONSE, sender,
-						throwableToTree(id, nodeID, protocolVersion, new InvalidPacketDataError(nodeID)));
+				transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, new InvalidPacketDataError(nodeID)));
 			}
 			return;
 		}
@@ -625,28 +696,27 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			return;
 		}
 
-		// Get strategy (action endpoint array) by action name
-		Strategy<ActionEndpoint> strategy = null;
-		long stamp = lock.tryOptimisticRead();
-		if (stamp != 0) {
-			try {
-				strategy = strategies.get(action);
-			} catch (Exception modified) {
-				stamp = 0;
-			}
-		}
-		if (!lock.validate(stamp) || stamp == 0) {
-			stamp = lock.readLock();
-			try {
-				strategy = strategies.get(action);
-			} finally {
-				lock.unlockRead(stamp);
+		// Drop request if the caller's deadline has already passed (streamed
+		// requests are already being consumed, so they are not dropped)
+		int timeout = message.get("timeout", 0);
+		long elapsed = getElapsedTime(action, message, receivedAt);
+		if (timeout > 0 && elapsed >= timeout && requestStream == null) {
+			if (metrics != null) {
+				metrics.increment(MOLECULER_REQUEST_EXPIRED_TOTAL, MOLECULER_REQUEST_EXPIRED_TOTAL_DESC, "action",
+						action);
 			}
+			errorLogger.warn("expired:" + action,
+					"Request \"" + action + "\" expired before execution (timeout: " + timeout + " ms, elapsed: "
+							+ elapsed + " ms)!");
+			transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, new RequestSkippedError(nodeID, action)));
+			return;
 		}
+
+		// Get strategy (action endpoint array) by action name
+		Strategy<ActionEndpoint> strategy = routingTable.get(action);
 		if (strategy == null) {
 			logger.warn("Invalid action name (" + action + ")!");
-			transporter.publish(PACKET_RESPONSE, sender,
-					throwableToTree(id, nodeID, protocolVersion, new ServiceNotFoundError(nodeID, action)));
+			transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, new ServiceNotFoundError(nodeID, action)));
 			return;
 		}
 
@@ -661,11 +731,10 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			}
 		}
 
-		// Get timeout
-		int timeout = message.get("timeout", 0);
+		// Get remaining timeout (nested calls inherit it)
 		CallOptions.Options opts;
 		if (timeout > 0) {
-			opts = CallOptions.timeout(timeout);
+			opts = CallOptions.timeout(Math.max(1, timeout - elapsed));
 		} else {
 			opts = null;
 		}
@@ -677,15 +746,14 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 		// Create context
 		PacketStream stream = requestStream == null ? null : requestStream.getPacketStream();
-		Context ctx = new Context(serviceInvoker, eventbus, uidGenerator, id, name, params, level, parentID, requestID,
-				stream, opts, sender);
+		Context ctx = new Context(serviceInvoker, eventbus, uidGenerator, id, action, params, level, parentID, requestID,
+				stream, opts, sender, true);
 
 		// Get local action endpoint (with cache handling)
 		ActionEndpoint endpoint = strategy.getEndpoint(ctx, nodeID);
 		if (endpoint == null || endpoint.localOnly) {
 			logger.warn("Not a local action (" + action + ")!");
-			transporter.publish(PACKET_RESPONSE, sender,
-					throwableToTree(id, nodeID, protocolVersion, new ServiceNotAvailableError(nodeID, action)));
+			transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, new ServiceNotAvailableError(nodeID, action)));
 			return;
 		}
 
@@ -707,6 +775,15 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 						msg.putUnsafe("stream", true);
 						msg.putUnsafe("seq", 0);
 						responseStream = (PacketStream) d;
+					} else if (d != null && d instanceof SerializedValue) {
+
+						// Pre-serialized (eg. cached) response
+						SerializedValue value = (SerializedValue) d;
+						if (transporter.getSerializer().canEmbed(value)) {
+							msg.putUnsafe("data", value);
+						} else {
+							msg.putUnsafe("data", value.asTree());
+						}
 					} else {
 						msg.putUnsafe("data", d);
 					}
@@ -732,7 +809,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 				// Define sender for response stream
 				if (responseStream != null) {
-					responseStream.onPacket(new PacketListener() {
+					responseStream.onPacket(new FileRegionListener() {
 
 						// Create sequence counter
 						private final AtomicLong sequence = new AtomicLong();
@@ -754,32 +831,117 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 							}
 						}
 
+						@Override
+						public final boolean onFileRegion(FileRegion region) {
+							if (transporter.sendDataRegion(PACKET_RESPONSE, sender, ctx, region,
+									sequence.get() + 1)) {
+								sequence.incrementAndGet();
+								return true;
+							}
+							return false;
+						}
+
 					});
 				}
 
 			}).catchError(error -> {
 
 				// Send error
-				transporter.publish(PACKET_RESPONSE, sender, throwableToTree(id, nodeID, protocolVersion, error));
+				transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, error));
 
 				// Write error to log file
 				if (writeErrorsToLog) {
-					logger.error("Unexpected error occurred while invoking \"" + action + "\" action!", error);
+					errorLogger.error("Unexpected error occurred while invoking \"" + action + "\" action!", error);
 				}
 
 			});
 		} catch (Throwable error) {
 
 			// Send error
-			transporter.publish(PACKET_RESPONSE, sender, throwableToTree(id, nodeID, protocolVersion, error));
+			transporter.publish(PACKET_RESPONSE, sender, errorResponse(id, error));
 
 			// Write error to log file
 			if (writeErrorsToLog) {
-				logger.error("Unexpected error occurred while invoking \"" + action + "\" action!", error);
+				errorLogger.error("Unexpected error occurred while invoking \"" + action + "\" action!", error);
+			}
+
+		}
+
+	}
+
+	// --- RECEIVE BATCHED REQUESTS ---
+
+	/**
+	 * Processes the items of a batched request packet. The items are invoked
+	 * in parallel, and the responses are sent back one by one (as soon as they
+	 * are available), so a slow action does not delay the others.
+	 * 
+	 * @param sender
+	 *            sender's nodeID
+	 * @param batch
+	 *            list of requests
+	 * @param receivedAt
+	 *            arrival time of the packet (0 = unknown)
+	 */
+	protected void receiveBatchRequest(String sender, Tree batch, long receivedAt) {
+		Tree first = null;
+		for (Tree item : batch) {
+			if (item.isMap()) {
+				item.put("ver", protocolVersion);
+				item.put("sender", sender);
+				if (first == null) {
+					first = item;
+				} else {
+					executor.execute(() -> {
+						receiveRequest(item, receivedAt);
+					});
+				}
 			}
+		}
+		if (first != null) {
+			receiveRequest(first, receivedAt);
+		}
+	}
+
+	// --- DEADLINE HANDLING ---
 
+	/**
+	 * Calculates how much of the caller's timeout has already been used up
+	 * before the invocation of the local action. It is the time spent in the
+	 * local queues, plus the network transit time if "maxClockSkew" is set.
+	 * 
+	 * @param action
+	 *            action name
+	 * @param message
+	 *            request packet
+	 * @param receivedAt
+	 *            arrival time of the packet (0 = unknown)
+	 * 
+	 * @return elapsed time in milliseconds
+	 */
+	protected long getElapsedTime(String action, Tree message, long receivedAt) {
+		if (receivedAt < 1) {
+			return 0;
+		}
+		long queueTime = Math.max(0, System.currentTimeMillis() - receivedAt);
+		if (metrics != null) {
+			metrics.record(MOLECULER_REQUEST_QUEUE_TIME, MOLECULER_REQUEST_QUEUE_TIME_DESC, queueTime,
+					TimeUnit.MILLISECONDS, "action", action);
+		}
+		long transitTime = 0;
+		if (maxClockSkew >= 0) {
+			long sentAt = message.get("sentAt", 0L);
+			if (sentAt > 0) {
+				transitTime = Math.max(0, receivedAt - sentAt - maxClockSkew);
+			}
 		}
+		return queueTime + transitTime;
+	}
+
+	// --- CREATE ERROR RESPONSE ---
 
+	protected FastBuildTree errorResponse(String id, Throwable error) {
+		return throwableToTree(id, nodeID, protocolVersion, error, transporter.isSendErrorStacks());
 	}
 
 	// --- RECEIVE PING-PONG RESPONSE ---
@@ -877,7 +1039,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			try {
 				responseStream = responseStreams.get(id);
 				if (responseStream == null) {
-					responseStream = new IncomingStream(nodeID, scheduler, streamTimeout);
+					responseStream = new IncomingStream(nodeID, scheduler, streamTimeout, streamReorderWindow);
 					responseStreams.put(id, responseStream);
 				}
 			} finally {
@@ -946,7 +1108,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 				}
 
 				pending.promise.complete(moleculerError);
-				logger.error(moleculerError.getMessage(), moleculerError);
+				errorLogger.error(moleculerError.getMessage(), moleculerError);
 
 				return;
 			}
@@ -960,7 +1122,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 	@Override
 	public void use(Collection<Middleware> middlewares) {
 		LinkedList<Middleware> newMiddlewares = new LinkedList<>();
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
 
 			// Register middlewares
@@ -972,9 +1134,8 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 			// Apply new middlewares
 			if (!newMiddlewares.isEmpty()) {
-				for (Strategy<ActionEndpoint> strategy : strategies.values()) {
-					List<ActionEndpoint> endpoints = strategy.getAllEndpoints();
-					for (ActionEndpoint endpoint : endpoints) {
+				for (LinkedList<ActionEndpoint> list : endpoints.values()) {
+					for (ActionEndpoint endpoint : list) {
 						for (Middleware middleware : newMiddlewares) {
 							endpoint.use(middleware);
 						}
@@ -983,7 +1144,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 			}
 
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 
 		// Start new middlewares
@@ -1046,78 +1207,98 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 				return deployed;
 			}
 		}
-		addOnlineActions(name, service);
+		try {
+			addOnlineActions(name, service);
+		} catch (Exception cause) {
+			logger.error("Unable to register local service!", cause);
+			return Promise.reject(cause);
+		}
 		return Promise.resolve();
 	}
 
-	protected void addOnlineActions(String serviceName, Service service) {
-		Class<?> clazz = service.getClass();
+	protected void addOnlineActions(String serviceName, Service service) throws Exception {
+
+		// Compile-time generated descriptor (or null)
+		ServiceDescriptor descriptor = ServiceDescriptor.of(service.getClass());
 		LinkedHashMap<String, Field> fields = new LinkedHashMap<>(64);
-		while (clazz != null) {
-			for (Field field : clazz.getDeclaredFields()) {
-				if (Action.class.isAssignableFrom(field.getType())) {
-					field.setAccessible(true);
-					fields.putIfAbsent(field.getName(), field);
+		if (descriptor == null) {
+			Class<?> clazz = service.getClass();
+			while (clazz != null) {
+				for (Field field : clazz.getDeclaredFields()) {
+					if (Action.class.isAssignableFrom(field.getType())) {
+						field.setAccessible(true);
+						fields.putIfAbsent(field.getName(), field);
+					}
 				}
-			}
-			for (Field field : clazz.getFields()) {
-				if (Action.class.isAssignableFrom(field.getType())) {
-					field.setAccessible(true);
-					fields.putIfAbsent(field.getName(), field);
+				for (Field field : clazz.getFields()) {
+					if (Action.class.isAssignableFrom(field.getType())) {
+						field.setAccessible(true);
+						fields.putIfAbsent(field.getName(), field);
+					}
 				}
+				clazz = clazz.getSuperclass();
 			}
-			clazz = clazz.getSuperclass();
 		}
 		int actionCounter = 0;
 
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
 
+			// Service-level thread pool and hedging
+			Tree defaults = new Tree();
+			ThreadPool threadPool = service.getClass().getAnnotation(ThreadPool.class);
+			if (threadPool != null) {
+				convertAnnotations(defaults, new Annotation[] { threadPool });
+			}
+			Hedge hedge = service.getClass().getAnnotation(Hedge.class);
+			if (hedge != null) {
+				convertAnnotations(defaults, new Annotation[] { hedge });
+			}
+
 			// Initialize actions in service
-			for (Field field : fields.values()) {
-				Action action = (Action) getFieldFromProxy(service, field);
+			if (descriptor == null) {
+				for (Field field : fields.values()) {
+					Action action = (Action) getFieldFromProxy(service, field);
 
-				// Name of the action (eg. "service.action")
-				String actionName = nameOf(serviceName, field);
+					// Name of the action (eg. "service.action")
+					String actionName = nameOf(serviceName, field);
 
-				Tree actionConfig = new Tree();
-				actionConfig.put("name", actionName);
-				if (Modifier.isPrivate(field.getModifiers())) {
-					actionConfig.put("visibility", "protected");
+					Tree actionConfig = new Tree();
+					actionConfig.put("name", actionName);
+					if (Modifier.isPrivate(field.getModifiers())) {
+						actionConfig.put("visibility", "protected");
+					}
+					convertAnnotations(actionConfig, field.getAnnotations());
+					copyServiceDefaults(defaults, actionConfig);
+
+					// Register action
+					addLocalAction(serviceName, actionName, actionConfig, action);
+					actionCounter++;
 				}
-				convertAnnotations(actionConfig, field.getAnnotations());
+			} else {
+				for (ServiceDescriptor.Member member : descriptor.getActions()) {
+					Action action = (Action) member.get(service);
 
-				// Register action
-				LocalActionEndpoint endpoint = new LocalActionEndpoint(this, executor, nodeID, serviceName,
-						actionConfig, action, actionName);
-				Strategy<ActionEndpoint> actionStrategy = strategies.get(actionName);
-				if (actionStrategy == null) {
+					// Name of the action (eg. "service.action")
+					String actionName = nameOf(serviceName, member.getName());
 
-					// Create strategy
-					actionStrategy = strategyFactory.create();
-					strategies.put(actionName, actionStrategy);
-				}
-				actionStrategy.addEndpoint(endpoint);
+					Tree actionConfig = new Tree();
+					actionConfig.put("name", actionName);
+					actionConfig.copyFrom(member.getConfig());
+					copyServiceDefaults(defaults, actionConfig);
 
-				// Apply middlewares
-				for (Middleware middleware : middlewares) {
-					endpoint.use(middleware);
+					// Register action
+					addLocalAction(serviceName, actionName, actionConfig, action);
+					actionCounter++;
 				}
-
-				// Write log about this action
-				logger.info("Local action \"" + actionName + "\" registered.");
-				actionCounter++;
 			}
 			services.put(serviceName, service);
 
 			// Delete cached node descriptor
 			clearDescriptorCache();
 
-		} catch (Exception cause) {
-			logger.error("Unable to register local service!", cause);
-			return;
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 
 		// Start service
@@ -1128,11 +1309,12 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		}
 
 		// Add to "names" (listened by "waitForServices")
-		final long nameStamp = lock.writeLock();
+		lock.lock();
 		try {
 			names.add(serviceName);
+			clearDescriptorCache();
 		} finally {
-			lock.unlockWrite(nameStamp);
+			lock.unlock();
 		}
 
 		// Notify local listeners about the new LOCAL service
@@ -1160,6 +1342,85 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		logger.info(msg.toString());
 	}
 
+	/**
+	 * Copies the service-level options (eg. {@link ThreadPool} and
+	 * {@link Hedge} annotations of the Service class) into the configuration
+	 * of an Action, unless the Action has its own.
+	 * 
+	 * @param defaults
+	 *            service-level options
+	 * @param actionConfig
+	 *            configuration of the Action
+	 */
+	protected void copyServiceDefaults(Tree defaults, Tree actionConfig) {
+		for (Tree option : defaults) {
+			if (actionConfig.get(option.getName()) == null) {
+				actionConfig.putObject(option.getName(), option.clone().asObject());
+			}
+		}
+	}
+
+	protected void addLocalAction(String serviceName, String actionName, Tree actionConfig, Action action) {
+		if (actionConfig.get("batch") != null) {
+			action = ActionBatcher.acceptSingleCalls(action, serviceInvoker, eventbus, uidGenerator);
+		}
+		LocalActionEndpoint endpoint = new LocalActionEndpoint(this, executor,
+				getIsolatedExecutor(serviceName, actionConfig), nodeID, serviceName, actionConfig, action, actionName);
+		addEndpoint(actionName, endpoint);
+
+		// Collect calls of batch Actions (on the caller side)
+		installBatcher(endpoint);
+
+		// Apply middlewares
+		for (Middleware middleware : middlewares) {
+			endpoint.use(middleware);
+		}
+
+		// Write log about this action
+		logger.info("Local action \"" + actionName + "\" registered.");
+	}
+
+	/**
+	 * Returns the executor of an Action annotated with {@link ThreadPool}.
+	 * Actions with the same pool name share the same executor.
+	 * 
+	 * @param serviceName
+	 *            name of the Service
+	 * @param actionConfig
+	 *            configuration of the Action
+	 * 
+	 * @return executor of the Action (or null)
+	 */
+	protected IsolatedExecutor getIsolatedExecutor(String serviceName, Tree actionConfig) {
+		Tree config = actionConfig.get("threadPool");
+		if (config == null) {
+			return null;
+		}
+		String name = config.get("name", "");
+		if (name == null || name.isEmpty()) {
+			name = serviceName;
+		}
+		synchronized (isolatedExecutors) {
+			IsolatedExecutor isolatedExecutor = isolatedExecutors.get(name);
+			if (isolatedExecutor == null) {
+				isolatedExecutor = new IsolatedExecutor(name, config.get("threads", 4), config.get("queueSize", 1000),
+						config.get("virtual", false), metrics);
+				isolatedExecutors.put(name, isolatedExecutor);
+				logger.info("Thread pool \"" + name + "\" created (" + (isolatedExecutor.isVirtual()
+						? "virtual threads" : config.get("threads", 4) + " threads") + ").");
+			}
+			return isolatedExecutor;
+		}
+	}
+
+	protected void installBatcher(ActionEndpoint endpoint) {
+		Tree batch = endpoint.config.get("batch");
+		if (actionBatching && batch != null) {
+			endpoint.current = new ActionBatcher(endpoint.name, nodeID, batch, endpoint.current, serviceInvoker,
+					eventbus, uidGenerator, scheduler);
+		}
+	}
+
 	// --- NOTIFY OTHER SERVICES ---
 
 	protected void broadcastServicesChanged(boolean local) {
@@ -1177,37 +1438,18 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		String serviceName = config.get("name", "");
 		int actionCounter = 0;
 
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
 			if (actions != null && actions.isMap()) {
 				for (Tree actionConfig : actions) {
-					actionConfig = actionConfig.clone();
-					actionConfig.putObject("nodeID", nodeID, true);
-					String actionName = actionConfig.get("name", "");
-
-					// Register remote action
-					RemoteActionEndpoint endpoint = new RemoteActionEndpoint(this, transporter, nodeID, serviceName,
-							actionConfig, actionName);
-					Strategy<ActionEndpoint> actionStrategy = strategies.get(actionName);
-					if (actionStrategy == null) {
-						actionStrategy = strategyFactory.create();
-						strategies.put(actionName, actionStrategy);
-					}
-					actionStrategy.addEndpoint(endpoint);
-
-					// Apply middlewares
-					for (Middleware middleware : middlewares) {
-						endpoint.use(middleware);
-					}
-
-					// Write log about this action
-					logger.info("Action \"" + actionName + "\" on node \"" + nodeID + "\" registered.");
+					addRemoteAction(nodeID, serviceName, actionConfig);
 					actionCounter++;
 				}
 			}
 			names.add(serviceName);
+			publishRoutingTable(false);
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 
 		// Write log about this service
@@ -1233,6 +1475,113 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		broadcastServicesChanged(false);
 	}
 
+	protected void addRemoteAction(String nodeID, String serviceName, Tree actionConfig) {
+		actionConfig = actionConfig.clone();
+		actionConfig.putObject("nodeID", nodeID, true);
+		String actionName = actionConfig.get("name", "");
+
+		// Register remote action
+		RemoteActionEndpoint endpoint = new RemoteActionEndpoint(this, transporter, nodeID, serviceName, actionConfig,
+				actionName);
+		addEndpoint(actionName, endpoint);
+
+		// Collect calls of batch Actions (on the caller side)
+		installBatcher(endpoint);
+
+		// Apply middlewares
+		for (Middleware middleware : middlewares) {
+			endpoint.use(middleware);
+		}
+
+		// Write log about this action
+		logger.info("Action \"" + actionName + "\" on node \"" + nodeID + "\" registered.");
+	}
+
+	// --- MODIFY ENDPOINTS OF ACTIONS ---
+
+	protected void addEndpoint(String actionName, ActionEndpoint endpoint) {
+		LinkedList<ActionEndpoint> list = endpoints.get(actionName);
+		if (list == null) {
+			list = new LinkedList<>();
+			endpoints.put(actionName, list);
+		}
+		list.addLast(endpoint);
+		changedActions.add(actionName);
+	}
+
+	protected boolean removeEndpoints(String actionName, String nodeID) {
+		LinkedList<ActionEndpoint> list = endpoints.get(actionName);
+		if (list == null || !list.removeIf(endpoint -> nodeID.equals(endpoint.getNodeID()))) {
+			return false;
+		}
+		if (list.isEmpty()) {
+			endpoints.remove(actionName);
+		}
+		changedActions.add(actionName);
+		return true;
+	}
+
+	// --- APPLY CHANGES OF A REMOTE NODE'S SERVICES ---
+
+	@Override
+	public void updateActions(String nodeID, ServiceDiff diff) {
+		if (this.nodeID.equals(nodeID)) {
+			super.updateActions(nodeID, diff);
+			return;
+		}
+		if (diff.isEmpty()) {
+			return;
+		}
+
+		// Apply only the delta (under one write lock)
+		HashSet<String> removedActions = new HashSet<>();
+		lock.lock();
+		try {
+
+			// Remove deleted and changed actions
+			for (ServiceDiff.Change change : diff.getRemovedActions()) {
+				if (removeEndpoints(change.name, nodeID)) {
+					removedActions.add(change.name);
+					logger.info("Action \"" + change.name + "\" on node \"" + nodeID + "\" unregistered.");
+				}
+			}
+
+			// Register new and changed actions
+			for (ServiceDiff.Change change : diff.getAddedActions()) {
+				addRemoteAction(nodeID, change.service, change.config);
+				removedActions.remove(change.name);
+			}
+
+			// Update service names
+			if (!diff.getRemovedServices().isEmpty()) {
+				rebuildServiceNames();
+			}
+			Tree services = diff.getServices();
+			if (services != null) {
+				for (Tree service : services) {
+					names.add(service.get("name", ""));
+				}
+			}
+			publishRoutingTable(false);
+		} finally {
+			lock.unlock();
+		}
+
+		// Reject pending requests of the removed actions
+		if (!removedActions.isEmpty()) {
+			rejectPendingPromises(nodeID, removedActions);
+		}
+
+		// Write log about the changes
+		logger.info("Services of node \"" + nodeID + "\" updated (" + diff.getAddedServices().size()
+				+ " services added, " + diff.getRemovedServices().size() + " services removed, "
+				+ diff.getAddedActions().size() + " actions registered, " + diff.getRemovedActions().size()
+				+ " actions unregistered).");
+
+		// Notify local listeners (REMOTE services changed)
+		broadcastServicesChanged(false);
+	}
+
 	// --- REMOVE ALL REMOTE SERVICES/ACTIONS OF A NODE ---
 
 	@Override
@@ -1244,40 +1593,56 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		}
 
 		// Remove actions
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
-			Iterator<Strategy<ActionEndpoint>> endpoints = strategies.values().iterator();
-			while (endpoints.hasNext()) {
-				Strategy<ActionEndpoint> strategy = endpoints.next();
-				strategy.remove(nodeID);
-				if (strategy.isEmpty()) {
-					endpoints.remove();
-				}
+			for (String actionName : new ArrayList<>(endpoints.keySet())) {
+				removeEndpoints(actionName, nodeID);
 			}
 
 			// Update service names
-			names.clear();
-			for (Strategy<ActionEndpoint> strategy : strategies.values()) {
-				for (ActionEndpoint endpoint : strategy.getAllEndpoints()) {
-					names.add(endpoint.service);
-				}
-			}
+			rebuildServiceNames();
 
 			// Delete cached node descriptor
 			if (this.nodeID.equals(nodeID)) {
 				clearDescriptorCache();
+			} else {
+				publishRoutingTable(false);
 			}
 
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 
 		// Reject promises
+		rejectPendingPromises(nodeID, null);
+
+		// Notify listeners
+		if (this.nodeID.equals(nodeID)) {
+
+			// Notify local listeners (LOCAL services changed)
+			broadcastServicesChanged(true);
+		} else {
+
+			// Notify local listeners (REMOTE services changed)
+			broadcastServicesChanged(false);
+		}
+	}
+
+	protected void rebuildServiceNames() {
+		names.clear();
+		for (LinkedList<ActionEndpoint> list : endpoints.values()) {
+			for (ActionEndpoint endpoint : list) {
+				names.add(endpoint.service);
+			}
+		}
+	}
+
+	protected void rejectPendingPromises(String nodeID, Collection<String> actions) {
 		Iterator<PendingPromise> pendingPromises = promises.values().iterator();
 		boolean removed = false;
 		while (pendingPromises.hasNext()) {
 			PendingPromise pending = pendingPromises.next();
-			if (pending.nodeID.equals(nodeID)) {
+			if (pending.nodeID.equals(nodeID) && (actions == null || actions.contains(pending.action))) {
 				removed = true;
 				pendingPromises.remove();
 				executor.execute(() -> {
@@ -1296,17 +1661,6 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 				reschedule(Long.MAX_VALUE);
 			});
 		}
-
-		// Notify listeners
-		if (this.nodeID.equals(nodeID)) {
-
-			// Notify local listeners (LOCAL services changed)
-			broadcastServicesChanged(true);
-		} else {
-
-			// Notify local listeners (REMOTE services changed)
-			broadcastServicesChanged(false);
-		}
 	}
 
 	protected void stopAllLocalServices() {
@@ -1323,11 +1677,11 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		}
 
 		// Delete services
-		final long stamp = lock.writeLock();
+		lock.lock();
 		try {
 			services.clear();
 		} finally {
-			lock.unlockWrite(stamp);
+			lock.unlock();
 		}
 	}
 
@@ -1335,22 +1689,12 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 	@Override
 	public Service getService(String name) {
-		Service service = null;
-		long stamp = lock.tryOptimisticRead();
-		if (stamp != 0) {
-			try {
-				service = services.get(name);
-			} catch (Exception modified) {
-				stamp = 0;
-			}
-		}
-		if (!lock.validate(stamp) || stamp == 0) {
-			stamp = lock.readLock();
-			try {
-				service = services.get(name);
-			} finally {
-				lock.unlockRead(stamp);
-			}
+		Service service;
+		lock.lock();
+		try {
+			service = services.get(name);
+		} finally {
+			lock.unlock();
 		}
 		if (service == null) {
 			throw new ServiceNotFoundError(nodeID, name);
@@ -1362,23 +1706,7 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 
 	@Override
 	public Action getAction(String name, String nodeID) {
-		Strategy<ActionEndpoint> strategy = null;
-		long stamp = lock.tryOptimisticRead();
-		if (stamp != 0) {
-			try {
-				strategy = strategies.get(name);
-			} catch (Exception modified) {
-				stamp = 0;
-			}
-		}
-		if (!lock.validate(stamp) || stamp == 0) {
-			stamp = lock.readLock();
-			try {
-				strategy = strategies.get(name);
-			} finally {
-				lock.unlockRead(stamp);
-			}
-		}
+		Strategy<ActionEndpoint> strategy = routingTable.get(name);
 		if (strategy == null) {
 			throw new ServiceNotFoundError(nodeID, name);
 		}
@@ -1389,6 +1717,17 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		return endpoint;
 	}
 
+	// --- GET ALL LOCAL AND REMOTE ENDPOINTS OF AN ACTION ---
+
+	@Override
+	public List<ActionEndpoint> getActionEndpoints(String name) {
+		Strategy<ActionEndpoint> strategy = routingTable.get(name);
+		if (strategy == null) {
+			return Collections.emptyList();
+		}
+		return strategy.getAllEndpoints();
+	}
+
 	// --- WAIT FOR SERVICE(S) ---
 
 	@Override
@@ -1469,30 +1808,13 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 	}
 
 	protected boolean isServicesOnline(Collection<String> requiredServices) {
-		int foundCounter = 0;
-		long stamp = lock.tryOptimisticRead();
-		if (stamp != 0) {
-			try {
-				foundCounter = countOnlineServices(requiredServices);
-			} catch (Exception modified) {
-				stamp = 0;
-			}
-		}
-		if (!lock.validate(stamp) || stamp == 0) {
-			stamp = lock.readLock();
-			try {
-				foundCounter = countOnlineServices(requiredServices);
-			} finally {
-				lock.unlockRead(stamp);
-			}
-		}
-		return foundCounter == requiredServices.size();
+		return countOnlineServices(routingTable, requiredServices) == requiredServices.size();
 	}
 
-	protected int countOnlineServices(Collection<String> requiredServices) {
+	protected int countOnlineServices(RoutingTable table, Collection<String> requiredServices) {
 		int foundCounter = 0;
 		for (String service : requiredServices) {
-			if (names.contains(service)) {
+			if (table.containsService(service)) {
 				foundCounter++;
 				continue;
 			}
@@ -1560,126 +1882,143 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 	}
 
 	protected void clearDescriptorCache() {
-		cachedDescriptor = null;
+		publishRoutingTable(true);
 		timestamp.set(System.currentTimeMillis());
 	}
 
-	protected Tree currentDescriptor() {
-		FastBuildTree descriptor;
-		final long stamp = lock.readLock();
-		try {
-			descriptor = cachedDescriptor;
-			if (descriptor == null) {
+	// --- PUBLISH NEW ROUTING TABLE ---
 
-				// Create new descriptor block
-				descriptor = new FastBuildTree(4);
+	/**
+	 * Publishes a new snapshot of the action routes and "names". Must be
+	 * called while holding the write lock.
+	 * 
+	 * @param clearDescriptor
+	 *            the local services are changed
+	 */
+	protected void publishRoutingTable(boolean clearDescriptor) {
+		routingTable = routingTable.next(endpoints, changedActions, names, strategyFactory, clearDescriptor);
+		changedActions.clear();
+	}
 
-				// Services array
-				int serviceCount = names.size();
-				Tree services = descriptor.putListUnsafe("services", serviceCount);
+	protected Tree currentDescriptor() {
+		RoutingTable table = routingTable;
+		FastBuildTree descriptor = table.descriptor;
+		if (descriptor == null) {
 
-				// Actions map
-				HashMap<String, FastBuildTree> servicesMap = new HashMap<>(serviceCount * 2);
-				HashMap<String, FastBuildTree> actionsMap = new HashMap<>(serviceCount * 2);
+			// Create new descriptor block
+			descriptor = new FastBuildTree(5);
 
-				for (Map.Entry<String, Strategy<ActionEndpoint>> entry : strategies.entrySet()) {
+			// Services array
+			int serviceCount = table.names.size();
+			Tree services = descriptor.putListUnsafe("services", serviceCount);
 
-					// Get action and service names
-					String actionName = entry.getKey();
-					String serviceName = actionName.substring(0, actionName.lastIndexOf('.'));
+			// Actions map
+			HashMap<String, FastBuildTree> servicesMap = new HashMap<>(serviceCount * 2);
+			HashMap<String, FastBuildTree> actionsMap = new HashMap<>(serviceCount * 2);
 
-					// Get endpoint
-					ActionEndpoint endpoint = entry.getValue().getEndpoint(null, nodeID);
-					if (endpoint == null || endpoint.localOnly) {
-						continue;
-					}
+			for (Map.Entry<String, Strategy<ActionEndpoint>> entry : table.strategies.entrySet()) {
 
-					// Create service block
-					FastBuildTree actions = actionsMap.get(serviceName);
-					if (actions == null) {
-						FastBuildTree service = new FastBuildTree(4);
-						service.putUnsafe("name", serviceName);
-						service.putUnsafe("fullName", serviceName);
-						servicesMap.put(serviceName, service);
+				// Get action and service names
+				String actionName = entry.getKey();
+				String serviceName = actionName.substring(0, actionName.lastIndexOf('.'));
 
-						actions = service.putMapUnsafe("actions", strategies.size());
-						actionsMap.put(serviceName, actions);
+				// Get endpoint
+				ActionEndpoint endpoint = entry.getValue().getEndpoint(null, nodeID);
+				if (endpoint == null || endpoint.localOnly) {
+					continue;
+				}
 
-						// Create event listener block
-						Tree listeners = eventbus.generateListenerDescriptor(serviceName);
-						if (listeners != null && !listeners.isEmpty()) {
-							service.putUnsafe("events", listeners.asObject());
-						}
+				// Create service block
+				FastBuildTree actions = actionsMap.get(serviceName);
+				if (actions == null) {
+					FastBuildTree service = new FastBuildTree(4);
+					service.putUnsafe("name", serviceName);
+					service.putUnsafe("fullName", serviceName);
+					servicesMap.put(serviceName, service);
+
+					actions = service.putMapUnsafe("actions", table.strategies.size());
+					actionsMap.put(serviceName, actions);
+
+					// Create event listener block
+					Tree listeners = eventbus.generateListenerDescriptor(serviceName);
+					if (listeners != null && !listeners.isEmpty()) {
+						service.putUnsafe("events", listeners.asObject());
 					}
-
-					// Create action block
-					actions.putUnsafe(actionName, endpoint.getConfig());
 				}
 
-				// Add services (without actions)
-				for (String serviceName : names) {
-					if (!actionsMap.containsKey(serviceName)) {
-
-						// Create event listener block
-						Tree listeners = eventbus.generateListenerDescriptor(serviceName);
-						if (listeners != null && !listeners.isEmpty()) {
-							FastBuildTree service = new FastBuildTree(3);
-							service.putUnsafe("name", serviceName);
-							service.putUnsafe("fullName", serviceName);
-							servicesMap.put(serviceName, service);
-							actionsMap.put(serviceName, new FastBuildTree(0));
-							service.putUnsafe("events", listeners.asObject());
-						}
+				// Create action block
+				actions.putUnsafe(actionName, endpoint.getConfig());
+			}
+
+			// Add services (without actions)
+			for (String serviceName : table.names) {
+				if (!actionsMap.containsKey(serviceName)) {
+
+					// Create event listener block
+					Tree listeners = eventbus.generateListenerDescriptor(serviceName);
+					if (listeners != null && !listeners.isEmpty()) {
+						FastBuildTree service = new FastBuildTree(3);
+						service.putUnsafe("name", serviceName);
+						service.putUnsafe("fullName", serviceName);
+						servicesMap.put(serviceName, service);
+						actionsMap.put(serviceName, new FastBuildTree(0));
+						service.putUnsafe("events", listeners.asObject());
 					}
 				}
-				for (FastBuildTree service : servicesMap.values()) {
-					services.addObject(service);
-				}
+			}
+			for (FastBuildTree service : servicesMap.values()) {
+				services.addObject(service);
+			}
 
-				// Host name
-				descriptor.putUnsafe("hostname", getHostName());
+			// Host name
+			descriptor.putUnsafe("hostname", getHostName());
 
-				// IP array
-				LinkedHashSet<String> ips = new LinkedHashSet<>();
-				try {
-					InetAddress local = InetAddress.getLocalHost();
-					String defaultAddress = local.getHostAddress();
-					if (!defaultAddress.startsWith("127.")) {
-						ips.add(defaultAddress);
-					}
-				} catch (Exception ignored) {
+			// IP array
+			LinkedHashSet<String> ips = new LinkedHashSet<>();
+			try {
+				InetAddress local = InetAddress.getLocalHost();
+				String defaultAddress = local.getHostAddress();
+				if (!defaultAddress.startsWith("127.")) {
+					ips.add(defaultAddress);
 				}
-				try {
-					Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
-					while (e.hasMoreElements()) {
-						NetworkInterface n = (NetworkInterface) e.nextElement();
-						Enumeration<InetAddress> ee = n.getInetAddresses();
-						while (ee.hasMoreElements()) {
-							InetAddress i = (InetAddress) ee.nextElement();
-							if (!i.isLoopbackAddress()) {
-								ips.add(i.getHostAddress());
-							}
+			} catch (Exception ignored) {
+			}
+			try {
+				Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+				while (e.hasMoreElements()) {
+					NetworkInterface n = (NetworkInterface) e.nextElement();
+					Enumeration<InetAddress> ee = n.getInetAddresses();
+					while (ee.hasMoreElements()) {
+						InetAddress i = (InetAddress) ee.nextElement();
+						if (!i.isLoopbackAddress()) {
+							ips.add(i.getHostAddress());
 						}
 					}
-				} catch (Exception ignored) {
-				}
-				Tree ipList = descriptor.putListUnsafe("ipList", ips.size());
-				for (String ip : ips) {
-					ipList.add(ip);
 				}
+			} catch (Exception ignored) {
+			}
+			Tree ipList = descriptor.putListUnsafe("ipList", ips.size());
+			for (String ip : ips) {
+				ipList.add(ip);
+			}
 
-				// Client descriptor
-				FastBuildTree client = descriptor.putMapUnsafe("client", 3);
-				client.putUnsafe("type", "java");
-				client.putUnsafe("version", ServiceBroker.SOFTWARE_VERSION);
-				client.putUnsafe("langVersion", System.getProperty("java.version", "1.8"));
-
-				// Set timestamp
-				timestamp.set(System.currentTimeMillis());
-				cachedDescriptor = descriptor;
+			// Client descriptor
+			FastBuildTree client = descriptor.putMapUnsafe("client", 3);
+			client.putUnsafe("type", "java");
+			client.putUnsafe("version", ServiceBroker.SOFTWARE_VERSION);
+			client.putUnsafe("langVersion", System.getProperty("java.version", "1.8"));
+
+			// Supported protocol extensions
+			Tree capabilities = descriptor.putListUnsafe("capabilities", 3);
+			capabilities.add(Transporter.CAPABILITY_BATCH);
+			capabilities.add(Transporter.CAPABILITY_EVENT_BATCH);
+			if (transporter != null) {
+				transporter.addCapabilities(capabilities);
 			}
-		} finally {
-			lock.unlockRead(stamp);
+
+			// Set timestamp
+			timestamp.set(System.currentTimeMillis());
+			table.descriptor = descriptor;
 		}
 		return descriptor;
 	}
@@ -1710,6 +2049,14 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		this.writeErrorsToLog = writeErrorsToLog;
 	}
 
+	public long getErrorLogInterval() {
+		return errorLogger.getInterval();
+	}
+
+	public void setErrorLogInterval(long errorLogInterval) {
+		errorLogger.setInterval(errorLogInterval);
+	}
+
 	public long getStreamTimeout() {
 		return streamTimeout;
 	}
@@ -1718,4 +2065,28 @@ public class DefaultServiceRegistry extends ServiceRegistry implements MetricCon
 		this.streamTimeout = streamTimeout;
 	}
 
+	public boolean isActionBatching() {
+		return actionBatching;
+	}
+
+	public void setActionBatching(boolean actionBatching) {
+		this.actionBatching = actionBatching;
+	}
+
+	public long getMaxClockSkew() {
+		return maxClockSkew;
+	}
+
+	public void setMaxClockSkew(long maxClockSkew) {
+		this.maxClockSkew = maxClockSkew;
+	}
+
+	public int getStreamReorderWindow() {
+		return streamReorderWindow;
+	}
+
+	public void setStreamReorderWindow(int streamReorderWindow) {
+		this.streamReorderWindow = streamReorderWindow;
+	}
+
 }
@@ -0,0 +1,71 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The "Hedge" annotation enables hedged (speculative) requests for an
+ * idempotent Action. If the first call does not answer within the specified
+ * percentile of the Action's recent response times, the Service Invoker sends
+ * a duplicate request to another endpoint, and the faster response wins.
+ * Usage:<br>
+ * 
+ * <pre>
+ * &#64;Hedge(percentile = 95)
+ * public Action find = ctx -&gt; {
+ *   ...
+ * };
+ * </pre>
+ * 
+ * Placed on a Service class, the annotation applies to all Actions of the
+ * Service (except the Actions with their own "Hedge" annotation).
+ * 
+ * @see services.moleculer.context.CallOptions.Options#hedge(int)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.TYPE })
+public @interface Hedge {
+
+	/**
+	 * Latency percentile (1...99) that triggers the hedged request.
+	 *
+	 * @return percentile of response times
+	 */
+	int percentile() default 95;
+
+	/**
+	 * Minimum waiting time before sending the hedged request, in
+	 * milliseconds.
+	 *
+	 * @return minimum delay in milliseconds
+	 */
+	long minDelay() default 5;
+
+}
@@ -0,0 +1,256 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import static services.moleculer.metrics.MetricConstants.*;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import services.moleculer.metrics.MetricCounter;
+import services.moleculer.metrics.MetricGauge;
+import services.moleculer.metrics.Metrics;
+
+/**
+ * Bounded executor of an isolated Service or Action (see {@link ThreadPool}).
+ * Tracks the number of waiting and running tasks, and the time the tasks
+ * spend in the queue.
+ */
+public class IsolatedExecutor implements Executor {
+
+	// --- LOGGER ---
+
+	protected static final Logger logger = LoggerFactory.getLogger(IsolatedExecutor.class);
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Name of the pool
+	 */
+	protected final String name;
+
+	/**
+	 * Max number of waiting tasks (0 = unbounded)
+	 */
+	protected final int queueSize;
+
+	/**
+	 * Tasks are executed in virtual threads
+	 */
+	protected final boolean virtual;
+
+	// --- EXECUTOR ---
+
+	protected final ExecutorService executor;
+
+	// --- COUNTERS ---
+
+	protected final AtomicInteger waiting = new AtomicInteger();
+	protected final AtomicInteger running = new AtomicInteger();
+	protected final AtomicInteger inFlight = new AtomicInteger();
+
+	// --- METRICS ---
+
+	protected final Metrics metrics;
+	protected final MetricGauge gaugeQueueSize;
+	protected final MetricGauge gaugeActive;
+	protected final MetricCounter counterRejected;
+
+	// --- CONSTRUCTOR ---
+
+	public IsolatedExecutor(String name, int threads, int queueSize, boolean virtual, Metrics metrics) {
+		this.name = name;
+		this.queueSize = Math.max(0, queueSize);
+		ExecutorService virtualExecutor = virtual ? newVirtualThreadPerTaskExecutor() : null;
+		if (virtualExecutor == null) {
+			if (virtual) {
+				logger.warn("Virtual threads are not supported by the runtime, thread pool \"" + name
+						+ "\" uses platform threads.");
+			}
+			int size = Math.max(1, threads);
+			AtomicInteger counter = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, "moleculer-" + name + "-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			this.executor = pool;
+			this.virtual = false;
+		} else {
+			this.executor = virtualExecutor;
+			this.virtual = true;
+		}
+
+		// Metrics
+		this.metrics = metrics;
+		if (metrics != null) {
+			gaugeQueueSize = metrics.set(MOLECULER_EXECUTOR_QUEUE_SIZE, MOLECULER_EXECUTOR_QUEUE_SIZE_DESC, 0, "pool",
+					name);
+			gaugeActive = metrics.set(MOLECULER_EXECUTOR_ACTIVE, MOLECULER_EXECUTOR_ACTIVE_DESC, 0, "pool", name);
+			counterRejected = metrics.increment(MOLECULER_EXECUTOR_REJECTED_TOTAL,
+					MOLECULER_EXECUTOR_REJECTED_TOTAL_DESC, 0, "pool", name);
+		} else {
+			gaugeQueueSize = null;
+			gaugeActive = null;
+			counterRejected = null;
+		}
+	}
+
+	protected static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception unsupported) {
+			return null;
+		}
+	}
+
+	// --- EXECUTE TASK ---
+
+	/**
+	 * Executes a task in this pool.
+	 * 
+	 * @param task
+	 *            task to execute
+	 * 
+	 * @throws RejectedExecutionException
+	 *             if the queue is full (or the pool is stopped)
+	 */
+	@Override
+	public void execute(Runnable task) {
+
+		// Virtual threads: limit the number of concurrent tasks
+		if (!reserve(virtual ? inFlight : waiting)) {
+			if (counterRejected != null) {
+				counterRejected.increment();
+			}
+			throw new RejectedExecutionException("Queue of thread pool \"" + name + "\" is full!");
+		}
+		if (virtual) {
+			waiting.incrementAndGet();
+		} else {
+			inFlight.incrementAndGet();
+		}
+		updateGauges();
+		long submittedAt = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				waiting.decrementAndGet();
+				running.incrementAndGet();
+				updateGauges();
+				if (metrics != null) {
+					metrics.record(MOLECULER_EXECUTOR_WAIT_TIME, MOLECULER_EXECUTOR_WAIT_TIME_DESC,
+							System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS, "pool", name);
+				}
+				try {
+					task.run();
+				} finally {
+					running.decrementAndGet();
+					inFlight.decrementAndGet();
+					updateGauges();
+				}
+			});
+		} catch (RejectedExecutionException stopped) {
+			waiting.decrementAndGet();
+			inFlight.decrementAndGet();
+			updateGauges();
+			throw stopped;
+		}
+	}
+
+	protected boolean reserve(AtomicInteger counter) {
+		if (queueSize == 0) {
+			counter.incrementAndGet();
+			return true;
+		}
+		int count;
+		while (true) {
+			count = counter.get();
+			if (count >= queueSize) {
+				return false;
+			}
+			if (counter.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	protected void updateGauges() {
+		if (gaugeQueueSize != null) {
+			gaugeQueueSize.set(waiting.get());
+			gaugeActive.set(running.get());
+		}
+	}
+
+	// --- STOP POOL ---
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public String getName() {
+		return name;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Returns the number of tasks waiting for a free thread.
+	 * 
+	 * @return number of waiting tasks
+	 */
+	public int getWaitingTasks() {
+		return waiting.get();
+	}
+
+	/**
+	 * Returns the number of running tasks.
+	 * 
+	 * @return number of running tasks
+	 */
+	public int getRunningTasks() {
+		return running.get();
+	}
+
+}
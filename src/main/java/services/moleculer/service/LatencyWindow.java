@@ -0,0 +1,116 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, fixed-size window of the most recent response times of an Action.
+ * Used by the Service Invoker to calculate the delay of hedged requests.
+ */
+public class LatencyWindow {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Minimum number of samples required to calculate percentiles
+	 */
+	protected final int minSamples;
+
+	/**
+	 * Number of new samples after the percentiles are recalculated
+	 */
+	protected final int refreshInterval;
+
+	// --- SAMPLES (IN MILLISECONDS) ---
+
+	protected final AtomicLongArray samples;
+
+	protected final AtomicLong counter = new AtomicLong();
+
+	// --- CACHED, SORTED SAMPLES ---
+
+	protected volatile long[] sorted;
+
+	protected volatile long sortedAt;
+
+	// --- CONSTRUCTORS ---
+
+	public LatencyWindow() {
+		this(128, 16, 32);
+	}
+
+	public LatencyWindow(int size, int minSamples, int refreshInterval) {
+		this.samples = new AtomicLongArray(Math.max(1, size));
+		this.minSamples = Math.max(1, Math.min(minSamples, size));
+		this.refreshInterval = Math.max(1, refreshInterval);
+	}
+
+	// --- ADD SAMPLE ---
+
+	public void add(long durationMillis) {
+		long index = counter.getAndIncrement();
+		samples.set((int) (index % samples.length()), durationMillis);
+	}
+
+	// --- GET PERCENTILE ---
+
+	/**
+	 * Returns the specified percentile of the stored response times.
+	 * 
+	 * @param percentile
+	 *            percentile (1...99)
+	 * 
+	 * @return response time in milliseconds, or -1 if there are not enough
+	 *         samples
+	 */
+	public long getPercentile(int percentile) {
+		long count = counter.get();
+		if (count < minSamples) {
+			return -1;
+		}
+		long[] array = sorted;
+		if (array == null || count - sortedAt >= refreshInterval) {
+			int size = (int) Math.min(count, samples.length());
+			array = new long[size];
+			for (int i = 0; i < size; i++) {
+				array[i] = samples.get(i);
+			}
+			Arrays.sort(array);
+			sorted = array;
+			sortedAt = count;
+		}
+		int p = Math.max(1, Math.min(99, percentile));
+		return array[(array.length - 1) * p / 100];
+	}
+
+	public long getCount() {
+		return counter.get();
+	}
+
+}
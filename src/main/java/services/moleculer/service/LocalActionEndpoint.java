@@ -27,56 +27,93 @@ package services.moleculer.service;
 
 import static services.moleculer.util.CommonUtils.mergeMeta;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
+import services.moleculer.error.QueueIsFullError;
+import services.moleculer.error.RequestSkippedError;
 
 public class LocalActionEndpoint extends ActionEndpoint {
 
-	// --- CONSTRUCTOR ---
+	// --- ISOLATED EXECUTOR ---
+
+	/**
+	 * Executor of the Action (if it is annotated with {@link ThreadPool}, or
+	 * null)
+	 */
+	protected final IsolatedExecutor isolatedExecutor;
+
+	// --- CONSTRUCTORS ---
 
 	public LocalActionEndpoint(DefaultServiceRegistry registry, ExecutorService executor, String nodeID, String service,
 			Tree config, Action action, String actionName) {
+		this(registry, executor, null, nodeID, service, config, action, actionName);
+	}
+
+	public LocalActionEndpoint(DefaultServiceRegistry registry, ExecutorService executor,
+			IsolatedExecutor isolatedExecutor, String nodeID, String service, Tree config, Action action,
+			String actionName) {
 		super(nodeID, service, config);
+		this.isolatedExecutor = isolatedExecutor;
+		final Executor taskExecutor = isolatedExecutor == null ? executor : isolatedExecutor;
 
 		// Handle local timeout with a handler
 		current = ctx -> {
-			if (ctx.opts != null && ctx.opts.timeout > 0) {
+			if (isolatedExecutor != null || (ctx.opts != null && ctx.opts.timeout > 0)) {
 
 				// Create promise
 				Promise promise = new Promise();
 
-				// Execute local task
-				executor.execute(() -> {
-
-					// Set timeout
-					long timeoutAt = System.currentTimeMillis() + ctx.opts.timeout;
+				// Set timeout
+				long timeoutAt;
+				if (ctx.opts != null && ctx.opts.timeout > 0) {
+					timeoutAt = System.currentTimeMillis() + ctx.opts.timeout;
+				} else {
+					timeoutAt = 0;
+				}
 
-					// Register promise
-					registry.register(ctx.id, promise, timeoutAt, nodeID, actionName, ctx.params);
+				// Execute local task
+				try {
+					taskExecutor.execute(() -> {
 
-					// Invoke async method
-					try {
-						Object rsp = action.handler(ctx);
+						// Register promise (with timeout)
+						if (timeoutAt > 0) {
+							if (System.currentTimeMillis() >= timeoutAt) {
 
-						// Deregister
-						Promise.resolve(rsp).then(in -> {
-							in = mergeMeta(in, ctx.params);
-							if (promise.complete(in)) {
-								registry.deregister(ctx.id);
-							}
-						}).catchError(err -> {
-							if (promise.complete(err)) {
-								registry.deregister(ctx.id);
+								// Timeout reached while waiting in the queue
+								promise.complete(new RequestSkippedError(nodeID, actionName));
+								return;
 							}
-						});
-					} catch (Throwable cause) {
-						registry.deregister(ctx.id);
-						promise.complete(cause);
-					}
-
-				});
+							registry.register(ctx.id, promise, timeoutAt, nodeID, actionName, ctx.params);
+						}
+
+						// Invoke async method
+						try {
+							Object rsp = action.handler(ctx);
+
+							// Deregister
+							Promise.resolve(rsp).then(in -> {
+								in = mergeMeta(in, ctx.params);
+								if (promise.complete(in)) {
+									registry.deregister(ctx.id);
+								}
+							}).catchError(err -> {
+								if (promise.complete(err)) {
+									registry.deregister(ctx.id);
+								}
+							});
+						} catch (Throwable cause) {
+							registry.deregister(ctx.id);
+							promise.complete(cause);
+						}
+
+					});
+				} catch (RejectedExecutionException rejected) {
+					throw new QueueIsFullError(nodeID, actionName);
+				}
 
 				// Return promise
 				return promise;
@@ -87,7 +124,13 @@ public class LocalActionEndpoint extends ActionEndpoint {
 				if (ctx.params == null || ctx.params.getMeta(false) == null) {
 					return action.handler(ctx);
 				}
-				return Promise.resolve(action.handler(ctx)).then(in -> {
+				Object rsp = action.handler(ctx);
+				if (rsp == null || rsp instanceof Tree) {
+
+					// Synchronous response (merge meta without Promise)
+					return mergeMeta((Tree) rsp, ctx.params);
+				}
+				return Promise.resolve(rsp).then(in -> {
 					return mergeMeta(in, ctx.params);
 				});
 			}
@@ -95,4 +138,10 @@ public class LocalActionEndpoint extends ActionEndpoint {
 		};
 	}
 
+	// --- PROPERTY GETTERS ---
+
+	public IsolatedExecutor getIsolatedExecutor() {
+		return isolatedExecutor;
+	}
+
 }
\ No newline at end of file
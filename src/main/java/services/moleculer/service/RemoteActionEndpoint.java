@@ -33,7 +33,8 @@ import io.datatree.Promise;
 import io.datatree.Tree;
 import services.moleculer.error.MoleculerClientError;
 import services.moleculer.error.MoleculerError;
-import services.moleculer.stream.PacketListener;
+import services.moleculer.stream.FileRegion;
+import services.moleculer.stream.FileRegionListener;
 import services.moleculer.transporter.Transporter;
 
 public class RemoteActionEndpoint extends ActionEndpoint {
@@ -61,12 +62,15 @@ public class RemoteActionEndpoint extends ActionEndpoint {
 			// Register promise (timeout and response handling)
 			registry.register(ctx.id, promise, timeoutAt, nodeID, actionName, ctx.params);
 
-			// Send request via transporter
-			transporter.sendRequestPacket(nodeID, ctx);
+			// Send request via transporter (or add it to the current batch)
+			RequestBatch batch = RequestBatch.current();
+			if (batch == null || !batch.add(nodeID, ctx)) {
+				transporter.sendRequestPacket(nodeID, ctx);
+			}
 
 			// Streamed content
 			if (ctx.stream != null) {
-				ctx.stream.onPacket(new PacketListener() {
+				ctx.stream.onPacket(new FileRegionListener() {
 
 					// Create sequence counter
 					private final AtomicLong sequence = new AtomicLong();
@@ -95,6 +99,18 @@ public class RemoteActionEndpoint extends ActionEndpoint {
 						}
 					}
 
+					@Override
+					public final boolean onFileRegion(FileRegion region) {
+						if (promise.isRejected()) {
+							return false;
+						}
+						if (transporter.sendDataRegion(PACKET_REQUEST, nodeID, ctx, region, sequence.get() + 1)) {
+							sequence.incrementAndGet();
+							return true;
+						}
+						return false;
+					}
+
 				});
 			}
 
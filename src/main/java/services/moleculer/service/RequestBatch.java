@@ -0,0 +1,134 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import services.moleculer.context.Context;
+import services.moleculer.transporter.Transporter;
+
+/**
+ * Collects the remote requests of a multi-call (see
+ * {@link services.moleculer.context.ContextSource#mcall(io.datatree.Tree)
+ * ContextSource.mcall}), and sends them grouped by target node, in one request
+ * packet per node.
+ */
+public class RequestBatch {
+
+	// --- BATCH OF THE CURRENT THREAD ---
+
+	protected static final ThreadLocal<RequestBatch> current = new ThreadLocal<>();
+
+	// --- IDS OF THE BATCHED CONTEXTS ---
+
+	protected final HashSet<String> ids;
+
+	// --- COLLECTED REQUESTS BY NODE ID ---
+
+	protected final LinkedHashMap<String, LinkedList<Context>> requests = new LinkedHashMap<>();
+
+	// --- CONSTRUCTOR ---
+
+	public RequestBatch(Iterable<Context> contexts) {
+		ids = new HashSet<>();
+		for (Context ctx : contexts) {
+			ids.add(ctx.id);
+		}
+	}
+
+	// --- ACTIVATE / DEACTIVATE ---
+
+	public void begin() {
+		current.set(this);
+	}
+
+	public void end() {
+		current.remove();
+	}
+
+	public static RequestBatch current() {
+		return current.get();
+	}
+
+	// --- ADD REQUEST ---
+
+	/**
+	 * Adds a remote request to the batch. Nested or retried calls (which are
+	 * not part of the multi-call) are not collected.
+	 * 
+	 * @param nodeID
+	 *            target nodeID
+	 * @param ctx
+	 *            context of the request
+	 * 
+	 * @return true if the request has been added to the batch (it will be sent
+	 *         when the batch is flushed)
+	 */
+	public boolean add(String nodeID, Context ctx) {
+		if (ctx.stream != null || !ids.contains(ctx.id)) {
+			return false;
+		}
+		LinkedList<Context> list = requests.get(nodeID);
+		if (list == null) {
+			list = new LinkedList<>();
+			requests.put(nodeID, list);
+		}
+		list.addLast(ctx);
+		return true;
+	}
+
+	// --- SEND REQUESTS ---
+
+	/**
+	 * Sends the collected requests. Nodes which do not support batched requests
+	 * receive the requests in separate packets.
+	 * 
+	 * @param transporter
+	 *            transporter of the ServiceBroker
+	 */
+	public void flush(Transporter transporter) {
+		for (Map.Entry<String, LinkedList<Context>> entry : requests.entrySet()) {
+			String nodeID = entry.getKey();
+			LinkedList<Context> list = entry.getValue();
+			if (list.size() > 1 && transporter.hasCapability(nodeID, Transporter.CAPABILITY_BATCH)) {
+				transporter.sendBatchRequestPacket(nodeID, list);
+			} else {
+				for (Context ctx : list) {
+					transporter.sendRequestPacket(nodeID, ctx);
+				}
+			}
+		}
+		requests.clear();
+	}
+
+	public boolean isEmpty() {
+		return requests.isEmpty();
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import services.moleculer.strategy.Strategy;
+import services.moleculer.strategy.StrategyFactory;
+import services.moleculer.util.FastBuildTree;
+
+/**
+ * Immutable, versioned snapshot of the action routes (action name -&gt; Strategy
+ * with the endpoint array) and the available service names. The Service
+ * Registry publishes a new snapshot through a volatile reference after each
+ * topology change, so the readers (eg. "getAction" or incoming requests)
+ * never lock or retry. The Strategies of the changed actions are re-created
+ * for each snapshot, and they are never modified after the publication (the
+ * unchanged Strategies are shared between the snapshots). The snapshot also
+ * caches the node descriptor (the "INFO" block) of the local node.
+ */
+public class RoutingTable {
+
+	// --- EMPTY TABLE ---
+
+	public static final RoutingTable EMPTY = new RoutingTable(0, Collections.emptyMap(), Collections.emptySet(),
+			null);
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Version of the snapshot (incremented on each topology change)
+	 */
+	protected final long version;
+
+	/**
+	 * Strategies per action names
+	 */
+	protected final Map<String, Strategy<ActionEndpoint>> strategies;
+
+	/**
+	 * Local and remote service names
+	 */
+	protected final Set<String> names;
+
+	/**
+	 * Cached descriptor of the local node (built lazily)
+	 */
+	protected volatile FastBuildTree descriptor;
+
+	// --- CONSTRUCTORS ---
+
+	public RoutingTable(long version, Map<String, Strategy<ActionEndpoint>> strategies, Set<String> names,
+			FastBuildTree descriptor) {
+		this.version = version;
+		this.strategies = strategies;
+		this.names = names;
+		this.descriptor = descriptor;
+	}
+
+	// --- CREATE NEXT VERSION ---
+
+	/**
+	 * Creates a new snapshot from the (mutable) maps of the Service Registry.
+	 * Must be called by the writer thread.
+	 * 
+	 * @param endpoints
+	 *            current endpoints per action names
+	 * @param changedActions
+	 *            names of the actions changed since the previous snapshot
+	 * @param names
+	 *            current service names
+	 * @param factory
+	 *            factory of the new Strategies
+	 * @param clearDescriptor
+	 *            the local services are changed (the cached node descriptor
+	 *            is not reusable)
+	 * 
+	 * @return new snapshot
+	 */
+	public RoutingTable next(Map<String, ? extends Collection<ActionEndpoint>> endpoints,
+			Set<String> changedActions, Set<String> names, StrategyFactory factory, boolean clearDescriptor) {
+		HashMap<String, Strategy<ActionEndpoint>> map = new HashMap<>(strategies);
+		for (String actionName : changedActions) {
+			Collection<ActionEndpoint> list = endpoints.get(actionName);
+			if (list == null || list.isEmpty()) {
+				map.remove(actionName);
+				continue;
+			}
+
+			// Build a new Strategy (never modified after publication)
+			Strategy<ActionEndpoint> strategy = factory.create();
+			for (ActionEndpoint endpoint : list) {
+				strategy.addEndpoint(endpoint);
+			}
+			map.put(actionName, strategy);
+		}
+		return new RoutingTable(version + 1, Collections.unmodifiableMap(map),
+				Collections.unmodifiableSet(new HashSet<>(names)), clearDescriptor ? null : descriptor);
+	}
+
+	// --- LOOKUP ---
+
+	public Strategy<ActionEndpoint> get(String actionName) {
+		return strategies.get(actionName);
+	}
+
+	public boolean containsService(String serviceName) {
+		return names.contains(serviceName);
+	}
+
+	// --- GETTERS ---
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Map<String, Strategy<ActionEndpoint>> getStrategies() {
+		return strategies;
+	}
+
+	public Set<String> getNames() {
+		return names;
+	}
+
+}
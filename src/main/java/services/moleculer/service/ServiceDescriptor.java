@@ -0,0 +1,245 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.function.Function;
+
+import io.datatree.Tree;
+
+/**
+ * Compile-time generated description of a Service (names, configs and
+ * accessors of Actions and Listeners). Descriptors are generated by the
+ * optional {@link ServiceDescriptorProcessor}; when a descriptor is present
+ * for a Service class, the Service Registry and the Eventbus use it instead
+ * of scanning the fields and annotations of the Service with reflection.
+ * Without a descriptor the reflection-based scanning is used.
+ */
+public abstract class ServiceDescriptor {
+
+	// --- CONSTANTS ---
+
+	/**
+	 * Suffix of the generated class names (eg. "my.package.MyService" -&gt;
+	 * "my.package.MyService_Descriptor")
+	 */
+	public static final String SUFFIX = "_Descriptor";
+
+	// --- CACHE OF DESCRIPTORS ---
+
+	protected static final ClassValue<ServiceDescriptor> descriptors = new ClassValue<ServiceDescriptor>() {
+
+		@Override
+		protected final ServiceDescriptor computeValue(Class<?> type) {
+			try {
+				ClassLoader loader = type.getClassLoader();
+				Class<?> descriptorClass = Class.forName(classNameOf(type.getName()), true,
+						loader == null ? ServiceDescriptor.class.getClassLoader() : loader);
+				ServiceDescriptor descriptor = (ServiceDescriptor) descriptorClass.getDeclaredConstructor().newInstance();
+				if (descriptor.serviceClass == type) {
+					return descriptor;
+				}
+			} catch (ClassNotFoundException | LinkageError notGenerated) {
+
+				// Descriptor not generated
+			} catch (Exception ignored) {
+			}
+			return null;
+		}
+
+	};
+
+	// --- PROPERTIES ---
+
+	protected final Class<?> serviceClass;
+
+	protected final ArrayList<Member> actions = new ArrayList<>();
+
+	protected final ArrayList<Member> listeners = new ArrayList<>();
+
+	// --- CONSTRUCTOR ---
+
+	protected ServiceDescriptor(Class<?> serviceClass) {
+		this.serviceClass = serviceClass;
+	}
+
+	// --- DESCRIPTOR OF A SERVICE CLASS ---
+
+	/**
+	 * Returns the generated descriptor of the specified Service class.
+	 * 
+	 * @param serviceClass
+	 *            class of the Service
+	 * 
+	 * @return descriptor of the Service, or null if it was not generated
+	 */
+	public static final ServiceDescriptor of(Class<?> serviceClass) {
+		return descriptors.get(serviceClass);
+	}
+
+	public static final String classNameOf(String serviceClassName) {
+		return serviceClassName.replace('$', '_') + SUFFIX;
+	}
+
+	// --- METHODS CALLED BY THE GENERATED CONSTRUCTORS ---
+
+	protected void action(String declaringClass, String field, String name, String config,
+			Function<Service, Object> accessor) {
+		actions.add(new Member(declaringClass, field, name, config, null, null, false, accessor));
+	}
+
+	protected void listener(String declaringClass, String field, String name, String subscribe, String group,
+			boolean privateAccess, Function<Service, Object> accessor) {
+		listeners.add(new Member(declaringClass, field, name, null, subscribe, group, privateAccess, accessor));
+	}
+
+	// --- GETTERS ---
+
+	public Class<?> getServiceClass() {
+		return serviceClass;
+	}
+
+	public Member[] getActions() {
+		return actions.toArray(new Member[actions.size()]);
+	}
+
+	public Member[] getListeners() {
+		return listeners.toArray(new Member[listeners.size()]);
+	}
+
+	// --- ACTION OR LISTENER FIELD ---
+
+	public static class Member {
+
+		// --- PROPERTIES ---
+
+		protected final String declaringClass;
+		protected final String field;
+		protected final String name;
+		protected final String config;
+		protected final String subscribe;
+		protected final String group;
+		protected final boolean privateAccess;
+		protected final Function<Service, Object> accessor;
+
+		/**
+		 * Reflected field (only for private or inaccessible fields)
+		 */
+		protected volatile Field reflectedField;
+
+		// --- CONSTRUCTOR ---
+
+		protected Member(String declaringClass, String field, String name, String config, String subscribe,
+				String group, boolean privateAccess, Function<Service, Object> accessor) {
+			this.declaringClass = declaringClass;
+			this.field = field;
+			this.name = name;
+			this.config = config;
+			this.subscribe = subscribe;
+			this.group = group;
+			this.privateAccess = privateAccess;
+			this.accessor = accessor;
+		}
+
+		// --- READ FIELD VALUE ---
+
+		/**
+		 * Returns the Action or Listener instance of the specified Service.
+		 * Fields which are not accessible from the generated code are read
+		 * by reflection (without scanning the whole class hierarchy).
+		 * 
+		 * @param service
+		 *            Service instance
+		 * 
+		 * @return value of the field
+		 * 
+		 * @throws Exception
+		 *             any reflection error
+		 */
+		public Object get(Service service) throws Exception {
+			if (accessor != null) {
+				return accessor.apply(service);
+			}
+			Field f = reflectedField;
+			if (f == null) {
+				Class<?> type = service.getClass();
+				while (type != null && !type.getName().equals(declaringClass)) {
+					type = type.getSuperclass();
+				}
+				if (type == null) {
+					throw new NoSuchFieldException(declaringClass + '.' + field);
+				}
+				f = type.getDeclaredField(field);
+				f.setAccessible(true);
+				reflectedField = f;
+			}
+			return f.get(service);
+		}
+
+		// --- GETTERS ---
+
+		public String getField() {
+			return field;
+		}
+
+		/**
+		 * Returns the (unprefixed) name of the Action or Listener.
+		 * 
+		 * @return value of the "Name" annotation or the name of the field
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns a new copy of the config of the Action (visibility,
+		 * converted annotations, etc.).
+		 * 
+		 * @return config of the Action
+		 * 
+		 * @throws Exception
+		 *             JSON parser error
+		 */
+		public Tree getConfig() throws Exception {
+			return config == null ? new Tree() : new Tree(config);
+		}
+
+		public String getSubscribe() {
+			return subscribe;
+		}
+
+		public String getGroup() {
+			return group;
+		}
+
+		public boolean isPrivateAccess() {
+			return privateAccess;
+		}
+
+	}
+
+}
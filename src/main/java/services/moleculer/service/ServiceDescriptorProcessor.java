@@ -0,0 +1,395 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import services.moleculer.eventbus.Group;
+import services.moleculer.eventbus.Subscribe;
+
+/**
+ * Optional annotation processor which generates a {@link ServiceDescriptor}
+ * for each (non-abstract) Service class at compile time. The descriptors
+ * contain the names, configs and accessors of Actions and Listeners, so the
+ * Service Registry does not have to scan the Services with reflection at
+ * startup. The processor is not registered automatically, it must be enabled
+ * in the build (eg.
+ * "-processor services.moleculer.service.ServiceDescriptorProcessor" javac
+ * argument, or the "annotationProcessor" configuration of Gradle).
+ */
+@SupportedAnnotationTypes("*")
+public class ServiceDescriptorProcessor extends AbstractProcessor {
+
+	// --- SUPPORTED VERSION ---
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	// --- PROCESS SOURCES ---
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Elements elements = processingEnv.getElementUtils();
+		TypeElement service = elements.getTypeElement(Service.class.getName());
+		if (service != null) {
+			for (Element root : roundEnv.getRootElements()) {
+				scan(root, service);
+			}
+		}
+		return false;
+	}
+
+	protected void scan(Element element, TypeElement service) {
+		if (element.getKind() != ElementKind.CLASS) {
+			return;
+		}
+		TypeElement type = (TypeElement) element;
+		Types types = processingEnv.getTypeUtils();
+		if (!type.getModifiers().contains(Modifier.ABSTRACT)
+				&& types.isSubtype(types.erasure(type.asType()), types.erasure(service.asType()))
+				&& isAccessible(type, packageOf(type))) {
+			try {
+				generate(type);
+			} catch (Exception cause) {
+				processingEnv.getMessager().printMessage(Kind.WARNING,
+						"Unable to generate service descriptor: " + cause, type);
+			}
+		}
+		for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+			scan(member, service);
+		}
+	}
+
+	// --- GENERATE DESCRIPTOR ---
+
+	protected void generate(TypeElement type) throws IOException {
+		Elements elements = processingEnv.getElementUtils();
+		PackageElement pkg = packageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String className = ServiceDescriptor.classNameOf(elements.getBinaryName(type).toString());
+		String simpleName = packageName.isEmpty() ? className : className.substring(packageName.length() + 1);
+
+		// Collect Action fields (same order as in the Service Registry)
+		LinkedHashMap<String, VariableElement> actions = new LinkedHashMap<>();
+		TypeMirror actionType = typeOf(Action.class);
+		for (TypeElement t = type; t != null; t = superclassOf(t)) {
+			for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+				if (isAssignable(field, actionType)) {
+					actions.putIfAbsent(field.getSimpleName().toString(), field);
+				}
+			}
+		}
+
+		// Collect Listener fields (same order as in the Eventbus)
+		LinkedHashMap<String, VariableElement> listeners = new LinkedHashMap<>();
+		TypeMirror listenerType = typeOf(services.moleculer.eventbus.Listener.class);
+		for (TypeElement t = type; t != null; t = superclassOf(t)) {
+			for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+				if ((t == type || field.getModifiers().contains(Modifier.PUBLIC))
+						&& isAssignable(field, listenerType)) {
+					listeners.putIfAbsent(field.getSimpleName().toString(), field);
+				}
+			}
+		}
+
+		// Write source
+		StringBuilder src = new StringBuilder(1024);
+		if (!packageName.isEmpty()) {
+			src.append("package ").append(packageName).append(";\n\n");
+		}
+		src.append("// Generated by ").append(getClass().getName()).append(", do not edit.\n");
+		src.append("@SuppressWarnings(\"all\")\n");
+		src.append("public final class ").append(simpleName).append(" extends ")
+				.append(ServiceDescriptor.class.getName()).append(" {\n\n");
+		src.append("\tpublic ").append(simpleName).append("() {\n");
+		src.append("\t\tsuper(").append(type.getQualifiedName()).append(".class);\n");
+		for (VariableElement field : actions.values()) {
+			TypeElement declaring = (TypeElement) field.getEnclosingElement();
+			src.append("\t\taction(");
+			src.append(literal(elements.getBinaryName(declaring).toString())).append(", ");
+			src.append(literal(field.getSimpleName().toString())).append(", ");
+			src.append(literal(nameOf(field))).append(", ");
+			src.append(literal(configOf(field))).append(", ");
+			src.append(accessorOf(field, declaring, pkg)).append(");\n");
+		}
+		for (VariableElement field : listeners.values()) {
+			TypeElement declaring = (TypeElement) field.getEnclosingElement();
+			Subscribe subscribe = field.getAnnotation(Subscribe.class);
+			Group group = field.getAnnotation(Group.class);
+			src.append("\t\tlistener(");
+			src.append(literal(elements.getBinaryName(declaring).toString())).append(", ");
+			src.append(literal(field.getSimpleName().toString())).append(", ");
+			src.append(literal(nameOf(field))).append(", ");
+			src.append(literal(subscribe == null ? null : subscribe.value())).append(", ");
+			src.append(literal(group == null ? null : group.value())).append(", ");
+			src.append(field.getModifiers().contains(Modifier.PRIVATE)).append(", ");
+			src.append(accessorOf(field, declaring, pkg)).append(");\n");
+		}
+		src.append("\t}\n\n}\n");
+
+		try (Writer out = processingEnv.getFiler().createSourceFile(className, type).openWriter()) {
+			out.write(src.toString());
+		}
+	}
+
+	// --- NAME OF ACTION OR LISTENER ---
+
+	protected String nameOf(VariableElement field) {
+		Name n = field.getAnnotation(Name.class);
+		String name = null;
+		if (n != null) {
+			name = n.value();
+			if (name != null) {
+				name = name.trim();
+			}
+		}
+		if (name == null || name.isEmpty()) {
+			name = field.getSimpleName().toString();
+		}
+		return name;
+	}
+
+	// --- FIELD ACCESSOR ---
+
+	protected String accessorOf(VariableElement field, TypeElement declaring, PackageElement pkg) {
+		if (field.getModifiers().contains(Modifier.PRIVATE) || !isAccessible(declaring, pkg)
+				|| (!packageOf(declaring).equals(pkg) && !field.getModifiers().contains(Modifier.PUBLIC))) {
+
+			// Read by reflection
+			return "null";
+		}
+		if (field.getModifiers().contains(Modifier.STATIC)) {
+			return "s -> " + declaring.getQualifiedName() + '.' + field.getSimpleName();
+		}
+		return "s -> ((" + declaring.getQualifiedName() + ") s)." + field.getSimpleName();
+	}
+
+	protected boolean isAccessible(TypeElement type, PackageElement pkg) {
+		Element e = type;
+		while (e instanceof TypeElement) {
+			Set<Modifier> modifiers = e.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if (!packageOf(e).equals(pkg) && !modifiers.contains(Modifier.PUBLIC)) {
+				return false;
+			}
+			e = e.getEnclosingElement();
+		}
+		return true;
+	}
+
+	// --- ANNOTATIONS TO JSON (SAME FORMAT AS "CommonUtils.convertAnnotations") ---
+
+	protected String configOf(VariableElement field) {
+		LinkedHashMap<String, String> config = new LinkedHashMap<>();
+		if (field.getModifiers().contains(Modifier.PRIVATE)) {
+			config.put("visibility", "\"protected\"");
+		}
+		Elements elements = processingEnv.getElementUtils();
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			Retention retention = annotationType.getAnnotation(Retention.class);
+			if (retention == null || retention.value() != RetentionPolicy.RUNTIME) {
+				continue;
+			}
+			String annotationName = annotationType.getSimpleName().toString();
+			if (annotationName.length() > 1) {
+				annotationName = Character.toLowerCase(annotationName.charAt(0)) + annotationName.substring(1);
+			} else {
+				annotationName = annotationName.toLowerCase();
+			}
+			if ("name".equals(annotationName) || "override".equals(annotationName)) {
+				continue;
+			}
+			config.put(annotationName, toJson(annotation, elements));
+		}
+		if (config.isEmpty()) {
+			return null;
+		}
+		return toJson(config);
+	}
+
+	protected String toJson(AnnotationMirror annotation, Elements elements) {
+		LinkedHashMap<String, String> members = new LinkedHashMap<>();
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values = elements
+				.getElementValuesWithDefaults(annotation);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+			String value = toJson(entry.getValue().getValue(), elements);
+			if (value != null) {
+				members.put(entry.getKey().getSimpleName().toString(), value);
+			}
+		}
+		if (members.isEmpty()) {
+			return "true";
+		}
+		if (members.size() == 1 && members.containsKey("value")) {
+			return members.get("value");
+		}
+		return toJson(members);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected String toJson(Object value, Elements elements) {
+		if (value instanceof List) {
+			List<? extends AnnotationValue> list = (List<? extends AnnotationValue>) value;
+			if (list.isEmpty()) {
+				return null;
+			}
+			StringBuilder json = new StringBuilder(64);
+			json.append('[');
+			for (AnnotationValue item : list) {
+				if (json.length() > 1) {
+					json.append(',');
+				}
+				json.append(toJson(item.getValue(), elements));
+			}
+			return json.append(']').toString();
+		}
+		if (value instanceof AnnotationMirror) {
+			return toJson((AnnotationMirror) value, elements);
+		}
+		if (value instanceof Boolean || value instanceof Number) {
+			return value.toString();
+		}
+		if (value instanceof VariableElement) {
+			return quote(((VariableElement) value).getSimpleName().toString());
+		}
+		if (value instanceof DeclaredType) {
+			return quote(elements.getBinaryName((TypeElement) ((DeclaredType) value).asElement()).toString());
+		}
+		return quote(String.valueOf(value));
+	}
+
+	protected String toJson(Map<String, String> map) {
+		StringBuilder json = new StringBuilder(64);
+		json.append('{');
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append(quote(entry.getKey())).append(':').append(entry.getValue());
+		}
+		return json.append('}').toString();
+	}
+
+	// --- STRING ESCAPING (JSON AND JAVA) ---
+
+	protected static String quote(String text) {
+		StringBuilder quoted = new StringBuilder(text.length() + 16);
+		quoted.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			case '\n':
+				quoted.append("\\n");
+				break;
+			case '\r':
+				quoted.append("\\r");
+				break;
+			case '\t':
+				quoted.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					quoted.append(String.format("\\u%04x", (int) c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	protected static String literal(String text) {
+		return text == null ? "null" : quote(text);
+	}
+
+	// --- UTILITIES ---
+
+	protected PackageElement packageOf(Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	protected TypeMirror typeOf(Class<?> type) {
+		return processingEnv.getTypeUtils()
+				.erasure(processingEnv.getElementUtils().getTypeElement(type.getName()).asType());
+	}
+
+	protected boolean isAssignable(VariableElement field, TypeMirror type) {
+		Types types = processingEnv.getTypeUtils();
+		return types.isAssignable(types.erasure(field.asType()), type);
+	}
+
+	protected TypeElement superclassOf(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+		if (Object.class.getName().equals(element.getQualifiedName().toString())) {
+			return null;
+		}
+		return element;
+	}
+
+}
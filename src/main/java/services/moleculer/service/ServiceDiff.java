@@ -0,0 +1,230 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import io.datatree.Tree;
+
+/**
+ * Difference between two "services" blocks of INFO packets of the same node.
+ * Contains the removed, added and changed actions and event listeners. Changed
+ * actions and listeners appear in both the "removed" (with the previous
+ * configuration) and the "added" (with the new configuration) lists. Services
+ * are identified by their "fullName" (name with version prefix).
+ */
+public class ServiceDiff {
+
+	// --- NEW SERVICES BLOCK ---
+
+	protected final Tree services;
+
+	// --- SERVICE NAMES ---
+
+	protected final LinkedList<String> removedServices = new LinkedList<>();
+	protected final LinkedList<String> addedServices = new LinkedList<>();
+
+	// --- ACTIONS ---
+
+	protected final LinkedList<Change> removedActions = new LinkedList<>();
+	protected final LinkedList<Change> addedActions = new LinkedList<>();
+
+	// --- LISTENERS ---
+
+	protected final LinkedList<Change> removedListeners = new LinkedList<>();
+	protected final LinkedList<Change> addedListeners = new LinkedList<>();
+
+	// --- CHANGE OF AN ACTION OR LISTENER ---
+
+	public static final class Change {
+
+		/**
+		 * Name of the service
+		 */
+		public final String service;
+
+		/**
+		 * Name of the action or the subscribed event
+		 */
+		public final String name;
+
+		/**
+		 * Previous (removed) or new (added) configuration
+		 */
+		public final Tree config;
+
+		protected Change(String service, String name, Tree config) {
+			this.service = service;
+			this.name = name;
+			this.config = config;
+		}
+
+	}
+
+	// --- CONSTRUCTOR ---
+
+	protected ServiceDiff(Tree services) {
+		this.services = services;
+	}
+
+	// --- COMPARE SERVICES BLOCKS ---
+
+	/**
+	 * Computes the difference between the previous and the new "services"
+	 * block of a node.
+	 * 
+	 * @param prevServices
+	 *            previous "services" block (or null)
+	 * @param nextServices
+	 *            new "services" block (or null)
+	 * 
+	 * @return difference of the blocks
+	 */
+	public static ServiceDiff compare(Tree prevServices, Tree nextServices) {
+		ServiceDiff diff = new ServiceDiff(nextServices);
+		LinkedHashMap<String, Tree> prevMap = mapServices(prevServices);
+		LinkedHashMap<String, Tree> nextMap = mapServices(nextServices);
+
+		// Removed services
+		for (Map.Entry<String, Tree> entry : prevMap.entrySet()) {
+			if (!nextMap.containsKey(entry.getKey())) {
+				Tree prev = entry.getValue();
+				diff.removedServices.add(prev.get("name", ""));
+				diff.compareService(prev, null);
+			}
+		}
+
+		// Added and changed services
+		for (Map.Entry<String, Tree> entry : nextMap.entrySet()) {
+			Tree next = entry.getValue();
+			Tree prev = prevMap.get(entry.getKey());
+			if (prev == null) {
+				diff.addedServices.add(next.get("name", ""));
+				diff.compareService(null, next);
+			} else if (!prev.equals(next)) {
+				diff.compareService(prev, next);
+			}
+		}
+		return diff;
+	}
+
+	protected static LinkedHashMap<String, Tree> mapServices(Tree services) {
+		LinkedHashMap<String, Tree> map = new LinkedHashMap<>();
+		if (services != null) {
+			for (Tree service : services) {
+				String name = service.get("name", "");
+				map.put(service.get("fullName", name), service);
+			}
+		}
+		return map;
+	}
+
+	protected void compareService(Tree prev, Tree next) {
+		String prevName = prev == null ? null : prev.get("name", "");
+		String nextName = next == null ? null : next.get("name", "");
+		compareMembers(prevName, prev == null ? null : prev.get("actions"), nextName,
+				next == null ? null : next.get("actions"), removedActions, addedActions);
+		compareMembers(prevName, prev == null ? null : prev.get("events"), nextName,
+				next == null ? null : next.get("events"), removedListeners, addedListeners);
+	}
+
+	protected static void compareMembers(String prevService, Tree prevMembers, String nextService,
+			Tree nextMembers, List<Change> removed, List<Change> added) {
+		LinkedHashMap<String, Tree> prevMap = mapMembers(prevMembers);
+		LinkedHashMap<String, Tree> nextMap = mapMembers(nextMembers);
+		for (Map.Entry<String, Tree> entry : prevMap.entrySet()) {
+			Tree next = nextMap.get(entry.getKey());
+			if (next == null || !next.equals(entry.getValue()) || !prevService.equals(nextService)) {
+				removed.add(new Change(prevService, entry.getKey(), entry.getValue()));
+			}
+		}
+		for (Map.Entry<String, Tree> entry : nextMap.entrySet()) {
+			Tree prev = prevMap.get(entry.getKey());
+			if (prev == null || !prev.equals(entry.getValue()) || !nextService.equals(prevService)) {
+				added.add(new Change(nextService, entry.getKey(), entry.getValue()));
+			}
+		}
+	}
+
+	protected static LinkedHashMap<String, Tree> mapMembers(Tree members) {
+		LinkedHashMap<String, Tree> map = new LinkedHashMap<>();
+		if (members != null && members.isMap()) {
+			for (Tree member : members) {
+				map.put(member.get("name", member.getName()), member);
+			}
+		}
+		return map;
+	}
+
+	// --- GETTERS ---
+
+	/**
+	 * Returns true if there is no difference in the actions and listeners.
+	 * 
+	 * @return true if nothing changed
+	 */
+	public boolean isEmpty() {
+		return removedServices.isEmpty() && addedServices.isEmpty() && removedActions.isEmpty()
+				&& addedActions.isEmpty() && removedListeners.isEmpty() && addedListeners.isEmpty();
+	}
+
+	/**
+	 * Returns the new "services" block.
+	 * 
+	 * @return "services" block (or null)
+	 */
+	public Tree getServices() {
+		return services;
+	}
+
+	public List<String> getRemovedServices() {
+		return removedServices;
+	}
+
+	public List<String> getAddedServices() {
+		return addedServices;
+	}
+
+	public List<Change> getRemovedActions() {
+		return removedActions;
+	}
+
+	public List<Change> getAddedActions() {
+		return addedActions;
+	}
+
+	public List<Change> getRemovedListeners() {
+		return removedListeners;
+	}
+
+	public List<Change> getAddedListeners() {
+		return addedListeners;
+	}
+
+}
@@ -25,6 +25,9 @@
  */
 package services.moleculer.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import io.datatree.Promise;
 import services.moleculer.context.Context;
 
@@ -38,4 +41,26 @@ public abstract class ServiceInvoker extends MoleculerComponent {
 
 	public abstract Promise call(Context ctx);
 
+	// --- CALL MULTIPLE ACTIONS ---
+
+	/**
+	 * Calls multiple actions at once.
+	 * 
+	 * @param contexts
+	 *            contexts of the calls
+	 * 
+	 * @return list of response Promises (in the order of the contexts)
+	 */
+	public List<Promise> mcall(List<Context> contexts) {
+		ArrayList<Promise> promises = new ArrayList<>(contexts.size());
+		for (Context ctx : contexts) {
+			try {
+				promises.add(call(ctx));
+			} catch (Throwable cause) {
+				promises.add(Promise.reject(cause));
+			}
+		}
+		return promises;
+	}
+
 }
\ No newline at end of file
@@ -26,6 +26,7 @@
 package services.moleculer.service;
 
 import java.util.Collection;
+import java.util.List;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
@@ -42,6 +43,20 @@ public abstract class ServiceRegistry extends MoleculerComponent {
 
 	public abstract void receiveRequest(Tree message);
 
+	/**
+	 * Processes an incoming request packet. The "receivedAt" timestamp is the
+	 * time when the packet arrived from the network; the time spent in the
+	 * local queues is deducted from the caller's timeout.
+	 * 
+	 * @param message
+	 *            request packet
+	 * @param receivedAt
+	 *            arrival time of the packet (in milliseconds, 0 = unknown)
+	 */
+	public void receiveRequest(Tree message, long receivedAt) {
+		receiveRequest(message);
+	}
+
 	// --- RECEIVE PING-PONG RESPONSE ---
 
 	public abstract void receivePong(Tree message);
@@ -66,6 +81,28 @@ public abstract class ServiceRegistry extends MoleculerComponent {
 
 	public abstract void removeActions(String nodeID);
 
+	// --- APPLY CHANGES OF A REMOTE NODE'S SERVICES ---
+
+	/**
+	 * Applies the changed actions of an updated remote node. The default
+	 * implementation removes and re-registers all actions of the node;
+	 * implementations may apply only the delta.
+	 * 
+	 * @param nodeID
+	 *            node ID
+	 * @param diff
+	 *            difference of the previous and the new "services" block
+	 */
+	public void updateActions(String nodeID, ServiceDiff diff) {
+		removeActions(nodeID);
+		Tree services = diff.getServices();
+		if (services != null) {
+			for (Tree service : services) {
+				addActions(nodeID, service);
+			}
+		}
+	}
+
 	// --- GET LOCAL SERVICE ---
 
 	public abstract Service getService(String name);
@@ -74,6 +111,10 @@ public abstract class ServiceRegistry extends MoleculerComponent {
 
 	public abstract Action getAction(String name, String nodeID);
 
+	// --- GET ALL LOCAL AND REMOTE ENDPOINTS OF AN ACTION ---
+
+	public abstract List<ActionEndpoint> getActionEndpoints(String name);
+
 	// --- WAIT FOR SERVICE(S) ---
 
 	public abstract Promise waitForServices(long timeoutMillis, Collection<String> services);
@@ -0,0 +1,368 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.datatree.Promise;
+import services.moleculer.error.MoleculerServerError;
+import services.moleculer.eventbus.Eventbus;
+
+/**
+ * Starts the enqueued services of the ServiceBroker in parallel. The order of
+ * the startup is defined by a DAG (built from the {@link Dependencies}
+ * annotations): a service is started when all of its local dependencies have
+ * started. Independent services are started at the same time, on the
+ * executor. Services which depend on remote services are started in the
+ * background (the broker does not wait for them). If a service fails, its
+ * dependent services are not started. At the end, a timing report is written
+ * to the log.
+ */
+public class ServiceStartup {
+
+	// --- LOGGER ---
+
+	protected static final Logger logger = LoggerFactory.getLogger(ServiceStartup.class);
+
+	// --- COMPONENTS ---
+
+	protected final ServiceRegistry registry;
+	protected final Eventbus eventbus;
+	protected final ExecutorService executor;
+	protected final String nodeID;
+
+	// --- NODES OF THE DAG ---
+
+	protected final LinkedHashMap<String, Task> tasks = new LinkedHashMap<>();
+
+	/**
+	 * Counter of the services, which must be started before the "start" method
+	 * returns.
+	 */
+	protected CountDownLatch pending;
+
+	protected long startedAt;
+
+	// --- CONSTRUCTOR ---
+
+	public ServiceStartup(ServiceRegistry registry, Eventbus eventbus, ExecutorService executor, String nodeID,
+			Map<String, Service> services) {
+		this.registry = registry;
+		this.eventbus = eventbus;
+		this.executor = executor;
+		this.nodeID = nodeID;
+
+		// Create nodes
+		for (Map.Entry<String, Service> entry : services.entrySet()) {
+			tasks.put(entry.getKey(), new Task(entry.getKey(), entry.getValue()));
+		}
+
+		// Create edges
+		for (Task task : tasks.values()) {
+			Dependencies dependencies = task.service.getClass().getAnnotation(Dependencies.class);
+			if (dependencies == null) {
+				continue;
+			}
+			for (String dependency : dependencies.value()) {
+				Task parent = tasks.get(dependency);
+				if (parent == null) {
+					task.remote = true;
+				} else if (parent != task && !parent.dependents.contains(task)) {
+					parent.dependents.add(task);
+					task.remaining.incrementAndGet();
+				}
+			}
+		}
+		checkCycles();
+	}
+
+	// --- CHECK CIRCULAR DEPENDENCIES ---
+
+	protected void checkCycles() {
+		LinkedHashMap<Task, Integer> counters = new LinkedHashMap<>();
+		LinkedList<Task> ready = new LinkedList<>();
+		for (Task task : tasks.values()) {
+			counters.put(task, task.remaining.get());
+			if (task.remaining.get() == 0) {
+				ready.add(task);
+			}
+		}
+		while (!ready.isEmpty()) {
+			Task task = ready.removeFirst();
+			counters.remove(task);
+			for (Task dependent : task.dependents) {
+				int remaining = counters.get(dependent) - 1;
+				counters.put(dependent, remaining);
+				if (remaining == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		if (!counters.isEmpty()) {
+			ArrayList<String> names = new ArrayList<>();
+			for (Task task : counters.keySet()) {
+				names.add(task.name);
+			}
+			throw new MoleculerServerError("Circular dependency between services " + names + "!", nodeID,
+					"CIRCULAR_DEPENDENCY");
+		}
+	}
+
+	// --- START SERVICES ---
+
+	/**
+	 * Starts the services, and waits for the services which do not depend on
+	 * remote services.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void start() throws InterruptedException {
+		startedAt = System.nanoTime();
+
+		// Services which depend on remote services (directly or indirectly)
+		for (Task task : tasks.values()) {
+			if (task.remote) {
+				markAsBackground(task);
+			}
+		}
+		int count = 0;
+		for (Task task : tasks.values()) {
+			if (!task.background) {
+				count++;
+			}
+		}
+		pending = new CountDownLatch(count);
+
+		// Start root nodes
+		for (Task task : tasks.values()) {
+			if (task.remaining.get() == 0) {
+				submit(task);
+			}
+		}
+		pending.await();
+		report();
+	}
+
+	protected void markAsBackground(Task task) {
+		if (!task.background) {
+			task.background = true;
+			for (Task dependent : task.dependents) {
+				markAsBackground(dependent);
+			}
+		}
+	}
+
+	protected void submit(Task task) {
+		task.submittedAt = System.nanoTime();
+		executor.execute(() -> {
+			task.startedAt = System.nanoTime();
+			Promise deployed;
+			try {
+				deployed = registry.addActions(task.name, task.service);
+			} catch (Throwable cause) {
+				deployed = Promise.reject(cause);
+			}
+			deployed.then(ok -> {
+				eventbus.addListeners(task.name, task.service);
+				finished(task, null);
+			}).catchError(cause -> {
+				finished(task, cause);
+			});
+		});
+	}
+
+	protected void finished(Task task, Throwable cause) {
+		task.finishedAt = System.nanoTime();
+		if (cause == null) {
+
+			// Start dependent services
+			for (Task dependent : task.dependents) {
+				if (dependent.remaining.decrementAndGet() == 0) {
+					submit(dependent);
+				}
+			}
+		} else {
+			logger.error("Unable to start \"" + task.name + "\" service!", cause);
+			task.failed = true;
+
+			// Skip dependent services
+			for (Task dependent : task.dependents) {
+				skip(dependent, task);
+			}
+		}
+		if (!task.background) {
+			pending.countDown();
+		}
+	}
+
+	protected void skip(Task task, Task dependency) {
+		if (task.skipped.compareAndSet(false, true)) {
+			logger.error("Unable to start \"" + task.name + "\" service because \"" + dependency.name
+					+ "\" service did not start!");
+			for (Task dependent : task.dependents) {
+				skip(dependent, task);
+			}
+			if (!task.background) {
+				pending.countDown();
+			}
+		}
+	}
+
+	// --- TIMING REPORT ---
+
+	protected void report() {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		ArrayList<Task> list = new ArrayList<>(tasks.values());
+		Collections.sort(list, (t1, t2) -> Long.compare(t2.duration(), t1.duration()));
+		StringBuilder msg = new StringBuilder(64 * (list.size() + 1));
+		msg.append(tasks.size());
+		msg.append(" services started in ");
+		msg.append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+		msg.append(" milliseconds:");
+		for (Task task : list) {
+			msg.append("\r\n  ");
+			msg.append(task.name);
+			if (task.skipped.get()) {
+				msg.append(" - not started (dependency failed)");
+				continue;
+			}
+			if (task.failed) {
+				msg.append(" - failed");
+				continue;
+			}
+			if (task.finishedAt == 0) {
+				msg.append(" - waiting for remote dependencies");
+				continue;
+			}
+			msg.append(" - ");
+			msg.append(TimeUnit.NANOSECONDS.toMillis(task.duration()));
+			msg.append(" ms");
+			long waited = TimeUnit.NANOSECONDS.toMillis(task.submittedAt - startedAt);
+			if (waited > 0) {
+				msg.append(" (waited ");
+				msg.append(waited);
+				msg.append(" ms for dependencies)");
+			}
+		}
+		logger.info(msg.toString());
+	}
+
+	// --- NODE OF THE DAG ---
+
+	protected static final class Task {
+
+		protected final String name;
+		protected final Service service;
+
+		protected final LinkedList<Task> dependents = new LinkedList<>();
+
+		/**
+		 * Number of local dependencies, which have not started yet.
+		 */
+		protected final AtomicInteger remaining = new AtomicInteger();
+
+		/**
+		 * Depends on remote services.
+		 */
+		protected boolean remote;
+
+		/**
+		 * Started in the background (depends on remote services directly or
+		 * indirectly).
+		 */
+		protected boolean background;
+
+		/**
+		 * Unable to start the service.
+		 */
+		protected volatile boolean failed;
+
+		/**
+		 * Not started because a dependency failed.
+		 */
+		protected final AtomicBoolean skipped = new AtomicBoolean();
+
+		protected volatile long submittedAt;
+		protected volatile long startedAt;
+		protected volatile long finishedAt;
+
+		protected Task(String name, Service service) {
+			this.name = name;
+			this.service = service;
+		}
+
+		protected long duration() {
+			return finishedAt == 0 ? 0 : finishedAt - startedAt;
+		}
+
+	}
+
+	// --- GETTERS ---
+
+	/**
+	 * Returns the startup time of a service (from the beginning of its startup
+	 * until the end of the "started" method of the service).
+	 * 
+	 * @param name
+	 *            service name
+	 * 
+	 * @return duration in NANOSECONDS (0 = not started)
+	 */
+	public long getStartupTime(String name) {
+		Task task = tasks.get(name);
+		return task == null ? 0 : task.duration();
+	}
+
+	/**
+	 * Returns the time elapsed from the beginning of the startup until the
+	 * submission of the service (waiting for its dependencies).
+	 * 
+	 * @param name
+	 *            service name
+	 * 
+	 * @return duration in NANOSECONDS
+	 */
+	public long getWaitingTime(String name) {
+		Task task = tasks.get(name);
+		return task == null || task.submittedAt == 0 ? 0 : task.submittedAt - startedAt;
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The "ThreadPool" annotation isolates the Actions of a Service (or a single
+ * Action) from the rest of the Broker. The annotated Actions are executed by
+ * a separate, bounded executor, so blocking calls (eg. JDBC) cannot stall
+ * the shared executor of the Transporter and the other Services. Actions and
+ * Services with the same pool name share the same executor. Usage:<br>
+ * 
+ * <pre>
+ * &#64;Name("users")
+ * &#64;ThreadPool(threads = 8, queueSize = 1000)
+ * public class UserService extends Service {
+ * 
+ *   &#64;ThreadPool(name = "reports", virtual = true)
+ *   public Action report = ctx -&gt; {
+ *     ...
+ *   };
+ * 
+ * }
+ * </pre>
+ * 
+ * @see IsolatedExecutor
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.TYPE })
+public @interface ThreadPool {
+
+	/**
+	 * Name of the pool (empty = name of the Service).
+	 *
+	 * @return pool name
+	 */
+	String name() default "";
+
+	/**
+	 * Number of threads (ignored when virtual threads are used).
+	 *
+	 * @return number of threads
+	 */
+	int threads() default 4;
+
+	/**
+	 * Max number of waiting tasks (0 = unbounded). When the queue is full, the
+	 * Action is rejected with a QueueIsFullError.
+	 *
+	 * @return queue size
+	 */
+	int queueSize() default 1000;
+
+	/**
+	 * Execute each task in a new virtual thread (when the runtime supports
+	 * it; otherwise a platform thread pool is used). With virtual threads the
+	 * "queueSize" limits the number of concurrent tasks.
+	 *
+	 * @return true = use virtual threads
+	 */
+	boolean virtual() default false;
+
+}
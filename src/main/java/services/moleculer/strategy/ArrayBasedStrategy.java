@@ -34,6 +34,7 @@ import io.datatree.dom.Config;
 import services.moleculer.ServiceBroker;
 import services.moleculer.context.Context;
 import services.moleculer.service.Endpoint;
+import services.moleculer.transporter.Transporter;
 
 /**
  * Abstract class for Round-Robin and Random invocation strategies.
@@ -61,11 +62,20 @@ public abstract class ArrayBasedStrategy<T extends Endpoint> extends Strategy<T>
 	protected final String nodeID;
 	protected final boolean preferLocal;
 
+	// --- COMPONENTS ---
+
+	/**
+	 * Transporter (or null); used to skip the suspected (but not yet offline)
+	 * nodes.
+	 */
+	protected Transporter transporter;
+
 	// --- CONSTRUCTOR ---
 
 	public ArrayBasedStrategy(ServiceBroker broker, boolean preferLocal) {
 		this.nodeID = broker.getNodeID();
 		this.preferLocal = preferLocal;
+		this.transporter = broker.getConfig().getTransporter();
 	}
 
 	// --- ADD A LOCAL OR REMOTE ENDPOINT ---
@@ -151,9 +161,52 @@ public abstract class ArrayBasedStrategy<T extends Endpoint> extends Strategy<T>
 		if (array.length == 1) {
 			return (T) array[0];
 		}
+		if (nodeID == null && transporter != null) {
+			array = skipSuspected(array);
+			if (array.length == 1) {
+				return (T) array[0];
+			}
+		}
 		return (T) next(ctx, array);
 	}
 
+	/**
+	 * Removes the endpoints of the suspected nodes (see
+	 * {@link Transporter#isSuspected(String)}) from the array. Returns the
+	 * original array if none or all of the nodes are suspected.
+	 * 
+	 * @param array
+	 *            array of endpoints
+	 * 
+	 * @return filtered array
+	 */
+	protected Endpoint[] skipSuspected(Endpoint[] array) {
+		boolean[] suspected = null;
+		int count = 0;
+		String id;
+		for (int i = 0; i < array.length; i++) {
+			id = array[i].getNodeID();
+			if (!this.nodeID.equals(id) && transporter.isSuspected(id)) {
+				if (suspected == null) {
+					suspected = new boolean[array.length];
+				}
+				suspected[i] = true;
+				count++;
+			}
+		}
+		if (count == 0 || count == array.length) {
+			return array;
+		}
+		Endpoint[] filtered = new Endpoint[array.length - count];
+		int j = 0;
+		for (int i = 0; i < array.length; i++) {
+			if (!suspected[i]) {
+				filtered[j++] = array[i];
+			}
+		}
+		return filtered;
+	}
+
 	protected Endpoint[] getEndpointsByNodeID(String nodeID) {
 		if (nodeID == null) {
 			return endpoints;
@@ -0,0 +1,151 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A chunk of a file, which can be written directly into a socket with
+ * "FileChannel.transferTo" (without copying the bytes into the heap). The
+ * regions of a file share the FileChannel; the channel is closed when the
+ * stream and all regions are released.
+ */
+public class FileRegion {
+
+	// --- PROPERTIES ---
+
+	protected final FileChannel channel;
+	protected final long position;
+	protected final int count;
+
+	/**
+	 * Reference counter of the shared FileChannel.
+	 */
+	protected final AtomicInteger references;
+
+	protected final AtomicBoolean released = new AtomicBoolean();
+
+	/**
+	 * Number of bytes transferred (used by the writer thread).
+	 */
+	protected long transferred;
+
+	// --- CONSTRUCTOR ---
+
+	public FileRegion(FileChannel channel, long position, int count, AtomicInteger references) {
+		this.channel = channel;
+		this.position = position;
+		this.count = count;
+		this.references = references;
+		references.incrementAndGet();
+	}
+
+	// --- TRANSFER TO CHANNEL ---
+
+	/**
+	 * Transfers the remaining bytes of the region to the target channel. It
+	 * may transfer fewer bytes than requested (eg. when the socket's buffer is
+	 * full).
+	 * 
+	 * @param target
+	 *            target channel
+	 * 
+	 * @return number of transferred bytes
+	 * 
+	 * @throws IOException
+	 *             any I/O exception (eg. the file is truncated)
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException {
+		long n = channel.transferTo(position + transferred, count - transferred, target);
+		if (n == 0 && position + transferred >= channel.size()) {
+			throw new EOFException("File region is out of the file's bounds!");
+		}
+		transferred += n;
+		return n;
+	}
+
+	public boolean isTransferred() {
+		return transferred >= count;
+	}
+
+	// --- READ INTO THE HEAP ---
+
+	/**
+	 * Reads the region into a byte array (used when the transporter does not
+	 * support zero-copy streaming).
+	 * 
+	 * @return bytes of the region
+	 * 
+	 * @throws IOException
+	 *             any I/O exception
+	 */
+	public byte[] read() throws IOException {
+		byte[] bytes = new byte[count];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("File region is out of the file's bounds!");
+			}
+		}
+		return bytes;
+	}
+
+	// --- RELEASE ---
+
+	public void release() {
+		if (released.compareAndSet(false, true)) {
+			release(channel, references);
+		}
+	}
+
+	protected static void release(FileChannel channel, AtomicInteger references) {
+		if (references.decrementAndGet() == 0) {
+			try {
+				channel.close();
+			} catch (Throwable ignored) {
+
+				// Do nothing
+			}
+		}
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public long getPosition() {
+		return position;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+}
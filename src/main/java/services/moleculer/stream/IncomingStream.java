@@ -26,16 +26,33 @@
 package services.moleculer.stream;
 
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import io.datatree.Tree;
 import services.moleculer.error.MoleculerError;
 import services.moleculer.error.MoleculerErrorUtils;
 
+/**
+ * Reassembles the chunks of an incoming stream. Chunks are decoded into bytes
+ * on arrival. Out-of-order chunks are stored in a bounded, sequence-indexed
+ * ring buffer. When more than "reorderWindow" chunks would have to be
+ * buffered, the stream fails with a "STREAM_REORDER_WINDOW_EXCEEDED" error.
+ * Chunks are delivered in order by one thread at a time without locking: the
+ * thread that receives the next expected chunk delivers it directly, then
+ * drains the ring buffer.
+ */
 public class IncomingStream {
 
+	// --- CONSTANTS ---
+
+	/**
+	 * Default max number of out-of-order chunks.
+	 */
+	public static final int DEFAULT_REORDER_WINDOW = 1024;
+
 	// --- PROPERTIES ---
 
 	/**
@@ -58,21 +75,57 @@ public class IncomingStream {
 	 */
 	protected volatile long timeoutAt;
 
-	protected volatile long prevSeq = -1;
+	/**
+	 * Max number of out-of-order chunks.
+	 */
+	protected final int reorderWindow;
+
+	// --- REASSEMBLY VARIABLES ---
+
+	/**
+	 * Sequence number of the next deliverable chunk.
+	 */
+	protected volatile long nextSeq;
+
+	/**
+	 * Out-of-order chunks, indexed by {@code seq & mask}.
+	 */
+	protected final AtomicReferenceArray<Chunk> ring;
 
-	protected final HashMap<Long, Tree> pool = new HashMap<>();
+	protected final int mask;
+
+	/**
+	 * True while a thread delivers chunks.
+	 */
+	protected final AtomicBoolean delivering = new AtomicBoolean();
+
+	/**
+	 * Set by the thread which delivered the last chunk.
+	 */
+	protected volatile boolean finished;
 
 	protected AtomicBoolean inited = new AtomicBoolean();
 
-	// --- CONSTRUCTOR ---
+	// --- CONSTRUCTORS ---
 
 	public IncomingStream(String nodeID, ScheduledExecutorService scheduler, long timeoutMillis) {
+		this(nodeID, scheduler, timeoutMillis, DEFAULT_REORDER_WINDOW);
+	}
+
+	public IncomingStream(String nodeID, ScheduledExecutorService scheduler, long timeoutMillis, int reorderWindow) {
 		this.nodeID = nodeID;
 		this.stream = new PacketStream(nodeID, scheduler);
 		this.timeoutMillis = timeoutMillis;
 		if (timeoutMillis > 0) {
 			timeoutAt = System.currentTimeMillis() + timeoutMillis;
 		}
+		this.reorderWindow = Math.max(1, reorderWindow);
+		int capacity = Integer.highestOneBit(this.reorderWindow);
+		if (capacity < this.reorderWindow) {
+			capacity <<= 1;
+		}
+		this.ring = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 1;
 	}
 
 	// --- RESET ---
@@ -82,8 +135,11 @@ public class IncomingStream {
 	 */
 	public synchronized void reset() {
 		timeoutAt = 0;
-		prevSeq = -1;
-		pool.clear();
+		nextSeq = 0;
+		finished = false;
+		for (int i = 0; i < ring.length(); i++) {
+			ring.set(i, null);
+		}
 		stream.closed.set(false);
 		stream.buffer.clear();
 		stream.cause = null;
@@ -105,61 +161,131 @@ public class IncomingStream {
 
 	// --- RECEIVE PACKET ---
 
-	public synchronized boolean receive(Tree message) {
+	public boolean receive(Tree message) {
 
 		// Update timestamp
 		if (timeoutMillis > 0) {
 			timeoutAt = System.currentTimeMillis() + timeoutMillis;
 		}
 
+		// Decode message
+		Chunk chunk = decode(message);
+
 		// Check sequence number
-		long seq = message.get("seq", -1);
-		if (seq > -1) {
-			if (seq - 1 == prevSeq) {
-				prevSeq = seq;
-			} else {
+		long seq = message.get("seq", -1L);
+		if (seq < 0) {
 
-				// Process later
-				pool.put(seq, message);
-				return false;
+			// Unsequenced message (restarts the sequence)
+			while (!delivering.compareAndSet(false, true)) {
+				Thread.yield();
 			}
-		} else {
-			prevSeq = -1;
+			try {
+				nextSeq = 0;
+				if (deliver(chunk)) {
+					finished = true;
+				}
+			} finally {
+				delivering.set(false);
+			}
+			return drain();
 		}
 
-		// Process current message
-		boolean close = processMessage(message);
-
-		// Process pooled messages
-		long nextSeq = prevSeq;
-		while (true) {
-			Tree nextMessage = pool.remove(++nextSeq);
-			if (nextMessage == null) {
-				break;
+		// In-order fast path
+		if (seq == nextSeq && delivering.compareAndSet(false, true)) {
+			boolean close = false;
+			try {
+
+				// Otherwise it's a duplicate, delivered by an other thread
+				if (seq == nextSeq) {
+					nextSeq = seq + 1;
+					if (deliver(chunk)) {
+						finished = true;
+						close = true;
+					}
+				}
+			} finally {
+				delivering.set(false);
 			}
-			prevSeq = nextSeq;
-			if (processMessage(nextMessage)) {
+			if (ring.get((int) (nextSeq & mask)) != null && drain()) {
 				close = true;
 			}
+			return close;
 		}
 
-		// True = remove stream from registry
-		return close;
-	}
-
-	protected boolean processMessage(Tree message) {
+		// Duplicated or late packet
+		long distance = seq - nextSeq;
+		if (distance < 0) {
+			return false;
+		}
 
-		// Stream closed
-		if (stream.isClosed()) {
+		// Max reorder window exceeded
+		if (distance >= reorderWindow) {
+			stream.sendError(new MoleculerError("Stream reorder window exceeded (sequence: " + seq + ", expected: "
+					+ nextSeq + ", window size: " + reorderWindow + ")!", null, "MoleculerError", nodeID, false, 500,
+					"STREAM_REORDER_WINDOW_EXCEEDED", "seq", seq, "expected", nextSeq, "window", reorderWindow));
+			finished = true;
 			return true;
 		}
 
-		// Create processing variables
-		byte[] bytes = null;
-		Throwable cause = null;
+		// Process later (overwrites the stale duplicates)
+		chunk.seq = seq;
+		int idx = (int) (seq & mask);
+		Chunk prev = ring.get(idx);
+		if (prev == null || prev.seq < nextSeq) {
+			ring.compareAndSet(idx, prev, chunk);
+		}
+		return drain();
+	}
+
+	/**
+	 * Delivers the buffered chunks in order.
+	 *
+	 * @return true = remove stream from registry
+	 */
+	protected boolean drain() {
 		boolean close = false;
+		while (delivering.compareAndSet(false, true)) {
+			try {
+				while (true) {
+					long seq = nextSeq;
+					int idx = (int) (seq & mask);
+					Chunk chunk = ring.get(idx);
+					if (chunk == null || chunk.seq != seq) {
+						break;
+					}
+					ring.set(idx, null);
+					nextSeq = seq + 1;
+					if (deliver(chunk)) {
+						finished = true;
+						close = true;
+					}
+				}
+			} finally {
+				delivering.set(false);
+			}
+
+			// An other thread may have stored the next chunk in the meantime
+			Chunk chunk = ring.get((int) (nextSeq & mask));
+			if (chunk == null || chunk.seq != nextSeq) {
+				break;
+			}
+		}
+		return close;
+	}
+
+	// --- DECODE CHUNK ---
 
-		// Parse incoming message
+	protected static final class Chunk {
+
+		protected long seq;
+		protected byte[] bytes;
+		protected Throwable cause;
+		protected boolean close;
+
+	}
+
+	protected Chunk decode(Tree message) {
+		Chunk chunk = new Chunk();
 		try {
 			boolean success = message.get("success", true);
 			if (success) {
@@ -172,51 +298,81 @@ public class IncomingStream {
 					if (data == null) {
 						data = params;
 					}
-					if (data.isEnumeration()) {
-						bytes = new byte[data.size()];
-						int idx = 0;
-						for (Tree item : data) {
-							bytes[idx++] = (byte) item.asInteger().intValue();
-						}
-					} else if (data.isStructure()) {
-						if (!data.isEmpty()) {
-							bytes = data.toBinary();
-						}
-					} else {
-						String value = data.asString();
-						if (value != null && !value.isEmpty()) {
-							bytes = value.getBytes(StandardCharsets.UTF_8);
-						}
-					}
+					chunk.bytes = toBytes(data);
 				}
-				close = !message.get("stream", false);
+				chunk.close = !message.get("stream", false);
 			} else {
 				Tree error = message.get("error");
 				if (error == null) {
-					cause = new MoleculerError("Remote invocation failed!", null, "MoleculerError", nodeID, false, 500,
-							"UNKNOWN_ERROR", message);
+					chunk.cause = new MoleculerError("Remote invocation failed!", null, "MoleculerError", nodeID, false,
+							500, "UNKNOWN_ERROR", message);
 				} else {
-					cause = MoleculerErrorUtils.create(error);
+					chunk.cause = MoleculerErrorUtils.create(error);
 				}
-				close = true;
+				chunk.close = true;
 			}
 		} catch (Throwable error) {
-			cause = error;
+			chunk.cause = error;
+		}
+		return chunk;
+	}
+
+	protected byte[] toBytes(Tree data) {
+		Object value = data.asObject();
+		if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			return bytes.length == 0 ? null : bytes;
+		}
+		if (data.isEnumeration()) {
+			if (value instanceof List) {
+
+				// Parsed JSON array (or "Buffer" of Node.js)
+				List<?> list = (List<?>) value;
+				byte[] bytes = new byte[list.size()];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = ((Number) list.get(i)).byteValue();
+				}
+				return bytes;
+			}
+			byte[] bytes = new byte[data.size()];
+			int idx = 0;
+			for (Tree item : data) {
+				bytes[idx++] = (byte) item.asInteger().intValue();
+			}
+			return bytes;
+		}
+		if (data.isStructure()) {
+			return data.isEmpty() ? null : data.toBinary();
+		}
+		String value2 = data.asString();
+		if (value2 != null && !value2.isEmpty()) {
+			return value2.getBytes(StandardCharsets.UTF_8);
+		}
+		return null;
+	}
+
+	// --- DELIVER CHUNK ---
+
+	protected boolean deliver(Chunk chunk) {
+
+		// Stream closed
+		if (finished || stream.isClosed()) {
+			return true;
 		}
 
 		// Bytes
-		if (bytes != null) {
-			stream.sendData(bytes);
+		if (chunk.bytes != null) {
+			stream.sendData(chunk.bytes);
 		}
 
 		// Error
-		if (cause != null) {
-			stream.sendError(cause);
+		if (chunk.cause != null) {
+			stream.sendError(chunk.cause);
 			return true;
 		}
 
 		// Close
-		if (close) {
+		if (chunk.close) {
 			stream.sendClose();
 			return true;
 		}
@@ -235,4 +391,8 @@ public class IncomingStream {
 		return stream;
 	}
 
-}
\ No newline at end of file
+	public int getReorderWindow() {
+		return reorderWindow;
+	}
+
+}
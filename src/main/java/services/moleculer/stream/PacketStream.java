@@ -27,19 +27,20 @@ package services.moleculer.stream;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.LinkedList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -216,6 +217,43 @@ public class PacketStream {
 		return false;
 	}
 
+	// --- SEND FILE REGION ---
+
+	/**
+	 * Sends a region of a file. If the stream has only one listener, which can
+	 * send file regions (eg. a remote stream on TcpTransporter), the region is
+	 * passed to the listener without reading it into the heap. Otherwise the
+	 * region is sent as a byte array.
+	 * 
+	 * @param region
+	 *            file region (released by this method or by the listener)
+	 * 
+	 * @return true if success
+	 */
+	public synchronized boolean sendFileRegion(FileRegion region) {
+		try {
+			if (closed.get()) {
+				return false;
+			}
+			if (listeners != null && listeners.length == 1 && listeners[0] instanceof FileRegionListener) {
+				if (((FileRegionListener) listeners[0]).onFileRegion(region)) {
+					transferedBytes.addAndGet(region.count);
+					region = null;
+					return true;
+				}
+			}
+			return sendData(region.read());
+		} catch (MoleculerError moleculerError) {
+			throw moleculerError;
+		} catch (Throwable error) {
+			throw new MoleculerClientError("Unable to send file region to stream listener!", error, nodeID, null);
+		} finally {
+			if (region != null) {
+				region.release();
+			}
+		}
+	}
+
 	// --- SEND ERROR ---
 
 	public synchronized boolean sendError(Throwable cause) {
@@ -434,7 +472,7 @@ public class PacketStream {
 
 	public Promise transferFrom(File source) {
 		try {
-			return transferFrom(new FileInputStream(source));
+			return transferFrom(FileChannel.open(source.toPath(), StandardOpenOption.READ));
 		} catch (Throwable cause) {
 			return Promise.reject(cause);
 		}
@@ -449,6 +487,23 @@ public class PacketStream {
 	}
 
 	public Promise transferFrom(ReadableByteChannel source) {
+		if (source instanceof FileChannel) {
+
+			// Send file regions (zero-copy streaming, if supported)
+			FileChannel channel = (FileChannel) source;
+			Promise promise = new Promise();
+			try {
+				scheduleNextRegion(channel, new AtomicInteger(1), promise, channel.position(),
+						packetSize < 1 ? DEFAULT_MIN_PACKET_SIZE : packetSize);
+			} catch (Throwable cause) {
+				try {
+					channel.close();
+				} catch (Throwable ignored) {
+				}
+				return Promise.reject(cause);
+			}
+			return promise;
+		}
 		ByteBuffer packet = ByteBuffer.allocate(packetSize < 1 ? DEFAULT_MIN_PACKET_SIZE : packetSize);
 		Promise promise = new Promise();
 		OutputStream destination = asOutputStream();
@@ -456,6 +511,37 @@ public class PacketStream {
 		return promise;
 	}
 
+	protected void scheduleNextRegion(FileChannel source, AtomicInteger references, Promise promise, long position,
+			int size) {
+		scheduler.schedule(() -> {
+			try {
+				long remaining = promise.isDone() ? 0 : source.size() - position;
+				if (remaining < 1) {
+					try {
+						FileRegion.release(source, references);
+						sendClose();
+					} finally {
+						promise.complete();
+					}
+				} else {
+					int count = (int) Math.min(size, remaining);
+					sendFileRegion(new FileRegion(source, position, count, references));
+					scheduleNextRegion(source, references, promise, position + count, size);
+				}
+			} catch (Throwable cause) {
+				try {
+					FileRegion.release(source, references);
+					try {
+						sendError(cause);
+					} catch (Throwable ignored) {
+					}
+				} finally {
+					promise.complete(cause);
+				}
+			}
+		}, packetDelay, TimeUnit.MILLISECONDS);
+	}
+
 	protected void scheduleNextPacket(ReadableByteChannel source, OutputStream destination, Promise promise,
 			ByteBuffer packet) {
 		scheduler.schedule(() -> {
@@ -562,29 +648,39 @@ public class PacketStream {
 	public Promise transferTo(File destination, boolean append) {
 		return new Promise(res -> {
 
-			// First data packet?
-			final AtomicBoolean first = new AtomicBoolean(!append);
+			// Opened at the first data packet, and kept open until the end
+			final FileChannel[] out = new FileChannel[1];
 
 			onPacket((bytes, cause, close) -> {
 
 				// Data received
 				if (bytes != null) {
-					FileOutputStream out = null;
 					try {
-						out = new FileOutputStream(destination, !first.compareAndSet(true, false));
-						out.write(bytes);
-						out.flush();
+						if (out[0] == null) {
+							out[0] = append
+									? FileChannel.open(destination.toPath(), StandardOpenOption.CREATE,
+											StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+									: FileChannel.open(destination.toPath(), StandardOpenOption.CREATE,
+											StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+						}
+						ByteBuffer buffer = ByteBuffer.wrap(bytes);
+						while (buffer.hasRemaining()) {
+							out[0].write(buffer);
+						}
 					} catch (Throwable err) {
 						cause = err;
-					} finally {
-						if (out != null) {
-							try {
-								out.close();
-							} catch (Throwable ignored) {
-
-								// Do nothing
+					}
+				}
+				if (cause != null || close) {
+					if (out[0] != null) {
+						try {
+							out[0].close();
+						} catch (Throwable err) {
+							if (cause == null) {
+								cause = err;
 							}
 						}
+						out[0] = null;
 					}
 				}
 				if (cause != null) {
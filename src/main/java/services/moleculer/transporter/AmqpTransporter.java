@@ -28,7 +28,11 @@ package services.moleculer.transporter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.rabbitmq.client.AMQP;
@@ -55,6 +59,13 @@ import services.moleculer.service.Name;
  * ServiceBroker broker = ServiceBroker.builder().nodeID("node1").transporter(new AmqpTransporter("localhost")).build();
  * </pre>
  * 
+ * Messages are published through a pool of channels (see "channelPoolSize"),
+ * so the publisher threads do not block each other. Publisher confirms are
+ * optional (see "publisherConfirms"), they are collected in batches. On the
+ * consumer side, the "prefetchCount" enables flow control, and the
+ * "ackBatchSize" turns on the (batched) manual acknowledgement for the queues
+ * of the directly addressed packets.<br>
+ * <br>
  * <b>Required dependency:</b><br>
  * <br>
  * // https://mvnrepository.com/artifact/com.rabbitmq/amqp-client<br>
@@ -92,11 +103,67 @@ public class AmqpTransporter extends Transporter {
 	protected Map<String, Object> queueProperties = new HashMap<>();
 	protected Map<String, Object> exchangeProperties = new HashMap<>();
 
+	// --- CHANNEL POOL AND FLOW CONTROL ---
+
+	/**
+	 * Number of publisher channels (a channel is used by only one thread at a
+	 * time).
+	 */
+	protected int channelPoolSize = 4;
+
+	/**
+	 * Max time to wait for a free publisher channel, in MILLISECONDS.
+	 */
+	protected long channelTimeout = 5000;
+
+	/**
+	 * Use publisher confirms.
+	 */
+	protected boolean publisherConfirms;
+
+	/**
+	 * Wait for the confirms after this number of messages (per channel).
+	 */
+	protected int confirmBatchSize = 64;
+
+	/**
+	 * Max time to wait for the confirms, in MILLISECONDS.
+	 */
+	protected long confirmTimeout = 5000;
+
+	/**
+	 * Max number of unacknowledged messages per consumer (0 = unlimited).
+	 */
+	protected int prefetchCount;
+
+	/**
+	 * Acknowledge the directly addressed messages in batches of this size (0
+	 * = use automatic acknowledgement). Must be less than the
+	 * "prefetchCount".
+	 */
+	protected int ackBatchSize;
+
+	/**
+	 * Period of acknowledging the remaining (not yet acknowledged) messages,
+	 * in MILLISECONDS.
+	 */
+	protected long ackInterval = 100;
+
 	// --- AMQP CONNECTION ---
 
 	protected Connection client;
 	protected Channel channel;
 
+	// --- PUBLISHER CHANNEL POOL ---
+
+	protected ArrayBlockingQueue<PublisherChannel> publishers;
+
+	// --- CONSUMERS WITH MANUAL ACKNOWLEDGEMENT ---
+
+	protected final ConcurrentLinkedQueue<AmqpConsumer> ackConsumers = new ConcurrentLinkedQueue<>();
+
+	protected volatile ScheduledFuture<?> ackTimer;
+
 	// --- STARTED FLAG ---
 
 	protected final AtomicBoolean started = new AtomicBoolean();
@@ -159,7 +226,30 @@ public class AmqpTransporter extends Transporter {
 			client = factory.newConnection();
 			channel = client.createChannel();
 
-			logger.info("AMQP pub-sub connection estabilished.");
+			// Set consumer prefetch
+			if (prefetchCount > 0) {
+				channel.basicQos(prefetchCount);
+				if (ackBatchSize >= prefetchCount) {
+					ackBatchSize = Math.max(1, prefetchCount / 2);
+					logger.warn("The \"ackBatchSize\" must be less than the \"prefetchCount\" (reduced to "
+							+ ackBatchSize + ").");
+				}
+			}
+			if (ackBatchSize > 0 && ackTimer == null) {
+				ackTimer = scheduler.scheduleWithFixedDelay(this::flushAcks, ackInterval, ackInterval,
+						TimeUnit.MILLISECONDS);
+			}
+
+			// Create pool of publisher channels
+			int size = Math.max(1, channelPoolSize);
+			ArrayBlockingQueue<PublisherChannel> pool = new ArrayBlockingQueue<>(size);
+			for (int i = 0; i < size; i++) {
+				pool.add(new PublisherChannel(client.createChannel(), publisherConfirms));
+			}
+			publishers = pool;
+
+			logger.info("AMQP pub-sub connection estabilished (with " + size + " publisher channels"
+					+ (publisherConfirms ? " and publisher confirms" : "") + ").");
 			connected();
 		} catch (Exception cause) {
 			String msg = cause.getMessage();
@@ -177,6 +267,15 @@ public class AmqpTransporter extends Transporter {
 
 	protected void disconnect() {
 		boolean notify = false;
+		ArrayBlockingQueue<PublisherChannel> pool = publishers;
+		if (pool != null) {
+			publishers = null;
+			PublisherChannel publisher;
+			while ((publisher = pool.poll()) != null) {
+				publisher.close();
+			}
+		}
+		ackConsumers.clear();
 		if (channel != null) {
 			try {
 				channel.close();
@@ -231,6 +330,13 @@ public class AmqpTransporter extends Transporter {
 		// Mark as stopped
 		started.set(false);
 
+		// Acknowledge processed messages
+		if (ackTimer != null) {
+			ackTimer.cancel(false);
+			ackTimer = null;
+		}
+		flushAcks();
+
 		// Stop timers
 		super.stopped();
 
@@ -261,70 +367,179 @@ public class AmqpTransporter extends Transporter {
 							exchangeProperties);
 					this.channel.queueBind(queueName, channel, "");
 				}
-				this.channel.basicConsume(queueName, true, new Consumer() {
+				// Directly addressed packets are acknowledged manually
+				boolean autoAck = ackBatchSize < 1 || !channel.endsWith(postfix);
+				AmqpConsumer consumer = new AmqpConsumer(this.channel, channel, autoAck);
+				if (!autoAck) {
+					ackConsumers.add(consumer);
+				}
+				this.channel.basicConsume(queueName, autoAck, consumer);
 
-					// --- MESSAGE RECEIVED ---
+			} catch (Exception cause) {
+				return Promise.reject(cause);
+			}
+		}
+		return Promise.resolve();
+	}
 
-					@Override
-					public final void handleDelivery(String consumerTag, Envelope envelope,
-							AMQP.BasicProperties properties, byte[] body) throws IOException {
+	// --- AMQP CONSUMER ---
 
-						// We are running in the shared executor's pool,
-						// do not create new task.
-						processReceivedMessage(channel, body);
-					}
+	protected class AmqpConsumer implements Consumer {
 
-					// --- CONNECTION LOST ---
-
-					@Override
-					public final void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
-						synchronized (factory) {
-							if (client != null) {
-								logger.info("AMQP pub-sub connection aborted.");
-								if (started.get()) {
-									reconnect();
-								}
-							}
-						}
-					}
+		protected final Channel amqpChannel;
+		protected final String channel;
+		protected final boolean autoAck;
 
-					// --- UNUSED METHODS ---
+		// --- ACKNOWLEDGEMENT ---
 
-					@Override
-					public final void handleConsumeOk(String consumerTag) {
-						if (debugHeartbeats) {
-							logger.info("ConsumeOk packet received (consumerTag: " + consumerTag + ").");
-						}
-					}
+		protected long lastTag = -1;
+		protected long ackedTag = -1;
+		protected int unacked;
 
-					@Override
-					public final void handleCancelOk(String consumerTag) {
-						if (debugHeartbeats) {
-							logger.info("CancelOk packet received (consumerTag: " + consumerTag + ").");
-						}
-					}
+		protected AmqpConsumer(Channel amqpChannel, String channel, boolean autoAck) {
+			this.amqpChannel = amqpChannel;
+			this.channel = channel;
+			this.autoAck = autoAck;
+		}
+
+		// --- MESSAGE RECEIVED ---
+
+		@Override
+		public final void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+				byte[] body) throws IOException {
 
-					@Override
-					public final void handleCancel(String consumerTag) throws IOException {
-						if (debugHeartbeats) {
-							logger.info("Cancel packet received (consumerTag: " + consumerTag + ").");
+			// We are running in the shared executor's pool,
+			// do not create new task.
+			try {
+				processReceivedMessage(channel, body);
+			} finally {
+				if (!autoAck) {
+					synchronized (this) {
+						lastTag = envelope.getDeliveryTag();
+						if (++unacked >= ackBatchSize) {
+							ack();
 						}
 					}
+				}
+			}
+		}
 
-					@Override
-					public final void handleRecoverOk(String consumerTag) {
-						if (debugHeartbeats) {
-							logger.info("RecoverOk packet received (consumerTag: " + consumerTag + ").");
-						}
+		protected synchronized void ack() throws IOException {
+			if (lastTag > ackedTag) {
+
+				// Acknowledge all messages up to the last delivery tag
+				amqpChannel.basicAck(lastTag, true);
+				ackedTag = lastTag;
+				unacked = 0;
+			}
+		}
+
+		// --- CONNECTION LOST ---
+
+		@Override
+		public final void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+			synchronized (factory) {
+				if (client != null) {
+					logger.info("AMQP pub-sub connection aborted.");
+					if (started.get()) {
+						reconnect();
 					}
+				}
+			}
+		}
+
+		// --- UNUSED METHODS ---
+
+		@Override
+		public final void handleConsumeOk(String consumerTag) {
+			if (debugHeartbeats) {
+				logger.info("ConsumeOk packet received (consumerTag: " + consumerTag + ").");
+			}
+		}
+
+		@Override
+		public final void handleCancelOk(String consumerTag) {
+			if (debugHeartbeats) {
+				logger.info("CancelOk packet received (consumerTag: " + consumerTag + ").");
+			}
+		}
+
+		@Override
+		public final void handleCancel(String consumerTag) throws IOException {
+			if (debugHeartbeats) {
+				logger.info("Cancel packet received (consumerTag: " + consumerTag + ").");
+			}
+		}
+
+		@Override
+		public final void handleRecoverOk(String consumerTag) {
+			if (debugHeartbeats) {
+				logger.info("RecoverOk packet received (consumerTag: " + consumerTag + ").");
+			}
+		}
+
+	}
 
-				});
+	// --- ACKNOWLEDGE REMAINING MESSAGES ---
 
+	protected void flushAcks() {
+		for (AmqpConsumer consumer : ackConsumers) {
+			try {
+				consumer.ack();
 			} catch (Exception cause) {
-				return Promise.reject(cause);
+				logger.warn("Unable to acknowledge AMQP messages!", cause);
 			}
 		}
-		return Promise.resolve();
+	}
+
+	// --- PUBLISHER CHANNEL ---
+
+	protected class PublisherChannel {
+
+		protected final Channel channel;
+		protected final boolean confirms;
+
+		protected int unconfirmed;
+
+		protected PublisherChannel(Channel channel, boolean confirms) throws IOException {
+			this.channel = channel;
+			this.confirms = confirms;
+			if (confirms) {
+				channel.confirmSelect();
+			}
+		}
+
+		protected void publish(String exchange, String routingKey, byte[] bytes) throws Exception {
+			channel.basicPublish(exchange, routingKey, mandatory, immediate, messageProperties, bytes);
+			if (confirms && ++unconfirmed >= confirmBatchSize) {
+				waitForConfirms();
+			}
+		}
+
+		protected void waitForConfirms() throws Exception {
+			int count = unconfirmed;
+			unconfirmed = 0;
+			try {
+				if (!channel.waitForConfirms(confirmTimeout)) {
+					logger.warn("AMQP server rejected some of the last " + count + " messages!");
+				}
+			} catch (TimeoutException timeout) {
+				logger.warn("AMQP server did not confirm the last " + count + " messages within " + confirmTimeout
+						+ " milliseconds!");
+			}
+		}
+
+		protected void close() {
+			try {
+				if (unconfirmed > 0 && channel.isOpen()) {
+					waitForConfirms();
+				}
+				channel.close();
+			} catch (Throwable cause) {
+				logger.debug("Unable to close AMQP channel!", cause);
+			}
+		}
+
 	}
 
 	// --- PUBLISH ---
@@ -341,23 +556,38 @@ public class AmqpTransporter extends Transporter {
 					counterTransporterPacketsSentBytes.increment(bytes.length);
 				}
 
-				int pos = channel.indexOf('.');
-				if (channel.indexOf('.', pos + 1) > -1) {
+				// Borrow a publisher channel
+				ArrayBlockingQueue<PublisherChannel> pool = publishers;
+				if (pool == null) {
+					return;
+				}
+				PublisherChannel publisher = pool.poll(channelTimeout, TimeUnit.MILLISECONDS);
+				if (publisher == null) {
+					logger.warn("Unable to send message to AMQP server (no free channel)!");
+					return;
+				}
+				try {
+					int pos = channel.indexOf('.');
+					if (channel.indexOf('.', pos + 1) > -1) {
 
-					// Send to queue directly
-					if (debug && (debugHeartbeats || !channel.endsWith(heartbeatChannel))) {
-						logger.info("Submitting message to queue \"" + channel + "\":\r\n" + message.toString());
-					}
-					this.channel.basicPublish("", channel, mandatory, immediate, messageProperties, bytes);
+						// Send to queue directly
+						if (debug && (debugHeartbeats || !channel.endsWith(heartbeatChannel))) {
+							logger.info("Submitting message to queue \"" + channel + "\":\r\n" + message.toString());
+						}
+						publisher.publish("", channel, bytes);
 
-				} else {
+					} else {
 
-					// Send to exchange
-					if (debug && (debugHeartbeats || !channel.endsWith(heartbeatChannel))) {
-						logger.info("Submitting message to exchange \"" + channel + "\":\r\n" + message.toString());
-					}
-					this.channel.basicPublish(channel, "", mandatory, immediate, messageProperties, bytes);
+						// Send to exchange
+						if (debug && (debugHeartbeats || !channel.endsWith(heartbeatChannel))) {
+							logger.info(
+									"Submitting message to exchange \"" + channel + "\":\r\n" + message.toString());
+						}
+						publisher.publish(channel, "", bytes);
 
+					}
+				} finally {
+					pool.offer(publisher);
 				}
 			} catch (Exception cause) {
 				logger.warn("Unable to send message to AMQP server!", cause);
@@ -473,4 +703,68 @@ public class AmqpTransporter extends Transporter {
 		this.internal = internal;
 	}
 
+	public int getChannelPoolSize() {
+		return channelPoolSize;
+	}
+
+	public void setChannelPoolSize(int channelPoolSize) {
+		this.channelPoolSize = channelPoolSize;
+	}
+
+	public long getChannelTimeout() {
+		return channelTimeout;
+	}
+
+	public void setChannelTimeout(long channelTimeout) {
+		this.channelTimeout = channelTimeout;
+	}
+
+	public boolean isPublisherConfirms() {
+		return publisherConfirms;
+	}
+
+	public void setPublisherConfirms(boolean publisherConfirms) {
+		this.publisherConfirms = publisherConfirms;
+	}
+
+	public int getConfirmBatchSize() {
+		return confirmBatchSize;
+	}
+
+	public void setConfirmBatchSize(int confirmBatchSize) {
+		this.confirmBatchSize = confirmBatchSize;
+	}
+
+	public long getConfirmTimeout() {
+		return confirmTimeout;
+	}
+
+	public void setConfirmTimeout(long confirmTimeout) {
+		this.confirmTimeout = confirmTimeout;
+	}
+
+	public int getPrefetchCount() {
+		return prefetchCount;
+	}
+
+	public void setPrefetchCount(int prefetchCount) {
+		this.prefetchCount = prefetchCount;
+	}
+
+	public int getAckBatchSize() {
+		return ackBatchSize;
+	}
+
+	public void setAckBatchSize(int ackBatchSize) {
+		this.ackBatchSize = ackBatchSize;
+	}
+
+	public long getAckInterval() {
+		return ackInterval;
+	}
+
+	public void setAckInterval(long ackInterval) {
+		this.ackInterval = ackInterval;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Buffer of the outgoing events of one target node. The buffered events are
+ * sent in one EVENT packet (with a "batch" property) when the number of the
+ * events or their estimated size reaches the limit, or when the linger time
+ * expires. Access must be synchronized on the EventBatch instance.
+ *
+ * @see Transporter#setBatchedEvents(String...)
+ */
+public class EventBatch {
+
+	// --- TARGET NODE ID ---
+
+	protected final String nodeID;
+
+	// --- BUFFERED EVENTS ---
+
+	protected ArrayList<Object> events;
+
+	/**
+	 * Estimated size of the buffered events in bytes.
+	 */
+	protected int size;
+
+	// --- LINGER TIMER ---
+
+	protected ScheduledFuture<?> timer;
+
+	// --- CONSTRUCTOR ---
+
+	public EventBatch(String nodeID) {
+		this.nodeID = nodeID;
+	}
+
+	// --- ADD EVENT ---
+
+	/**
+	 * Adds an event packet (without "ver" and "sender" properties) to the
+	 * buffer.
+	 * 
+	 * @param event
+	 *            event packet
+	 * 
+	 * @return number of the buffered events
+	 */
+	public int add(Object event) {
+		if (events == null) {
+			events = new ArrayList<>();
+		}
+		events.add(event);
+		size += estimateSize(event);
+		return events.size();
+	}
+
+	// --- REMOVE ALL EVENTS ---
+
+	/**
+	 * Removes the buffered events and cancels the linger timer.
+	 * 
+	 * @return buffered events (or null if the buffer is empty)
+	 */
+	public ArrayList<Object> drain() {
+		if (timer != null) {
+			timer.cancel(false);
+			timer = null;
+		}
+		ArrayList<Object> list = events;
+		events = null;
+		size = 0;
+		return list;
+	}
+
+	// --- SIZE ESTIMATION ---
+
+	/**
+	 * Estimates the serialized size of a packet (without serializing it).
+	 * 
+	 * @param value
+	 *            value of a packet property
+	 * 
+	 * @return estimated size in bytes
+	 */
+	@SuppressWarnings("rawtypes")
+	public static int estimateSize(Object value) {
+		if (value == null) {
+			return 4;
+		}
+		if (value instanceof String) {
+			return ((String) value).length() + 2;
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		}
+		if (value instanceof Map) {
+			int size = 2;
+			for (Object o : ((Map) value).entrySet()) {
+				Map.Entry entry = (Map.Entry) o;
+				size += String.valueOf(entry.getKey()).length() + 4 + estimateSize(entry.getValue());
+			}
+			return size;
+		}
+		if (value instanceof Collection) {
+			int size = 2;
+			for (Object item : (Collection) value) {
+				size += estimateSize(item) + 1;
+			}
+			return size;
+		}
+		if (value instanceof Object[]) {
+			int size = 2;
+			for (Object item : (Object[]) value) {
+				size += estimateSize(item) + 1;
+			}
+			return size;
+		}
+		return 8;
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public String getNodeID() {
+		return nodeID;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getCount() {
+		return events == null ? 0 : events.size();
+	}
+
+}
@@ -26,6 +26,7 @@
 package services.moleculer.transporter;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -49,6 +50,10 @@ import services.moleculer.util.redis.RedisPubSubClient;
  * ServiceBroker broker = ServiceBroker.builder().nodeID("node1")
  * .transporter(new RedisTransporter("localhost")).build();
  * </pre>
+ * In "pipelining" mode the concurrent publishes are coalesced into pipelined
+ * batches; a batch is flushed when it reaches the "pipelineSize", or after
+ * the "pipelineLinger" (in microseconds).<br>
+ * <br>
  * <b>Required dependency:</b><br>
  * <br>
  * // https://mvnrepository.com/artifact/biz.paluch.redis/lettuce<br>
@@ -83,6 +88,33 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 	protected boolean secure;
 	protected String[] urls = { "localhost" };
 
+	// --- PIPELINING ---
+
+	/**
+	 * Coalesce concurrent publishes into pipelined batches.
+	 */
+	protected boolean pipelining;
+
+	/**
+	 * Max number of commands in a pipelined batch.
+	 */
+	protected int pipelineSize = 64;
+
+	/**
+	 * Max time to wait for other commands before flushing a batch, in
+	 * MICROSECONDS.
+	 */
+	protected long pipelineLinger = 100;
+
+	/**
+	 * Number of unflushed commands.
+	 */
+	protected final AtomicInteger pending = new AtomicInteger();
+
+	// --- CACHED CHANNEL NAMES ---
+
+	protected final ConcurrentHashMap<String, byte[]> channelBytes = new ConcurrentHashMap<>();
+
 	// --- REDIS CLIENTS ---
 
 	protected RedisPubSubClient clientSub;
@@ -127,6 +159,9 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 		// Connect pub
 		try {
 			clientPub.connect();
+			if (pipelining) {
+				clientPub.setAutoFlush(false);
+			}
 		} catch (Exception cause) {
 			unableToConnect(cause);
 		}
@@ -151,6 +186,7 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 		if (s != STATUS_DISCONNECTED && s != STATUS_DISCONNECTING) {
 			notify = true;
 			status.set(STATUS_DISCONNECTING);
+			flushPipeline();
 			if (clientSub != null) {
 				clientSub.disconnect();
 			}
@@ -234,8 +270,23 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 					counterTransporterPacketsSentBytes.increment(bytes.length);
 				}
 				
+				// Get cached channel name
+				byte[] name = channelBytes.get(channel);
+				if (name == null) {
+					name = channel.getBytes(StandardCharsets.UTF_8);
+					channelBytes.put(channel, name);
+				}
+
 				// Send
-				clientPub.publish(channel, bytes);
+				clientPub.publish(name, bytes);
+				if (pipelining) {
+					int count = pending.incrementAndGet();
+					if (count >= pipelineSize) {
+						flushPipeline();
+					} else if (count == 1) {
+						scheduler.schedule(this::flushPipeline, pipelineLinger, TimeUnit.MICROSECONDS);
+					}
+				}
 			} catch (Exception cause) {
 				logger.warn("Unable to send message to Redis!", cause);
 				reconnect();
@@ -243,6 +294,17 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 		}
 	}
 
+	// --- FLUSH PIPELINED COMMANDS ---
+
+	protected void flushPipeline() {
+		if (pending.getAndSet(0) > 0) {
+			RedisPubSubClient client = clientPub;
+			if (client != null) {
+				client.flush();
+			}
+		}
+	}
+
 	// --- REDIS MESSAGE LISTENER METHODS ---
 
 	@Override
@@ -344,4 +406,28 @@ public class RedisTransporter extends Transporter implements EventBus, RedisPubS
 		this.secure = secure;
 	}
 
+	public boolean isPipelining() {
+		return pipelining;
+	}
+
+	public void setPipelining(boolean pipelining) {
+		this.pipelining = pipelining;
+	}
+
+	public int getPipelineSize() {
+		return pipelineSize;
+	}
+
+	public void setPipelineSize(int pipelineSize) {
+		this.pipelineSize = pipelineSize;
+	}
+
+	public long getPipelineLinger() {
+		return pipelineLinger;
+	}
+
+	public void setPipelineLinger(long pipelineLinger) {
+		this.pipelineLinger = pipelineLinger;
+	}
+
 }
\ No newline at end of file
@@ -43,11 +43,15 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
+import services.moleculer.context.Context;
 import services.moleculer.error.InvalidPacketDataError;
 import services.moleculer.error.MoleculerError;
 import services.moleculer.error.MoleculerServerError;
+import services.moleculer.serializer.ChainedSerializer;
 import services.moleculer.service.Name;
+import services.moleculer.stream.FileRegion;
 import services.moleculer.transporter.tcp.NodeDescriptor;
+import services.moleculer.transporter.tcp.SendBuffer;
 import services.moleculer.transporter.tcp.TcpReader;
 import services.moleculer.transporter.tcp.TcpWriter;
 import services.moleculer.transporter.tcp.UDPLocator;
@@ -101,6 +105,20 @@ public class TcpTransporter extends Transporter {
 	protected static final byte PACKET_GOSSIP_RSP_ID = 7;
 	protected static final byte PACKET_GOSSIP_HELLO_ID = 8;
 
+	/**
+	 * Stream chunk with raw (unserialized) bytes. Structure: packet ID of the
+	 * carried packet (1 byte), length of the header (4 bytes), serialized
+	 * header (without the "data" block), raw bytes of the chunk.
+	 */
+	protected static final byte PACKET_CHUNK_ID = 9;
+
+	// --- CAPABILITIES ---
+
+	/**
+	 * The node can receive stream chunks in "raw" packets.
+	 */
+	public static final String CAPABILITY_RAW_CHUNKS = "rawChunks";
+
 	// --- PROPERTIES ---
 
 	/**
@@ -126,6 +144,32 @@ public class TcpTransporter extends Transporter {
 	 */
 	protected int maxPacketSize = 1024 * 1024;
 
+	/**
+	 * Requests and responses larger than this size (in BYTES) are sent in the
+	 * "bulk" lane, like the stream chunks. Small packets can overtake them
+	 * (0 = only stream packets are sent in the bulk lane).
+	 */
+	protected int bulkPacketSize = 64 * 1024;
+
+	/**
+	 * Number of bytes the RPC lane may send per round when the RPC and bulk
+	 * lanes compete for the same connection.
+	 */
+	protected int rpcQuantum = 64 * 1024;
+
+	/**
+	 * Number of bytes the bulk (stream) lane may send per round when the RPC
+	 * and bulk lanes compete for the same connection.
+	 */
+	protected int bulkQuantum = 16 * 1024;
+
+	/**
+	 * Send file streams with "FileChannel.transferTo" (zero-copy) to the nodes
+	 * which support it. Disabled automatically when the serializer compresses
+	 * or encrypts the packets.
+	 */
+	protected boolean zeroCopyStreaming = true;
+
 	/**
 	 * List of URLs ("tcp://host:port/nodeID" or "host:port/nodeID" or
 	 * "host/nodeID"), when UDP discovery is disabled.
@@ -438,12 +482,19 @@ public class TcpTransporter extends Transporter {
 	// --- MESSAGE RECEIVED ---
 
 	public void received(byte packetID, byte[] packet) {
+		long receivedAt = System.currentTimeMillis();
 		executor.execute(() -> {
 
 			// Parse message
 			Tree data;
+			byte type = packetID;
 			try {
-				data = serializer.read(packet);
+				if (type == PACKET_CHUNK_ID) {
+					type = packet[0];
+					data = readChunk(packet);
+				} else {
+					data = serializer.readPacket(packet);
+				}
 			} catch (Exception cause) {
 				logger.warn("Unable to parse incoming message!", cause);
 				return;
@@ -452,7 +503,7 @@ public class TcpTransporter extends Transporter {
 			// Send message to proper component
 			try {
 
-				switch (packetID) {
+				switch (type) {
 				case PACKET_EVENT_ID:
 
 					// Incoming event
@@ -468,7 +519,7 @@ public class TcpTransporter extends Transporter {
 					if (debug) {
 						logger.info("Request message received:\r\n" + data);
 					}
-					registry.receiveRequest(data);
+					registry.receiveRequest(data, receivedAt);
 					return;
 
 				case PACKET_RESPONSE_ID:
@@ -493,7 +544,7 @@ public class TcpTransporter extends Transporter {
 					}
 					data.put("sender", this.nodeID);
 					data.put("arrived", System.currentTimeMillis());
-					writer.send(sender, serialize(PACKET_PONG_ID, data));
+					writer.send(sender, serialize(PACKET_PONG_ID, data), SendBuffer.LANE_CONTROL);
 					return;
 
 				case PACKET_PONG_ID:
@@ -524,7 +575,7 @@ public class TcpTransporter extends Transporter {
 					return;
 
 				default:
-					logger.warn("Unsupported message ID (" + packetID + ")!");
+					logger.warn("Unsupported message ID (" + type + ")!");
 				}
 
 			} catch (Exception cause) {
@@ -533,6 +584,20 @@ public class TcpTransporter extends Transporter {
 		});
 	}
 
+	protected Tree readChunk(byte[] packet) throws Exception {
+		int len = ((0xFF & packet[1]) << 24) | ((0xFF & packet[2]) << 16) | ((0xFF & packet[3]) << 8)
+				| (0xFF & packet[4]);
+		byte[] header = new byte[len];
+		System.arraycopy(packet, 5, header, 0, len);
+		Tree data = serializer.read(header);
+		byte[] bytes = new byte[packet.length - 5 - len];
+		System.arraycopy(packet, 5 + len, bytes, 0, bytes.length);
+		Tree params = data.putMap(packet[0] == PACKET_RESPONSE_ID ? "data" : "params");
+		params.put("type", "Buffer");
+		params.put("data", bytes);
+		return data;
+	}
+
 	// --- CONNECTION ERROR ---
 
 	public void unableToSend(String nodeID, LinkedList<byte[]> packets, Throwable cause) {
@@ -601,14 +666,19 @@ public class TcpTransporter extends Transporter {
 								System.arraycopy(packet, 6, copy, 0, copy.length);
 
 								// Deserialize packet
-								Tree message = serializer.read(copy);
+								Tree message;
+								if (packet[5] == PACKET_CHUNK_ID) {
+									message = readChunk(copy);
+								} else {
+									message = serializer.readPacket(copy);
+								}
 
 								// Get request's unique ID
 								String id = message.get("id", (String) null);
 								if (id == null || id.isEmpty()) {
 
 									// Not a request
-									return;
+									continue;
 								}
 
 								// Create response message
@@ -673,6 +743,7 @@ public class TcpTransporter extends Transporter {
 
 				// Switch by packet type
 				byte packetID;
+				int lane = SendBuffer.LANE_RPC;
 				switch (command) {
 				case PACKET_EVENT:
 					if (debug) {
@@ -697,12 +768,14 @@ public class TcpTransporter extends Transporter {
 						logger.info("Ping message submitting:\r\n" + message);
 					}
 					packetID = PACKET_PING_ID;
+					lane = SendBuffer.LANE_CONTROL;
 					break;
 				case PACKET_PONG:
 					if (debug) {
 						logger.info("Pong message submitting:\r\n" + message);
 					}
 					packetID = PACKET_PONG_ID;
+					lane = SendBuffer.LANE_CONTROL;
 					break;
 				default:
 					logger.warn("Unsupported command (" + command + ")!");
@@ -725,9 +798,17 @@ public class TcpTransporter extends Transporter {
 					counterTransporterPacketsSentTotal.increment();
 					counterTransporterPacketsSentBytes.increment(packet.length);
 				}
-				
+
+				// Stream packets (including the closing and error packets with
+				// a "seq" field) and large requests/responses are sent in the
+				// bulk lane (events are not reordered)
+				if (lane == SendBuffer.LANE_RPC && (message.get("stream", false) || message.get("seq") != null
+						|| (bulkPacketSize > 0 && packet.length > bulkPacketSize && packetID != PACKET_EVENT_ID))) {
+					lane = SendBuffer.LANE_BULK;
+				}
+
 				// Send packet to endpoint
-				writer.send(nodeID, packet);
+				writer.send(nodeID, packet, lane);
 
 			} catch (Exception cause) {
 				logger.warn("Unable to send message!", cause);
@@ -756,6 +837,92 @@ public class TcpTransporter extends Transporter {
 		return packet;
 	}
 
+	// --- ZERO-COPY STREAMING ---
+
+	@Override
+	public void addCapabilities(Tree capabilities) {
+		if (zeroCopyStreaming) {
+			capabilities.add(CAPABILITY_RAW_CHUNKS);
+		}
+	}
+
+	@Override
+	public boolean sendDataRegion(String cmd, String nodeID, Context ctx, FileRegion region, long sequence) {
+		if (writer == null || !zeroCopyStreaming || serializer instanceof ChainedSerializer
+				|| !hasCapability(nodeID, CAPABILITY_RAW_CHUNKS)) {
+			return false;
+		}
+		byte packetID;
+		switch (cmd) {
+		case PACKET_EVENT:
+			packetID = PACKET_EVENT_ID;
+			break;
+		case PACKET_REQUEST:
+			packetID = PACKET_REQUEST_ID;
+			break;
+		case PACKET_RESPONSE:
+			packetID = PACKET_RESPONSE_ID;
+			break;
+		default:
+			return false;
+		}
+		try {
+
+			// Create header (data packet without the "data" block)
+			FastBuildTree msg = new FastBuildTree(6);
+			msg.putUnsafe("ver", protocolVersion);
+			msg.putUnsafe("sender", this.nodeID);
+			msg.putUnsafe("id", ctx.id);
+			msg.putUnsafe("stream", true);
+			msg.putUnsafe("seq", sequence);
+			if (packetID == PACKET_RESPONSE_ID) {
+				msg.putUnsafe("success", true);
+			}
+			if (debug) {
+				logger.info("Stream chunk submitting (" + region.getCount() + " bytes):\r\n" + msg);
+			}
+			byte[] header = serializer.write(msg);
+			int len = 11 + header.length + region.getCount();
+
+			// Check size
+			if (maxPacketSize > 0 && len > maxPacketSize) {
+				throw new InvalidPacketDataError("Outgoing packet is larger than the \"maxPacketSize\" limit (" + len
+						+ " > " + maxPacketSize + ")!", "maxPacketSize", maxPacketSize, "packetSize", len);
+			}
+
+			// Create packet header (the body is transferred from the file)
+			byte[] packet = new byte[11 + header.length];
+			packet[5] = PACKET_CHUNK_ID;
+			packet[4] = (byte) len;
+			packet[3] = (byte) (len >>> 8);
+			packet[2] = (byte) (len >>> 16);
+			packet[1] = (byte) (len >>> 24);
+			packet[0] = (byte) (packet[1] ^ packet[2] ^ packet[3] ^ packet[4] ^ packet[5]);
+			packet[6] = packetID;
+			packet[7] = (byte) (header.length >>> 24);
+			packet[8] = (byte) (header.length >>> 16);
+			packet[9] = (byte) (header.length >>> 8);
+			packet[10] = (byte) header.length;
+			System.arraycopy(header, 0, packet, 11, header.length);
+
+			// Metrics
+			if (metrics != null) {
+				counterTransporterPacketsSentTotal.increment();
+				counterTransporterPacketsSentBytes.increment(len);
+			}
+
+			// Send header and file region
+			writer.send(nodeID, packet, region);
+
+		} catch (Exception cause) {
+			logger.warn("Unable to send message!", cause);
+
+			// The caller sends the region without zero-copy
+			return false;
+		}
+		return true;
+	}
+
 	// --- LOCAL NODE'S DESCRIPTOR ---
 
 	public NodeDescriptor getDescriptor() {
@@ -1033,7 +1200,7 @@ public class TcpTransporter extends Transporter {
 		}
 
 		// Send gossip request to node
-		writer.send(nodeID, packet);
+		writer.send(nodeID, packet, SendBuffer.LANE_CONTROL);
 	}
 
 	// --- GOSSIP REQUEST MESSAGE RECEIVED ---
@@ -1207,7 +1374,7 @@ public class TcpTransporter extends Transporter {
 		byte[] packet = serialize(PACKET_GOSSIP_RSP_ID, root);
 
 		// Send response
-		writer.send(sender, packet);
+		writer.send(sender, packet, SendBuffer.LANE_CONTROL);
 
 		// Notify listeners (unexpected disconnection)
 		for (NodeDescriptor node : disconnectedNodes) {
@@ -1438,6 +1605,38 @@ public class TcpTransporter extends Transporter {
 		this.maxPacketSize = maxPacketSize;
 	}
 
+	public int getBulkPacketSize() {
+		return bulkPacketSize;
+	}
+
+	public void setBulkPacketSize(int bulkPacketSize) {
+		this.bulkPacketSize = bulkPacketSize;
+	}
+
+	public int getRpcQuantum() {
+		return rpcQuantum;
+	}
+
+	public void setRpcQuantum(int rpcQuantum) {
+		this.rpcQuantum = rpcQuantum;
+	}
+
+	public int getBulkQuantum() {
+		return bulkQuantum;
+	}
+
+	public void setBulkQuantum(int bulkQuantum) {
+		this.bulkQuantum = bulkQuantum;
+	}
+
+	public boolean isZeroCopyStreaming() {
+		return zeroCopyStreaming;
+	}
+
+	public void setZeroCopyStreaming(boolean zeroCopyStreaming) {
+		this.zeroCopyStreaming = zeroCopyStreaming;
+	}
+
 	public int getCurrentPort() {
 		return currentPort;
 	}
@@ -29,6 +29,8 @@ import static services.moleculer.util.CommonUtils.nameOf;
 import static services.moleculer.util.CommonUtils.removeLocalEvents;
 import static services.moleculer.util.CommonUtils.throwableToTree;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -45,22 +47,30 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import io.datatree.Promise;
 import io.datatree.Tree;
+import io.datatree.dom.Cache;
+import io.datatree.dom.Config;
 import services.moleculer.ServiceBroker;
 import services.moleculer.config.ServiceBrokerConfig;
 import services.moleculer.context.Context;
 import services.moleculer.eventbus.Eventbus;
 import services.moleculer.eventbus.Groups;
+import services.moleculer.eventbus.Matcher;
 import services.moleculer.metrics.MetricConstants;
 import services.moleculer.metrics.MetricCounter;
 import services.moleculer.metrics.MetricGauge;
 import services.moleculer.metrics.Metrics;
 import services.moleculer.monitor.Monitor;
+import services.moleculer.serializer.ChainedSerializer;
+import services.moleculer.serializer.DeflaterSerializer;
 import services.moleculer.serializer.JsonSerializer;
 import services.moleculer.serializer.Serializer;
 import services.moleculer.service.MoleculerComponent;
 import services.moleculer.service.Name;
+import services.moleculer.service.ServiceDiff;
 import services.moleculer.service.ServiceInvoker;
 import services.moleculer.service.ServiceRegistry;
+import services.moleculer.stream.FileRegion;
+import services.moleculer.transporter.outbox.EventOutbox;
 import services.moleculer.transporter.tcp.NodeDescriptor;
 import services.moleculer.transporter.tcp.RemoteAddress;
 import services.moleculer.uid.TimeBasedUidGenerator;
@@ -94,6 +104,11 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	public static final String PACKET_PING = "PING";
 	public static final String PACKET_PONG = "PONG";
 
+	// --- CAPABILITIES (ADVERTISED IN INFO PACKETS) ---
+
+	public static final String CAPABILITY_BATCH = "batch";
+	public static final String CAPABILITY_EVENT_BATCH = "eventBatch";
+
 	// --- CHANNELS OF CURRENT NODE ---
 
 	public String eventChannel;
@@ -140,6 +155,35 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	 */
 	protected int heartbeatTimeout = 30;
 
+	// --- PHI-ACCRUAL FAILURE DETECTOR ---
+
+	/**
+	 * Suspicion level (phi value) above which the strategies stop routing
+	 * requests to the node, before the node is declared offline (0 =
+	 * disabled). A phi value of 8 means about 10^-8 chance that the heartbeat
+	 * is only late.
+	 */
+	protected double suspicionThreshold = 8;
+
+	/**
+	 * Suspicion level (phi value) above which the node is declared offline,
+	 * before the heartbeat timeout expires (0 = disabled, only the heartbeat
+	 * timeout is used).
+	 */
+	protected double failureThreshold;
+
+	/**
+	 * Tolerated pause between heartbeats (eg. GC pause or network hiccup) in
+	 * MILLISECONDS.
+	 */
+	protected long acceptableHeartbeatPause = 3000;
+
+	/**
+	 * Minimum standard deviation of heartbeat intervals in MILLISECONDS.
+	 * Prevents false suspicions when the heartbeats are very regular.
+	 */
+	protected long minStdDeviation = 1000;
+
 	/**
 	 * How long keep information in registry about the offline nodes (SECONDS).
 	 */
@@ -169,12 +213,58 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	 */
 	protected boolean debugHeartbeats;
 
+	// --- ERROR PACKETS ---
+
+	/**
+	 * Send the stack traces of errors to the remote nodes. Disable it to reduce
+	 * the size of the error responses (and the CPU usage during outages).
+	 */
+	protected boolean sendErrorStacks = true;
+
+	// --- EVENT BATCHING ---
+
+	/**
+	 * Names or patterns (eg. "metrics.**") of the events which are buffered
+	 * and sent to the target node in batches (null = event batching is
+	 * disabled).
+	 */
+	protected String[] batchedEvents;
+
+	/**
+	 * Max number of events in one batch.
+	 */
+	protected int eventBatchMaxCount = 100;
+
+	/**
+	 * Max (estimated) size of one batch in bytes.
+	 */
+	protected int eventBatchMaxSize = 64 * 1024;
+
+	/**
+	 * Max time to wait for more events before sending the batch, in
+	 * MILLISECONDS.
+	 */
+	protected long eventBatchLinger = 5;
+
+	// --- DURABLE EVENT OUTBOX ---
+
+	/**
+	 * Local, persistent store of the outgoing events (null = events are sent
+	 * directly, without storing them).
+	 */
+	protected EventOutbox outbox;
+
 	// --- SERIALIZER / DESERIALIZER ---
 
 	protected Serializer serializer;
 
 	protected boolean usingJsonSerializer = true;
 
+	/**
+	 * Compressor with preset dictionary (or null)
+	 */
+	protected DeflaterSerializer deflater;
+
 	// --- INSTANCE ID ---
 
 	protected final String instanceID;
@@ -211,10 +301,23 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	protected final AtomicBoolean infoScheduled = new AtomicBoolean();
 	protected final AtomicLong infoScheduledAt = new AtomicLong();
 
+	// --- BUFFERED EVENTS BY NODE ID ---
+
+	protected final ConcurrentHashMap<String, EventBatch> eventBatches = new ConcurrentHashMap<>();
+
+	/**
+	 * Cached results of event name matching (event name -&gt; batched or not)
+	 */
+	protected final Cache<String, Boolean> batchedEventCache = new Cache<>(Config.CACHE_SIZE);
+
 	// --- FOR TESTING ONLY ---
 
 	protected final AtomicLong lastReceivedMessageAt = new AtomicLong();
 
+	// --- CONNECTION STATUS ---
+
+	protected volatile boolean transitConnected;
+
 	// --- METRICS ---
 
 	protected MetricGauge gaugeTransitConnected;
@@ -266,6 +369,22 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		serializer.started(broker);
 		logger.info(nameOf(this, true) + " will use " + nameOf(serializer, true) + '.');
 
+		// Find compressor with preset dictionary
+		deflater = null;
+		Serializer s = serializer;
+		while (s instanceof ChainedSerializer) {
+			if (s instanceof DeflaterSerializer) {
+				deflater = (DeflaterSerializer) s;
+				if (deflater.getDictionary() == null) {
+					deflater = null;
+				} else {
+					deflater.setDictionaryEnabled(false);
+				}
+				break;
+			}
+			s = ((ChainedSerializer) s).getParent();
+		}
+
 		// Get components
 		executor = cfg.getExecutor();
 		scheduler = cfg.getScheduler();
@@ -302,6 +421,10 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		pingChannel = channel(PACKET_PING, nodeID);
 		pongChannel = channel(PACKET_PONG, nodeID);
 
+		// Open event outbox
+		if (outbox != null) {
+			outbox.started(broker, this);
+		}
 	}
 
 	protected String channel(String cmd, String nodeID) {
@@ -362,7 +485,8 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 
 				// Start timeout checker's timer
 				if (checkTimeoutTimer == null && (heartbeatTimeout > 0 || offlineTimeout > 0)) {
-					int checkPeriod = Math.max(5, heartbeatTimeout / 3);
+					int checkPeriod = heartbeatTimeout > 0 && failureThreshold > 0 ? 1
+							: Math.max(5, heartbeatTimeout / 3);
 					checkTimeoutTimer = scheduler.scheduleAtFixedRate(this::checkTimeouts, checkPeriod, checkPeriod,
 							TimeUnit.SECONDS);
 				}
@@ -395,6 +519,11 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	@Override
 	public void stopped() {
 
+		// Close event outbox
+		if (outbox != null) {
+			outbox.stopped();
+		}
+
 		// Stop heartbeat timer
 		if (heartBeatTimer != null) {
 			heartBeatTimer.cancel(false);
@@ -407,6 +536,14 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 			checkTimeoutTimer = null;
 		}
 
+		// Send buffered events
+		for (EventBatch batch : eventBatches.values()) {
+			synchronized (batch) {
+				sendEventBatch(batch);
+			}
+		}
+		eventBatches.clear();
+
 		// Send "disconnected" packet
 		sendDisconnectPacket();
 
@@ -422,6 +559,9 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		msg.put("sender", nodeID);
 		msg.put("seq", registry.getTimestamp());
 		msg.put("instanceID", instanceID);
+		if (deflater != null) {
+			msg.put("dictionary", deflater.getDictionaryID());
+		}
 		publish(channel, msg);
 	}
 
@@ -467,11 +607,75 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	// --- EVENT PACKET ---
 
 	public void sendEventPacket(String nodeID, Context ctx, Groups groups, boolean broadcast) {
+
+		// Store event in the outbox (it will be sent by the outbox)
+		if (ctx.stream == null && outbox != null && outbox.isStored(ctx.name)) {
+			FastBuildTree event = new FastBuildTree(11);
+			addEventProperties(event, ctx, groups, broadcast);
+			if (outbox.append(nodeID, event)) {
+				return;
+			}
+			sendEventPacket(nodeID, event);
+			return;
+		}
+
+		// Buffer event (if the target node supports batched events)
+		if (ctx.stream == null && isBatchedEvent(ctx.name) && hasCapability(nodeID, CAPABILITY_EVENT_BATCH)) {
+			FastBuildTree event = new FastBuildTree(11);
+			addEventProperties(event, ctx, groups, broadcast);
+			addToEventBatch(nodeID, event.asObject());
+			return;
+		}
+
+		// Send the buffered events first (to preserve the order of events)
+		flushEventBatch(nodeID);
+
 		FastBuildTree msg = new FastBuildTree(13);
 
 		// Add basic properties (version, sender's nodeID, etc.)
 		msg.putUnsafe("ver", protocolVersion);
 		msg.putUnsafe("sender", this.nodeID);
+		addEventProperties(msg, ctx, groups, broadcast);
+
+		// Send message
+		publish(PACKET_EVENT, nodeID, msg);
+	}
+
+	/**
+	 * Sends a previously created event packet (eg. a stored event of the
+	 * outbox).
+	 * 
+	 * @param nodeID
+	 *            target node ID
+	 * @param event
+	 *            event packet (without "ver" and "sender" properties)
+	 */
+	public void sendEventPacket(String nodeID, Tree event) {
+
+		// Buffer event (if the target node supports batched events)
+		if (!event.get("stream", false) && isBatchedEvent(event.get("event", (String) null))
+				&& hasCapability(nodeID, CAPABILITY_EVENT_BATCH)) {
+			addToEventBatch(nodeID, event.asObject());
+			return;
+		}
+
+		// Send the buffered events first (to preserve the order of events)
+		flushEventBatch(nodeID);
+
+		FastBuildTree msg = new FastBuildTree(13);
+
+		// Add basic properties (version, sender's nodeID, etc.)
+		msg.putUnsafe("ver", protocolVersion);
+		msg.putUnsafe("sender", this.nodeID);
+		for (Tree child : event) {
+			msg.putUnsafe(child.getName(), child.asObject());
+		}
+
+		// Send message
+		publish(PACKET_EVENT, nodeID, msg);
+	}
+
+	protected void addEventProperties(FastBuildTree msg, Context ctx, Groups groups, boolean broadcast) {
 		msg.putUnsafe("id", ctx.id);
 		msg.putUnsafe("event", ctx.name);
 
@@ -512,9 +716,97 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 			// First sequence
 			msg.putUnsafe("seq", 0);
 		}
+	}
+
+	// --- BATCHED EVENT PACKETS ---
+
+	/**
+	 * Checks whether the events with the specified name are sent in batches.
+	 * 
+	 * @param name
+	 *            event name
+	 * 
+	 * @return true if the event matches one of the "batchedEvents" patterns
+	 */
+	protected boolean isBatchedEvent(String name) {
+		String[] patterns = batchedEvents;
+		if (patterns == null || name == null) {
+			return false;
+		}
+		Boolean batched = batchedEventCache.get(name);
+		if (batched == null) {
+			batched = false;
+			for (String pattern : patterns) {
+				if (Matcher.matches(name, pattern)) {
+					batched = true;
+					break;
+				}
+			}
+			batchedEventCache.put(name, batched);
+		}
+		return batched;
+	}
+
+	protected void flushEventBatch(String nodeID) {
+		if (batchedEvents != null) {
+			EventBatch batch = eventBatches.get(nodeID);
+			if (batch != null) {
+				synchronized (batch) {
+					sendEventBatch(batch);
+				}
+			}
+		}
+	}
+
+	protected void addToEventBatch(String nodeID, Object event) {
+		EventBatch batch = eventBatches.get(nodeID);
+		if (batch == null) {
+			batch = new EventBatch(nodeID);
+			EventBatch previous = eventBatches.putIfAbsent(nodeID, batch);
+			if (previous != null) {
+				batch = previous;
+			}
+		}
+		synchronized (batch) {
+			int count = batch.add(event);
+			if (count >= eventBatchMaxCount || batch.getSize() >= eventBatchMaxSize) {
+				sendEventBatch(batch);
+			} else if (batch.timer == null) {
+				final EventBatch lingering = batch;
+				batch.timer = scheduler.schedule(() -> {
+					synchronized (lingering) {
+						lingering.timer = null;
+						sendEventBatch(lingering);
+					}
+				}, eventBatchLinger, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Sends the buffered events of a node in one EVENT packet. The caller must
+	 * hold the lock of the EventBatch (the packets are published in the lock,
+	 * so the order of the events is preserved).
+	 * 
+	 * @param batch
+	 *            buffered events of a node
+	 */
+	protected void sendEventBatch(EventBatch batch) {
+		ArrayList<Object> events = batch.drain();
+		if (events == null || events.isEmpty()) {
+			return;
+		}
+		FastBuildTree msg = new FastBuildTree(3);
+
+		// Add basic properties (version, sender's nodeID, etc.)
+		msg.putUnsafe("ver", protocolVersion);
+		msg.putUnsafe("sender", this.nodeID);
+
+		// Add events
+		msg.putUnsafe("batch", events);
 
 		// Send message
-		publish(PACKET_EVENT, nodeID, msg);
+		publish(PACKET_EVENT, batch.getNodeID(), msg);
 	}
 
 	// --- REQUEST PACKET ---
@@ -525,12 +817,52 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		// Add basic properties (version, sender's nodeID, etc.)
 		msg.putUnsafe("ver", protocolVersion);
 		msg.putUnsafe("sender", this.nodeID);
+		addRequestProperties(msg, ctx);
+
+		// Send message
+		publish(Transporter.PACKET_REQUEST, nodeID, msg);
+	}
+
+	// --- BATCHED REQUEST PACKET ---
+
+	/**
+	 * Sends multiple requests to the specified node in one packet. The target
+	 * node must support the "batch" capability.
+	 * 
+	 * @param nodeID
+	 *            target nodeID
+	 * @param contexts
+	 *            contexts of the requests (without streams)
+	 */
+	public void sendBatchRequestPacket(String nodeID, Collection<Context> contexts) {
+		FastBuildTree msg = new FastBuildTree(4);
+
+		// Add basic properties (version, sender's nodeID, etc.)
+		msg.putUnsafe("ver", protocolVersion);
+		msg.putUnsafe("sender", this.nodeID);
+		msg.putUnsafe("id", uidGenerator.nextUID());
+
+		// Add requests
+		ArrayList<Object> batch = new ArrayList<>(contexts.size());
+		for (Context ctx : contexts) {
+			FastBuildTree item = new FastBuildTree(10);
+			addRequestProperties(item, ctx);
+			batch.add(item.asObject());
+		}
+		msg.putUnsafe("batch", batch);
+
+		// Send message
+		publish(Transporter.PACKET_REQUEST, nodeID, msg);
+	}
+
+	protected void addRequestProperties(FastBuildTree msg, Context ctx) {
 		msg.putUnsafe("id", ctx.id);
 		msg.putUnsafe("action", ctx.name);
 
-		// Timeout
+		// Timeout (remaining budget) and sending time
 		if (ctx.opts != null && ctx.opts.timeout > 0) {
 			msg.putUnsafe("timeout", ctx.opts.timeout);
+			msg.putUnsafe("sentAt", System.currentTimeMillis());
 		}
 
 		// Call level
@@ -564,9 +896,6 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 			// First sequence
 			msg.putUnsafe("seq", 0);
 		}
-
-		// Send message
-		publish(Transporter.PACKET_REQUEST, nodeID, msg);
 	}
 
 	// --- DATA PACKET (STREAMING) ---
@@ -614,10 +943,34 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		publish(cmd, nodeID, msg);
 	}
 
+	// --- FILE REGION (ZERO-COPY STREAMING) ---
+
+	/**
+	 * Sends a file region as a data packet, without reading it into the heap.
+	 * Transporters which do not support this return false, and the region is
+	 * sent by "sendDataPacket" as a byte array.
+	 * 
+	 * @param cmd
+	 *            command (EVENT, REQ or RES)
+	 * @param nodeID
+	 *            target node ID
+	 * @param ctx
+	 *            context of the stream
+	 * @param region
+	 *            file region (released by the transporter, if accepted)
+	 * @param sequence
+	 *            sequence number of the packet
+	 * 
+	 * @return true if the region is accepted
+	 */
+	public boolean sendDataRegion(String cmd, String nodeID, Context ctx, FileRegion region, long sequence) {
+		return false;
+	}
+
 	// --- ERROR PACKET (STREAMING) ---
 
 	public void sendErrorPacket(String cmd, String nodeID, Context ctx, Throwable cause, long sequence) {
-		FastBuildTree msg = throwableToTree(ctx.id, this.nodeID, protocolVersion, cause);
+		FastBuildTree msg = throwableToTree(ctx.id, this.nodeID, protocolVersion, cause, sendErrorStacks);
 
 		// Stream packet counter (1...N)
 		msg.putUnsafe("seq", sequence);
@@ -678,8 +1031,9 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	 *            incoming message
 	 */
 	protected void received(String channel, byte[] message) {
+		long receivedAt = System.currentTimeMillis();
 		executor.execute(() -> {
-			processReceivedMessage(channel, message);
+			processReceivedMessage(channel, message, receivedAt);
 		});
 	}
 
@@ -692,6 +1046,20 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	 *            incoming message
 	 */
 	protected void processReceivedMessage(String channel, byte[] message) {
+		processReceivedMessage(channel, message, System.currentTimeMillis());
+	}
+
+	/**
+	 * Process incoming message directly (without new Task).
+	 * 
+	 * @param channel
+	 *            incoming channel
+	 * @param message
+	 *            incoming message
+	 * @param receivedAt
+	 *            arrival time of the message
+	 */
+	protected void processReceivedMessage(String channel, byte[] message, long receivedAt) {
 		try {
 
 			// Metrics
@@ -701,7 +1069,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 			}
 
 			// Process parsed (JSON) request
-			processReceivedMessage(channel, serializer.read(message));
+			processReceivedMessage(channel, serializer.readPacket(message), receivedAt);
 		} catch (Exception cause) {
 			logger.warn("Unable to parse incoming message!", cause);
 			return;
@@ -717,6 +1085,20 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	 *            incoming message
 	 */
 	protected void processReceivedMessage(String channel, Tree message) {
+		processReceivedMessage(channel, message, System.currentTimeMillis());
+	}
+
+	/**
+	 * Process incoming message directly (without new Task).
+	 * 
+	 * @param channel
+	 *            incoming channel
+	 * @param message
+	 *            incoming message
+	 * @param receivedAt
+	 *            arrival time of the message
+	 */
+	protected void processReceivedMessage(String channel, Tree message, long receivedAt) {
 
 		// Debug & test
 		if (debug && (debugHeartbeats || !channel.endsWith(heartbeatChannel))) {
@@ -753,7 +1135,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 
 			// Incoming request
 			if (channel.equals(requestChannel)) {
-				registry.receiveRequest(message);
+				registry.receiveRequest(message, receivedAt);
 				return;
 			}
 
@@ -794,12 +1176,18 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 				message.put("seq", System.currentTimeMillis());
 				message.put("port", 1);
 				updateNodeInfo(sender, message);
+				updateDictionaryUsage();
 				return;
 			}
 
 			// Discover packet
 			if (channel.equals(discoverChannel) || channel.equals(discoverBroadcastChannel)) {
 
+				// Unknown node (maybe without the compression dictionary)
+				if (deflater != null && !nodes.containsKey(sender)) {
+					deflater.setDictionaryEnabled(false);
+				}
+
 				// Send node desriptor to the sender
 				sendInfoPacket(channel(PACKET_INFO, sender));
 				return;
@@ -857,6 +1245,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		boolean connected = false;
 		boolean reconnected = false;
 		boolean updated = false;
+		Tree prevServices = null;
 		NodeDescriptor node = nodes.get(sender);
 		if (node == null) {
 
@@ -897,6 +1286,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 						}
 						if (wasOnline) {
 							updated = true;
+							prevServices = prevInfo == null ? null : prevInfo.get("services");
 						} else {
 							reconnected = true;
 						}
@@ -914,14 +1304,14 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		}
 
 		// Register actions and listeners
-		if (connected || reconnected || updated) {
-			if (updated) {
+		if (updated) {
 
-				// Remove actions and listeners
-				registry.removeActions(sender);
-				eventbus.removeListeners(sender);
+			// Apply only the changed actions and listeners
+			ServiceDiff diff = ServiceDiff.compare(prevServices, info.get("services"));
+			registry.updateActions(sender, diff);
+			eventbus.updateListeners(sender, diff);
 
-			}
+		} else if (connected || reconnected) {
 			Tree services = info.get("services");
 			if (services != null && !services.isEmpty()) {
 				for (Tree service : services) {
@@ -953,6 +1343,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	// --- INTERNAL MOLECULER EVENTS ---
 
 	protected void broadcastTransporterConnected() {
+		transitConnected = true;
 		eventbus.broadcast(new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(),
 				"$transporter.connected", null, 1, null, null, null, null, nodeID), null, true);
 
@@ -963,6 +1354,7 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 	}
 
 	protected void broadcastTransporterDisconnected() {
+		transitConnected = false;
 		eventbus.broadcast(new Context(serviceInvoker, eventbus, uidGenerator, uidGenerator.nextUID(),
 				"$transporter.disconnected", null, 1, null, null, null, null, nodeID), null, true);
 
@@ -1067,7 +1459,10 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 				}
 				node.writeLock.lock();
 				try {
-					if (node.cpuWhen > 0 && now - node.cpuWhen > heartbeatTimeoutMillis && node.markAsOffline()) {
+					if (node.cpuWhen > 0 && (now - node.cpuWhen > heartbeatTimeoutMillis
+							|| node.detector.isSuspected(now, failureThreshold, acceptableHeartbeatPause,
+									minStdDeviation))
+							&& node.markAsOffline()) {
 
 						// Remove services and listeners
 						registry.removeActions(node.nodeID);
@@ -1110,6 +1505,52 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		return node == null ? 0 : node.cpuWhen;
 	}
 
+	// --- SUSPICION LEVEL OF A REMOTE NODE ---
+
+	/**
+	 * Returns the phi value of the node's failure detector (0 = not suspected,
+	 * unknown node, or not enough heartbeats received). Works only with
+	 * heartbeat-based Transporters (when the "heartbeatTimeout" is greater
+	 * than zero).
+	 * 
+	 * @param nodeID
+	 *            node ID
+	 * 
+	 * @return phi value
+	 */
+	public double getSuspicion(String nodeID) {
+		if (heartbeatTimeout < 1 || this.nodeID.equals(nodeID)) {
+			return 0;
+		}
+		NodeDescriptor node = nodes.get(nodeID);
+		if (node == null || node.offlineSince > 0) {
+			return 0;
+		}
+		return node.detector.phi(System.currentTimeMillis(), acceptableHeartbeatPause, minStdDeviation);
+	}
+
+	/**
+	 * Checks that the suspicion level of the node reached the
+	 * "suspicionThreshold". Strategies use this method to skip the suspected
+	 * nodes before they are declared offline.
+	 * 
+	 * @param nodeID
+	 *            node ID
+	 * 
+	 * @return true if the node is suspected
+	 */
+	public boolean isSuspected(String nodeID) {
+		if (suspicionThreshold <= 0 || heartbeatTimeout < 1 || this.nodeID.equals(nodeID)) {
+			return false;
+		}
+		NodeDescriptor node = nodes.get(nodeID);
+		if (node == null || node.offlineSince > 0) {
+			return false;
+		}
+		return node.detector.isSuspected(System.currentTimeMillis(), suspicionThreshold, acceptableHeartbeatPause,
+				minStdDeviation);
+	}
+
 	// --- IS NODE ONLINE? ---
 
 	public boolean isOnline(String nodeID) {
@@ -1158,6 +1599,85 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		return info;
 	}
 
+	// --- PRESET DICTIONARY OF THE COMPRESSOR ---
+
+	/**
+	 * Enables the preset dictionary of the DeflaterSerializer if all known
+	 * (online) nodes use the same dictionary.
+	 */
+	protected void updateDictionaryUsage() {
+		if (deflater == null) {
+			return;
+		}
+		String id = deflater.getDictionaryID();
+		boolean enabled = !nodes.isEmpty();
+		for (NodeDescriptor node : nodes.values()) {
+			node.readLock.lock();
+			try {
+				if (node.offlineSince == 0 && (node.info == null || !id.equals(node.info.get("dictionary", "")))) {
+					enabled = false;
+					break;
+				}
+			} finally {
+				node.readLock.unlock();
+			}
+		}
+		if (enabled != deflater.isDictionaryEnabled()) {
+			deflater.setDictionaryEnabled(enabled);
+			logger.info("Compression with preset dictionary " + (enabled ? "enabled." : "disabled."));
+		}
+	}
+
+	// --- TRANSPORTER-SPECIFIC CAPABILITIES ---
+
+	/**
+	 * Adds the transporter-specific protocol extensions to the "capabilities"
+	 * block of the INFO packet.
+	 * 
+	 * @param capabilities
+	 *            list of capabilities
+	 */
+	public void addCapabilities(Tree capabilities) {
+
+		// Do nothing
+	}
+
+	// --- CHECK CAPABILITY OF A NODE ---
+
+	/**
+	 * Checks whether the specified node advertised the given capability (eg.
+	 * "batch") in its INFO packet.
+	 * 
+	 * @param nodeID
+	 *            node ID
+	 * @param capability
+	 *            name of the capability
+	 * 
+	 * @return true if the node supports the capability
+	 */
+	public boolean hasCapability(String nodeID, String capability) {
+		NodeDescriptor node = nodes.get(nodeID);
+		if (node == null) {
+			return false;
+		}
+		Tree capabilities;
+		node.readLock.lock();
+		try {
+			capabilities = node.info == null ? null : node.info.get("capabilities");
+		} finally {
+			node.readLock.unlock();
+		}
+		if (capabilities == null) {
+			return false;
+		}
+		for (Tree item : capabilities) {
+			if (capability.equals(item.asString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	// --- GET SOCKET ADDRESS OF A NODE ---
 
 	public RemoteAddress getAddress(String nodeID) {
@@ -1216,6 +1736,38 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		this.heartbeatTimeout = heartbeatTimeout;
 	}
 
+	public double getSuspicionThreshold() {
+		return suspicionThreshold;
+	}
+
+	public void setSuspicionThreshold(double suspicionThreshold) {
+		this.suspicionThreshold = suspicionThreshold;
+	}
+
+	public double getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	public void setFailureThreshold(double failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	public long getAcceptableHeartbeatPause() {
+		return acceptableHeartbeatPause;
+	}
+
+	public void setAcceptableHeartbeatPause(long acceptableHeartbeatPause) {
+		this.acceptableHeartbeatPause = acceptableHeartbeatPause;
+	}
+
+	public long getMinStdDeviation() {
+		return minStdDeviation;
+	}
+
+	public void setMinStdDeviation(long minStdDeviation) {
+		this.minStdDeviation = minStdDeviation;
+	}
+
 	public boolean isDebug() {
 		return debug;
 	}
@@ -1272,8 +1824,64 @@ public abstract class Transporter extends MoleculerComponent implements MetricCo
 		this.debugHeartbeats = debugHeartbeats;
 	}
 
+	public boolean isSendErrorStacks() {
+		return sendErrorStacks;
+	}
+
+	public void setSendErrorStacks(boolean sendErrorStacks) {
+		this.sendErrorStacks = sendErrorStacks;
+	}
+
 	public String getInstanceID() {
 		return instanceID;
 	}
 
+	public boolean isTransitConnected() {
+		return transitConnected;
+	}
+
+	public EventOutbox getOutbox() {
+		return outbox;
+	}
+
+	public void setOutbox(EventOutbox outbox) {
+		this.outbox = outbox;
+	}
+
+	public String[] getBatchedEvents() {
+		return batchedEvents;
+	}
+
+	public void setBatchedEvents(String... batchedEvents) {
+		if (batchedEvents != null && batchedEvents.length == 0) {
+			batchedEvents = null;
+		}
+		this.batchedEvents = batchedEvents;
+		batchedEventCache.clear();
+	}
+
+	public int getEventBatchMaxCount() {
+		return eventBatchMaxCount;
+	}
+
+	public void setEventBatchMaxCount(int eventBatchMaxCount) {
+		this.eventBatchMaxCount = eventBatchMaxCount;
+	}
+
+	public int getEventBatchMaxSize() {
+		return eventBatchMaxSize;
+	}
+
+	public void setEventBatchMaxSize(int eventBatchMaxSize) {
+		this.eventBatchMaxSize = eventBatchMaxSize;
+	}
+
+	public long getEventBatchLinger() {
+		return eventBatchLinger;
+	}
+
+	public void setEventBatchLinger(long eventBatchLinger) {
+		this.eventBatchLinger = eventBatchLinger;
+	}
+
 }
\ No newline at end of file
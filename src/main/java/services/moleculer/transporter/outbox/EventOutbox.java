@@ -0,0 +1,567 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.outbox;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.datatree.Tree;
+import io.datatree.dom.Cache;
+import io.datatree.dom.Config;
+import services.moleculer.ServiceBroker;
+import services.moleculer.config.ServiceBrokerConfig;
+import services.moleculer.eventbus.Matcher;
+import services.moleculer.transporter.Transporter;
+
+/**
+ * Durable outbox of the outgoing events. The events are appended to a local,
+ * memory-mapped log ({@link OutboxLog}) instead of being sent directly, and a
+ * background dispatcher sends them (in the original order) when the
+ * transporter is connected and the target node is online. The log is forced
+ * to the disk periodically (group commit, see "syncInterval"), and the
+ * delivered records are released. Events of unreachable nodes are kept until
+ * the node becomes online again (or until they expire), without blocking the
+ * events of the other nodes. An event is released when it has been handed
+ * over to the transporter while the target node was online; an event is
+ * retried only if the transporter throws an exception. The transporters do
+ * not acknowledge the delivery (they log their own sending errors, and the
+ * batched events are published later), so an event lost after the handover
+ * (eg. the connection breaks while the packet is being sent) is not sent
+ * again. After a crash, the events handed over after the last checkpoint are
+ * sent again, so an event may be received more than once. Sample:
+ * 
+ * <pre>
+ * TcpTransporter transporter = new TcpTransporter();
+ * transporter.setOutbox(new EventOutbox("/var/lib/moleculer/outbox"));
+ * </pre>
+ * 
+ * Streamed events are not stored in the outbox.
+ */
+public class EventOutbox {
+
+	// --- LOGGER ---
+
+	protected static final Logger logger = LoggerFactory.getLogger(EventOutbox.class);
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Directory of the log files (null = "outbox/{nodeID}"). Only one broker
+	 * can use a directory at the same time.
+	 */
+	protected String directory;
+
+	/**
+	 * Names or patterns (eg. "orders.**") of the stored events (null = all
+	 * events).
+	 */
+	protected String[] events;
+
+	/**
+	 * Size of the segment files in bytes.
+	 */
+	protected int segmentSize = 64 * 1024 * 1024;
+
+	/**
+	 * Period of forcing the appended events to the disk, in MILLISECONDS (0 =
+	 * leave it to the operating system).
+	 */
+	protected long syncInterval = 10;
+
+	/**
+	 * Period of retrying the delivery to the unreachable nodes, in
+	 * MILLISECONDS.
+	 */
+	protected long retryInterval = 1000;
+
+	/**
+	 * Max age of the undelivered events, in SECONDS (0 = never expire).
+	 */
+	protected int maxRecordAge = 3600;
+
+	// --- COMPONENTS ---
+
+	protected Transporter transporter;
+	protected ExecutorService executor;
+	protected ScheduledExecutorService scheduler;
+
+	protected volatile OutboxLog log;
+
+	// --- CACHE OF EVENT NAME MATCHING ---
+
+	protected final Cache<String, Boolean> storedEventCache = new Cache<>(Config.CACHE_SIZE);
+
+	// --- DISPATCHER ---
+
+	protected final AtomicBoolean dispatching = new AtomicBoolean();
+
+	protected volatile boolean closed;
+
+	/**
+	 * Offset of the next unread record
+	 */
+	protected volatile long readOffset;
+
+	/**
+	 * Offset of the first undelivered record
+	 */
+	protected volatile long trimOffset;
+
+	/**
+	 * Offset of the first undelivered record of the unreachable nodes and the
+	 * nodes whose sending failed (accessed only by the dispatcher). The
+	 * records of these nodes are read again from this offset.
+	 */
+	protected final LinkedHashMap<String, Long> parked = new LinkedHashMap<>();
+
+	// --- TIMERS ---
+
+	protected volatile ScheduledFuture<?> syncTimer;
+	protected volatile ScheduledFuture<?> retryTimer;
+
+	// --- COUNTERS ---
+
+	protected final AtomicLong storedEvents = new AtomicLong();
+	protected final AtomicLong deliveredEvents = new AtomicLong();
+	protected final AtomicLong droppedEvents = new AtomicLong();
+
+	// --- CONSTRUCTORS ---
+
+	public EventOutbox() {
+	}
+
+	public EventOutbox(String directory) {
+		setDirectory(directory);
+	}
+
+	// --- START OUTBOX ---
+
+	/**
+	 * Opens the log, and starts the delivery of the stored events.
+	 * 
+	 * @param broker
+	 *            parent ServiceBroker
+	 * @param transporter
+	 *            Transporter of the broker
+	 * 
+	 * @throws Exception
+	 *             if the log cannot be opened
+	 */
+	public void started(ServiceBroker broker, Transporter transporter) throws Exception {
+		this.transporter = transporter;
+		ServiceBrokerConfig cfg = broker.getConfig();
+		executor = cfg.getExecutor();
+		scheduler = cfg.getScheduler();
+
+		// Open log
+		File dir;
+		if (directory == null || directory.isEmpty()) {
+			dir = new File("outbox", broker.getNodeID());
+		} else {
+			dir = new File(directory);
+		}
+		OutboxLog log = new OutboxLog(dir, segmentSize);
+		log.open();
+		readOffset = log.getStartOffset();
+		trimOffset = readOffset;
+		closed = false;
+		this.log = log;
+		long pending = log.getWriteOffset() - readOffset;
+		if (pending > 0) {
+			logger.info("Event outbox \"" + dir.getAbsolutePath() + "\" contains " + pending
+					+ " bytes of undelivered events.");
+		}
+
+		// Start timers
+		if (syncInterval > 0) {
+			syncTimer = scheduler.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval,
+					TimeUnit.MILLISECONDS);
+		}
+		retryTimer = scheduler.scheduleWithFixedDelay(() -> {
+			if (syncInterval <= 0) {
+				checkpoint();
+			}
+			wakeUp();
+		}, retryInterval, retryInterval, TimeUnit.MILLISECONDS);
+	}
+
+	// --- STOP OUTBOX ---
+
+	/**
+	 * Stops the delivery, forces the log to the disk, and closes the log. The
+	 * undelivered events are sent after the next start.
+	 */
+	public void stopped() {
+		closed = true;
+
+		// Stop timers
+		if (syncTimer != null) {
+			syncTimer.cancel(false);
+			syncTimer = null;
+		}
+		if (retryTimer != null) {
+			retryTimer.cancel(false);
+			retryTimer = null;
+		}
+
+		// Wait for the dispatcher
+		long timeoutAt = System.currentTimeMillis() + 2000;
+		while (dispatching.get() && System.currentTimeMillis() < timeoutAt) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException interrupt) {
+				break;
+			}
+		}
+
+		// Close log
+		OutboxLog log = this.log;
+		if (log != null) {
+			try {
+				log.sync();
+				log.checkpoint(trimOffset);
+				log.close();
+			} catch (Exception cause) {
+				logger.warn("Unable to close event outbox!", cause);
+			}
+		}
+	}
+
+	// --- STORE EVENT ---
+
+	/**
+	 * Checks whether the events with the specified name are stored in the
+	 * outbox.
+	 * 
+	 * @param name
+	 *            event name
+	 * 
+	 * @return true if the event matches one of the "events" patterns
+	 */
+	public boolean isStored(String name) {
+		String[] patterns = events;
+		if (patterns == null) {
+			return true;
+		}
+		if (name == null) {
+			return false;
+		}
+		Boolean stored = storedEventCache.get(name);
+		if (stored == null) {
+			stored = false;
+			for (String pattern : patterns) {
+				if (Matcher.matches(name, pattern)) {
+					stored = true;
+					break;
+				}
+			}
+			storedEventCache.put(name, stored);
+		}
+		return stored;
+	}
+
+	/**
+	 * Appends an event packet to the log.
+	 * 
+	 * @param nodeID
+	 *            target node ID
+	 * @param event
+	 *            event packet (without "ver" and "sender" properties)
+	 * 
+	 * @return true if the event is stored, false if the caller must send the
+	 *         event directly (eg. the outbox is closed)
+	 */
+	public boolean append(String nodeID, Tree event) {
+		OutboxLog log = this.log;
+		if (log == null || closed) {
+			return false;
+		}
+		try {
+			log.append(System.currentTimeMillis(), nodeID, event.toBinary());
+		} catch (Exception cause) {
+			logger.warn("Unable to store event in the outbox!", cause);
+			return false;
+		}
+		storedEvents.incrementAndGet();
+		wakeUp();
+		return true;
+	}
+
+	// --- DELIVERY ---
+
+	protected void wakeUp() {
+		if (!dispatching.get() && !closed && dispatching.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::dispatch);
+			} catch (Exception rejected) {
+				dispatching.set(false);
+			}
+		}
+	}
+
+	protected void dispatch() {
+		try {
+			deliver();
+		} catch (Throwable cause) {
+			logger.warn("Unable to deliver events from the outbox!", cause);
+		} finally {
+			dispatching.set(false);
+		}
+
+		// Records appended during the delivery
+		OutboxLog log = this.log;
+		if (log != null && log.getWriteOffset() > readOffset && transporter.isTransitConnected()) {
+			wakeUp();
+		}
+	}
+
+	protected void deliver() {
+		OutboxLog log = this.log;
+		if (log == null || closed || !transporter.isTransitConnected()) {
+			return;
+		}
+		long expiration = maxRecordAge > 0 ? System.currentTimeMillis() - maxRecordAge * 1000L : 0;
+
+		// Retry the records of the previously unreachable nodes
+		Iterator<Map.Entry<String, Long>> i = parked.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<String, Long> entry = i.next();
+			long offset = resume(log, entry.getKey(), entry.getValue(), expiration);
+			if (offset < 0) {
+				i.remove();
+			} else {
+				entry.setValue(offset);
+			}
+		}
+
+		// Read the new records
+		long offset = readOffset;
+		OutboxLog.Record record;
+		while (!closed && transporter.isTransitConnected() && (record = log.read(offset)) != null) {
+			if (record.isDamaged()) {
+				logger.warn("Damaged record in the event outbox (at offset " + offset + ")!");
+				droppedEvents.incrementAndGet();
+			} else if (parked.containsKey(record.nodeID)) {
+
+				// Older events of the node are waiting (the record is read
+				// again by the "resume" method)
+
+			} else if (record.timestamp < expiration) {
+				droppedEvents.incrementAndGet();
+			} else if (!transporter.isOnline(record.nodeID) || !send(record)) {
+
+				// Unreachable node or failed sending
+				parked.put(record.nodeID, record.offset);
+			}
+			offset = record.nextOffset;
+			readOffset = offset;
+		}
+
+		// Offset of the first undelivered record
+		long trim = offset;
+		for (Long parkedOffset : parked.values()) {
+			trim = Math.min(trim, parkedOffset);
+		}
+		trimOffset = trim;
+	}
+
+	/**
+	 * Reads the log again from the first undelivered record of a parked node,
+	 * and sends the records of the node. The expired records are dropped. If
+	 * the node is still unreachable, the reading stops at the first record
+	 * that has not expired (the records are in chronological order).
+	 * 
+	 * @param log
+	 *            outbox log
+	 * @param nodeID
+	 *            target node ID
+	 * @param offset
+	 *            offset of the node's first undelivered record
+	 * @param expiration
+	 *            records older than this timestamp are dropped
+	 * 
+	 * @return offset of the node's first undelivered record, or -1 if all
+	 *         records of the node have been processed
+	 */
+	protected long resume(OutboxLog log, String nodeID, long offset, long expiration) {
+		boolean online = transporter.isOnline(nodeID);
+		long end = readOffset;
+		OutboxLog.Record record;
+		while (offset < end && (record = log.read(offset)) != null) {
+			if (!record.isDamaged()) {
+				if (record.timestamp < expiration) {
+					if (nodeID.equals(record.nodeID)) {
+						droppedEvents.incrementAndGet();
+					}
+				} else if (!online) {
+					return offset;
+				} else if (nodeID.equals(record.nodeID)) {
+					if (closed || !transporter.isTransitConnected() || !send(record)) {
+						return offset;
+					}
+				}
+			}
+			offset = record.nextOffset;
+		}
+		return -1;
+	}
+
+	/**
+	 * Sends a stored event to its target node.
+	 *
+	 * @param record
+	 *            record of the event
+	 *
+	 * @return true if the event has been handed over to the transporter, false
+	 *         if the transporter threw an exception (the record is retried
+	 *         later)
+	 */
+	protected boolean send(OutboxLog.Record record) {
+		try {
+			transporter.sendEventPacket(record.nodeID, new Tree(record.event));
+			deliveredEvents.incrementAndGet();
+			return true;
+		} catch (Exception cause) {
+			logger.warn("Unable to send event from the outbox (it will be retried later)!", cause);
+			return false;
+		}
+	}
+
+	// --- GROUP COMMIT ---
+
+	protected void sync() {
+		OutboxLog log = this.log;
+		if (log != null && !closed) {
+			log.sync();
+			checkpoint();
+		}
+	}
+
+	protected void checkpoint() {
+		OutboxLog log = this.log;
+		if (log != null && !closed) {
+			try {
+				log.checkpoint(trimOffset);
+			} catch (Exception cause) {
+				logger.warn("Unable to write the checkpoint of the event outbox!", cause);
+			}
+		}
+	}
+
+	// --- COUNTERS ---
+
+	public long getStoredEvents() {
+		return storedEvents.get();
+	}
+
+	public long getDeliveredEvents() {
+		return deliveredEvents.get();
+	}
+
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/**
+	 * Returns the size of the undelivered part of the log.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getPendingBytes() {
+		OutboxLog log = this.log;
+		return log == null ? 0 : log.getWriteOffset() - trimOffset;
+	}
+
+	public OutboxLog getLog() {
+		return log;
+	}
+
+	// --- GETTERS / SETTERS ---
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	public String[] getEvents() {
+		return events;
+	}
+
+	public void setEvents(String... events) {
+		if (events != null && events.length == 0) {
+			events = null;
+		}
+		this.events = events;
+		storedEventCache.clear();
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	public long getSyncInterval() {
+		return syncInterval;
+	}
+
+	public void setSyncInterval(long syncInterval) {
+		this.syncInterval = syncInterval;
+	}
+
+	public long getRetryInterval() {
+		return retryInterval;
+	}
+
+	public void setRetryInterval(long retryInterval) {
+		this.retryInterval = retryInterval;
+	}
+
+	public int getMaxRecordAge() {
+		return maxRecordAge;
+	}
+
+	public void setMaxRecordAge(int maxRecordAge) {
+		this.maxRecordAge = maxRecordAge;
+	}
+
+}
@@ -0,0 +1,555 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.outbox;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Segmented, memory-mapped, append-only log of the {@link EventOutbox}. The
+ * records are written into pre-allocated, memory-mapped segment files, so an
+ * append is a memory copy, and a crash of the JVM does not lose the appended
+ * records (the dirty pages belong to the operating system). The segments are
+ * forced to the disk by {@link #sync()} (group commit), and the delivered part
+ * of the log is released by {@link #checkpoint(long)}. Record format:
+ * <ul>
+ * <li>header: body length (int, 0 = end of data, -1 = end of segment), CRC32
+ * of the body (int)
+ * <li>body: timestamp (long), length of the target node ID (short), node ID
+ * (UTF-8), event packet (serialized)
+ * </ul>
+ * The "checkpoint" file contains the offset of the first undelivered record.
+ * During recovery the records of the last segment are verified, and the
+ * partially written (torn) records are removed.
+ */
+public class OutboxLog implements Closeable {
+
+	// --- LOGGER ---
+
+	protected static final Logger logger = LoggerFactory.getLogger(OutboxLog.class);
+
+	// --- CONSTANTS ---
+
+	public static final String CHECKPOINT_FILE = "checkpoint";
+
+	public static final String LOCK_FILE = "lock";
+
+	protected static final int HEADER_SIZE = 8;
+
+	protected static final int MIN_BODY_SIZE = 10;
+
+	protected static final int END_OF_SEGMENT = -1;
+
+	protected static final long CHECKPOINT_MAGIC = 0x4D4F4C4F55544258L;
+
+	// --- RECORD ---
+
+	public static class Record {
+
+		/**
+		 * Log offset of the record
+		 */
+		public final long offset;
+
+		/**
+		 * Log offset of the next record
+		 */
+		public final long nextOffset;
+
+		/**
+		 * Time of the append (or 0 if the record is damaged)
+		 */
+		public final long timestamp;
+
+		/**
+		 * Target node ID (or null if the record is damaged)
+		 */
+		public final String nodeID;
+
+		/**
+		 * Serialized event packet (or null if the record is damaged)
+		 */
+		public final byte[] event;
+
+		public Record(long offset, long nextOffset, long timestamp, String nodeID, byte[] event) {
+			this.offset = offset;
+			this.nextOffset = nextOffset;
+			this.timestamp = timestamp;
+			this.nodeID = nodeID;
+			this.event = event;
+		}
+
+		public boolean isDamaged() {
+			return event == null;
+		}
+
+	}
+
+	// --- PROPERTIES ---
+
+	protected final File directory;
+
+	/**
+	 * Size of the new segment files in bytes
+	 */
+	protected final int segmentSize;
+
+	// --- SEGMENTS BY BASE OFFSET ---
+
+	protected final ConcurrentSkipListMap<Long, OutboxSegment> segments = new ConcurrentSkipListMap<>();
+
+	// --- WRITER (GUARDED BY "THIS") ---
+
+	protected volatile OutboxSegment current;
+	protected int position;
+	protected boolean closed;
+
+	// --- OFFSETS ---
+
+	/**
+	 * End of the appended records
+	 */
+	protected volatile long writeOffset;
+
+	/**
+	 * End of the records forced to the disk
+	 */
+	protected volatile long syncedOffset;
+
+	/**
+	 * Offset of the first undelivered record
+	 */
+	protected volatile long startOffset;
+
+	// --- CHECKPOINT AND DIRECTORY LOCK (GUARDED BY "SYNCLOCK") ---
+
+	protected final Object syncLock = new Object();
+
+	protected FileChannel checkpointChannel;
+	protected long checkpointOffset = -1;
+
+	protected FileChannel lockChannel;
+	protected FileLock lock;
+
+	// --- CONSTRUCTOR ---
+
+	public OutboxLog(File directory, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	// --- OPEN AND RECOVER ---
+
+	/**
+	 * Opens (or creates) the log, and recovers the undelivered records.
+	 * 
+	 * @throws IOException
+	 *             if the directory is locked by another process, or on I/O
+	 *             error
+	 */
+	public synchronized void open() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory \"" + directory.getAbsolutePath() + "\"!");
+		}
+
+		// Lock directory
+		lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException locked) {
+			lock = null;
+		}
+		if (lock == null) {
+			lockChannel.close();
+			throw new IOException("Directory \"" + directory.getAbsolutePath() + "\" is used by another outbox!");
+		}
+
+		// Read checkpoint
+		checkpointChannel = FileChannel.open(new File(directory, CHECKPOINT_FILE).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long checkpoint = 0;
+		ByteBuffer bytes = ByteBuffer.allocate(16);
+		while (bytes.hasRemaining() && checkpointChannel.read(bytes, bytes.position()) > 0) {
+			// Read 16 bytes
+		}
+		if (!bytes.hasRemaining()) {
+			long offset = bytes.getLong(0);
+			if ((offset ^ CHECKPOINT_MAGIC) == bytes.getLong(8) && offset >= 0) {
+				checkpoint = offset;
+			} else {
+				logger.warn("Invalid outbox checkpoint, the whole log will be replayed.");
+			}
+		}
+
+		// Find segments
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				long base = OutboxSegment.parseBase(file.getName());
+				if (base >= 0) {
+					segments.put(base, new OutboxSegment(file, base, segmentSize));
+				}
+			}
+		}
+
+		// Remove delivered segments
+		Iterator<OutboxSegment> i = segments.values().iterator();
+		while (i.hasNext()) {
+			OutboxSegment segment = i.next();
+			if (segment.getEnd() <= checkpoint && segment != segments.lastEntry().getValue()) {
+				segment.delete();
+				i.remove();
+			}
+		}
+
+		// Find the end of the last segment
+		if (segments.isEmpty()) {
+			current = new OutboxSegment(new File(directory, OutboxSegment.fileName(checkpoint)), checkpoint,
+					segmentSize);
+			segments.put(current.base, current);
+			position = 0;
+		} else {
+			current = segments.lastEntry().getValue();
+			position = recover(current);
+		}
+		writeOffset = current.base + position;
+		syncedOffset = writeOffset;
+		startOffset = Math.min(Math.max(checkpoint, segments.firstKey()), writeOffset);
+		checkpointOffset = startOffset;
+	}
+
+	/**
+	 * Finds the end of the valid records in a segment, and removes the
+	 * partially written records.
+	 * 
+	 * @param segment
+	 *            last segment of the log
+	 * 
+	 * @return write position
+	 */
+	protected int recover(OutboxSegment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		int pos = 0;
+		while (pos + HEADER_SIZE <= segment.capacity) {
+			int length = buffer.getInt(pos);
+			if (length == 0) {
+
+				// End of data
+				return pos;
+			}
+			if (length == END_OF_SEGMENT) {
+
+				// Segment is full (the next one has not been created)
+				return segment.capacity;
+			}
+			if (length < MIN_BODY_SIZE || pos + HEADER_SIZE + length > segment.capacity
+					|| buffer.getInt(pos + 4) != checksum(segment, pos + HEADER_SIZE, length)) {
+				break;
+			}
+			pos += HEADER_SIZE + length;
+		}
+		if (pos + HEADER_SIZE > segment.capacity) {
+			return segment.capacity;
+		}
+
+		// Remove torn record(s)
+		logger.warn("Outbox segment \"" + segment.file.getName() + "\" was damaged at position " + pos
+				+ ", removing the partially written records.");
+		byte[] zeros = new byte[64 * 1024];
+		ByteBuffer view = buffer.duplicate();
+		view.position(pos);
+		while (view.hasRemaining()) {
+			view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+		}
+		buffer.force();
+		return pos;
+	}
+
+	protected static int checksum(OutboxSegment segment, int pos, int length) {
+		byte[] body = new byte[length];
+		ByteBuffer view = segment.buffer.duplicate();
+		view.position(pos);
+		view.get(body);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	// --- APPEND RECORD ---
+
+	/**
+	 * Appends a record to the end of the log. The record is not forced to the
+	 * disk (see {@link #sync()}).
+	 * 
+	 * @param timestamp
+	 *            time of the event
+	 * @param nodeID
+	 *            target node ID
+	 * @param event
+	 *            serialized event packet
+	 * 
+	 * @return offset of the record
+	 * 
+	 * @throws IOException
+	 *             if the log is closed, the record is too large, or on I/O
+	 *             error
+	 */
+	public long append(long timestamp, String nodeID, byte[] event) throws IOException {
+		byte[] node = nodeID.getBytes(StandardCharsets.UTF_8);
+		byte[] head = new byte[MIN_BODY_SIZE + node.length];
+		ByteBuffer.wrap(head).putLong(timestamp).putShort((short) node.length).put(node);
+		CRC32 crc = new CRC32();
+		crc.update(head);
+		crc.update(event);
+		int checksum = (int) crc.getValue();
+		int length = head.length + event.length;
+		int size = HEADER_SIZE + length;
+		if (size > segmentSize) {
+			throw new IOException("Record is too large (" + size + " bytes)!");
+		}
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("Outbox log is closed!");
+			}
+			if (position + size > current.capacity) {
+				roll();
+			}
+			long offset = current.base + position;
+			MappedByteBuffer buffer = current.buffer;
+
+			// Write the body first, and the length last
+			buffer.position(position + HEADER_SIZE);
+			buffer.put(head);
+			buffer.put(event);
+			buffer.putInt(position + 4, checksum);
+			buffer.putInt(position, length);
+			position += size;
+			writeOffset = current.base + position;
+			return offset;
+		}
+	}
+
+	protected void roll() throws IOException {
+		if (position + 4 <= current.capacity) {
+			current.buffer.putInt(position, END_OF_SEGMENT);
+		}
+		long base = current.getEnd();
+		OutboxSegment next = new OutboxSegment(new File(directory, OutboxSegment.fileName(base)), base, segmentSize);
+		segments.put(next.base, next);
+		current = next;
+		position = 0;
+	}
+
+	// --- READ RECORD ---
+
+	/**
+	 * Reads the record at the specified offset.
+	 * 
+	 * @param offset
+	 *            log offset (must be the offset of a record, or the end of a
+	 *            segment)
+	 * 
+	 * @return the record, or null if there is no more record
+	 */
+	public Record read(long offset) {
+		while (offset < writeOffset) {
+			Map.Entry<Long, OutboxSegment> entry = segments.floorEntry(offset);
+			if (entry == null) {
+				return null;
+			}
+			OutboxSegment segment = entry.getValue();
+			int pos = (int) (offset - segment.base);
+			if (pos + HEADER_SIZE > segment.capacity) {
+				offset = segment.getEnd();
+				continue;
+			}
+			ByteBuffer view = segment.buffer.duplicate();
+			int length = view.getInt(pos);
+			if (length == END_OF_SEGMENT || length == 0) {
+				offset = segment.getEnd();
+				continue;
+			}
+			if (length < MIN_BODY_SIZE || pos + HEADER_SIZE + length > segment.capacity) {
+
+				// Damaged record (skip the rest of the segment)
+				return new Record(offset, segment.getEnd(), 0, null, null);
+			}
+			byte[] body = new byte[length];
+			view.position(pos + HEADER_SIZE);
+			view.get(body);
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			if ((int) crc.getValue() != view.getInt(pos + 4)) {
+				return new Record(offset, segment.getEnd(), 0, null, null);
+			}
+			ByteBuffer wrapper = ByteBuffer.wrap(body);
+			long timestamp = wrapper.getLong();
+			int nodeLength = wrapper.getShort() & 0xFFFF;
+			String nodeID = new String(body, MIN_BODY_SIZE, nodeLength, StandardCharsets.UTF_8);
+			byte[] event = Arrays.copyOfRange(body, MIN_BODY_SIZE + nodeLength, length);
+			return new Record(offset, offset + HEADER_SIZE + length, timestamp, nodeID, event);
+		}
+		return null;
+	}
+
+	// --- GROUP COMMIT ---
+
+	/**
+	 * Forces the appended records to the disk.
+	 */
+	public void sync() {
+		synchronized (syncLock) {
+			long end = writeOffset;
+			if (end == syncedOffset) {
+				return;
+			}
+			Long from = segments.floorKey(syncedOffset);
+			for (OutboxSegment segment : (from == null ? segments : segments.tailMap(from)).values()) {
+				if (segment.base >= end) {
+					break;
+				}
+				segment.force();
+			}
+			syncedOffset = end;
+		}
+	}
+
+	// --- RELEASE DELIVERED RECORDS ---
+
+	/**
+	 * Stores the offset of the first undelivered record, and deletes the
+	 * segments before this offset.
+	 * 
+	 * @param offset
+	 *            offset of the first undelivered record
+	 * 
+	 * @throws IOException
+	 *             on I/O error
+	 */
+	public void checkpoint(long offset) throws IOException {
+		synchronized (syncLock) {
+			if (offset <= checkpointOffset || checkpointChannel == null) {
+				return;
+			}
+			ByteBuffer bytes = ByteBuffer.allocate(16);
+			bytes.putLong(offset).putLong(offset ^ CHECKPOINT_MAGIC).flip();
+			while (bytes.hasRemaining()) {
+				checkpointChannel.write(bytes, bytes.position());
+			}
+			checkpointChannel.force(false);
+			checkpointOffset = offset;
+			startOffset = offset;
+
+			// Delete delivered segments
+			OutboxSegment last = current;
+			Iterator<OutboxSegment> i = segments.values().iterator();
+			while (i.hasNext()) {
+				OutboxSegment segment = i.next();
+				if (segment.getEnd() > offset || segment == last) {
+					break;
+				}
+				i.remove();
+				if (!segment.delete()) {
+					logger.debug("Unable to delete outbox segment \"" + segment.file.getAbsolutePath() + "\".");
+				}
+			}
+		}
+	}
+
+	// --- CLOSE ---
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		sync();
+		synchronized (syncLock) {
+			for (OutboxSegment segment : segments.values()) {
+				segment.close();
+			}
+			if (checkpointChannel != null) {
+				checkpointChannel.close();
+				checkpointChannel = null;
+			}
+			if (lock != null) {
+				lock.release();
+				lock = null;
+			}
+			if (lockChannel != null) {
+				lockChannel.close();
+				lockChannel = null;
+			}
+		}
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public long getWriteOffset() {
+		return writeOffset;
+	}
+
+	public long getSyncedOffset() {
+		return syncedOffset;
+	}
+
+	public long getStartOffset() {
+		return startOffset;
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+}
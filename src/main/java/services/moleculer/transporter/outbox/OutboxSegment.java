@@ -0,0 +1,141 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.outbox;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * One memory-mapped, pre-allocated file of the {@link OutboxLog}. The name of
+ * the file is the (zero-padded) offset of the first byte of the segment.
+ */
+public class OutboxSegment implements Closeable {
+
+	// --- FILE NAME EXTENSION ---
+
+	public static final String EXTENSION = ".log";
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Log offset of the first byte of the segment
+	 */
+	protected final long base;
+
+	/**
+	 * Size of the segment file in bytes
+	 */
+	protected final int capacity;
+
+	protected final File file;
+
+	// --- MAPPED CONTENT ---
+
+	protected final RandomAccessFile raf;
+	protected final FileChannel channel;
+	protected final MappedByteBuffer buffer;
+
+	// --- CONSTRUCTOR ---
+
+	public OutboxSegment(File file, long base, int capacity) throws IOException {
+		this.file = file;
+		this.base = base;
+		raf = new RandomAccessFile(file, "rw");
+		if (raf.length() == 0) {
+
+			// New (sparse) file, filled with zeros
+			raf.setLength(capacity);
+		} else {
+
+			// Existing file (it may have been created with another size)
+			capacity = (int) Math.min(Integer.MAX_VALUE, raf.length());
+		}
+		this.capacity = capacity;
+		channel = raf.getChannel();
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	// --- FILE NAME ---
+
+	public static String fileName(long base) {
+		return String.format("%020d", base) + EXTENSION;
+	}
+
+	public static long parseBase(String fileName) {
+		if (fileName == null || !fileName.endsWith(EXTENSION)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(fileName.substring(0, fileName.length() - EXTENSION.length()));
+		} catch (NumberFormatException notSegment) {
+			return -1;
+		}
+	}
+
+	// --- WRITE TO DISK ---
+
+	public void force() {
+		buffer.force();
+	}
+
+	// --- CLOSE AND DELETE ---
+
+	@Override
+	public void close() throws IOException {
+		raf.close();
+	}
+
+	public boolean delete() {
+		try {
+			close();
+		} catch (Exception ignored) {
+		}
+		return file.delete();
+	}
+
+	// --- PROPERTY GETTERS ---
+
+	public long getBase() {
+		return base;
+	}
+
+	public long getEnd() {
+		return base + capacity;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+}
@@ -59,6 +59,10 @@ public class NodeDescriptor {
 	public volatile long cpuSeq;
 	public volatile long cpuWhen;
 
+	// --- FAILURE DETECTOR ---
+
+	public final PhiAccrualDetector detector = new PhiAccrualDetector();
+
 	// --- LOCKS ---
 
 	public final Lock readLock;
@@ -119,6 +123,7 @@ public class NodeDescriptor {
 			cpuSeq++;
 		}
 		cpuWhen = System.currentTimeMillis();
+		detector.heartbeat(cpuWhen);
 	}
 
 	public void updateCpu(long cpuSeq, int cpu) {
@@ -132,6 +137,7 @@ public class NodeDescriptor {
 			this.cpuSeq = cpuSeq;
 			this.cpu = cpu;
 			cpuWhen = System.currentTimeMillis();
+			detector.heartbeat(cpuWhen);
 		}
 	}
 
@@ -187,6 +193,10 @@ public class NodeDescriptor {
 			this.host = host;
 			this.port = port;
 			cpuWhen = System.currentTimeMillis();
+
+			// Drop the inter-arrival history of the previous session
+			detector.reset();
+			detector.heartbeat(cpuWhen);
 			return true;
 		}
 		return false;
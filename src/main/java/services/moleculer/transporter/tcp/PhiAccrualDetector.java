@@ -0,0 +1,218 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.tcp;
+
+/**
+ * Phi-accrual failure detector of a remote node (based on "The Phi Accrual
+ * Failure Detector" by Hayashibara et al.). Collects the inter-arrival times
+ * of the heartbeats (or gossip messages) of the node in a sliding window, and
+ * calculates the suspicion level ("phi") from the time elapsed since the last
+ * heartbeat. A phi value of 1 means about 10% chance that the node is alive
+ * and the heartbeat is only late, 2 means about 1%, 3 means about 0.1%, etc.
+ * The normal distribution is approximated with a logistic function.
+ */
+public class PhiAccrualDetector {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Number of stored inter-arrival times
+	 */
+	protected final int windowSize;
+
+	/**
+	 * Minimum number of samples before the detector gives phi values
+	 */
+	protected final int minSamples;
+
+	// --- SAMPLES (IN MILLISECONDS) ---
+
+	protected final long[] intervals;
+
+	protected int count;
+	protected int index;
+
+	protected long sum;
+	protected long squaredSum;
+
+	// --- CALCULATED VALUES ---
+
+	protected volatile long lastHeartbeat;
+
+	protected volatile double mean;
+
+	protected volatile double stdDeviation;
+
+	protected volatile boolean ready;
+
+	// --- CONSTRUCTORS ---
+
+	public PhiAccrualDetector() {
+		this(100, 5);
+	}
+
+	public PhiAccrualDetector(int windowSize, int minSamples) {
+		this.windowSize = Math.max(2, windowSize);
+		this.minSamples = Math.max(1, Math.min(minSamples, this.windowSize));
+		this.intervals = new long[this.windowSize];
+	}
+
+	// --- ADD HEARTBEAT ---
+
+	public synchronized void heartbeat(long now) {
+		long last = lastHeartbeat;
+		lastHeartbeat = now;
+		if (last == 0) {
+			return;
+		}
+		long interval = now - last;
+		if (interval < 0) {
+			return;
+		}
+
+		// Add to the ring buffer
+		if (count == windowSize) {
+			long removed = intervals[index];
+			sum -= removed;
+			squaredSum -= removed * removed;
+		} else {
+			count++;
+		}
+		intervals[index] = interval;
+		index = (index + 1) % windowSize;
+		sum += interval;
+		squaredSum += interval * interval;
+
+		// Recalculate distribution
+		double m = (double) sum / count;
+		double variance = (double) squaredSum / count - m * m;
+		mean = m;
+		stdDeviation = variance > 0 ? Math.sqrt(variance) : 0;
+		ready = count >= minSamples;
+	}
+
+	// --- RESET HISTORY ---
+
+	public synchronized void reset() {
+		count = 0;
+		index = 0;
+		sum = 0;
+		squaredSum = 0;
+		lastHeartbeat = 0;
+		mean = 0;
+		stdDeviation = 0;
+		ready = false;
+	}
+
+	// --- CALCULATE SUSPICION LEVEL ---
+
+	/**
+	 * Calculates the suspicion level of the node.
+	 * 
+	 * @param now
+	 *            current timestamp (in milliseconds)
+	 * @param acceptablePause
+	 *            tolerated pause (eg. GC pause) in milliseconds, added to the
+	 *            mean of the intervals
+	 * @param minStdDeviation
+	 *            minimum standard deviation in milliseconds (to avoid false
+	 *            positives when the heartbeats are very regular)
+	 * 
+	 * @return phi value (0 = no suspicion, or not enough samples)
+	 */
+	public double phi(long now, long acceptablePause, long minStdDeviation) {
+		if (!ready) {
+			return 0;
+		}
+		long elapsed = now - lastHeartbeat;
+		double m = mean + acceptablePause;
+		double s = Math.max(stdDeviation, minStdDeviation);
+		if (s <= 0) {
+			s = 1;
+		}
+		double y = (elapsed - m) / s;
+		double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+		if (elapsed > m) {
+			return -Math.log10(e / (1.0 + e));
+		}
+		return -Math.log10(1.0 - 1.0 / (1.0 + e));
+	}
+
+	/**
+	 * Checks that the suspicion level reached the specified threshold. Faster
+	 * than {@link #phi}, because the phi is not calculated until the elapsed
+	 * time exceeds the mean interval and the acceptable pause.
+	 * 
+	 * @param now
+	 *            current timestamp (in milliseconds)
+	 * @param threshold
+	 *            phi threshold
+	 * @param acceptablePause
+	 *            tolerated pause in milliseconds
+	 * @param minStdDeviation
+	 *            minimum standard deviation in milliseconds
+	 * 
+	 * @return true if the node is suspected
+	 */
+	public boolean isSuspected(long now, double threshold, long acceptablePause, long minStdDeviation) {
+		if (!ready || threshold <= 0) {
+			return false;
+		}
+
+		// The phi is always less than 0.31 until the mean + acceptable pause
+		if (threshold > 0.31 && now - lastHeartbeat <= mean + acceptablePause) {
+			return false;
+		}
+		return phi(now, acceptablePause, minStdDeviation) >= threshold;
+	}
+
+	// --- GETTERS ---
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	public long getLastHeartbeat() {
+		return lastHeartbeat;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getStdDeviation() {
+		return stdDeviation;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getMinSamples() {
+		return minSamples;
+	}
+
+}
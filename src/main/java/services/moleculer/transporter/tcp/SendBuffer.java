@@ -25,20 +25,26 @@
  */
 package services.moleculer.transporter.tcp;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import services.moleculer.error.InvalidPacketDataError;
+import services.moleculer.stream.FileRegion;
 
 /**
- * Attachment of TcpWriter's SelectionKeys.
+ * Attachment of TcpWriter's SelectionKeys. Outgoing packets are stored in
+ * three queues ("lanes"). Control packets (gossip, ping/pong) are always sent
+ * first; the RPC and bulk (stream) lanes share the bandwidth by a byte-based
+ * Deficit Round Robin scheduler. Lanes are switched only at packet boundaries,
+ * the order of the packets within a lane is preserved.
  */
 public class SendBuffer {
 
@@ -46,15 +52,65 @@ public class SendBuffer {
 
 	protected static final Logger logger = LoggerFactory.getLogger(SendBuffer.class);
 
-	// --- OUTGOING QUEUE ---
+	// --- LANES ---
 
-	protected final ConcurrentLinkedQueue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+	/**
+	 * Gossip and ping/pong packets (highest priority)
+	 */
+	public static final int LANE_CONTROL = 0;
+
+	/**
+	 * Requests, responses and events
+	 */
+	public static final int LANE_RPC = 1;
+
+	/**
+	 * Stream chunks and large packets
+	 */
+	public static final int LANE_BULK = 2;
+
+	// --- OUTGOING QUEUES (BYTEBUFFERS AND REGIONPACKETS) ---
+
+	@SuppressWarnings("unchecked")
+	protected final ConcurrentLinkedQueue<Object>[] lanes = new ConcurrentLinkedQueue[] {
+			new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>() };
+
+	// --- DEFICIT ROUND ROBIN (USED BY THE WRITER THREAD) ---
+
+	/**
+	 * Number of bytes added to the lane's deficit counter in each round (index
+	 * = lane)
+	 */
+	protected final long[] quantums = new long[3];
+
+	/**
+	 * Deficit counters of the lanes
+	 */
+	protected final long[] deficits = new long[3];
+
+	/**
+	 * Current lane of the round robin (RPC or bulk)
+	 */
+	protected int drrLane = LANE_RPC;
+
+	/**
+	 * Packet in progress (partially written into the socket)
+	 */
+	protected volatile Object current;
 
 	// --- USED / NOT USED ---
 
-	protected static final ByteBuffer BUFFER_IS_CLOSED = ByteBuffer.allocate(1);
+	protected static final long BUFFER_IS_CLOSED = -1;
 
-	protected AtomicReference<ByteBuffer> blockerBuffer = new AtomicReference<>();
+	/**
+	 * Number of appended items (or BUFFER_IS_CLOSED)
+	 */
+	protected final AtomicLong appended = new AtomicLong();
+
+	/**
+	 * Number of submitted items
+	 */
+	protected volatile long written;
 
 	// --- PROPERTIES ---
 
@@ -75,10 +131,16 @@ public class SendBuffer {
 	// --- CONSTRUCTOR ---
 
 	protected SendBuffer(String nodeID, String host, int port, boolean debug) {
+		this(nodeID, host, port, debug, 65536, 16384);
+	}
+
+	protected SendBuffer(String nodeID, String host, int port, boolean debug, int rpcQuantum, int bulkQuantum) {
 		this.nodeID = nodeID;
 		this.host = host;
 		this.port = port;
 		this.debug = debug;
+		this.quantums[LANE_RPC] = Math.max(1, rpcQuantum);
+		this.quantums[LANE_BULK] = Math.max(1, bulkQuantum);
 	}
 
 	// --- CONNECTED ---
@@ -91,7 +153,7 @@ public class SendBuffer {
 	// --- ADD BYTES ---
 
 	/**
-	 * Adds a packet to the buffer's queue.
+	 * Adds a packet to the buffer's RPC queue.
 	 *
 	 * @param packet
 	 *            packet to write
@@ -99,20 +161,107 @@ public class SendBuffer {
 	 * @return true, if success (false = buffer is closed)
 	 */
 	protected boolean append(byte[] packet) {
-		ByteBuffer buffer = ByteBuffer.wrap(packet);
-		ByteBuffer blocker;
+		return append(ByteBuffer.wrap(packet), LANE_RPC);
+	}
+
+	/**
+	 * Adds a packet to the specified queue.
+	 *
+	 * @param packet
+	 *            packet to write
+	 * @param lane
+	 *            LANE_CONTROL, LANE_RPC or LANE_BULK
+	 *
+	 * @return true, if success (false = buffer is closed)
+	 */
+	protected boolean append(byte[] packet, int lane) {
+		return append(ByteBuffer.wrap(packet), lane);
+	}
+
+	/**
+	 * Adds a packet header and the region of a file (the packet's body) to the
+	 * buffer's bulk queue. The region is written with "FileChannel.transferTo".
+	 *
+	 * @param header
+	 *            packet header
+	 * @param region
+	 *            file region
+	 *
+	 * @return true, if success (false = buffer is closed)
+	 */
+	protected boolean append(byte[] header, FileRegion region) {
+		return append(new RegionPacket(ByteBuffer.wrap(header), region), LANE_BULK);
+	}
+
+	protected boolean append(Object item, int lane) {
+		long count;
 		while (true) {
-			blocker = blockerBuffer.get();
-			if (blocker == BUFFER_IS_CLOSED) {
+			count = appended.get();
+			if (count == BUFFER_IS_CLOSED) {
 				return false;
 			}
-			if (blockerBuffer.compareAndSet(blocker, buffer)) {
-				queue.add(buffer);
+			if (appended.compareAndSet(count, count + 1)) {
+				lanes[lane].add(item);
 				return true;
 			}
 		}
 	}
 
+	// --- FILE REGION WITH HEADER ---
+
+	protected static final class RegionPacket {
+
+		protected final ByteBuffer header;
+		protected final FileRegion region;
+
+		protected RegionPacket(ByteBuffer header, FileRegion region) {
+			this.header = header;
+			this.region = region;
+		}
+
+		/**
+		 * Writes the header, then transfers the file region.
+		 * 
+		 * @return true = all bytes submitted, false = socket is full
+		 */
+		protected long size() {
+			return header.remaining() + region.getCount();
+		}
+
+		/**
+		 * Reads the whole packet (header and region) into the heap.
+		 * 
+		 * @return packet bytes
+		 * 
+		 * @throws IOException
+		 *             any I/O exception
+		 */
+		protected byte[] read() throws IOException {
+			byte[] head = header.array();
+			byte[] body = region.read();
+			byte[] packet = new byte[head.length + body.length];
+			System.arraycopy(head, 0, packet, 0, head.length);
+			System.arraycopy(body, 0, packet, head.length, body.length);
+			return packet;
+		}
+
+		protected boolean write(SocketChannel channel) throws Exception {
+			if (header.hasRemaining()) {
+				channel.write(header);
+				if (header.hasRemaining()) {
+					return false;
+				}
+			}
+			while (!region.isTransferred()) {
+				if (region.transferTo(channel) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
 	// --- CLOSE IF UNUSED ---
 
 	/**
@@ -121,14 +270,14 @@ public class SendBuffer {
 	 * @return true, is closed (false = buffer is not empty)
 	 */
 	protected boolean tryToClose() {
-		ByteBuffer blocker = blockerBuffer.get();
-		if (blocker == BUFFER_IS_CLOSED) {
+		long count = appended.get();
+		if (count == BUFFER_IS_CLOSED) {
 			return true;
 		}
-		if (blocker != null) {
+		if (count != written) {
 			return false;
 		}
-		boolean closed = blockerBuffer.compareAndSet(null, BUFFER_IS_CLOSED);
+		boolean closed = appended.compareAndSet(count, BUFFER_IS_CLOSED);
 		if (closed) {
 			closeResources();
 			return true;
@@ -139,7 +288,7 @@ public class SendBuffer {
 	// --- CLOSE BUFFER ---
 
 	protected void close() {
-		blockerBuffer.set(BUFFER_IS_CLOSED);
+		appended.set(BUFFER_IS_CLOSED);
 		closeResources();
 	}
 
@@ -151,7 +300,13 @@ public class SendBuffer {
 			}
 			key = null;
 		}
-		queue.clear();
+		Object item = pollAny();
+		while (item != null) {
+			if (item instanceof RegionPacket) {
+				((RegionPacket) item).region.release();
+			}
+			item = pollAny();
+		}
 		if (channel != null) {
 
 			// Debug
@@ -180,54 +335,166 @@ public class SendBuffer {
 	 *             any I/O exception
 	 */
 	protected void write() throws Exception {
-		ByteBuffer buffer = queue.peek();
-		if (buffer == null) {
-			if (key != null) {
-				key.interestOps(0);
+		if (current == null) {
+			current = next();
+			if (current == null) {
+				disableWriteMode();
+				return;
 			}
-			return;
 		}
 		if (channel != null) {
 			int count;
 			while (true) {
-				count = channel.write(buffer);
+				if (current instanceof RegionPacket) {
 
-				// Debug
-				if (debug) {
-					logger.info(count + " bytes submitted to " + channel.getRemoteAddress() + ".");
-				}
+					// Zero-copy transfer of a file region
+					RegionPacket packet = (RegionPacket) current;
+					if (!packet.write(channel)) {
 
-				// EOF?
-				if (count == -1) {
-					throw new InvalidPacketDataError(nodeID, "host", host, "port", port);
-				}
+						// Continue at the next OP_WRITE
+						return;
+					}
+					packet.region.release();
 
-				// Remove the submitted buffer from the queue
-				if (!buffer.hasRemaining()) {
-					queue.poll();
-				}
+					// Debug
+					if (debug) {
+						logger.info("File region (" + packet.region.getCount() + " bytes) submitted to "
+								+ channel.getRemoteAddress() + ".");
+					}
 
-				// Turn off write mode (if the queue is empty)
-				if (queue.isEmpty()) {
-					if (blockerBuffer.compareAndSet(buffer, null) && key != null) {
-						key.interestOps(0);
+				} else {
+					ByteBuffer buffer = (ByteBuffer) current;
+					count = channel.write(buffer);
+
+					// Debug
+					if (debug) {
+						logger.info(count + " bytes submitted to " + channel.getRemoteAddress() + ".");
+					}
+
+					// EOF?
+					if (count == -1) {
+						throw new InvalidPacketDataError(nodeID, "host", host, "port", port);
 					}
+
+					// Continue at the next OP_WRITE
+					if (buffer.hasRemaining()) {
+						return;
+					}
+				}
+
+				// Packet submitted
+				written++;
+
+				// Turn off write mode (if the queues are empty)
+				current = next();
+				if (current == null) {
+					disableWriteMode();
 					return;
-				} else {
-					buffer = queue.peek();
 				}
 			}
 		}
 	}
 
+	protected void disableWriteMode() {
+		if (key != null && appended.get() == written) {
+			key.interestOps(0);
+
+			// Packet added in the meantime
+			if (appended.get() != written) {
+				key.interestOps(SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	// --- PACKET SCHEDULER ---
+
+	/**
+	 * Removes the next packet from the queues. Control packets are sent first,
+	 * then the RPC and bulk lanes are served by Deficit Round Robin: a lane may
+	 * send packets while its deficit counter is positive, and the size of each
+	 * packet is deducted from the counter. A large packet makes the counter
+	 * negative, so the other lane can catch up before the next one is sent.
+	 *
+	 * @return next packet (or null, if the queues are empty)
+	 */
+	protected Object next() {
+
+		// Control packets
+		Object item = lanes[LANE_CONTROL].poll();
+		if (item != null) {
+			return item;
+		}
+
+		// No competition between the RPC and bulk lanes
+		boolean rpc = !lanes[LANE_RPC].isEmpty();
+		boolean bulk = !lanes[LANE_BULK].isEmpty();
+		if (!rpc || !bulk) {
+			deficits[LANE_RPC] = 0;
+			deficits[LANE_BULK] = 0;
+			if (rpc) {
+				return lanes[LANE_RPC].poll();
+			}
+			if (bulk) {
+				return lanes[LANE_BULK].poll();
+			}
+			return null;
+		}
+
+		// Deficit Round Robin
+		while (true) {
+			if (deficits[drrLane] > 0) {
+				item = lanes[drrLane].poll();
+				deficits[drrLane] -= sizeOf(item);
+				return item;
+			}
+			deficits[drrLane] += quantums[drrLane];
+			drrLane = drrLane == LANE_RPC ? LANE_BULK : LANE_RPC;
+		}
+	}
+
+	protected static long sizeOf(Object item) {
+		if (item instanceof RegionPacket) {
+			return ((RegionPacket) item).size();
+		}
+		return ((ByteBuffer) item).remaining();
+	}
+
+	protected Object pollAny() {
+		Object item = current;
+		if (item != null) {
+			current = null;
+			return item;
+		}
+		for (ConcurrentLinkedQueue<Object> lane : lanes) {
+			item = lane.poll();
+			if (item != null) {
+				return item;
+			}
+		}
+		return null;
+	}
+
 	// --- GET CURRENT PACKET ---
 
 	public LinkedList<byte[]> getUnsentPackets() {
 		LinkedList<byte[]> list = new LinkedList<>();
-		ByteBuffer buffer = queue.poll();
-		while (buffer != null) {
-			list.addLast(buffer.array());
-			buffer = queue.poll();
+		Object item = pollAny();
+		while (item != null) {
+			if (item instanceof RegionPacket) {
+
+				// Stream chunk (read the region into the heap)
+				RegionPacket packet = (RegionPacket) item;
+				try {
+					list.addLast(packet.read());
+				} catch (Exception cause) {
+					logger.warn("Unable to read file region!", cause);
+				} finally {
+					packet.region.release();
+				}
+			} else {
+				list.addLast(((ByteBuffer) item).array());
+			}
+			item = pollAny();
 		}
 		return list;
 	}
@@ -346,7 +346,7 @@ public class TcpReader implements Runnable {
 
 			// Verify type
 			byte type = bytes[pos + 5];
-			if (type < 1 || type > 8) {
+			if (type < 1 || type > 9) {
 
 				// Unknown packet type!
 				throw new InvalidPacketDataError("Invalid packet type (" + type + ")!", "type", type);
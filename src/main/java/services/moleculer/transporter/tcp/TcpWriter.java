@@ -47,6 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.datatree.Tree;
+import services.moleculer.stream.FileRegion;
 import services.moleculer.transporter.TcpTransporter;
 
 /**
@@ -65,6 +66,16 @@ public class TcpWriter implements Runnable {
 	 */
 	protected final int maxConnections;
 
+	/**
+	 * Deficit Round Robin quantum of the RPC lane (in bytes)
+	 */
+	protected final int rpcQuantum;
+
+	/**
+	 * Deficit Round Robin quantum of the bulk (stream) lane (in bytes)
+	 */
+	protected final int bulkQuantum;
+
 	/**
 	 * Debug mode
 	 */
@@ -93,6 +104,8 @@ public class TcpWriter implements Runnable {
 		this.transporter = transporter;
 		this.debug = transporter.isDebug();
 		this.maxConnections = transporter.getMaxConnections();
+		this.rpcQuantum = transporter.getRpcQuantum();
+		this.bulkQuantum = transporter.getBulkQuantum();
 	}
 
 	// --- CONNECT ---
@@ -174,6 +187,40 @@ public class TcpWriter implements Runnable {
 	// --- WRITE TO SOCKET ---
 
 	public void send(String nodeID, byte[] packet) {
+		send(nodeID, packet, null, SendBuffer.LANE_RPC);
+	}
+
+	/**
+	 * Sends a packet in the specified lane.
+	 * 
+	 * @param nodeID
+	 *            target node ID
+	 * @param packet
+	 *            packet
+	 * @param lane
+	 *            SendBuffer.LANE_CONTROL, LANE_RPC or LANE_BULK
+	 */
+	public void send(String nodeID, byte[] packet, int lane) {
+		send(nodeID, packet, null, lane);
+	}
+
+	/**
+	 * Sends a packet. If the region parameter is not null, the packet is only
+	 * the header, and the body is transferred from the file region (with
+	 * "FileChannel.transferTo").
+	 * 
+	 * @param nodeID
+	 *            target node ID
+	 * @param packet
+	 *            packet (or header)
+	 * @param region
+	 *            optional file region (released by the writer)
+	 */
+	public void send(String nodeID, byte[] packet, FileRegion region) {
+		send(nodeID, packet, region, SendBuffer.LANE_BULK);
+	}
+
+	protected void send(String nodeID, byte[] packet, FileRegion region, int lane) {
 		if (nodeID == null) {
 			logger.warn("Unable to send (missing nodeID)!");
 			return;
@@ -195,21 +242,24 @@ public class TcpWriter implements Runnable {
 					RemoteAddress address = transporter.getAddress(nodeID);
 					if (address == null) {
 						logger.warn("Unknown node ID (" + nodeID + ")!");
+						if (region != null) {
+							region.release();
+						}
 						return;
 					}
-					buffer = new SendBuffer(nodeID, address.host, address.port, debug);
-					append(nodeID, buffer, packet);
+					buffer = createBuffer(nodeID, address);
+					append(nodeID, buffer, packet, region, lane);
 					buffers.put(nodeID, buffer);
 					newBuffer = true;
 				} else {
 
 					// Try to append to buffer
-					if (!buffer.append(packet)) {
+					if (!(region == null ? buffer.append(packet, lane) : buffer.append(packet, region))) {
 
 						// Buffer is closed
 						RemoteAddress address = transporter.getAddress(nodeID);
-						buffer = new SendBuffer(nodeID, address.host, address.port, debug);
-						append(nodeID, buffer, packet);
+						buffer = createBuffer(nodeID, address);
+						append(nodeID, buffer, packet, region, lane);
 						buffers.put(nodeID, buffer);
 						newBuffer = true;
 					}
@@ -246,25 +296,34 @@ public class TcpWriter implements Runnable {
 			} else {
 				packets = new LinkedList<>();
 			}
-			if (packets.isEmpty() && packet != null) {
+			if (region != null) {
+				region.release();
+			} else if (packets.isEmpty() && packet != null) {
 				packets.addLast(packet);
 			}
 			transporter.unableToSend(nodeID, packets, cause);
 		}
 	}
 
-	protected boolean append(String nodeID, SendBuffer buffer, byte[] packet) {
+	protected SendBuffer createBuffer(String nodeID, RemoteAddress address) {
+		return new SendBuffer(nodeID, address.host, address.port, debug, rpcQuantum, bulkQuantum);
+	}
+
+	protected boolean append(String nodeID, SendBuffer buffer, byte[] packet, FileRegion region, int lane) {
 
 		// Add HELLO first
 		if (debug) {
 			logger.info("Send \"hello\" message to \"" + nodeID + "\".");
 		}
-		if (!buffer.append(transporter.generateGossipHello())) {
+		if (!buffer.append(transporter.generateGossipHello(), SendBuffer.LANE_CONTROL)) {
 			return false;
 		}
 
 		// Add message
-		return buffer.append(packet);
+		if (region != null) {
+			return buffer.append(packet, region);
+		}
+		return buffer.append(packet, lane);
 	}
 
 	// --- WRITER LOOP ---
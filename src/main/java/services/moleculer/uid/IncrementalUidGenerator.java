@@ -71,10 +71,20 @@ public class IncrementalUidGenerator extends UidGenerator {
 
 	@Override
 	public String nextUID() {
-		StringBuilder tmp = new StringBuilder(prefix.length + 16);
-		tmp.append(prefix);
-		tmp.append(counter.incrementAndGet());
-		return tmp.toString();
+		long value = counter.incrementAndGet();
+		int digits = 1;
+		for (long v = value; v > 9; v /= 10) {
+			digits++;
+		}
+
+		// Write prefix and digits into one array (without StringBuilder)
+		char[] chars = new char[prefix.length + digits];
+		System.arraycopy(prefix, 0, chars, 0, prefix.length);
+		for (int i = chars.length - 1; i >= prefix.length; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return new String(chars);
 	}
 
 	// --- GETTERS / SETTERS ---
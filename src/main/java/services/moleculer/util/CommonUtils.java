@@ -122,6 +122,11 @@ public final class CommonUtils {
 
 	public static final FastBuildTree throwableToTree(String id, String nodeID, String protocolVersion,
 			Throwable error) {
+		return throwableToTree(id, nodeID, protocolVersion, error, true);
+	}
+
+	public static final FastBuildTree throwableToTree(String id, String nodeID, String protocolVersion,
+			Throwable error, boolean includeStack) {
 
 		FastBuildTree msg = new FastBuildTree(8);
 
@@ -150,7 +155,7 @@ public final class CommonUtils {
 			// Convert MoleculerError to JSON
 			FastBuildTree errorMap = new FastBuildTree(9);
 			msg.putUnsafe("error", errorMap);
-			moleculerError.toTree(errorMap);
+			moleculerError.toTree(errorMap, includeStack);
 		}
 		return msg;
 	}
@@ -511,6 +516,10 @@ public final class CommonUtils {
 		if (name == null || name.isEmpty()) {
 			name = field.getName();
 		}
+		return nameOf(prefix, name);
+	}
+
+	public static final String nameOf(String prefix, String name) {
 		if (name.indexOf('.') == -1) {
 			return prefix + '.' + name;
 		}
@@ -626,27 +635,128 @@ public final class CommonUtils {
 
 	// --- COMPRESSS / DECOMPRESS ---
 
+	/**
+	 * Pooled (thread-local) compressors, one per compression level. The native
+	 * zlib state of a Deflater is expensive to create, so they are reused
+	 * (after "reset").
+	 */
+	private static final ThreadLocal<Deflater[]> deflaters = new ThreadLocal<Deflater[]>() {
+
+		@Override
+		protected final Deflater[] initialValue() {
+			return new Deflater[11];
+		}
+
+	};
+
+	/**
+	 * Pooled (thread-local) decompressors.
+	 */
+	private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+		@Override
+		protected final Inflater initialValue() {
+			return new Inflater(true);
+		}
+
+	};
+
 	public static final byte[] compress(byte[] data, int level) throws IOException {
-		final Deflater deflater = new Deflater(level, true);
-		deflater.setInput(data);
+		return compress(data, 0, data.length, level, null);
+	}
+
+	/**
+	 * Compresses a part of a byte array with a pooled Deflater (without zlib
+	 * header).
+	 * 
+	 * @param data
+	 *            source array
+	 * @param offset
+	 *            start offset in the source array
+	 * @param length
+	 *            number of bytes to compress
+	 * @param level
+	 *            compression level (1-9)
+	 * @param dictionary
+	 *            optional preset dictionary (or null)
+	 * 
+	 * @return compressed bytes
+	 * 
+	 * @throws IOException
+	 *             unexpected I/O error
+	 */
+	public static final byte[] compress(byte[] data, int offset, int length, int level, byte[] dictionary)
+			throws IOException {
+		final Deflater[] pool = deflaters.get();
+		final int index = level < 0 || level > 9 ? 10 : level;
+		Deflater deflater = pool[index];
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+			pool[index] = deflater;
+		} else {
+			deflater.reset();
+		}
+		if (dictionary != null) {
+			deflater.setDictionary(dictionary);
+		}
+		deflater.setInput(data, offset, length);
 		deflater.finish();
-		final byte[] buffer = new byte[data.length + 128];
-		final int length = deflater.deflate(buffer);
-		final byte[] compressed = new byte[length];
-		System.arraycopy(buffer, 0, compressed, 0, length);
-		return compressed;
+		byte[] buffer = new byte[length / 2 + 64];
+		int pos = 0;
+		while (!deflater.finished()) {
+			if (pos == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			pos += deflater.deflate(buffer, pos, buffer.length - pos);
+		}
+		return pos == buffer.length ? buffer : Arrays.copyOf(buffer, pos);
 	}
 
 	public static final byte[] decompress(byte[] data) throws IOException, DataFormatException {
-		Inflater inflater = new Inflater(true);
-		inflater.setInput(data);
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-		byte[] buffer = new byte[1024];
+		return decompress(data, 0, data.length, null);
+	}
+
+	/**
+	 * Decompresses a part of a byte array (in place, without copying the
+	 * compressed bytes) with a pooled Inflater.
+	 * 
+	 * @param data
+	 *            source array
+	 * @param offset
+	 *            start offset of the compressed bytes
+	 * @param length
+	 *            number of compressed bytes
+	 * @param dictionary
+	 *            preset dictionary of the compressor (or null)
+	 * 
+	 * @return uncompressed bytes
+	 * 
+	 * @throws IOException
+	 *             unexpected I/O error
+	 * @throws DataFormatException
+	 *             invalid or truncated data
+	 */
+	public static final byte[] decompress(byte[] data, int offset, int length, byte[] dictionary)
+			throws IOException, DataFormatException {
+		final Inflater inflater = inflaters.get();
+		inflater.reset();
+		if (dictionary != null) {
+			inflater.setDictionary(dictionary);
+		}
+		inflater.setInput(data, offset, length);
+		byte[] buffer = new byte[Math.max(256, length * 4)];
+		int pos = 0;
 		while (!inflater.finished()) {
-			int count = inflater.inflate(buffer);
-			outputStream.write(buffer, 0, count);
+			if (pos == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			int count = inflater.inflate(buffer, pos, buffer.length - pos);
+			if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+				throw new DataFormatException("Truncated or invalid compressed data!");
+			}
+			pos += count;
 		}
-		return outputStream.toByteArray();
+		return pos == buffer.length ? buffer : Arrays.copyOf(buffer, pos);
 	}
 
 	// --- UNIT PARSER ---
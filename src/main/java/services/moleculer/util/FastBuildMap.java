@@ -69,6 +69,16 @@ public class FastBuildMap extends AbstractMap<String, Object> {
 		return value;
 	}
 
+	// --- ACCESS BY INDEX ---
+
+	public Object getValue(int index) {
+		return values[index];
+	}
+
+	public void setValue(int index, Object value) {
+		values[index] = value;
+	}
+
 	@Override
 	public Set<Entry<String, Object>> entrySet() {
 		return new FastBuildEntrySet(size, keys, values);
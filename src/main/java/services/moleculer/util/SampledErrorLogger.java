@@ -0,0 +1,202 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.util;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import services.moleculer.error.MoleculerError;
+
+/**
+ * Rate-limited, deduplicating error logger. The first occurrence of an error
+ * (identified by its key) is written to the log with the stack trace, the
+ * repeated occurrences in the same interval are only counted. The next
+ * occurrence after the interval writes the number of suppressed errors into
+ * the log. Protects the node against "log storms" during outages.
+ */
+public class SampledErrorLogger {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Target logger
+	 */
+	protected final Logger logger;
+
+	/**
+	 * Length of the sampling interval in MILLISECONDS (0 = log every error)
+	 */
+	protected volatile long interval;
+
+	/**
+	 * Max number of tracked error keys (errors with unknown keys are logged
+	 * without deduplication above this limit)
+	 */
+	protected int maxKeys = 1024;
+
+	// --- COUNTERS ---
+
+	protected final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+	protected static final class Window {
+
+		protected volatile long start;
+
+		protected final AtomicLong suppressed = new AtomicLong();
+
+		protected Window(long start) {
+			this.start = start;
+		}
+
+	}
+
+	// --- CONSTRUCTOR ---
+
+	public SampledErrorLogger(Logger logger, long interval) {
+		this.logger = logger;
+		this.interval = interval;
+	}
+
+	// --- LOG ERRORS ---
+
+	public void error(String message, Throwable cause) {
+		error(keyOf(message, cause), message, cause);
+	}
+
+	public void error(String key, String message, Throwable cause) {
+		long suppressed = sample(key);
+		if (suppressed > -1) {
+			logger.error(format(message, suppressed), cause);
+		}
+	}
+
+	// --- LOG WARNINGS ---
+
+	public void warn(String key, String message) {
+		long suppressed = sample(key);
+		if (suppressed > -1) {
+			logger.warn(format(message, suppressed));
+		}
+	}
+
+	// --- SAMPLING ---
+
+	/**
+	 * Decides that the error should be written into the log.
+	 * 
+	 * @param key
+	 *            key of the error
+	 * 
+	 * @return number of suppressed errors since the previous log entry, or -1
+	 *         if this error should be suppressed
+	 */
+	protected long sample(String key) {
+		long interval = this.interval;
+		if (interval < 1) {
+			return 0;
+		}
+		long now = System.currentTimeMillis();
+		Window window = windows.get(key);
+		if (window == null) {
+			if (windows.size() >= maxKeys) {
+				removeExpired(now, interval);
+				if (windows.size() >= maxKeys) {
+					return 0;
+				}
+			}
+			window = windows.putIfAbsent(key, new Window(now));
+			if (window == null) {
+
+				// First occurrence
+				return 0;
+			}
+		}
+		if (now - window.start < interval) {
+			window.suppressed.incrementAndGet();
+			return -1;
+		}
+		synchronized (window) {
+			if (now - window.start < interval) {
+				window.suppressed.incrementAndGet();
+				return -1;
+			}
+			window.start = now;
+			return window.suppressed.getAndSet(0);
+		}
+	}
+
+	protected void removeExpired(long now, long interval) {
+		windows.values().removeIf(window -> now - window.start >= interval && window.suppressed.get() == 0);
+	}
+
+	protected String format(String message, long suppressed) {
+		if (suppressed < 1) {
+			return message;
+		}
+		long seconds = Math.max(1, interval / 1000);
+		return message + " (" + suppressed + " similar errors suppressed in the last " + seconds + " seconds)";
+	}
+
+	// --- ERROR KEY ---
+
+	protected String keyOf(String message, Throwable cause) {
+		if (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause == null) {
+			return message;
+		}
+		StringBuilder key = new StringBuilder(128);
+		key.append(cause.getClass().getName());
+		if (cause instanceof MoleculerError) {
+			key.append(':').append(((MoleculerError) cause).getType());
+		}
+		key.append(':').append(cause.getMessage());
+		return key.toString();
+	}
+
+	// --- GETTERS / SETTERS ---
+
+	public long getInterval() {
+		return interval;
+	}
+
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	public int getMaxKeys() {
+		return maxKeys;
+	}
+
+	public void setMaxKeys(int maxKeys) {
+		this.maxKeys = maxKeys;
+	}
+
+}
@@ -48,6 +48,7 @@ public final class RedisPubSubClient extends AbstractRedisClient {
 	// --- VARIABLES ---
 
 	private final RedisPubSubListener<byte[], byte[]> listener;
+	private StatefulRedisPubSubConnection<byte[], byte[]> connection;
 	private RedisPubSubAsyncCommands<byte[], byte[]> client;
 
 	// --- CONSTRUCTOR ---
@@ -80,6 +81,7 @@ public final class RedisPubSubClient extends AbstractRedisClient {
 		if (listener != null) {
 			connection.addListener(listener);
 		}
+		this.connection = connection;
 		client = connection.async();
 	}
 
@@ -92,8 +94,39 @@ public final class RedisPubSubClient extends AbstractRedisClient {
 	// --- PUBLISH ---
 
 	public final void publish(String channel, byte[] message) {
-		if (client != null) {
-			client.publish(channel.getBytes(StandardCharsets.UTF_8), message);
+		publish(channel.getBytes(StandardCharsets.UTF_8), message);
+	}
+
+	public final void publish(byte[] channel, byte[] message) {
+		RedisPubSubAsyncCommands<byte[], byte[]> c = client;
+		if (c != null) {
+			c.publish(channel, message);
+		}
+	}
+
+	// --- PIPELINING ---
+
+	/**
+	 * Enables or disables the automatic flushing of commands. If disabled,
+	 * the commands are buffered until the next {@link #flush()} call.
+	 *
+	 * @param autoFlush
+	 *            flush after each command
+	 */
+	public final void setAutoFlush(boolean autoFlush) {
+		StatefulRedisPubSubConnection<byte[], byte[]> c = connection;
+		if (c != null) {
+			c.setAutoFlushCommands(autoFlush);
+		}
+	}
+
+	/**
+	 * Writes the buffered commands to the transport.
+	 */
+	public final void flush() {
+		StatefulRedisPubSubConnection<byte[], byte[]> c = connection;
+		if (c != null) {
+			c.flushCommands();
 		}
 	}
 
@@ -105,6 +138,7 @@ public final class RedisPubSubClient extends AbstractRedisClient {
 			client.close();
 			client = null;
 		}
+		connection = null;
 		return super.disconnect();
 	}
 
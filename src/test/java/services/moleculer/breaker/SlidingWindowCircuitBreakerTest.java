@@ -0,0 +1,245 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.breaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Action;
+import services.moleculer.service.ActionEndpoint;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+import services.moleculer.transporter.InternalTransporter;
+
+public class SlidingWindowCircuitBreakerTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+	protected ServiceBroker br2;
+
+	protected SlidingWindowCircuitBreaker cb;
+
+	protected static final AtomicInteger node1Calls = new AtomicInteger();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testErrorRate() throws Exception {
+
+		// windowLength = 1000 msec, 10 buckets, lockTimeout = 500 msec,
+		// minCalls = 4, error rate = 50%, 2 trial calls
+		EndpointHealth h = new EndpointHealth(1000, 10, 500, 4, 50, 0, 2);
+		long now = 100000;
+		assertTrue(h.isAvailable(now));
+		h.onSuccess(now, false);
+		h.onSuccess(now, false);
+		h.onError(now);
+		assertEquals(EndpointHealth.CLOSED, h.getState());
+		assertEquals(3, h.getCalls(now));
+		assertEquals(1, h.getFailures(now));
+
+		// 2 errors of 4 calls
+		h.onError(now + 150);
+		assertEquals(EndpointHealth.OPEN, h.getState());
+		assertFalse(h.isAvailable(now + 200));
+
+		// Half-open (2 trial calls)
+		now += 800;
+		assertTrue(h.isAvailable(now));
+		assertEquals(EndpointHealth.HALF_OPEN, h.getState());
+		assertTrue(h.isAvailable(now));
+		assertFalse(h.isAvailable(now));
+
+		// Failed trial
+		h.onError(now);
+		assertEquals(EndpointHealth.OPEN, h.getState());
+		assertFalse(h.isAvailable(now + 100));
+
+		// Successful trials
+		now += 600;
+		assertTrue(h.isAvailable(now));
+		assertTrue(h.isAvailable(now));
+		h.onSuccess(now, false);
+		assertEquals(EndpointHealth.HALF_OPEN, h.getState());
+		h.onSuccess(now, false);
+		assertEquals(EndpointHealth.CLOSED, h.getState());
+		assertEquals(0, h.getCalls(now));
+
+		// Old errors leave the time-window
+		h.onError(now);
+		h.onError(now);
+		h.onSuccess(now, false);
+		now += 1500;
+		h.onSuccess(now, false);
+		h.onError(now);
+		assertEquals(2, h.getCalls(now));
+		assertEquals(EndpointHealth.CLOSED, h.getState());
+	}
+
+	@Test
+	public void testSlowCalls() throws Exception {
+		EndpointHealth h = new EndpointHealth(1000, 10, 500, 4, 50, 75, 1);
+		long now = 100000;
+		h.onSuccess(now, true);
+		h.onSuccess(now, true);
+		h.onSuccess(now, false);
+		assertEquals(EndpointHealth.CLOSED, h.getState());
+		h.onSuccess(now, true);
+		assertEquals(3, h.getSlowCalls(now));
+		assertEquals(EndpointHealth.OPEN, h.getState());
+
+		// Slow trial call
+		now += 600;
+		assertTrue(h.isAvailable(now));
+		h.onSuccess(now, true);
+		assertEquals(EndpointHealth.OPEN, h.getState());
+	}
+
+	@Test
+	public void testBreaker() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			try {
+				client.call("test.test").waitFor(2000);
+			} catch (Exception expected) {
+			}
+		}
+
+		// Node1 is locked
+		int calls = node1Calls.get();
+		assertTrue(calls >= 5);
+		for (int i = 0; i < 20; i++) {
+			Tree rsp = client.call("test.test").waitFor(2000);
+			assertEquals("node2", rsp.asString());
+		}
+		assertEquals(calls, node1Calls.get());
+
+		// State is cached in the endpoint
+		ActionEndpoint endpoint = (ActionEndpoint) client.getConfig().getServiceRegistry().getAction("test.test",
+				"node1");
+		EndpointHealth health = (EndpointHealth) endpoint.getBreakerState();
+		assertNotNull(health);
+		assertEquals(EndpointHealth.OPEN, health.getState());
+		assertSame(health, cb.states.get(new EndpointKey("node1", "test.test")));
+	}
+
+	@Test
+	public void testCleanup() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			try {
+				client.call("test.test").waitFor(2000);
+			} catch (Exception expected) {
+			}
+		}
+		ActionEndpoint endpoint = (ActionEndpoint) client.getConfig().getServiceRegistry().getAction("test.test",
+				"node2");
+		EndpointHealth health = (EndpointHealth) endpoint.getBreakerState();
+		assertNotNull(health);
+		assertEquals(EndpointHealth.CLOSED, health.getState());
+
+		// Idle state is removed
+		health.lastCall = 0;
+		cb.run();
+		assertNull(cb.states.get(new EndpointKey("node2", "test.test")));
+		assertTrue(health.removed);
+
+		// The endpoint does not use the removed state
+		for (int i = 0; i < 4; i++) {
+			try {
+				client.call("test.test").waitFor(2000);
+			} catch (Exception expected) {
+			}
+		}
+		EndpointHealth current = (EndpointHealth) endpoint.getBreakerState();
+		assertNotSame(health, current);
+		assertSame(current, cb.states.get(new EndpointKey("node2", "test.test")));
+	}
+
+	@Name("test")
+	protected static final class TestService extends Service {
+
+		public Action test = ctx -> {
+			String nodeID = broker.getNodeID();
+			if ("node1".equals(nodeID)) {
+				node1Calls.incrementAndGet();
+				throw new IllegalStateException("Failed");
+			}
+			return nodeID;
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		node1Calls.set(0);
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		cb = new SlidingWindowCircuitBreaker();
+		cb.setWriteErrorsToLog(false);
+		cb.setLockTimeout(60000);
+		client = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).invoker(cb).nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br2 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node2").build();
+		br1.createService(new TestService());
+		br2.createService(new TestService());
+		br1.start();
+		br2.start();
+		client.start();
+		client.waitForServices(5000, "test").waitFor(5000);
+		for (int i = 0; i < 50; i++) {
+			if (client.getConfig().getServiceRegistry().getActionEndpoints("test.test").size() == 2) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+		if (br2 != null) {
+			br2.stop();
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.cacher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+
+public class CacheSnapshotTest extends TestCase {
+
+	// --- PROPERTIES ---
+
+	protected File file;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testMemoryCacher() throws Exception {
+		MemoryCacher cacher = new MemoryCacher();
+		cacher.setSnapshotFile(file.getAbsolutePath());
+		ServiceBroker broker = ServiceBroker.builder().cacher(cacher).build();
+		broker.start();
+		fill(cacher);
+		broker.stop();
+		assertTrue(file.isFile());
+
+		// Wait for the short-lived entry to expire
+		Thread.sleep(1200);
+
+		// Restart with smaller capacity
+		cacher = new MemoryCacher();
+		cacher.setCapacity(16);
+		cacher.setSnapshotFile(file.getAbsolutePath());
+		broker = ServiceBroker.builder().cacher(cacher).build();
+		broker.start();
+		waitFor(cacher.snapshotLoader);
+		try {
+			check(cacher);
+		} finally {
+			broker.stop();
+		}
+	}
+
+	@Test
+	public void testOHCacher() throws Exception {
+		OHCacher cacher = new OHCacher();
+		cacher.setSnapshotFile(file.getAbsolutePath());
+		ServiceBroker broker = ServiceBroker.builder().cacher(cacher).build();
+		broker.start();
+		fill(cacher);
+		broker.stop();
+		assertTrue(file.isFile());
+
+		// Wait for the short-lived entry to expire
+		Thread.sleep(1200);
+
+		cacher = new OHCacher();
+		cacher.setSnapshotFile(file.getAbsolutePath());
+		broker = ServiceBroker.builder().cacher(cacher).build();
+		broker.start();
+		waitFor(cacher.snapshotLoader);
+		try {
+			check(cacher);
+		} finally {
+			broker.stop();
+		}
+	}
+
+	@Test
+	public void testLargeValues() throws Exception {
+		StringBuilder tmp = new StringBuilder(200000);
+		for (int i = 0; i < 20000; i++) {
+			tmp.append("abcdefghij");
+		}
+		try (CacheSnapshot.Writer writer = new CacheSnapshot.Writer(file, CacheSnapshot.TYPE_MEMORY)) {
+			for (int i = 0; i < 100; i++) {
+				byte[] value = (i % 10 == 0 ? tmp.toString() + i : "v" + i).getBytes();
+				writer.write(("a.k" + i).getBytes(), i, value);
+			}
+			writer.commit();
+		}
+		try (CacheSnapshot.Reader reader = new CacheSnapshot.Reader(file)) {
+			assertEquals(CacheSnapshot.TYPE_MEMORY, reader.getType());
+			int i = 0;
+			while (reader.next()) {
+				assertEquals("a.k" + i, new String(reader.getKey()));
+				assertEquals(i, reader.getExpireAt());
+				assertEquals(i % 10 == 0 ? tmp.toString() + i : "v" + i, new String(reader.getValue()));
+				i++;
+			}
+			assertEquals(100, i);
+		}
+	}
+
+	@Test
+	public void testCorruptedSnapshot() throws Exception {
+
+		// Too large key length (header is 14 bytes)
+		assertCorrupted(14, Integer.MAX_VALUE - 8);
+
+		// Negative value length (after the 4-byte key and the expiration)
+		assertCorrupted(30, -5);
+	}
+
+	protected void assertCorrupted(long position, int len) throws Exception {
+		try (CacheSnapshot.Writer writer = new CacheSnapshot.Writer(file, CacheSnapshot.TYPE_MEMORY)) {
+			writer.write("a.k0".getBytes(), 0, "v0".getBytes());
+			writer.commit();
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(position);
+			raf.writeInt(len);
+		}
+		try (CacheSnapshot.Reader reader = new CacheSnapshot.Reader(file)) {
+			reader.next();
+			fail();
+		} catch (IOException expected) {
+		}
+	}
+
+	// --- UTILITIES ---
+
+	protected void fill(Cacher cacher) throws Exception {
+		for (int i = 0; i < 10; i++) {
+			Tree value = new Tree();
+			value.put("index", i);
+			cacher.set("a.k" + i, value, 0).waitFor(2000);
+		}
+		for (int i = 0; i < 20; i++) {
+			cacher.set("b.k" + i, new Tree().put("index", i), 60).waitFor(2000);
+		}
+		cacher.set("c.short", new Tree().put("index", 1), 1).waitFor(2000);
+	}
+
+	protected void check(Cacher cacher) throws Exception {
+		for (int i = 0; i < 10; i++) {
+			Tree value = cacher.get("a.k" + i).waitFor(2000);
+			assertNotNull(value);
+			assertEquals(i, value.get("index", -1));
+		}
+
+		// Partition "b" contains the 16 most recently used entries
+		int found = 0;
+		for (int i = 0; i < 20; i++) {
+			Tree value = cacher.get("b.k" + i).waitFor(2000);
+			if (value != null) {
+				assertEquals(i, value.get("index", -1));
+				found++;
+			}
+		}
+		assertTrue(found >= 16);
+		assertNull(cacher.get("c.short").waitFor(2000));
+	}
+
+	protected void waitFor(Future<?> loader) throws Exception {
+		assertNotNull(loader);
+		loader.get();
+	}
+
+	// --- START / STOP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("cache", ".snapshot");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+}
@@ -25,6 +25,8 @@
  */
 package services.moleculer.error;
 
+import static services.moleculer.util.CommonUtils.throwableToTree;
+
 import org.junit.Test;
 
 import io.datatree.Tree;
@@ -571,6 +573,45 @@ public class ErrorTest extends TestCase {
 		return null;
 	}
 
+	@Test
+	public void testStacklessErrors() throws Exception {
+
+		// Framework-generated errors have no stack trace
+		assertTrue(MoleculerError.isStacklessControlErrors());
+		RequestTimeoutError timeout = new RequestTimeoutError("node1", "test.action");
+		assertEquals(0, timeout.getStackTrace().length);
+		assertEquals(0, new ServiceNotAvailableError("node1", "test.action").getStackTrace().length);
+		assertEquals(0, new ServiceNotFoundError("node1", "test.action").getStackTrace().length);
+		assertEquals(0, new RequestRejectedError("node1", "test.action").getStackTrace().length);
+		assertTrue(timeout.getStack().contains("test.action"));
+		assertTrue(timeout.toTree().get("stack", "").contains("RequestTimeoutError"));
+
+		// Other errors have stack trace
+		assertTrue(new MoleculerError("test", "node1", false).getStackTrace().length > 0);
+		assertTrue(new ValidationError("test", "node1", null).getStackTrace().length > 0);
+
+		// Enable stack traces
+		MoleculerError.setStacklessControlErrors(false);
+		try {
+			assertTrue(new RequestTimeoutError("node1", "test.action").getStackTrace().length > 0);
+		} finally {
+			MoleculerError.setStacklessControlErrors(true);
+		}
+
+		// Remove stack traces from the error responses
+		Tree rsp = throwableToTree("1", "node1", "4", new MoleculerError("test", "node1", false), false);
+		assertEquals("test", rsp.get("error.message", ""));
+		assertNull(rsp.get("error.stack"));
+		rsp = throwableToTree("1", "node1", "4", new MoleculerError("test", "node1", false));
+		assertTrue(rsp.get("error.stack", "").length() > 30);
+
+		// Received error without stack
+		rsp = throwableToTree("1", "node1", "4", timeout, false);
+		RequestTimeoutError remote = (RequestTimeoutError) MoleculerErrorUtils.create(rsp.get("error"));
+		assertTrue(remote.isRemote());
+		assertEquals("REQUEST_TIMEOUT", remote.getType());
+	}
+
 	// --- TEST SERVICES ---
 
 	protected static final class TestService extends Service {
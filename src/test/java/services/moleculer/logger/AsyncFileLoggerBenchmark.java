@@ -0,0 +1,195 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * Throughput / latency benchmark of the AsyncFileLogger. Compares the
+ * ring-buffer based implementation with the previous, monitor-based queue
+ * (synchronized LinkedList + notifyAll, one FileOutputStream write per batch).
+ * Usage: java services.moleculer.logger.AsyncFileLoggerBenchmark [threads]
+ * [records per thread]
+ */
+public class AsyncFileLoggerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int records = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		for (int round = 0; round < 3; round++) {
+			System.out.println("Round " + (round + 1) + " (" + threads + " threads x " + records + " records):");
+			File dir = Files.createTempDirectory("moleculer-log-benchmark").toFile();
+			configure(dir);
+			try {
+				run("  monitor-based queue", new LegacyQueueLogger(new File(dir, "legacy.log")), threads, records);
+				run("  ring buffer        ", new AsyncFileLogger(), threads, records);
+			} finally {
+				for (File file : dir.listFiles()) {
+					file.delete();
+				}
+				dir.delete();
+			}
+		}
+		LogManager.getLogManager().readConfiguration();
+	}
+
+	protected static void configure(File dir) throws Exception {
+		String prefix = AsyncFileLogger.class.getName();
+		String cfg = prefix + ".directory=" + dir.getAbsolutePath().replace('\\', '/') + "\n" + prefix
+				+ ".prefix=ring-\n" + prefix + ".bufferSize=65536\n";
+		LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(cfg.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	protected static void run(String name, Handler handler, int threads, int records) throws Exception {
+		long[][] latencies = new long[threads][records];
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long[] latency = latencies[t];
+			new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < records; i++) {
+						LogRecord record = new LogRecord(Level.INFO, "Benchmark message");
+						record.setSourceClassName(AsyncFileLoggerBenchmark.class.getName());
+						long begin = System.nanoTime();
+						handler.publish(record);
+						latency[i] = System.nanoTime() - begin;
+					}
+				} catch (InterruptedException interrupt) {
+					return;
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long published = System.nanoTime() - begin;
+		handler.close();
+		long total = System.nanoTime() - begin;
+
+		long[] all = new long[threads * records];
+		for (int t = 0; t < threads; t++) {
+			System.arraycopy(latencies[t], 0, all, t * records, records);
+		}
+		Arrays.sort(all);
+		long count = (long) threads * records;
+		System.out.println(name + "  throughput: " + (count * 1000000000L / total) + " records/sec"
+				+ ", publish phase: " + published / 1000000 + " ms" + ", total (with close): " + total / 1000000
+				+ " ms" + ", publish latency p50: " + all[all.length / 2] + " ns" + ", p99: "
+				+ all[(int) (all.length * 0.99)] + " ns" + ", max: " + all[all.length - 1] / 1000 + " us");
+	}
+
+	/**
+	 * The previous implementation of the AsyncFileLogger's queue.
+	 */
+	protected static class LegacyQueueLogger extends Handler implements Runnable {
+
+		protected final LinkedList<LogRecord> messages = new LinkedList<>();
+		protected final FastLogFormatter formatter = new FastLogFormatter();
+		protected final FileOutputStream out;
+		protected final Thread thread;
+
+		protected LegacyQueueLogger(File file) throws Exception {
+			out = new FileOutputStream(file, true);
+			thread = new Thread(this, "Legacy Log Writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void publish(LogRecord record) {
+			synchronized (messages) {
+				messages.addLast(record);
+				messages.notifyAll();
+			}
+		}
+
+		@Override
+		public void run() {
+			LinkedList<LogRecord> records = new LinkedList<>();
+			StringBuilder lines = new StringBuilder(512);
+			try {
+				while (true) {
+					synchronized (messages) {
+						while (messages.isEmpty()) {
+							messages.wait(15000);
+						}
+						records.addAll(messages);
+						messages.clear();
+					}
+					write(records, lines);
+					Thread.sleep(400);
+				}
+			} catch (Exception interrupt) {
+				return;
+			}
+		}
+
+		protected void write(LinkedList<LogRecord> records, StringBuilder lines) throws Exception {
+			lines.setLength(0);
+			for (LogRecord record : records) {
+				lines.append(formatter.format(record));
+			}
+			out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			records.clear();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() throws SecurityException {
+			thread.interrupt();
+			try {
+				thread.join();
+				LinkedList<LogRecord> records = new LinkedList<>(messages);
+				messages.clear();
+				write(records, new StringBuilder());
+				out.close();
+			} catch (Exception ignored) {
+			}
+		}
+
+	}
+
+}
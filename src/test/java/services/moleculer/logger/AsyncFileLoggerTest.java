@@ -0,0 +1,185 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class AsyncFileLoggerTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected File directory;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testRingBuffer() throws Exception {
+		LogRingBuffer<Integer> ring = new LogRingBuffer<>(5);
+		assertEquals(8, ring.capacity());
+		assertTrue(ring.isEmpty());
+		assertNull(ring.poll());
+		for (int i = 0; i < 8; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertFalse(ring.offer(8));
+		assertEquals(8, ring.size());
+		assertEquals(0, ring.poll().intValue());
+		assertTrue(ring.offer(8));
+		for (int i = 1; i <= 8; i++) {
+			assertEquals(i, ring.poll().intValue());
+		}
+		assertTrue(ring.isEmpty());
+
+		// Multiple producers, one consumer
+		LogRingBuffer<long[]> buffer = new LogRingBuffer<>(64);
+		int producers = 4;
+		int count = 50000;
+		CountDownLatch latch = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			new Thread(() -> {
+				for (int i = 0; i < count; i++) {
+					long[] item = new long[] { producer, i };
+					while (!buffer.offer(item)) {
+						Thread.yield();
+					}
+				}
+				latch.countDown();
+			}).start();
+		}
+		long[] next = new long[producers];
+		int received = 0;
+		long timeout = System.currentTimeMillis() + 20000;
+		while (received < producers * count && System.currentTimeMillis() < timeout) {
+			long[] item = buffer.poll();
+			if (item == null) {
+				Thread.yield();
+				continue;
+			}
+
+			// Order must be preserved per producer
+			assertEquals(next[(int) item[0]]++, item[1]);
+			received++;
+		}
+		latch.await();
+		assertEquals(producers * count, received);
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testWriteToFile() throws Exception {
+		AsyncFileLogger logger = createLogger("BLOCK", 16);
+		for (int i = 0; i < 1000; i++) {
+			logger.publish(new LogRecord(Level.INFO, "Message " + i));
+		}
+		logger.close();
+		List<String> lines = readLines();
+		int n = 0;
+		for (String line : lines) {
+			if (line.contains("Message " + n)) {
+				n++;
+			}
+		}
+		assertEquals(1000, n);
+	}
+
+	@Test
+	public void testDropDebug() throws Exception {
+		AsyncFileLogger logger = createLogger("DROP_DEBUG", 4);
+		logger.setLevel(Level.ALL);
+		for (int i = 0; i < 1000; i++) {
+			logger.publish(new LogRecord(Level.FINE, "Debug " + i));
+			logger.publish(new LogRecord(Level.INFO, "Info " + i));
+		}
+		logger.close();
+		List<String> lines = readLines();
+		int infos = 0;
+		for (String line : lines) {
+			if (line.contains("Info ")) {
+				infos++;
+			}
+		}
+		assertEquals(1000, infos);
+	}
+
+	// --- UTILITIES ---
+
+	protected AsyncFileLogger createLogger(String overflow, int bufferSize) throws Exception {
+		String prefix = AsyncFileLogger.class.getName();
+		StringBuilder cfg = new StringBuilder();
+		cfg.append(prefix).append(".directory=").append(directory.getAbsolutePath().replace('\\', '/')).append('\n');
+		cfg.append(prefix).append(".prefix=test-\n");
+		cfg.append(prefix).append(".overflow=").append(overflow).append('\n');
+		cfg.append(prefix).append(".bufferSize=").append(bufferSize).append('\n');
+		cfg.append(prefix).append(".flushInterval=20\n");
+		LogManager.getLogManager()
+				.readConfiguration(new ByteArrayInputStream(cfg.toString().getBytes(StandardCharsets.UTF_8)));
+		try {
+			return new AsyncFileLogger();
+		} finally {
+			LogManager.getLogManager().readConfiguration();
+		}
+	}
+
+	protected List<String> readLines() throws Exception {
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		return Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("moleculer-log").toFile();
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+}
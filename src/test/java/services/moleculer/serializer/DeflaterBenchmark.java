@@ -0,0 +1,143 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import java.util.ArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.datatree.Tree;
+import services.moleculer.util.CommonUtils;
+
+/**
+ * Compression ratio and CPU cost per packet size. Compares the previous
+ * implementation (new Deflater / Inflater per packet) with the pooled codecs,
+ * and with the pooled codecs using a preset dictionary. Usage: java
+ * services.moleculer.serializer.DeflaterBenchmark
+ */
+public class DeflaterBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		JsonSerializer json = new JsonSerializer();
+		DeflaterSerializer trainer = new DeflaterSerializer(json);
+		ArrayList<Tree> samples = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			samples.add(createPacket(i, 1 + i % 20));
+		}
+		byte[] dictionary = trainer.trainDictionary(samples, 16384);
+		System.out.println("Dictionary size: " + dictionary.length + " bytes");
+
+		int[] sizes = { 1, 4, 16, 64, 256 };
+		for (int size : sizes) {
+			byte[] packet = json.write(createPacket(12345, size));
+			int loops = Math.max(2000, 2000000 / packet.length);
+
+			// Warm up
+			for (int round = 0; round < 2; round++) {
+				boolean print = round == 1;
+				if (print) {
+					System.out.println("Packet size: " + packet.length + " bytes");
+				}
+				measure("  new codecs per packet", packet, loops, print, () -> {
+					byte[] c = legacyCompress(packet);
+					legacyDecompress(c, packet.length);
+					return c.length;
+				});
+				measure("  pooled codecs        ", packet, loops, print, () -> {
+					byte[] c = CommonUtils.compress(packet, 0, packet.length, Deflater.BEST_SPEED, null);
+					CommonUtils.decompress(c, 0, c.length, null);
+					return c.length;
+				});
+				measure("  pooled + dictionary  ", packet, loops, print, () -> {
+					byte[] c = CommonUtils.compress(packet, 0, packet.length, Deflater.BEST_SPEED, dictionary);
+					CommonUtils.decompress(c, 0, c.length, dictionary);
+					return c.length;
+				});
+			}
+		}
+	}
+
+	protected interface Task {
+		int run() throws Exception;
+	}
+
+	protected static void measure(String name, byte[] packet, int loops, boolean print, Task task)
+			throws Exception {
+		int compressed = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < loops; i++) {
+			compressed = task.run();
+		}
+		long duration = (System.nanoTime() - start) / loops;
+		if (print) {
+			System.out.println(name + "  compressed size: " + compressed + " bytes (ratio: "
+					+ (compressed * 100 / packet.length) + "%), compress + decompress: " + duration + " ns/packet");
+		}
+	}
+
+	protected static byte[] legacyCompress(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] buffer = new byte[data.length + 128];
+		int length = deflater.deflate(buffer);
+		byte[] compressed = new byte[length];
+		System.arraycopy(buffer, 0, compressed, 0, length);
+		deflater.end();
+		return compressed;
+	}
+
+	protected static byte[] legacyDecompress(byte[] data, int size) throws Exception {
+		Inflater inflater = new Inflater(true);
+		inflater.setInput(data);
+		byte[] buffer = new byte[size];
+		inflater.inflate(buffer);
+		inflater.end();
+		return buffer;
+	}
+
+	protected static Tree createPacket(int i, int items) {
+		Tree packet = new Tree();
+		packet.put("ver", "4");
+		packet.put("sender", "node-" + (i % 5));
+		packet.put("id", Integer.toHexString(i * 7919) + "-4f8b-2c1a-" + i);
+		packet.put("action", "users.find");
+		packet.put("timeout", 10000);
+		packet.put("level", 1);
+		packet.put("requestID", Integer.toHexString(i * 7919) + "-4f8b-2c1a-" + i);
+		Tree list = packet.putMap("params").putList("users");
+		for (int n = 0; n < items; n++) {
+			Tree user = list.addMap();
+			user.put("id", i * 31 + n);
+			user.put("name", "User " + (i + n));
+			user.put("email", "user" + (i + n) + "@example.com");
+			user.put("active", n % 2 == 0);
+		}
+		packet.putMap("meta").put("tenant", "company");
+		return packet;
+	}
+
+}
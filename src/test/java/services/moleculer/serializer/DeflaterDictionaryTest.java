@@ -0,0 +1,214 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Action;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+import services.moleculer.transporter.InternalTransporter;
+import services.moleculer.util.CommonUtils;
+
+public class DeflaterDictionaryTest extends TestCase {
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testPooledCodecs() throws Exception {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 13 == 0 ? i : 'a');
+		}
+		for (int level = 1; level <= 9; level += 4) {
+			byte[] compressed = CommonUtils.compress(data, 10, 50000, level, null);
+			byte[] shifted = new byte[compressed.length + 3];
+			System.arraycopy(compressed, 0, shifted, 3, compressed.length);
+			byte[] decompressed = CommonUtils.decompress(shifted, 3, compressed.length, null);
+			assertEquals(50000, decompressed.length);
+			for (int i = 0; i < decompressed.length; i++) {
+				assertEquals(data[i + 10], decompressed[i]);
+			}
+		}
+
+		// Incompressible data
+		Random rnd = new Random(1);
+		rnd.nextBytes(data);
+		byte[] compressed = CommonUtils.compress(data, 1);
+		assertTrue(compressed.length > data.length);
+		assertEquals(data.length, CommonUtils.decompress(compressed).length);
+
+		// Truncated data
+		try {
+			CommonUtils.decompress(compressed, 0, 100, null);
+			fail();
+		} catch (DataFormatException expected) {
+		}
+	}
+
+	@Test
+	public void testDictionary() throws Exception {
+		DeflaterSerializer trainer = new DeflaterSerializer();
+		ArrayList<Tree> samples = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			samples.add(createPacket(i));
+		}
+		byte[] dictionary = trainer.trainDictionary(samples, 4096);
+		assertTrue(dictionary.length > 20);
+		assertTrue(dictionary.length <= 4096);
+
+		DeflaterSerializer s1 = new DeflaterSerializer();
+		s1.setDictionary(dictionary);
+		assertNotNull(s1.getDictionaryID());
+
+		// Disabled (not negotiated)
+		Tree packet = createPacket(1000);
+		byte[] plain = s1.write(packet);
+		assertEquals(0, plain[0]);
+
+		// Enabled
+		s1.setDictionaryEnabled(true);
+		byte[] compressed = s1.write(packet);
+		assertEquals(2, compressed[0]);
+		assertTrue(compressed.length < plain.length / 2);
+		assertEquals(packet, s1.read(compressed));
+
+		// Without dictionary
+		DeflaterSerializer s2 = new DeflaterSerializer(1);
+		assertEquals(packet, s2.read(s2.write(packet)));
+		try {
+			s2.read(compressed);
+			fail();
+		} catch (IOException expected) {
+		}
+
+		// Different dictionary
+		s2.setDictionary(new byte[] { 1, 2, 3 });
+		assertFalse(s1.getDictionaryID().equals(s2.getDictionaryID()));
+		try {
+			s2.read(compressed);
+			fail();
+		} catch (IOException expected) {
+		}
+	}
+
+	@Test
+	public void testNegotiation() throws Exception {
+		ArrayList<Tree> samples = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			samples.add(createPacket(i));
+		}
+		byte[] dictionary = new DeflaterSerializer().trainDictionary(samples, 4096);
+
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		DeflaterSerializer d1 = new DeflaterSerializer();
+		d1.setDictionary(dictionary);
+		DeflaterSerializer d2 = new DeflaterSerializer();
+		d2.setDictionary(dictionary);
+		ServiceBroker br1 = createBroker(subscriptions, d1, "node1");
+		ServiceBroker br2 = createBroker(subscriptions, d2, "node2");
+		ServiceBroker br3 = null;
+		try {
+			br2.createService(new EchoService());
+			br1.start();
+			br2.start();
+			br1.waitForServices(5000, "echo").waitFor(5000);
+			waitFor(d1, true);
+			waitFor(d2, true);
+			Tree rsp = br1.call("echo.echo", createPacket(1)).waitFor(2000);
+			assertEquals(createPacket(1), rsp);
+
+			// Node without dictionary
+			br3 = createBroker(subscriptions, new DeflaterSerializer(), "node3");
+			br3.start();
+			br3.waitForServices(5000, "echo").waitFor(5000);
+			waitFor(d1, false);
+			waitFor(d2, false);
+			rsp = br3.call("echo.echo", createPacket(2)).waitFor(2000);
+			assertEquals(createPacket(2), rsp);
+		} finally {
+			if (br3 != null) {
+				br3.stop();
+			}
+			br2.stop();
+			br1.stop();
+		}
+	}
+
+	@Name("echo")
+	protected static final class EchoService extends Service {
+
+		public Action echo = ctx -> {
+			return ctx.params;
+		};
+
+	}
+
+	// --- UTILITIES ---
+
+	protected void waitFor(DeflaterSerializer deflater, boolean enabled) throws Exception {
+		for (int i = 0; i < 50; i++) {
+			if (deflater.isDictionaryEnabled() == enabled) {
+				return;
+			}
+			Thread.sleep(100);
+		}
+		assertEquals(enabled, deflater.isDictionaryEnabled());
+	}
+
+	protected ServiceBroker createBroker(InternalTransporter.Subscriptions subscriptions, Serializer serializer,
+			String nodeID) {
+		InternalTransporter transporter = new InternalTransporter(subscriptions);
+		transporter.setSerializer(serializer);
+		return ServiceBroker.builder().transporter(transporter).monitor(new ConstantMonitor()).nodeID(nodeID).build();
+	}
+
+	protected Tree createPacket(int i) {
+		Tree packet = new Tree();
+		packet.put("ver", "4");
+		packet.put("sender", "node-" + (i % 3));
+		packet.put("id", "4f8b2c1a-" + i);
+		packet.put("action", "users.find");
+		packet.put("timeout", 10000);
+		packet.put("level", 1);
+		packet.put("requestID", "4f8b2c1a-" + i);
+		Tree params = packet.putMap("params");
+		params.put("userID", i);
+		params.put("fields", "name,email,address");
+		packet.putMap("meta").put("tenant", "company");
+		return packet;
+	}
+
+}
@@ -0,0 +1,182 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+
+public class LazyPacketTest extends TestCase {
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testJsonPacket() throws Exception {
+		doTest(new JsonSerializer());
+	}
+
+	@Test
+	public void testMsgPackPacket() throws Exception {
+		doTest(new MsgPackSerializer());
+	}
+
+	@Test
+	public void testUnsupportedFormat() throws Exception {
+		Serializer serializer = new DeflaterSerializer(new JsonSerializer(), 1, 1);
+		serializer.setLazyDecodingThreshold(1);
+		Tree packet = serializer.readPacket(serializer.write(createPacket()));
+		assertFalse(packet.asObject() instanceof LazyPacketMap);
+		assertEquals(createPacket(), packet);
+
+		// Scanner without placeholder value
+		serializer = new JsonSerializer() {
+
+			@Override
+			protected byte[] nullValue() {
+				return null;
+			}
+
+		};
+		serializer.setLazyDecodingThreshold(1);
+		packet = serializer.readPacket(serializer.write(createPacket()));
+		assertFalse(packet.asObject() instanceof LazyPacketMap);
+		assertEquals(createPacket(), packet);
+	}
+
+	@Test
+	public void testJsonFormatting() throws Exception {
+		JsonSerializer serializer = new JsonSerializer();
+		serializer.setLazyDecodingThreshold(1);
+		String json = "{\r\n \"id\" : \"x\\\"}\" ,\t\"params\" : [ 1, {\"a\":\"]}\\\\\"}, \"{\" ] ,"
+				+ "\"data\":3, \"meta\" : { } , \"level\" : -1.5e3 }\n";
+		Tree packet = serializer.readPacket(json.getBytes("UTF-8"));
+		LazyPacketMap map = (LazyPacketMap) packet.asObject();
+		assertEquals("x\"}", packet.get("id", ""));
+		assertEquals(-1500, packet.get("level", 0));
+		assertEquals(3, packet.get("data", 0));
+		assertFalse(map.isDecoded("params"));
+		assertFalse(map.isDecoded("meta"));
+		assertTrue(map.isDecoded("data"));
+		assertEquals(3, packet.get("params").size());
+		assertEquals("]}\\", packet.get("params").get(1).get("a", ""));
+		assertEquals("{", packet.get("params").get(2).asString());
+		assertTrue(map.isDecoded("params"));
+		assertTrue(packet.get("meta").isEmpty());
+		assertEquals(new Tree(json), packet);
+	}
+
+	@Test
+	public void testMalformedPacket() throws Exception {
+		JsonSerializer serializer = new JsonSerializer();
+		serializer.setLazyDecodingThreshold(1);
+		String[] samples = { "{\"id\":\"x\",\"params\":{\"a\":1}", "{\"id\":\"x\",\"params\":{\"a\":1}}}",
+				"{\"id\":\"x\" \"params\":{}}", "[{\"params\":{}}]" };
+		for (String sample : samples) {
+			byte[] bytes = sample.getBytes("UTF-8");
+			String expected;
+			try {
+				expected = serializer.read(bytes).toString(false);
+			} catch (Exception cause) {
+				expected = "error";
+			}
+			String result;
+			try {
+				result = serializer.readPacket(bytes).toString(false);
+			} catch (Exception cause) {
+				result = "error";
+			}
+			assertEquals(sample, expected, result);
+		}
+	}
+
+	// --- COMMON TESTS ---
+
+	protected void doTest(Serializer serializer) throws Exception {
+		Tree packet = createPacket();
+		byte[] bytes = serializer.write(packet);
+
+		// Small packets are decoded eagerly
+		serializer.setLazyDecodingThreshold(bytes.length + 1);
+		Tree eager = serializer.readPacket(bytes);
+		assertFalse(eager.asObject() instanceof LazyPacketMap);
+		assertEquals(packet, eager);
+
+		// Disabled
+		serializer.setLazyDecodingThreshold(0);
+		assertFalse(serializer.readPacket(bytes).asObject() instanceof LazyPacketMap);
+
+		// Large packets are decoded lazily
+		serializer.setLazyDecodingThreshold(bytes.length);
+		Tree lazy = serializer.readPacket(bytes);
+		LazyPacketMap map = (LazyPacketMap) lazy.asObject();
+		assertEquals("123", lazy.get("id", ""));
+		assertEquals("node2", lazy.get("sender", ""));
+		assertEquals("math.add", lazy.get("action", ""));
+		assertEquals(5000, lazy.get("timeout", 0));
+		assertEquals(2, lazy.get("level", 0));
+		assertTrue(lazy.get("stream", true) == false);
+		assertEquals("4", lazy.get("ver", ""));
+		assertFalse(map.isDecoded("params"));
+		assertFalse(map.isDecoded("meta"));
+
+		// First access
+		assertEquals(1000, lazy.get("params.values").size());
+		assertTrue(map.isDecoded("params"));
+		assertFalse(map.isDecoded("meta"));
+		assertEquals("b", lazy.get("meta.a", ""));
+
+		// Whole packet
+		assertEquals(packet, lazy);
+		assertEquals(packet.toString(false), serializer.readPacket(bytes).toString(false));
+
+		// Modification
+		lazy = serializer.readPacket(bytes);
+		lazy.put("id", "456");
+		lazy.remove("meta");
+		assertEquals("456", lazy.get("id", ""));
+		assertNull(lazy.get("meta"));
+		assertEquals(1000, lazy.get("params.values").size());
+	}
+
+	protected Tree createPacket() {
+		Tree packet = new Tree();
+		packet.put("ver", "4");
+		packet.put("sender", "node2");
+		packet.put("id", "123");
+		packet.put("action", "math.add");
+		packet.put("timeout", 5000);
+		packet.put("level", 2);
+		packet.put("stream", false);
+		Tree values = packet.putMap("params").putList("values");
+		for (int i = 0; i < 1000; i++) {
+			values.add("value " + i + " \"{[");
+		}
+		packet.putMap("meta").put("a", "b");
+		return packet;
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.serializer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.cacher.Cache;
+import services.moleculer.cacher.OHCacher;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Action;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+import services.moleculer.transporter.InternalTransporter;
+import services.moleculer.util.FastBuildTree;
+
+public class SerializedValueTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+
+	protected final AtomicInteger invocations = new AtomicInteger();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testEmbedding() throws Exception {
+		Serializer[] serializers = { new JsonSerializer(), new MsgPackSerializer(),
+				new DeflaterSerializer(new JsonSerializer(), 1, 1), new JavaSerializer() };
+		for (Serializer serializer : serializers) {
+			Tree data = new Tree();
+			data.put("a", 1).put("b", "text").putList("c").add(1).add(2).add(3);
+			data.putMap("d").put("e", true);
+
+			// Packet with pre-serialized "data" block
+			Serializer parent = serializer;
+			if (serializer instanceof ChainedSerializer) {
+				parent = ((ChainedSerializer) serializer).getParent();
+			}
+			SerializedValue value = new SerializedValue(parent, parent.write(data));
+			FastBuildTree msg = new FastBuildTree(5);
+			msg.putUnsafe("ver", "4");
+			msg.putUnsafe("id", "123");
+			msg.putUnsafe("data", value);
+			msg.putUnsafe("success", true);
+
+			Tree packet = serializer.read(serializer.write(msg));
+			assertEquals("4", packet.get("ver", ""));
+			assertEquals("123", packet.get("id", ""));
+			assertTrue(packet.get("success", false));
+			assertEquals(data, packet.get("data"));
+			assertEquals(serializer.canEmbed(value), !value.isParsed());
+		}
+
+		// Format mismatch
+		Serializer json = new JsonSerializer();
+		Serializer msgPack = new MsgPackSerializer();
+		SerializedValue value = new SerializedValue(json, json.write(new Tree().put("a", 2)));
+		assertFalse(msgPack.canEmbed(value));
+		FastBuildTree msg = new FastBuildTree(2);
+		msg.putUnsafe("id", "456");
+		msg.putUnsafe("data", value);
+		Tree packet = msgPack.read(msgPack.write(msg));
+		assertEquals(2, packet.get("data.a", 0));
+		assertEquals("456", packet.get("id", ""));
+
+		// Compressed value
+		Serializer deflater = new DeflaterSerializer(new JsonSerializer(), 1, 1);
+		value = new SerializedValue(deflater, deflater.write(new Tree().put("a", 3)));
+		assertFalse(json.canEmbed(value));
+		assertFalse(deflater.canEmbed(value));
+		msg = new FastBuildTree(1);
+		msg.putUnsafe("data", value);
+		packet = json.read(json.write(msg));
+		assertEquals(3, packet.get("data.a", 0));
+	}
+
+	@Test
+	public void testCachedResponse() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			Tree rsp = client.call("test.get", "id", 1).waitFor(2000);
+			assertEquals(1, rsp.get("id", 0));
+			assertEquals("value", rsp.get("value", ""));
+			assertEquals(3, rsp.get("list").size());
+		}
+		assertEquals(1, invocations.get());
+
+		// Local call
+		Tree rsp = br1.call("test.get", "id", 1).waitFor(2000);
+		assertEquals("value", rsp.get("value", ""));
+		assertEquals(1, invocations.get());
+	}
+
+	@Test
+	public void testNestedCall() throws Exception {
+
+		// Fill the cache
+		br1.call("test.get", "id", 2).waitFor(2000);
+		assertEquals(1, invocations.get());
+
+		// Local (nested) call in a remotely invoked action gets a parsed Tree
+		Tree rsp = client.call("test.nested", "id", 2).waitFor(2000);
+		assertEquals("value", rsp.get("value", ""));
+		assertEquals(1, invocations.get());
+	}
+
+	@Name("test")
+	protected final class TestService extends Service {
+
+		public Action nested = ctx -> {
+			return ctx.call("test.get", "id", ctx.params.get("id", 0)).then(rsp -> {
+				return new Tree().put("value", rsp.get("value", "missing"));
+			});
+		};
+
+		@Cache(keys = { "id" })
+		public Action get = ctx -> {
+			invocations.incrementAndGet();
+			Tree rsp = new Tree();
+			rsp.put("id", ctx.params.get("id", 0));
+			rsp.put("value", "value");
+			rsp.putList("list").add(1).add(2).add(3);
+			return rsp;
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		client = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions)).cacher(new OHCacher())
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br1.createService(new TestService());
+		br1.start();
+		client.start();
+		client.waitForServices(5000, "test").waitFor(5000);
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+	}
+
+}
@@ -38,6 +38,7 @@ public abstract class SerializerTest extends KeyTest {
 	public SerializerTest() {
 		serializer = createSerializer();
 		serializer.setDebug(true);
+		serializer.setLazyDecodingThreshold(1);
 	}
 
 	protected abstract Serializer createSerializer();
@@ -50,6 +51,10 @@ public abstract class SerializerTest extends KeyTest {
 		Tree v2 = serializer.read(bytes);
 		String json2 = v2.toString(false);
 		assertJsonEquals(json, json2);
+
+		// Lazily decoded packet
+		Tree v3 = serializer.readPacket(bytes);
+		assertJsonEquals(json, v3.toString(false));
 	}
 
 	private static final void assertJsonEquals(String s1, String s2) {
@@ -0,0 +1,260 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Promise;
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.context.Context;
+import services.moleculer.error.MoleculerError;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.transporter.InternalTransporter;
+
+public class BatchActionTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+
+	protected final Vector<Integer> batchSizes = new Vector<>();
+	protected final AtomicInteger requestPackets = new AtomicInteger();
+	protected final Vector<String> parentIDs = new Vector<>();
+	protected final Vector<String> requestIDs = new Vector<>();
+
+	protected InternalTransporter.Subscriptions subscriptions;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testLocalBatch() throws Exception {
+		checkCalls(br1, 25);
+		assertEquals(3, batchSizes.size());
+		assertEquals(10, batchSizes.get(0).intValue());
+		assertEquals(10, batchSizes.get(1).intValue());
+		assertEquals(5, batchSizes.get(2).intValue());
+	}
+
+	@Test
+	public void testRemoteBatch() throws Exception {
+		checkCalls(client, 25);
+		assertEquals(3, batchSizes.size());
+		assertEquals(3, requestPackets.get());
+
+		// Only one call in the batch
+		Tree rsp = client.call("users.get", "id", 7).waitFor(2000);
+		assertEquals(7, rsp.get("id", 0));
+		assertEquals("user7", rsp.get("name", ""));
+		assertEquals(1, batchSizes.get(3).intValue());
+	}
+
+	@Test
+	public void testSingleCall() throws Exception {
+
+		// Call with meta is not batched, the Action receives a list with one
+		// element
+		Tree params = new Tree().put("id", 5);
+		params.getMeta().put("user", "admin");
+		Tree rsp = client.call("users.get", params).waitFor(2000);
+		assertEquals(5, rsp.get("id", 0));
+		assertEquals("admin", rsp.get("by", ""));
+		assertEquals(1, batchSizes.size());
+	}
+
+	@Test
+	public void testRemoteCaller() throws Exception {
+
+		// Caller without batching
+		ServiceBroker br2 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node2").build();
+		((DefaultServiceRegistry) br2.getConfig().getServiceRegistry()).setActionBatching(false);
+		br2.start();
+		try {
+			br2.waitForServices(5000, "users").waitFor(5000);
+
+			// Not delayed again on the receiver side
+			long start = System.currentTimeMillis();
+			Tree rsp = br2.call("users.get", "id", 3).waitFor(2000);
+			long duration = System.currentTimeMillis() - start;
+			assertEquals("user3", rsp.get("name", ""));
+			assertEquals(1, batchSizes.size());
+			assertTrue("Duration: " + duration, duration < 80);
+		} finally {
+			br2.stop();
+		}
+	}
+
+	@Test
+	public void testTracingIDs() throws Exception {
+		Tree rsp = br1.call("users.parent").waitFor(2000);
+		assertEquals(1, batchSizes.size());
+		assertEquals(2, batchSizes.get(0).intValue());
+		assertEquals(rsp.get("id", ""), parentIDs.get(0));
+		assertEquals(rsp.get("requestID", ""), requestIDs.get(0));
+	}
+
+	@Test
+	public void testNestedCallsOfRemoteRequest() throws Exception {
+
+		// Calls inside a remotely invoked Action are batched
+		Tree rsp = client.call("users.parent").waitFor(2000);
+		assertEquals(1, batchSizes.size());
+		assertEquals(2, batchSizes.get(0).intValue());
+		assertEquals(rsp.get("id", ""), parentIDs.get(0));
+	}
+
+	@Test
+	public void testInvalidResponse() throws Exception {
+		List<Promise> promises = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			promises.add(client.call("users.invalid", "id", i));
+		}
+		for (Promise promise : promises) {
+			try {
+				promise.waitFor(2000);
+				fail();
+			} catch (MoleculerError e) {
+				assertTrue(e.getMessage().contains("must return a list"));
+			}
+		}
+
+		// Failure
+		promises.clear();
+		for (int i = 0; i < 3; i++) {
+			promises.add(client.call("users.fail", "id", i));
+		}
+		for (Promise promise : promises) {
+			try {
+				promise.waitFor(2000);
+				fail();
+			} catch (Exception e) {
+				assertTrue(e.getMessage().contains("Failed"));
+			}
+		}
+	}
+
+	protected void checkCalls(ServiceBroker broker, int count) throws Exception {
+		List<Promise> promises = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			promises.add(broker.call("users.get", "id", i));
+		}
+		for (int i = 0; i < count; i++) {
+			Tree rsp = promises.get(i).waitFor(2000);
+			assertEquals(i, rsp.get("id", -1));
+			assertEquals("user" + i, rsp.get("name", ""));
+		}
+	}
+
+	// --- SERVICE ---
+
+	@Name("users")
+	protected final class UserService extends Service {
+
+		@Batch(maxSize = 10, maxDelay = 100)
+		public Action get = ctx -> {
+			batchSizes.add(ctx.params.size());
+			parentIDs.add(String.valueOf(ctx.parentID));
+			requestIDs.add(String.valueOf(ctx.requestID));
+			Tree rsp = new Tree().putList("users");
+			for (Tree params : ctx.params) {
+				int id = params.get("id", 0);
+				Tree user = rsp.addMap();
+				user.put("id", id);
+				user.put("name", "user" + id);
+				Tree meta = ctx.params.getMeta(false);
+				if (meta != null) {
+					user.put("by", meta.get("user", ""));
+				}
+			}
+			return rsp;
+		};
+
+		public Action parent = ctx -> {
+			Promise p1 = ctx.call("users.get", "id", 1);
+			Promise p2 = ctx.call("users.get", "id", 2);
+			p1.waitFor(2000);
+			p2.waitFor(2000);
+			return new Tree().put("id", ctx.id).put("requestID", ctx.requestID);
+		};
+
+		@Batch(maxDelay = 50)
+		public Action invalid = ctx -> {
+			return new Tree().putList("users").add(1);
+		};
+
+		@Batch(maxDelay = 50)
+		public Action fail = ctx -> {
+			throw new IllegalStateException("Failed");
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		subscriptions = new InternalTransporter.Subscriptions();
+		InternalTransporter clientTransporter = new InternalTransporter(subscriptions) {
+
+			@Override
+			public void sendRequestPacket(String nodeID, Context ctx) {
+				requestPackets.incrementAndGet();
+				super.sendRequestPacket(nodeID, ctx);
+			}
+
+		};
+		client = ServiceBroker.builder().transporter(clientTransporter).monitor(new ConstantMonitor())
+				.nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br1.createService(new UserService());
+		br1.start();
+		client.start();
+		client.waitForServices(5000, "users").waitFor(5000);
+		requestPackets.set(0);
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+	}
+
+}
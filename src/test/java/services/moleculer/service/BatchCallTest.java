@@ -0,0 +1,190 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.context.Context;
+import services.moleculer.error.MoleculerError;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.transporter.InternalTransporter;
+
+public class BatchCallTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+
+	protected final AtomicInteger singlePackets = new AtomicInteger();
+	protected final AtomicInteger batchPackets = new AtomicInteger();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testBatchCall() throws Exception {
+
+		// Map of calls
+		Tree calls = new Tree();
+		calls.putMap("a").put("action", "math.add").putMap("params").put("a", 1).put("b", 2);
+		calls.putMap("b").put("action", "math.add").putMap("params").put("a", 3).put("b", 4);
+		calls.putMap("c").put("action", "math.echo").putMap("params").put("text", "abc");
+
+		Tree rsp = client.mcall(calls).waitFor(2000);
+		assertEquals(3, rsp.get("a", 0));
+		assertEquals(7, rsp.get("b", 0));
+		assertEquals("abc", rsp.get("c.text", ""));
+		assertEquals(1, batchPackets.get());
+		assertEquals(0, singlePackets.get());
+
+		// List of calls
+		Tree list = new Tree().putList("calls");
+		for (int i = 0; i < 10; i++) {
+			list.addMap().put("action", "math.add").putMap("params").put("a", i).put("b", 1);
+		}
+		rsp = client.mcall(list).waitFor(2000);
+		assertTrue(rsp.isEnumeration());
+		assertEquals(10, rsp.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i + 1, rsp.get(i).asInteger().intValue());
+		}
+		assertEquals(2, batchPackets.get());
+		assertEquals(0, singlePackets.get());
+
+		// Single call (sent without batching)
+		list = new Tree().putList("calls");
+		list.addMap().put("action", "math.add").putMap("params").put("a", 1).put("b", 1);
+		rsp = client.mcall(list).waitFor(2000);
+		assertEquals(2, rsp.get(0).asInteger().intValue());
+		assertEquals(2, batchPackets.get());
+		assertEquals(1, singlePackets.get());
+
+		// Empty batch
+		rsp = client.mcall(new Tree()).waitFor(2000);
+		assertTrue(rsp.isMap());
+		assertTrue(rsp.isEmpty());
+	}
+
+	@Test
+	public void testFailures() throws Exception {
+		Tree calls = new Tree();
+		calls.putMap("ok").put("action", "math.add").putMap("params").put("a", 1).put("b", 2);
+		calls.putMap("failed").put("action", "math.fail");
+
+		// Reject at the first error
+		try {
+			client.mcall(calls).waitFor(2000);
+			fail();
+		} catch (MoleculerError e) {
+			assertTrue(e.getMessage().contains("Failed"));
+		}
+
+		// Return the status of each call
+		Tree rsp = client.mcall(calls, null, true).waitFor(2000);
+		assertEquals("fulfilled", rsp.get("ok.status", ""));
+		assertEquals(3, rsp.get("ok.value", 0));
+		assertEquals("rejected", rsp.get("failed.status", ""));
+		assertTrue(rsp.get("failed.reason.message", "").contains("Failed"));
+
+		// Missing action name
+		calls.putMap("invalid");
+		try {
+			client.mcall(calls).waitFor(2000);
+			fail();
+		} catch (IllegalArgumentException e) {
+
+			// Ok
+		}
+	}
+
+	@Name("math")
+	protected static final class MathService extends Service {
+
+		public Action add = ctx -> {
+			return ctx.params.get("a", 0) + ctx.params.get("b", 0);
+		};
+
+		public Action echo = ctx -> {
+			return ctx.params;
+		};
+
+		public Action fail = ctx -> {
+			throw new IllegalStateException("Failed");
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		InternalTransporter clientTransporter = new InternalTransporter(subscriptions) {
+
+			@Override
+			public void sendRequestPacket(String nodeID, Context ctx) {
+				singlePackets.incrementAndGet();
+				super.sendRequestPacket(nodeID, ctx);
+			}
+
+			@Override
+			public void sendBatchRequestPacket(String nodeID, Collection<Context> contexts) {
+				batchPackets.incrementAndGet();
+				super.sendBatchRequestPacket(nodeID, contexts);
+			}
+
+		};
+		client = ServiceBroker.builder().transporter(clientTransporter).monitor(new ConstantMonitor())
+				.nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br1.createService(new MathService());
+		br1.start();
+		client.start();
+		client.waitForServices(5000, "math").waitFor(5000);
+		singlePackets.set(0);
+		batchPackets.set(0);
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.breaker.TestTransporter;
+import services.moleculer.context.Context;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class DeadlineTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected DefaultServiceRegistry sr;
+	protected TestTransporter tr;
+	protected ServiceBroker br;
+
+	protected volatile Context lastContext;
+	protected volatile int invocations;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testExpiredRequest() throws Exception {
+
+		// Waited 1000 msec in the queue, but the caller waits only 500 msec
+		long now = System.currentTimeMillis();
+		sr.receiveRequest(request("1", 500, 0), now - 1000);
+		Tree rsp = waitForResponse();
+		assertFalse(rsp.get("success", true));
+		assertEquals("RequestSkippedError", rsp.get("error.name", ""));
+		assertEquals(0, invocations);
+
+		// Queued for 300 msec, 700 msec remains for the action
+		sr.receiveRequest(request("2", 1000, 0), now - 300);
+		rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(1, invocations);
+		long remaining = lastContext.opts.timeout;
+		assertTrue(remaining > 0 && remaining <= 700);
+
+		// Nested calls inherit the remaining timeout
+		assertEquals(remaining, rsp.get("data", 0L), 50);
+
+		// No timeout, no deadline
+		sr.receiveRequest(request("3", 0, 0), now - 10000);
+		rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(2, invocations);
+		assertNull(lastContext.opts);
+
+		// Unknown arrival time
+		sr.receiveRequest(request("4", 100, 0));
+		rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(3, invocations);
+		assertEquals(100, lastContext.opts.timeout);
+	}
+
+	@Test
+	public void testSenderTimestamp() throws Exception {
+		long now = System.currentTimeMillis();
+
+		// Sender's timestamp is ignored by default
+		sr.receiveRequest(request("1", 1000, now - 2000), now);
+		Tree rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(1, invocations);
+
+		// Transit time (minus the clock tolerance) is deducted
+		sr.setMaxClockSkew(500);
+		sr.receiveRequest(request("2", 1000, now - 2000), now);
+		rsp = waitForResponse();
+		assertFalse(rsp.get("success", true));
+		assertEquals(1, invocations);
+
+		sr.receiveRequest(request("3", 1000, now - 800), now);
+		rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(2, invocations);
+		assertTrue(lastContext.opts.timeout <= 700);
+
+		// Sender's clock is ahead
+		sr.receiveRequest(request("4", 1000, now + 5000), now);
+		rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(3, invocations);
+		assertTrue(lastContext.opts.timeout > 900);
+	}
+
+	@Test
+	public void testTransporter() throws Exception {
+
+		// Arrival time is set by the Transporter
+		tr.received("MOL.REQ.local", request("1", 5000, System.currentTimeMillis()));
+		Tree rsp = waitForResponse();
+		assertTrue(rsp.get("success", false));
+		assertEquals(1, invocations);
+		assertTrue(lastContext.opts.timeout > 4000);
+	}
+
+	// --- UTILITIES ---
+
+	protected Tree request(String id, int timeout, long sentAt) {
+		Tree req = new Tree();
+		req.put("ver", "4");
+		req.put("sender", "remote");
+		req.put("id", id);
+		req.put("action", "deadline.test");
+		if (timeout > 0) {
+			req.put("timeout", timeout);
+		}
+		if (sentAt > 0) {
+			req.put("sentAt", sentAt);
+		}
+		req.put("level", 1);
+		req.putMap("params").put("a", 1);
+		return req;
+	}
+
+	protected Tree waitForResponse() throws Exception {
+		long timeoutAt = System.currentTimeMillis() + 3000;
+		while (System.currentTimeMillis() < timeoutAt) {
+			for (Tree msg : tr.getMessages()) {
+				if (msg.get("channel", "").equals("MOL.RES.remote")) {
+					tr.clearMessages();
+					return msg;
+				}
+			}
+			Thread.sleep(10);
+		}
+		fail("Response not received!");
+		return null;
+	}
+
+	// --- SERVICE ---
+
+	@Name("deadline")
+	protected final class DeadlineService extends Service {
+
+		public Action test = ctx -> {
+			invocations++;
+			lastContext = ctx;
+			return ctx.call("deadline.nested");
+		};
+
+		public Action nested = ctx -> {
+			return ctx.opts == null ? 0 : ctx.opts.timeout;
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		sr = new DefaultServiceRegistry();
+		tr = new TestTransporter();
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).registry(sr).transporter(tr).nodeID("local")
+				.build();
+		br.createService(new DeadlineService());
+		br.start();
+		tr.clearMessages();
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Promise;
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.context.CallOptions;
+import services.moleculer.context.Context;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.transporter.InternalTransporter;
+
+public class HedgeTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+	protected ServiceBroker br2;
+
+	protected DefaultServiceInvoker invoker;
+
+	protected static volatile boolean slow;
+	protected static volatile boolean failing;
+
+	protected static final AtomicInteger calls = new AtomicInteger();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testLatencyWindow() throws Exception {
+		LatencyWindow w = new LatencyWindow(100, 10, 1);
+		assertEquals(-1, w.getPercentile(50));
+		for (int i = 1; i <= 100; i++) {
+			w.add(i);
+		}
+		assertEquals(50, w.getPercentile(50));
+		assertEquals(95, w.getPercentile(95));
+		for (int i = 0; i < 100; i++) {
+			w.add(1000);
+		}
+		assertEquals(1000, w.getPercentile(50));
+	}
+
+	@Test
+	public void testHedging() throws Exception {
+
+		// Warm up (collect response times)
+		slow = false;
+		for (int i = 0; i < 40; i++) {
+			Tree rsp = client.call("hedge.find").waitFor(2000);
+			assertTrue(rsp.get("node", "").startsWith("node"));
+		}
+
+		// One of the nodes is slow
+		slow = true;
+		calls.set(0);
+		for (int i = 0; i < 10; i++) {
+			long start = System.currentTimeMillis();
+			Tree rsp = client.call("hedge.find").waitFor(2000);
+			long duration = System.currentTimeMillis() - start;
+			assertEquals("node2", rsp.get("node", ""));
+			assertTrue(duration < 1000);
+		}
+		assertTrue(calls.get() > 10);
+
+		// Disable hedging
+		slow = false;
+		Thread.sleep(2000);
+		calls.set(0);
+		for (int i = 0; i < 4; i++) {
+			client.call("hedge.find", new Tree(), CallOptions.hedge(-1)).waitFor(2000);
+		}
+		assertEquals(4, calls.get());
+	}
+
+	@Test
+	public void testFailedHedgedRequest() throws Exception {
+
+		// Warm up (collect response times)
+		for (int i = 0; i < 40; i++) {
+			client.call("hedge.find").waitFor(2000);
+		}
+
+		// Node1 is slow and fails, the hedged request to node2 fails
+		// synchronously (in the Transporter)
+		slow = true;
+		failing = true;
+		for (int i = 0; i < 4; i++) {
+			Promise promise = client.call("hedge.find");
+			try {
+				promise.waitFor(4000);
+				fail();
+			} catch (Exception expected) {
+			}
+			assertTrue(promise.isRejected());
+		}
+	}
+
+	@Test
+	public void testServiceLevelHedge() throws Exception {
+		br1.createService(new ServiceLevelHedgeService());
+		List<ActionEndpoint> endpoints = br1.getConfig().getServiceRegistry().getActionEndpoints("hedge2.first");
+		assertEquals(1, endpoints.size());
+		assertEquals(80, endpoints.get(0).getHedgePercentile());
+		assertEquals(10, endpoints.get(0).getHedgeMinDelay());
+		endpoints = br1.getConfig().getServiceRegistry().getActionEndpoints("hedge2.second");
+		assertEquals(1, endpoints.size());
+		assertEquals(99, endpoints.get(0).getHedgePercentile());
+	}
+
+	@Name("hedge")
+	protected static final class HedgeService extends Service {
+
+		@Hedge(percentile = 90, minDelay = 20)
+		public Action find = ctx -> {
+			calls.incrementAndGet();
+			String nodeID = broker.getNodeID();
+			if (slow && "node1".equals(nodeID)) {
+				Thread.sleep(1500);
+				if (failing) {
+					throw new IllegalStateException("Failed");
+				}
+			}
+			Tree rsp = new Tree();
+			rsp.put("node", nodeID);
+			return rsp;
+		};
+
+	}
+
+	@Name("hedge2")
+	@Hedge(percentile = 80, minDelay = 10)
+	protected static final class ServiceLevelHedgeService extends Service {
+
+		public Action first = ctx -> {
+			return null;
+		};
+
+		@Hedge(percentile = 99)
+		public Action second = ctx -> {
+			return null;
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		slow = false;
+		failing = false;
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		invoker = new DefaultServiceInvoker();
+		invoker.setHedgeBudget(100);
+		invoker.setWriteErrorsToLog(false);
+		InternalTransporter transporter = new InternalTransporter(subscriptions) {
+
+			@Override
+			public void sendRequestPacket(String nodeID, Context ctx) {
+				if (failing && "node2".equals(nodeID)) {
+					throw new IllegalStateException("Unable to send request");
+				}
+				super.sendRequestPacket(nodeID, ctx);
+			}
+
+		};
+		client = ServiceBroker.builder().transporter(transporter).monitor(new ConstantMonitor()).invoker(invoker)
+				.nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br2 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node2").build();
+		br1.createService(new HedgeService());
+		br2.createService(new HedgeService());
+		br1.start();
+		br2.start();
+		client.start();
+		client.waitForServices(5000, "hedge").waitFor(5000);
+		for (int i = 0; i < 50; i++) {
+			if (client.getConfig().getServiceRegistry().getActionEndpoints("hedge.find").size() == 2) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+		if (br2 != null) {
+			br2.stop();
+		}
+	}
+
+}
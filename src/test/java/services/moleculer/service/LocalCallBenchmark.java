@@ -0,0 +1,109 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.lang.management.ManagementFactory;
+
+import io.datatree.Tree;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+
+/**
+ * Throughput benchmark of local action calls. Compares the default invocation
+ * path of the DefaultServiceInvoker with the local fast path (direct handler
+ * call without hedging/retry wrappers and with one resolved Promise). Prints
+ * the calls per second and the allocated bytes per call (if the JVM supports
+ * thread allocation counters). Usage: java
+ * services.moleculer.service.LocalCallBenchmark [calls per round]
+ */
+public class LocalCallBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+		for (int round = 0; round < 5; round++) {
+			System.out.println("Round " + (round + 1) + " (" + calls + " calls):");
+			run("  default path ", false, calls);
+			run("  fast path    ", true, calls);
+		}
+	}
+
+	protected static void run(String name, boolean fastPath, int calls) throws Exception {
+		DefaultServiceInvoker invoker = new DefaultServiceInvoker();
+		invoker.setLocalFastPath(fastPath);
+		ServiceBroker broker = ServiceBroker.builder().invoker(invoker).monitor(new ConstantMonitor())
+				.nodeID("node1").internalServices(false).build();
+		broker.createService(new Service("math") {
+
+			@SuppressWarnings("unused")
+			public Action add = ctx -> {
+				return ctx.params.get("a", 0) + ctx.params.get("b", 0);
+			};
+
+		});
+		broker.start();
+		try {
+			Tree params = new Tree().put("a", 1).put("b", 2);
+			long check = 0;
+
+			// Warm up
+			for (int i = 0; i < calls / 10; i++) {
+				check += broker.call("math.add", params).waitFor().asLong();
+			}
+
+			// Measure
+			long bytesBefore = allocatedBytes();
+			long begin = System.nanoTime();
+			for (int i = 0; i < calls; i++) {
+				check += broker.call("math.add", params).waitFor().asLong();
+			}
+			long duration = System.nanoTime() - begin;
+			long bytes = allocatedBytes() - bytesBefore;
+			if (check != 3L * (calls + calls / 10)) {
+				throw new IllegalStateException("Invalid response!");
+			}
+			StringBuilder msg = new StringBuilder(128);
+			msg.append(name).append(calls * 1000000000L / duration).append(" calls/sec");
+			if (bytesBefore > -1) {
+				msg.append(", ").append(bytes / calls).append(" bytes/call");
+			}
+			System.out.println(msg);
+		} finally {
+			broker.stop();
+		}
+	}
+
+	protected static long allocatedBytes() {
+		try {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		} catch (Throwable unsupported) {
+			return -1;
+		}
+	}
+
+}
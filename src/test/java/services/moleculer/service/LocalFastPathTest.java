@@ -0,0 +1,141 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import org.junit.Test;
+
+import io.datatree.Promise;
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.context.CallOptions;
+import services.moleculer.error.MoleculerServerError;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class LocalFastPathTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br;
+
+	protected DefaultServiceInvoker invoker;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testFastPath() throws Exception {
+		doTest();
+	}
+
+	@Test
+	public void testDefaultPath() throws Exception {
+		invoker.setLocalFastPath(false);
+		doTest();
+	}
+
+	protected void doTest() throws Exception {
+
+		// Synchronous response
+		Promise rsp = br.call("test.sync", new Tree().put("a", 3));
+		assertTrue(rsp.isResolved());
+		assertEquals(4, (int) rsp.waitFor(2000).asInteger());
+
+		// Asynchronous response
+		assertEquals("async", br.call("test.async").waitFor(2000).asString());
+
+		// Errors
+		rsp = br.call("test.error");
+		assertTrue(rsp.isRejected());
+		try {
+			br.call("test.rejected").waitFor(2000);
+			fail();
+		} catch (MoleculerServerError expected) {
+			assertEquals("REJECTED", expected.getType());
+		}
+
+		// Meta merging
+		Tree params = new Tree().put("a", 1);
+		params.getMeta().put("user", "admin");
+		Tree tree = br.call("test.tree", params).waitFor(2000);
+		assertEquals("admin", tree.getMeta().get("user", ""));
+		assertEquals(1, tree.get("a", 0));
+
+		// With options (default path)
+		assertEquals(6, (int) br.call("test.sync", new Tree().put("a", 5), CallOptions.timeout(1000)).waitFor(2000)
+				.asInteger());
+	}
+
+	// --- SAMPLE SERVICE ---
+
+	@Name("test")
+	protected static class TestService extends Service {
+
+		public Action sync = ctx -> {
+			return ctx.params.get("a", 0) + 1;
+		};
+
+		public Action async = ctx -> {
+			return new Promise(resolver -> {
+				new Thread(() -> {
+					resolver.resolve("async");
+				}).start();
+			});
+		};
+
+		public Action error = ctx -> {
+			throw new MoleculerServerError("Failed", "node1", "FAILED");
+		};
+
+		public Action rejected = ctx -> {
+			return Promise.reject(new MoleculerServerError("Rejected", "node1", "REJECTED"));
+		};
+
+		public Action tree = ctx -> {
+			return new Tree().put("a", ctx.params.get("a", 0));
+		};
+
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		invoker = new DefaultServiceInvoker();
+		invoker.setWriteErrorsToLog(false);
+		br = ServiceBroker.builder().invoker(invoker).monitor(new ConstantMonitor()).nodeID("node1")
+				.internalServices(false).build();
+		br.createService(new TestService());
+		br.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
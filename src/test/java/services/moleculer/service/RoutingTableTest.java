@@ -0,0 +1,206 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.error.ServiceNotAvailableError;
+import services.moleculer.error.ServiceNotFoundError;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.strategy.Strategy;
+
+public class RoutingTableTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br;
+
+	protected DefaultServiceRegistry registry;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testSnapshots() throws Exception {
+		RoutingTable table = registry.routingTable;
+		assertNotNull(table.get("test.action"));
+		assertTrue(table.containsService("test"));
+		assertFalse(table.containsService("remote"));
+
+		// The descriptor is cached in the snapshot
+		Tree descriptor = registry.getDescriptor();
+		assertNotNull(table.descriptor);
+		assertEquals(1, descriptor.get("services").size());
+
+		// Remote services change the routes, but not the local descriptor
+		registry.addActions("node2", remoteService("remote"));
+		RoutingTable next = registry.routingTable;
+		assertTrue(next.getVersion() > table.getVersion());
+		assertNotNull(next.get("remote.action"));
+		assertNull(table.get("remote.action"));
+		assertTrue(next.containsService("remote"));
+		assertSame(table.descriptor, next.descriptor);
+		assertEquals(1, registry.getActionEndpoints("remote.action").size());
+
+		// Snapshots are immutable
+		try {
+			next.getStrategies().clear();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+
+		// Remove remote node
+		registry.removeActions("node2");
+		RoutingTable last = registry.routingTable;
+		assertTrue(last.getVersion() > next.getVersion());
+		assertNull(last.get("remote.action"));
+		assertFalse(last.containsService("remote"));
+		try {
+			br.getAction("remote.action");
+			fail();
+		} catch (ServiceNotFoundError expected) {
+		}
+
+		// Local change clears the descriptor
+		br.createService(new Service("local2") {
+
+			@SuppressWarnings("unused")
+			public Action action = ctx -> {
+				return 2;
+			};
+
+		});
+		assertNull(registry.routingTable.descriptor);
+		assertEquals(2, registry.getDescriptor().get("services").size());
+	}
+
+	@Test
+	public void testImmutableStrategies() throws Exception {
+		registry.addActions("node2", remoteService("remote"));
+		RoutingTable table = registry.routingTable;
+		Strategy<ActionEndpoint> strategy = table.get("remote.action");
+		Strategy<ActionEndpoint> local = table.get("test.action");
+		assertEquals(1, strategy.getAllEndpoints().size());
+
+		// New endpoint -> new Strategy, the published one is unchanged
+		registry.addActions("node3", remoteService("remote"));
+		RoutingTable next = registry.routingTable;
+		assertNotSame(strategy, next.get("remote.action"));
+		assertEquals(2, next.get("remote.action").getAllEndpoints().size());
+		assertEquals(1, strategy.getAllEndpoints().size());
+		assertSame(local, next.get("test.action"));
+
+		// Removed endpoint
+		registry.removeActions("node2");
+		assertEquals(1, strategy.getAllEndpoints().size());
+		assertEquals("node2", strategy.getEndpoint(null, null).getNodeID());
+		assertEquals("node3", registry.routingTable.get("remote.action").getEndpoint(null, null).getNodeID());
+		assertEquals(2, next.get("remote.action").getAllEndpoints().size());
+	}
+
+	@Test
+	public void testConcurrentTopologyChanges() throws Exception {
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger found = new AtomicInteger();
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(() -> {
+				while (running.get()) {
+					try {
+						assertNotNull(br.getAction("test.action"));
+						try {
+							if (br.getAction("remote.action") != null) {
+								found.incrementAndGet();
+							}
+						} catch (ServiceNotFoundError | ServiceNotAvailableError notAvailable) {
+
+							// Removed
+						}
+						registry.getDescriptor();
+					} catch (Throwable cause) {
+						error.compareAndSet(null, cause);
+					}
+				}
+			});
+			readers[i].start();
+		}
+		for (int i = 0; i < 2000; i++) {
+			String nodeID = "remote" + (i % 5);
+			registry.addActions(nodeID, remoteService("remote"));
+			if (i % 3 == 0) {
+				registry.removeActions(nodeID);
+			}
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		if (error.get() != null) {
+			throw new Exception(error.get());
+		}
+		assertTrue(found.get() > 0);
+		assertEquals(1, registry.getDescriptor().get("services").size());
+	}
+
+	// --- UTILITIES ---
+
+	protected Tree remoteService(String name) throws Exception {
+		return new Tree("{\"name\":\"" + name + "\",\"actions\":{\"" + name + ".action\":{\"name\":\"" + name
+				+ ".action\"}}}");
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").internalServices(false).build();
+		br.createService(new Service("test") {
+
+			@SuppressWarnings("unused")
+			public Action action = ctx -> {
+				return 1;
+			};
+
+		});
+		br.start();
+		registry = (DefaultServiceRegistry) br.getConfig().getServiceRegistry();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import static services.moleculer.util.CommonUtils.convertAnnotations;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class ServiceDescriptorTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected File dir;
+
+	protected URLClassLoader loader;
+
+	protected ServiceBroker br;
+
+	public static final AtomicInteger received = new AtomicInteger();
+
+	// --- SAMPLE SERVICES ---
+
+	protected static final String SOURCE = String.join("\n", //
+			"package test.descriptor;", //
+			"import services.moleculer.service.*;", //
+			"import services.moleculer.cacher.Cache;", //
+			"import services.moleculer.eventbus.*;", //
+			"@Name(\"math\")", //
+			"public class MathService extends BaseService {", //
+			"  @Cache(keys = { \"a\", \"b\" }, ttl = 30)", //
+			"  public Action add = ctx -> ctx.params.get(\"a\", 0) + ctx.params.get(\"b\", 0);", //
+			"  @Name(\"multiply\") @Hedge(percentile = 90)", //
+			"  Action mul = ctx -> ctx.params.get(\"a\", 0) * ctx.params.get(\"b\", 0);", //
+			"  @Cache", //
+			"  private Action secret = ctx -> \"secret\";", //
+			"  @Visibility(\"public\")", //
+			"  public static Action info = ctx -> \"info\";", //
+			"  @Subscribe(\"foo.*\") @Group(\"g\")", //
+			"  public Listener onFoo = ctx -> services.moleculer.service.ServiceDescriptorTest.received.incrementAndGet();", //
+			"  private Listener hidden = ctx -> {};", //
+			"  public static class Inner extends Service {", //
+			"    public Action echo = ctx -> ctx.params;", //
+			"  }", //
+			"  private static class Hidden extends Service {", //
+			"  }", //
+			"}", //
+			"abstract class BaseService extends Service {", //
+			"  public Action inherited = ctx -> \"base\";", //
+			"}");
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testDescriptor() throws Exception {
+		Class<?> type = compile();
+		if (type == null) {
+			return;
+		}
+
+		// Generated source
+		assertTrue(new File(dir, "test/descriptor/MathService_Descriptor.java").isFile());
+		assertTrue(new File(dir, "test/descriptor/MathService_Inner_Descriptor.java").isFile());
+		assertFalse(new File(dir, "test/descriptor/MathService_Hidden_Descriptor.java").exists());
+		assertFalse(new File(dir, "test/descriptor/BaseService_Descriptor.java").exists());
+
+		ServiceDescriptor descriptor = ServiceDescriptor.of(type);
+		assertNotNull(descriptor);
+		assertEquals(type, descriptor.getServiceClass());
+		assertNull(ServiceDescriptor.of(getClass()));
+
+		// Actions
+		ServiceDescriptor.Member[] actions = descriptor.getActions();
+		assertEquals(5, actions.length);
+		assertEquals("add", actions[0].getName());
+		assertEquals("multiply", actions[1].getName());
+		assertEquals("mul", actions[1].getField());
+		assertEquals("secret", actions[2].getName());
+		assertEquals("info", actions[3].getName());
+		assertEquals("inherited", actions[4].getName());
+
+		// Configs must match the reflection-based conversion
+		Service service = (Service) type.newInstance();
+		for (ServiceDescriptor.Member member : actions) {
+			Class<?> c = type;
+			Field field = null;
+			while (field == null) {
+				try {
+					field = c.getDeclaredField(member.getField());
+				} catch (NoSuchFieldException notFound) {
+					c = c.getSuperclass();
+				}
+			}
+			field.setAccessible(true);
+			Tree expected = new Tree();
+			if (Modifier.isPrivate(field.getModifiers())) {
+				expected.put("visibility", "protected");
+			}
+			convertAnnotations(expected, field.getAnnotations());
+			assertTrue(member.getName(), equals(expected, member.getConfig()));
+			assertSame(field.get(service), member.get(service));
+		}
+		Tree cache = actions[0].getConfig().get("cache");
+		assertEquals(30, cache.get("ttl", 0));
+		assertEquals(Arrays.asList("a", "b"), cache.get("keys").asList(String.class));
+		assertEquals("protected", actions[2].getConfig().get("visibility", ""));
+		assertEquals(90, actions[1].getConfig().get("hedge.percentile", 0));
+
+		// Listeners
+		ServiceDescriptor.Member[] listeners = descriptor.getListeners();
+		assertEquals(2, listeners.length);
+		assertEquals("foo.*", listeners[0].getSubscribe());
+		assertEquals("g", listeners[0].getGroup());
+		assertFalse(listeners[0].isPrivateAccess());
+		assertNull(listeners[1].getSubscribe());
+		assertNull(listeners[1].getGroup());
+		assertTrue(listeners[1].isPrivateAccess());
+		assertNotNull(listeners[1].get(service));
+	}
+
+	@Test
+	public void testRegistration() throws Exception {
+		Class<?> type = compile();
+		if (type == null) {
+			return;
+		}
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").build();
+		br.createService((Service) type.newInstance());
+		br.start();
+
+		Tree params = new Tree().put("a", 3).put("b", 4);
+		assertEquals(7, br.call("math.add", params).waitFor(2000).asInteger().intValue());
+		assertEquals(12, br.call("math.multiply", params).waitFor(2000).asInteger().intValue());
+		assertEquals("base", br.call("math.inherited").waitFor(2000).asString());
+		assertEquals("info", br.call("math.info").waitFor(2000).asString());
+
+		assertEquals("secret", br.call("math.secret").waitFor(2000).asString());
+
+		// Private actions are not published
+		Tree actions = null;
+		for (Tree service : br.getConfig().getServiceRegistry().getDescriptor().get("services")) {
+			if ("math".equals(service.get("name", ""))) {
+				actions = service.get("actions");
+			}
+		}
+		assertNotNull(actions);
+		HashMap<String, Tree> configs = new HashMap<>();
+		for (Tree action : actions) {
+			configs.put(action.getName(), action);
+		}
+		assertFalse(configs.containsKey("math.secret"));
+		assertEquals(30, configs.get("math.add").get("cache.ttl", 0));
+		assertEquals("public", configs.get("math.info").get("visibility", ""));
+
+		br.broadcast("foo.bar", new Tree());
+		long timeout = System.currentTimeMillis() + 2000;
+		while (received.get() < 1 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, received.get());
+	}
+
+	// --- UTILITIES ---
+
+	protected Class<?> compile() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+
+			// Running on JRE
+			return null;
+		}
+		File src = new File(dir, "test/descriptor/MathService.java");
+		src.getParentFile().mkdirs();
+		Files.write(src.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+		int result = compiler.run(null, null, null, "-proc:only", "-processor",
+				ServiceDescriptorProcessor.class.getName(), "-cp", System.getProperty("java.class.path"), "-s",
+				dir.getAbsolutePath(), "-d", dir.getAbsolutePath(), src.getAbsolutePath());
+		assertEquals(0, result);
+		File generated = new File(dir, "test/descriptor/MathService_Descriptor.java");
+		File inner = new File(dir, "test/descriptor/MathService_Inner_Descriptor.java");
+		result = compiler.run(null, null, null, "-proc:none", "-cp", System.getProperty("java.class.path"), "-d",
+				dir.getAbsolutePath(), src.getAbsolutePath(), generated.getAbsolutePath(), inner.getAbsolutePath());
+		assertEquals(0, result);
+		loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, getClass().getClassLoader());
+		return loader.loadClass("test.descriptor.MathService");
+	}
+
+	protected static boolean equals(Tree expected, Tree actual) {
+		if (expected.isPrimitive() || actual.isPrimitive()) {
+			return expected.asString().equals(actual.asString());
+		}
+		if (expected.size() != actual.size()) {
+			return false;
+		}
+		if (expected.isMap()) {
+			for (Tree child : expected) {
+				Tree other = actual.get(child.getName());
+				if (other == null || !equals(child, other)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		Iterator<Tree> others = actual.iterator();
+		for (Tree child : expected) {
+			if (!equals(child, others.next())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		br = null;
+		received.set(0);
+		dir = Files.createTempDirectory("descriptor").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+		if (loader != null) {
+			loader.close();
+		}
+		delete(dir);
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,256 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.breaker.TestTransporter;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class ServiceDiffTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br;
+
+	protected TestTransporter tr;
+
+	protected DefaultServiceRegistry registry;
+
+	protected long seq;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testCompare() throws Exception {
+		Tree prev = services(service("a", "a.keep", "a.change", "a.remove"), service("b", "b.action"));
+		Tree next = services(service("a", "a.keep", "a.change", "a.add"), service("c", "c.action"));
+		member(next.get(0).get("actions"), "a.change").put("timeout", 1000);
+		next.get(0).get("events").putMap("added").put("name", "added");
+
+		ServiceDiff diff = ServiceDiff.compare(prev, next);
+		assertFalse(diff.isEmpty());
+		assertSame(next, diff.getServices());
+		assertEquals("[b]", diff.getRemovedServices().toString());
+		assertEquals("[c]", diff.getAddedServices().toString());
+		assertEquals("[b.action, a.change, a.remove]", names(diff.getRemovedActions()));
+		assertEquals("[a.change, a.add, c.action]", names(diff.getAddedActions()));
+		assertEquals("[evt.b]", names(diff.getRemovedListeners()));
+		assertEquals("[added, evt.c]", names(diff.getAddedListeners()));
+
+		// Removed entries contain the previous, added entries the new config
+		assertEquals(0, diff.getRemovedActions().get(1).config.get("timeout", 0));
+		assertEquals(1000, diff.getAddedActions().get(0).config.get("timeout", 0));
+		assertEquals("c", diff.getAddedActions().get(2).service);
+
+		// Same blocks
+		diff = ServiceDiff.compare(prev, prev.clone());
+		assertTrue(diff.isEmpty());
+
+		// Versioned services are compared by "fullName"
+		Tree v1 = services(service("d", "d.action"));
+		v1.get(0).put("fullName", "v1.d");
+		Tree v2 = services(service("d", "d.action"));
+		v2.get(0).put("fullName", "v2.d");
+		diff = ServiceDiff.compare(v1, v2);
+		assertEquals("[d]", diff.getRemovedServices().toString());
+		assertEquals("[d]", diff.getAddedServices().toString());
+
+		// From/to empty block
+		diff = ServiceDiff.compare(null, prev);
+		assertEquals(4, diff.getAddedActions().size());
+		assertTrue(diff.getRemovedActions().isEmpty());
+		diff = ServiceDiff.compare(prev, null);
+		assertEquals(4, diff.getRemovedActions().size());
+		assertNull(diff.getServices());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+
+		// Node connected
+		Tree services = services(service("a", "a.keep", "a.change", "a.remove"), service("b", "b.action"));
+		sendInfo(services);
+		waitFor("b.action", true);
+		ActionEndpoint keep = registry.getActionEndpoints("a.keep").get(0);
+		ActionEndpoint change = registry.getActionEndpoints("a.change").get(0);
+		ActionEndpoint b = registry.getActionEndpoints("b.action").get(0);
+
+		// Update one action, remove a service, add a new one
+		services = services(service("a", "a.keep", "a.change", "a.add"), service("c", "c.action"));
+		member(services.get(0).get("actions"), "a.change").put("timeout", 1000);
+		sendInfo(services);
+		waitFor("c.action", true);
+		assertEquals(0, registry.getActionEndpoints("a.remove").size());
+		assertEquals(0, registry.getActionEndpoints("b.action").size());
+		assertEquals(1, registry.getActionEndpoints("a.add").size());
+
+		// Unchanged action is not re-registered
+		assertSame(keep, registry.getActionEndpoints("a.keep").get(0));
+		ActionEndpoint changed = registry.getActionEndpoints("a.change").get(0);
+		assertNotSame(change, changed);
+		assertEquals(1000, changed.getConfig().get("timeout", 0));
+		assertNotSame(b, registry.getActionEndpoints("a.add").get(0));
+		assertTrue(registry.routingTable.containsService("a"));
+		assertTrue(registry.routingTable.containsService("c"));
+		assertFalse(registry.routingTable.containsService("b"));
+
+		// Listeners
+		tr.clearMessages();
+		br.emit("evt.a", new Tree());
+		assertTrue(tr.hasMessage("node2"));
+		tr.clearMessages();
+		br.emit("evt.b", new Tree());
+		assertFalse(tr.hasMessage("node2"));
+		tr.clearMessages();
+		br.emit("evt.c", new Tree());
+		assertTrue(tr.hasMessage("node2"));
+	}
+
+	@Test
+	public void testSharedListenerGroup() throws Exception {
+		Tree services = services(listenerService("a", "evt.shared", "shared", "a.action"),
+				listenerService("b", "evt.shared", "shared", "b.action"));
+		for (Tree service : services) {
+			registry.addActions("node2", service);
+			br.getConfig().getEventbus().addListeners("node2", service);
+		}
+
+		// Remove service "a" -> listener of service "b" remains in the group
+		Tree next = services(services.get(1).clone());
+		ServiceDiff diff = ServiceDiff.compare(services, next);
+		registry.updateActions("node2", diff);
+		br.getConfig().getEventbus().updateListeners("node2", diff);
+		assertEquals(0, registry.getActionEndpoints("a.action").size());
+		assertEquals(1, registry.getActionEndpoints("b.action").size());
+		tr.clearMessages();
+		br.emit("evt.shared", new Tree());
+		assertTrue(tr.hasMessage("node2"));
+
+		// Remove service "b" too
+		diff = ServiceDiff.compare(next, services());
+		br.getConfig().getEventbus().updateListeners("node2", diff);
+		tr.clearMessages();
+		br.emit("evt.shared", new Tree());
+		assertFalse(tr.hasMessage("node2"));
+	}
+
+	// --- UTILITIES ---
+
+	protected void sendInfo(Tree services) throws Exception {
+		Tree info = new Tree();
+		info.put("ver", "4");
+		info.put("sender", "node2");
+		info.put("seq", ++seq);
+		info.put("hostname", "host2");
+		info.put("port", 1234);
+		info.putObject("services", services);
+		tr.received(tr.infoChannel, info);
+	}
+
+	protected void waitFor(String action, boolean available) throws Exception {
+		for (int i = 0; i < 100; i++) {
+			if (registry.getActionEndpoints(action).isEmpty() != available) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		fail("Action \"" + action + "\" is " + (available ? "not " : "") + "available!");
+	}
+
+	protected static Tree services(Tree... services) {
+		Tree list = new Tree().putList("services");
+		for (Tree service : services) {
+			list.addObject(service);
+		}
+		return list;
+	}
+
+	protected static Tree service(String name, String... actions) throws Exception {
+		return listenerService(name, "evt." + name, null, actions);
+	}
+
+	protected static Tree listenerService(String name, String event, String group, String... actions) throws Exception {
+		StringBuilder json = new StringBuilder(128);
+		json.append("{\"name\":\"").append(name).append("\",\"actions\":{");
+		for (int i = 0; i < actions.length; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append('"').append(actions[i]).append("\":{\"name\":\"").append(actions[i]).append("\"}");
+		}
+		json.append("},\"events\":{\"").append(event).append("\":{\"name\":\"").append(event).append('"');
+		if (group != null) {
+			json.append(",\"group\":\"").append(group).append('"');
+		}
+		json.append("}}}");
+		return new Tree(json.toString());
+	}
+
+	protected static Tree member(Tree map, String name) {
+		for (Tree member : map) {
+			if (name.equals(member.getName())) {
+				return member;
+			}
+		}
+		return null;
+	}
+
+	protected static String names(List<ServiceDiff.Change> changes) {
+		StringBuilder tmp = new StringBuilder("[");
+		for (ServiceDiff.Change change : changes) {
+			if (tmp.length() > 1) {
+				tmp.append(", ");
+			}
+			tmp.append(change.name);
+		}
+		return tmp.append(']').toString();
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		tr = new TestTransporter();
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").transporter(tr)
+				.internalServices(false).build();
+		br.start();
+		registry = (DefaultServiceRegistry) br.getConfig().getServiceRegistry();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
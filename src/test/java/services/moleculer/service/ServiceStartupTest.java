@@ -0,0 +1,222 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.error.MoleculerServerError;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class ServiceStartupTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br;
+
+	protected static final ConcurrentHashMap<String, long[]> times = new ConcurrentHashMap<>();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testParallelStartup() throws Exception {
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").build();
+		br.createService(new SlowService("a"));
+		br.createService(new SlowService("b"));
+		br.createService(new SlowService("c"));
+		br.createService(new DependentService());
+
+		long start = System.currentTimeMillis();
+		br.start();
+		long duration = System.currentTimeMillis() - start;
+
+		// Sequential startup takes (at least) 4 x 300 msec
+		assertTrue("Startup took " + duration + " msec", duration < 1100);
+
+		// "d" started after "a" and "b"
+		long[] d = times.get("d");
+		assertNotNull(d);
+		assertTrue(d[0] >= times.get("a")[1]);
+		assertTrue(d[0] >= times.get("b")[1]);
+		assertNotNull(br.getLocalService("d"));
+	}
+
+	@Test
+	public void testSequentialStartup() throws Exception {
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").parallelStartup(false).build();
+		br.createService(new SlowService("a"));
+		br.createService(new SlowService("b"));
+		br.start();
+		assertTrue(times.get("b")[0] >= times.get("a")[1]);
+	}
+
+	@Test
+	public void testRemoteDependency() throws Exception {
+		br = ServiceBroker.builder().monitor(new ConstantMonitor()).nodeID("node1").build();
+		br.createService(new RemoteDependentService());
+		br.createService(new SlowService("a"));
+		br.start();
+
+		// The broker does not wait for the remote services
+		assertNotNull(times.get("a"));
+		assertNull(times.get("r"));
+	}
+
+	@Test
+	public void testFailedDependency() throws Exception {
+		DefaultServiceRegistry registry = new DefaultServiceRegistry() {
+
+			@Override
+			protected void addOnlineActions(String serviceName, Service service) throws Exception {
+				if ("f".equals(serviceName)) {
+					throw new IllegalStateException("Registration failed!");
+				}
+				super.addOnlineActions(serviceName, service);
+			}
+
+		};
+		br = ServiceBroker.builder().registry(registry).monitor(new ConstantMonitor()).nodeID("node1").build();
+		br.createService(new BrokenService());
+		br.createService(new FailedDependentService());
+		br.createService(new SlowService("a"));
+
+		// The broker does not wait for the dependents of the failed service
+		Thread starter = new Thread(() -> {
+			try {
+				br.start();
+			} catch (Exception cause) {
+				cause.printStackTrace();
+			}
+		});
+		starter.start();
+		starter.join(5000);
+		assertFalse(starter.isAlive());
+		assertNotNull(times.get("a"));
+		assertNull(times.get("g"));
+		try {
+			br.getLocalService("g");
+			fail();
+		} catch (Exception expected) {
+		}
+	}
+
+	@Test
+	public void testCircularDependency() throws Exception {
+		LinkedHashMap<String, Service> services = new LinkedHashMap<>();
+		services.put("x", new CircularServiceX());
+		services.put("y", new CircularServiceY());
+		services.put("a", new SlowService("a"));
+		try {
+			new ServiceStartup(null, null, null, "node1", services);
+			fail();
+		} catch (MoleculerServerError expected) {
+			assertEquals("CIRCULAR_DEPENDENCY", expected.getType());
+			assertTrue(expected.getMessage().contains("x"));
+			assertFalse(expected.getMessage().matches(".*\\W+a\\W+.*"));
+		}
+	}
+
+	// --- SAMPLE SERVICES ---
+
+	protected static class SlowService extends Service {
+
+		public SlowService(String name) {
+			super(name);
+		}
+
+		public Action action = ctx -> {
+			return name;
+		};
+
+		@Override
+		public void started(ServiceBroker broker) throws Exception {
+			super.started(broker);
+			long start = System.currentTimeMillis();
+			Thread.sleep(300);
+			times.put(name, new long[] { start, System.currentTimeMillis() });
+		}
+
+	}
+
+	@Name("d")
+	@Dependencies({ "a", "b" })
+	protected static class DependentService extends Service {
+
+		public Action action = ctx -> {
+			return name;
+		};
+
+		@Override
+		public void started(ServiceBroker broker) throws Exception {
+			super.started(broker);
+			long now = System.currentTimeMillis();
+			times.put(name, new long[] { now, now });
+		}
+
+	}
+
+	@Name("r")
+	@Dependencies({ "remote" })
+	protected static class RemoteDependentService extends DependentService {
+	}
+
+	@Name("f")
+	protected static class BrokenService extends Service {
+	}
+
+	@Name("g")
+	@Dependencies({ "f" })
+	protected static class FailedDependentService extends DependentService {
+	}
+
+	@Dependencies({ "y" })
+	protected static class CircularServiceX extends Service {
+	}
+
+	@Dependencies({ "x" })
+	protected static class CircularServiceY extends Service {
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		br = null;
+		times.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
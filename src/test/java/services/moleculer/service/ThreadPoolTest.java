@@ -0,0 +1,195 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.datatree.Promise;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.config.ServiceBrokerConfig;
+import services.moleculer.error.QueueIsFullError;
+import services.moleculer.metrics.DefaultMetrics;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class ThreadPoolTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br;
+	protected DefaultServiceRegistry sr;
+	protected DefaultMetrics metrics;
+
+	protected final CountDownLatch blocker = new CountDownLatch(1);
+	protected final CountDownLatch started = new CountDownLatch(1);
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testIsolatedExecutors() throws Exception {
+
+		// Service-level pool
+		assertTrue(br.call("jdbc.thread").waitFor(5000).asString().startsWith("moleculer-jdbc-"));
+
+		// Action-level pool (shared by two services)
+		assertTrue(br.call("jdbc.report").waitFor(5000).asString().startsWith("moleculer-reports-"));
+		assertTrue(br.call("other.report").waitFor(5000).asString().startsWith("moleculer-reports-"));
+		assertSame(endpoint("jdbc.report").getIsolatedExecutor(), endpoint("other.report").getIsolatedExecutor());
+		assertNotSame(endpoint("jdbc.thread").getIsolatedExecutor(), endpoint("jdbc.report").getIsolatedExecutor());
+
+		// Not isolated
+		assertNull(endpoint("other.fast").getIsolatedExecutor());
+
+		// Virtual threads (or platform threads on older runtimes)
+		assertFalse(br.call("virtual.thread").waitFor(5000).asString().isEmpty());
+	}
+
+	@Test
+	public void testQueueIsFull() throws Exception {
+
+		// First call is running, second is waiting
+		Promise p1 = br.call("jdbc.block");
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Promise p2 = br.call("jdbc.block");
+		IsolatedExecutor pool = endpoint("jdbc.block").getIsolatedExecutor();
+		assertEquals(1, pool.getRunningTasks());
+		assertEquals(1, pool.getWaitingTasks());
+
+		// Third call is rejected
+		try {
+			br.call("jdbc.block").waitFor(5000);
+			fail();
+		} catch (QueueIsFullError expected) {
+		}
+
+		// Other services are not blocked
+		assertEquals(1, br.call("other.fast").waitFor(1000).asInteger().intValue());
+
+		// Release the blocked calls
+		blocker.countDown();
+		assertEquals(2, p1.waitFor(5000).asInteger().intValue());
+		assertEquals(2, p2.waitFor(5000).asInteger().intValue());
+		for (int i = 0; i < 100 && pool.getRunningTasks() > 0; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, pool.getRunningTasks());
+		assertEquals(0, pool.getWaitingTasks());
+
+		// Metrics
+		Timer timer = metrics.find("moleculer.executor.wait.time").tag("pool", "jdbc").timer();
+		assertNotNull(timer);
+		assertEquals(2, timer.count());
+		assertEquals(1d, metrics.find("moleculer.executor.rejected.total").tag("pool", "jdbc").counter().count());
+	}
+
+	// --- UTILITIES ---
+
+	protected LocalActionEndpoint endpoint(String action) {
+		return (LocalActionEndpoint) sr.routingTable.get(action).getEndpoint(null, null);
+	}
+
+	// --- SERVICES ---
+
+	@Name("jdbc")
+	@ThreadPool(threads = 1, queueSize = 1)
+	protected final class JdbcService extends Service {
+
+		public Action thread = ctx -> {
+			return Thread.currentThread().getName();
+		};
+
+		public Action block = ctx -> {
+			started.countDown();
+			blocker.await(5, TimeUnit.SECONDS);
+			return 2;
+		};
+
+		@ThreadPool(name = "reports", threads = 2)
+		public Action report = ctx -> {
+			return Thread.currentThread().getName();
+		};
+
+	}
+
+	@Name("other")
+	protected final class OtherService extends Service {
+
+		public Action fast = ctx -> {
+			return 1;
+		};
+
+		@ThreadPool(name = "reports", threads = 2)
+		public Action report = ctx -> {
+			return Thread.currentThread().getName();
+		};
+
+	}
+
+	@Name("virtual")
+	@ThreadPool(virtual = true)
+	protected final class VirtualService extends Service {
+
+		public Action thread = ctx -> {
+			return String.valueOf(Thread.currentThread());
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		sr = new DefaultServiceRegistry();
+		metrics = new DefaultMetrics();
+		metrics.add(new SimpleMeterRegistry());
+		ServiceBrokerConfig cfg = new ServiceBrokerConfig();
+		cfg.setServiceRegistry(sr);
+		cfg.setMonitor(new ConstantMonitor());
+		cfg.setMetrics(metrics);
+		cfg.setMetricsEnabled(true);
+		br = new ServiceBroker(cfg);
+		br.createService(new JdbcService());
+		br.createService(new OtherService());
+		br.createService(new VirtualService());
+		br.start();
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		blocker.countDown();
+		if (br != null) {
+			br.stop();
+		}
+	}
+
+}
@@ -26,10 +26,15 @@
 package services.moleculer.stream;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -251,6 +256,86 @@ public class SequenceTest extends TestCase {
 		listener.reset();
 	}
 
+	@Test
+	public void testReorderWindow() throws Exception {
+		IncomingStream stream = new IncomingStream("node1", scheduler, 0, 4);
+		InternalStreamTest.TestListener listener = new InternalStreamTest.TestListener();
+		stream.getPacketStream().onPacket(listener);
+
+		byte[] b1 = randomBytes(10);
+		String id = "test";
+		assertFalse(stream.receive(createDataStreamingPacket(id, 3, b1)));
+		assertFalse(stream.receive(createStartStreamingPacket(id)));
+		listener.assertNotFaulty();
+
+		// Expected: 1, window: 1...4
+		assertTrue(stream.receive(createDataStreamingPacket(id, 5, b1)));
+		listener.assertFaulty();
+		assertTrue(listener.error.getMessage().contains("reorder window"));
+		listener.assertEmpty();
+	}
+
+	@Test
+	public void testConcurrentReassembly() throws Exception {
+		int chunks = 2000;
+		List<Tree> packets = new ArrayList<>(chunks + 2);
+		ByteArrayOutputStream tmp = new ByteArrayOutputStream();
+		packets.add(createStartStreamingPacket("test"));
+		for (int seq = 1; seq <= chunks; seq++) {
+			byte[] bytes = randomBytes(1 + rnd.nextInt(50));
+			tmp.write(bytes);
+			packets.add(createDataStreamingPacket("test", seq, bytes));
+		}
+		packets.add(createCloseStreamingPacket("test", chunks + 1));
+		byte[] all = tmp.toByteArray();
+
+		// Reorder packets within small groups
+		for (int i = 0; i < packets.size(); i += 16) {
+			Collections.shuffle(packets.subList(i, Math.min(i + 16, packets.size())), rnd);
+		}
+
+		// Threads may be suspended for a while, so the window covers the stream
+		IncomingStream stream = new IncomingStream("node1", scheduler, 0, chunks + 2);
+		stream.getPacketStream().onPacket(listener);
+		for (int round = 0; round < 20; round++) {
+			stream.reset();
+			listener.reset();
+			AtomicInteger index = new AtomicInteger();
+			AtomicBoolean close = new AtomicBoolean();
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				Thread thread = new Thread(() -> {
+					int i;
+					while ((i = index.getAndIncrement()) < packets.size()) {
+						if (stream.receive(packets.get(i))) {
+							close.set(true);
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertTrue(close.get());
+			listener.assertNotFaulty();
+			listener.assertClosed();
+			listener.assertDataEquals(all);
+		}
+	}
+
+	@Test
+	public void testBinaryChunks() throws Exception {
+		byte[] b1 = randomBytes(100);
+		Tree packet = createStartStreamingPacket("test");
+		packet.putMap("params").put("data", b1);
+		assertFalse(incomingStream.receive(packet));
+		listener.assertDataEquals(b1);
+		assertTrue(incomingStream.receive(createCloseStreamingPacket("test", 1)));
+		listener.assertClosed();
+	}
+
 	// --- UTILITIES ---
 
 	public Tree createStartStreamingPacket(String id) {
@@ -0,0 +1,187 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.stream;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Promise;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.context.Context;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Action;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+import services.moleculer.transporter.TcpTransporter;
+
+public class TcpZeroCopyStreamTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker br1;
+	protected ServiceBroker br2;
+
+	protected CountingTcpTransporter tr1;
+
+	protected File source;
+	protected File destination;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testZeroCopy() throws Exception {
+		start(true);
+		byte[] bytes = transfer(1024 * 1024 + 123);
+		assertTrue(Arrays.equals(bytes, Files.readAllBytes(destination.toPath())));
+
+		// 1 MB in 64 KB regions
+		assertEquals(17, tr1.regions.get());
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+
+		// The receiver does not advertise the "rawChunks" capability
+		start(false);
+		byte[] bytes = transfer(300 * 1024);
+		assertTrue(Arrays.equals(bytes, Files.readAllBytes(destination.toPath())));
+		assertEquals(0, tr1.regions.get());
+	}
+
+	@Test
+	public void testFailedRegion() throws Exception {
+
+		// The 3rd region is larger than the "maxPacketSize" limit
+		start(true);
+		tr1.failAt = 3;
+		byte[] bytes = transfer(300 * 1024);
+		assertTrue(Arrays.equals(bytes, Files.readAllBytes(destination.toPath())));
+
+		// The failed region is sent without zero-copy
+		assertEquals(4, tr1.regions.get());
+	}
+
+	// --- UTILITIES ---
+
+	protected byte[] transfer(int size) throws Exception {
+		byte[] bytes = new byte[size];
+		new Random().nextBytes(bytes);
+		Files.write(source.toPath(), bytes);
+
+		PacketStream stream = br1.createStream();
+		stream.setPacketSize(64 * 1024);
+		stream.setPacketDelay(0);
+		Promise rsp = br1.call("file-receiver.receive", stream);
+		stream.transferFrom(source).waitFor(20000);
+		assertEquals(size, rsp.waitFor(20000).asInteger().intValue());
+		assertEquals(size, stream.getTransferedBytes());
+		return bytes;
+	}
+
+	protected void start(boolean zeroCopyOnReceiver) throws Exception {
+		tr1 = new CountingTcpTransporter();
+		TcpTransporter tr2 = new TcpTransporter();
+		tr2.setZeroCopyStreaming(zeroCopyOnReceiver);
+		br1 = ServiceBroker.builder().transporter(tr1).monitor(new ConstantMonitor()).nodeID("node1").build();
+		br2 = ServiceBroker.builder().transporter(tr2).monitor(new ConstantMonitor()).nodeID("node2").build();
+		br2.createService(new FileReceiverService(destination));
+		br1.start();
+		br2.start();
+		br1.waitForServices("file-receiver").waitFor(20000);
+	}
+
+	@Name("file-receiver")
+	protected static final class FileReceiverService extends Service {
+
+		protected File file;
+
+		protected FileReceiverService(File file) {
+			this.file = file;
+		}
+
+		public Action receive = ctx -> {
+			return ctx.stream.transferTo(file).then(rsp -> {
+				return file.length();
+			});
+		};
+
+	}
+
+	protected static final class CountingTcpTransporter extends TcpTransporter {
+
+		protected final AtomicInteger regions = new AtomicInteger();
+
+		protected volatile long failAt;
+
+		@Override
+		public boolean sendDataRegion(String cmd, String nodeID, Context ctx, FileRegion region, long sequence) {
+			boolean accepted;
+			if (sequence == failAt) {
+				int limit = maxPacketSize;
+				maxPacketSize = 1024;
+				try {
+					accepted = super.sendDataRegion(cmd, nodeID, ctx, region, sequence);
+				} finally {
+					maxPacketSize = limit;
+				}
+			} else {
+				accepted = super.sendDataRegion(cmd, nodeID, ctx, region, sequence);
+			}
+			if (accepted) {
+				regions.incrementAndGet();
+			}
+			return accepted;
+		}
+
+	}
+
+	// --- SET UP / TEAR DOWN ---
+
+	@Override
+	protected void setUp() throws Exception {
+		source = File.createTempFile("MoleculerZeroCopySource", ".tmp");
+		destination = File.createTempFile("MoleculerZeroCopyDestination", ".tmp");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br1 != null) {
+			br1.stop();
+		}
+		if (br2 != null) {
+			br2.stop();
+		}
+		source.delete();
+		destination.delete();
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+
+public class AmqpChannelPoolTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected AmqpStandIn standIn;
+	protected AmqpTransporter transporter;
+	protected ServiceBroker broker;
+
+	protected final AtomicInteger received = new AtomicInteger();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testPublisherPool() throws Exception {
+		assertEquals(1 + 4, standIn.channels.get());
+		assertEquals(4, standIn.confirmSelects.get());
+		int publishedAtStart = standIn.published.get();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 100; i++) {
+					transporter.publish("MOL.EVENT.node2", new Tree().put("sender", "node1"));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(800, standIn.published.get() - publishedAtStart);
+		assertFalse(standIn.concurrentUse.get());
+
+		// At least 800 / 10 - 4 batches are confirmed
+		assertTrue(standIn.confirmWaits.get() >= 76);
+	}
+
+	@Test
+	public void testBatchedAcks() throws Exception {
+		assertEquals(1, standIn.qos.size());
+		assertEquals(8, (int) standIn.qos.get(0));
+
+		// Directly addressed packets are acknowledged manually
+		String queue = "MOL.REQ.node1";
+		assertFalse(standIn.autoAcks.get(queue));
+		assertTrue(standIn.autoAcks.get("MOL.HEARTBEAT.node1"));
+
+		Consumer consumer = standIn.consumers.get(queue);
+		for (int tag = 1; tag <= 10; tag++) {
+			consumer.handleDelivery("tag", new Envelope(tag, false, "", queue), null, new byte[0]);
+		}
+		assertEquals(10, received.get());
+		assertEquals(2, standIn.acks.size());
+		assertEquals(4L, standIn.acks.get(0)[0]);
+		assertEquals(true, standIn.acks.get(0)[1]);
+		assertEquals(8L, standIn.acks.get(1)[0]);
+
+		// Acknowledge the remaining messages
+		transporter.flushAcks();
+		assertEquals(3, standIn.acks.size());
+		assertEquals(10L, standIn.acks.get(2)[0]);
+		transporter.flushAcks();
+		assertEquals(3, standIn.acks.size());
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		standIn = new AmqpStandIn(0);
+		transporter = new AmqpTransporter() {
+
+			@Override
+			protected void processReceivedMessage(String channel, byte[] message) {
+				received.incrementAndGet();
+			}
+
+		};
+		transporter.setFactory(standIn);
+		transporter.setChannelPoolSize(4);
+		transporter.setPublisherConfirms(true);
+		transporter.setConfirmBatchSize(10);
+		transporter.setPrefetchCount(8);
+		transporter.setAckBatchSize(4);
+		transporter.setAckInterval(60000);
+		broker = ServiceBroker.builder().transporter(transporter).monitor(new ConstantMonitor()).nodeID("node1")
+				.build();
+		broker.start();
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (broker != null) {
+			broker.stop();
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Consumer;
+
+/**
+ * Local stand-in of an AMQP broker (for tests and benchmarks). Creates proxy
+ * Connections and Channels, records the invocations, and simulates the cost
+ * of publishing (the RabbitMQ client serializes the frames of a channel).
+ */
+public class AmqpStandIn extends ConnectionFactory {
+
+	// --- PROPERTIES ---
+
+	/**
+	 * Simulated network cost of a publish, in NANOSECONDS.
+	 */
+	protected final long publishNanos;
+
+	// --- RECORDED INVOCATIONS ---
+
+	protected final AtomicInteger channels = new AtomicInteger();
+	protected final AtomicInteger published = new AtomicInteger();
+	protected final AtomicInteger confirmSelects = new AtomicInteger();
+	protected final AtomicInteger confirmWaits = new AtomicInteger();
+	protected final AtomicBoolean concurrentUse = new AtomicBoolean();
+
+	protected final List<Object[]> acks = Collections.synchronizedList(new ArrayList<>());
+	protected final List<Integer> qos = Collections.synchronizedList(new ArrayList<>());
+
+	protected final ConcurrentHashMap<String, Consumer> consumers = new ConcurrentHashMap<>();
+	protected final ConcurrentHashMap<String, Boolean> autoAcks = new ConcurrentHashMap<>();
+
+	// --- CONSTRUCTOR ---
+
+	public AmqpStandIn(long publishNanos) {
+		this.publishNanos = publishNanos;
+	}
+
+	// --- CREATE CONNECTION ---
+
+	@Override
+	public Connection newConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Connection.class },
+				(proxy, method, args) -> {
+					if ("createChannel".equals(method.getName())) {
+						channels.incrementAndGet();
+						return createChannel();
+					}
+					return defaultValue(method);
+				});
+	}
+
+	protected Channel createChannel() {
+		AtomicBoolean inUse = new AtomicBoolean();
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "basicPublish":
+				if (!inUse.compareAndSet(false, true)) {
+					concurrentUse.set(true);
+				}
+				try {
+					synchronized (inUse) {
+						if (publishNanos > 0) {
+							long end = System.nanoTime() + publishNanos;
+							while (System.nanoTime() < end) {
+								LockSupport.parkNanos(1000);
+							}
+						}
+						published.incrementAndGet();
+					}
+				} finally {
+					inUse.set(false);
+				}
+				return null;
+			case "confirmSelect":
+				confirmSelects.incrementAndGet();
+				return null;
+			case "waitForConfirms":
+				confirmWaits.incrementAndGet();
+				return true;
+			case "basicQos":
+				qos.add((Integer) args[0]);
+				return null;
+			case "basicAck":
+				acks.add(new Object[] { args[0], args[1] });
+				return null;
+			case "basicConsume":
+				consumers.put((String) args[0], (Consumer) args[2]);
+				autoAcks.put((String) args[0], (Boolean) args[1]);
+				return "tag" + consumers.size();
+			case "isOpen":
+				return true;
+			default:
+				return defaultValue(method);
+			}
+		};
+		return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Channel.class }, handler);
+	}
+
+	protected static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		if (type == String.class) {
+			return "";
+		}
+		return null;
+	}
+
+}
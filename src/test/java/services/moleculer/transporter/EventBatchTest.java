@@ -0,0 +1,202 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.Vector;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.eventbus.Listener;
+import services.moleculer.eventbus.Subscribe;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+
+public class EventBatchTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+	protected InternalTransporter clientTransporter;
+
+	protected final Vector<Integer> publishedEvents = new Vector<>();
+	protected final Vector<Integer> eventPackets = new Vector<>();
+	protected final Vector<Integer> receivedEvents = new Vector<>();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testCountLimit() throws Exception {
+		clientTransporter.setEventBatchMaxCount(20);
+		clientTransporter.setEventBatchLinger(5000);
+		for (int i = 0; i < 20; i++) {
+			client.emit("metrics.cpu", "value", i);
+		}
+		waitForEvents(20);
+
+		// One packet, processed in the original order
+		assertEquals(1, eventPackets.size());
+		assertEquals(20, eventPackets.get(0).intValue());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, receivedEvents.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testLinger() throws Exception {
+		clientTransporter.setEventBatchLinger(100);
+		for (int i = 0; i < 5; i++) {
+			client.emit("metrics.cpu", "value", i);
+		}
+		Thread.sleep(30);
+		assertTrue(eventPackets.isEmpty());
+		waitForEvents(5);
+		assertEquals(1, eventPackets.size());
+		assertEquals(5, eventPackets.get(0).intValue());
+	}
+
+	@Test
+	public void testSizeLimit() throws Exception {
+		clientTransporter.setEventBatchMaxSize(900);
+		clientTransporter.setEventBatchLinger(5000);
+		StringBuilder tmp = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			tmp.append('x');
+		}
+		for (int i = 0; i < 9; i++) {
+			Tree params = new Tree().put("value", i).put("text", tmp.toString());
+			client.emit("metrics.cpu", params);
+		}
+		waitForEvents(9);
+		assertEquals(3, eventPackets.size());
+		for (int size : eventPackets) {
+			assertEquals(3, size);
+		}
+	}
+
+	@Test
+	public void testOrdering() throws Exception {
+		clientTransporter.setEventBatchLinger(5000);
+
+		// Non-batched events flush the buffer first
+		for (int i = 0; i < 10; i++) {
+			client.emit(i % 3 == 2 ? "other.event" : "metrics.cpu", "value", i);
+		}
+		client.emit("other.event", "value", 10);
+		waitForEvents(11);
+		assertEquals(11, publishedEvents.size());
+		for (int i = 0; i < 11; i++) {
+			assertEquals(i, publishedEvents.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testEstimateSize() throws Exception {
+		Tree t = new Tree().put("a", "12345").put("b", 1);
+		t.putList("c").add(true).add("x");
+		int size = EventBatch.estimateSize(t.asObject());
+		String json = t.toString(false);
+		assertTrue(size > json.length() / 2);
+		assertTrue(size < json.length() * 2);
+	}
+
+	protected void waitForEvents(int count) throws Exception {
+		long timeout = System.currentTimeMillis() + 3000;
+		while (receivedEvents.size() < count && System.currentTimeMillis() < timeout) {
+			Thread.sleep(20);
+		}
+		assertEquals(count, receivedEvents.size());
+	}
+
+	// --- SERVICE ---
+
+	@Name("metrics")
+	protected final class MetricsService extends Service {
+
+		@Subscribe("metrics.*")
+		public Listener metrics = ctx -> {
+			receivedEvents.add(ctx.params.get("value", -1));
+		};
+
+		@Subscribe("other.event")
+		public Listener other = ctx -> {
+			receivedEvents.add(ctx.params.get("value", -1));
+		};
+
+	}
+
+	// --- SET UP ---
+
+	@Override
+	protected void setUp() throws Exception {
+		InternalTransporter.Subscriptions subscriptions = new InternalTransporter.Subscriptions();
+		clientTransporter = new InternalTransporter(subscriptions) {
+
+			@Override
+			public void publish(String channel, Tree message) {
+				if (channel.startsWith(prefix + '.' + PACKET_EVENT)) {
+					Tree batch = message.get("batch");
+					if (batch == null) {
+						publishedEvents.add(message.get("data.value", -1));
+					} else {
+						eventPackets.add(batch.size());
+						for (Tree event : batch) {
+							publishedEvents.add(event.get("data.value", -1));
+						}
+					}
+				}
+				super.publish(channel, message);
+			}
+
+		};
+		clientTransporter.setBatchedEvents("metrics.**");
+		client = ServiceBroker.builder().transporter(clientTransporter).monitor(new ConstantMonitor())
+				.nodeID("client").build();
+		br1 = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		br1.createService(new MetricsService());
+		br1.start();
+		client.start();
+		client.waitForServices(5000, "metrics").waitFor(5000);
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+	}
+
+}
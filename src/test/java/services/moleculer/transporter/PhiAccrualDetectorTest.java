@@ -0,0 +1,251 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.breaker.TestTransporter;
+import services.moleculer.context.Context;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Action;
+import services.moleculer.service.DefaultServiceRegistry;
+import services.moleculer.service.LocalActionEndpoint;
+import services.moleculer.strategy.RoundRobinStrategy;
+import services.moleculer.transporter.tcp.NodeDescriptor;
+import services.moleculer.transporter.tcp.PhiAccrualDetector;
+
+public class PhiAccrualDetectorTest extends TestCase {
+
+	// --- DEFAULT SETTINGS ---
+
+	protected static final double SUSPICION_THRESHOLD = 8;
+	protected static final long ACCEPTABLE_PAUSE = 3000;
+	protected static final long MIN_STD_DEVIATION = 1000;
+
+	// --- PROPERTIES ---
+
+	protected ServiceBroker br;
+	protected TestTransporter tr;
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testJitteredHeartbeats() throws Exception {
+		Random rnd = new Random(12345);
+		PhiAccrualDetector d = new PhiAccrualDetector();
+
+		// Not enough samples
+		long now = 1000000;
+		d.heartbeat(now);
+		assertFalse(d.isReady());
+		assertEquals(0.0, d.phi(now + 60000, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION));
+
+		// Simulate 5 seconds heartbeat period with +/- 500 msec jitter and
+		// some GC pauses
+		double maxPhi = 0;
+		for (int i = 0; i < 10000; i++) {
+			long delay = 5000 + (long) (rnd.nextGaussian() * 250);
+			if (i % 97 == 0) {
+				delay += 2000;
+			}
+
+			// Check suspicion level before the next heartbeat
+			long t = now + 100;
+			while (t < now + delay) {
+				if (d.isReady()) {
+					double phi = d.phi(t, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION);
+					maxPhi = Math.max(maxPhi, phi);
+					assertFalse(d.isSuspected(t, SUSPICION_THRESHOLD, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION));
+				}
+				t += 100;
+			}
+			now += delay;
+			d.heartbeat(now);
+		}
+		assertTrue(d.isReady());
+		assertTrue(maxPhi > 0);
+		assertTrue(maxPhi < SUSPICION_THRESHOLD);
+		assertEquals(5000, d.getMean(), 100);
+
+		// Heartbeats are stopped -> node is suspected before the heartbeat
+		// timeout (30 sec)
+		long suspectedAfter = -1;
+		double prev = 0;
+		for (long t = now; t < now + 30000; t += 100) {
+			double phi = d.phi(t, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION);
+			assertTrue(phi >= prev);
+			prev = phi;
+			if (d.isSuspected(t, SUSPICION_THRESHOLD, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION)) {
+				suspectedAfter = t - now;
+				break;
+			}
+		}
+		assertTrue(suspectedAfter > 8000);
+		assertTrue(suspectedAfter < 20000);
+	}
+
+	@Test
+	public void testIrregularHeartbeats() throws Exception {
+		Random rnd = new Random(54321);
+		PhiAccrualDetector d = new PhiAccrualDetector(50, 5);
+
+		// Widely scattered intervals (1..3 sec) -> higher deviation
+		long now = 1000000;
+		for (int i = 0; i < 500; i++) {
+			long delay = 1000 + rnd.nextInt(2000);
+			for (long t = now + 100; t < now + delay; t += 100) {
+				assertFalse(d.isSuspected(t, SUSPICION_THRESHOLD, 0, 100));
+			}
+			now += delay;
+			d.heartbeat(now);
+		}
+		assertEquals(2000, d.getMean(), 200);
+		assertTrue(d.getStdDeviation() > 400);
+
+		// Detected, but later than in case of the regular heartbeats
+		assertFalse(d.isSuspected(now + 4000, SUSPICION_THRESHOLD, 0, 100));
+		assertTrue(d.isSuspected(now + 10000, SUSPICION_THRESHOLD, 0, 100));
+	}
+
+	@Test
+	public void testReset() throws Exception {
+		PhiAccrualDetector d = new PhiAccrualDetector();
+		long now = 1000000;
+		for (int i = 0; i < 10; i++) {
+			now += 1000;
+			d.heartbeat(now);
+		}
+		assertTrue(d.isReady());
+		assertTrue(d.isSuspected(now + 60000, SUSPICION_THRESHOLD, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION));
+
+		d.reset();
+		assertFalse(d.isReady());
+		assertEquals(0L, d.getLastHeartbeat());
+		assertFalse(d.isSuspected(now + 60000, SUSPICION_THRESHOLD, ACCEPTABLE_PAUSE, MIN_STD_DEVIATION));
+	}
+
+	@Test
+	public void testSkipSuspectedNodes() throws Exception {
+		long now = System.currentTimeMillis();
+
+		// Heartbeats of "node2" stopped 20 seconds ago
+		addNode("node2", now - 20000);
+
+		// "node3" is alive
+		addNode("node3", now);
+
+		assertTrue(tr.isSuspected("node2"));
+		assertFalse(tr.isSuspected("node3"));
+		assertFalse(tr.isSuspected("node1"));
+		assertFalse(tr.isSuspected("node4"));
+		assertTrue(tr.getSuspicion("node2") >= SUSPICION_THRESHOLD);
+		assertTrue(tr.getSuspicion("node3") < SUSPICION_THRESHOLD);
+
+		RoundRobinStrategy<LocalActionEndpoint> s = new RoundRobinStrategy<>(br, false);
+		s.addEndpoint(createEndpoint("node2"));
+		s.addEndpoint(createEndpoint("node3"));
+		HashSet<String> set = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			set.add(s.getEndpoint(null, null).getNodeID());
+		}
+		assertEquals(1, set.size());
+		assertTrue(set.contains("node3"));
+
+		// Direct calls are not affected
+		assertEquals("node2", s.getEndpoint(null, "node2").getNodeID());
+
+		// All nodes are suspected -> use all of them
+		addNode("node3", now - 20000);
+		set.clear();
+		for (int i = 0; i < 10; i++) {
+			set.add(s.getEndpoint(null, null).getNodeID());
+		}
+		assertEquals(2, set.size());
+
+		// Disabled
+		addNode("node3", now);
+		tr.setSuspicionThreshold(0);
+		assertFalse(tr.isSuspected("node2"));
+		set.clear();
+		for (int i = 0; i < 10; i++) {
+			set.add(s.getEndpoint(null, null).getNodeID());
+		}
+		assertEquals(2, set.size());
+	}
+
+	// --- UTILITIES ---
+
+	protected void addNode(String nodeID, long lastHeartbeat) {
+		NodeDescriptor node = new NodeDescriptor(nodeID, true, false);
+		long t = lastHeartbeat - 10 * 5000;
+		for (int i = 0; i <= 10; i++) {
+			node.detector.heartbeat(t);
+			t += 5000;
+		}
+		node.cpuWhen = lastHeartbeat;
+		tr.nodes.put(nodeID, node);
+	}
+
+	protected LocalActionEndpoint createEndpoint(String nodeID) {
+		Tree cfg = new Tree();
+		cfg.put("name", "test.action");
+		DefaultServiceRegistry registry = (DefaultServiceRegistry) br.getConfig().getServiceRegistry();
+		return new LocalActionEndpoint(registry, br.getConfig().getExecutor(), nodeID, "test", cfg, new Action() {
+
+			@Override
+			public Object handler(Context ctx) throws Exception {
+				return null;
+			}
+
+		}, "test.action");
+	}
+
+	// --- START BROKER ---
+
+	@Override
+	protected void setUp() throws Exception {
+		tr = new TestTransporter();
+		br = ServiceBroker.builder().nodeID("node1").transporter(tr).monitor(new ConstantMonitor()).build();
+		br.start();
+	}
+
+	// --- STOP BROKER ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (br != null) {
+			br.stop();
+			br = null;
+		}
+	}
+
+}
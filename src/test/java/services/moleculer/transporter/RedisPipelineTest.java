@@ -0,0 +1,89 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+
+public class RedisPipelineTest extends TransporterTest {
+
+	// --- EMBEDDED REDIS STAND-IN ---
+
+	protected static RedisStandIn standIn;
+
+	@Override
+	public Transporter createTransporter() {
+		try {
+			if (standIn == null) {
+				standIn = new RedisStandIn();
+			}
+		} catch (Exception cause) {
+			throw new RuntimeException(cause);
+		}
+		RedisTransporter t = new RedisTransporter(standIn.getUrl());
+		t.setPipelining(true);
+		t.setPipelineSize(32);
+		return t;
+	}
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testPipelinedBurst() throws Exception {
+		tr1.setDebug(false);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 250; i++) {
+					tr1.publish("MOL.BURST", new Tree().put("index", i));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// Partial batches are flushed after the linger time
+		long timeout = System.currentTimeMillis() + 5000;
+		while (published("MOL.BURST") < 2000 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertEquals(2000, published("MOL.BURST"));
+	}
+
+	protected long published(String channel) {
+		AtomicLong counter = standIn.publishedTo.get(channel);
+		return counter == null ? 0 : counter.get();
+	}
+
+}
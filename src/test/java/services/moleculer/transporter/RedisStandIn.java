@@ -0,0 +1,240 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded Redis stand-in (for tests and benchmarks). Speaks the RESP
+ * protocol, and supports the pub/sub commands (PUBLISH, SUBSCRIBE,
+ * UNSUBSCRIBE) and PING. Like Redis, it flushes the replies when the input
+ * buffer of the connection is empty, so pipelined commands are answered in
+ * one write.
+ */
+public class RedisStandIn implements Runnable {
+
+	// --- VARIABLES ---
+
+	protected final ServerSocket server;
+
+	protected final ConcurrentHashMap<String, Set<Connection>> subscriptions = new ConcurrentHashMap<>();
+
+	protected final AtomicLong published = new AtomicLong();
+	protected final ConcurrentHashMap<String, AtomicLong> publishedTo = new ConcurrentHashMap<>();
+	protected final AtomicLong writes = new AtomicLong();
+
+	protected volatile boolean running = true;
+
+	// --- CONSTRUCTOR ---
+
+	public RedisStandIn() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread thread = new Thread(this, "redis-stand-in");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public String getUrl() {
+		return "redis://127.0.0.1:" + server.getLocalPort();
+	}
+
+	// --- ACCEPT CONNECTIONS ---
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				Thread thread = new Thread(new Connection(socket), "redis-stand-in-connection");
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException cause) {
+				return;
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		running = false;
+		server.close();
+	}
+
+	// --- CONNECTION ---
+
+	protected class Connection implements Runnable {
+
+		protected final Socket socket;
+		protected final InputStream in;
+		protected final OutputStream out;
+
+		protected Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			in = new BufferedInputStream(socket.getInputStream(), 65536);
+			out = new BufferedOutputStream(socket.getOutputStream(), 65536);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					byte[][] command = readCommand();
+					String name = new String(command[0], StandardCharsets.US_ASCII).toUpperCase();
+					synchronized (this) {
+						switch (name) {
+						case "PUBLISH":
+							published.incrementAndGet();
+							publishedTo.computeIfAbsent(new String(command[1], StandardCharsets.UTF_8), c -> new AtomicLong())
+									.incrementAndGet();
+							Set<Connection> set = subscriptions.get(new String(command[1], StandardCharsets.UTF_8));
+							int count = 0;
+							if (set != null) {
+								for (Connection subscriber : set) {
+									subscriber.message(command[1], command[2]);
+									count++;
+								}
+							}
+							writeLine(":" + count);
+							break;
+						case "SUBSCRIBE":
+						case "UNSUBSCRIBE":
+							for (int i = 1; i < command.length; i++) {
+								String channel = new String(command[i], StandardCharsets.UTF_8);
+								Set<Connection> subscribers = subscriptions.computeIfAbsent(channel,
+										key -> new CopyOnWriteArraySet<>());
+								if ("SUBSCRIBE".equals(name)) {
+									subscribers.add(this);
+								} else {
+									subscribers.remove(this);
+								}
+								writeLine("*3");
+								writeBulk(name.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+								writeBulk(command[i]);
+								writeLine(":" + i);
+							}
+							break;
+						case "PING":
+							writeLine("+PONG");
+							break;
+						default:
+							writeLine("+OK");
+						}
+						if (in.available() == 0) {
+							flush();
+						}
+					}
+				}
+			} catch (Exception closed) {
+				for (Set<Connection> set : subscriptions.values()) {
+					set.remove(this);
+				}
+				try {
+					socket.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+
+		protected synchronized void message(byte[] channel, byte[] message) throws IOException {
+			writeLine("*3");
+			writeBulk("message".getBytes(StandardCharsets.US_ASCII));
+			writeBulk(channel);
+			writeBulk(message);
+			flush();
+		}
+
+		protected byte[][] readCommand() throws IOException {
+			String header = readLine();
+			if (!header.startsWith("*")) {
+				return new byte[][] { header.trim().getBytes(StandardCharsets.UTF_8) };
+			}
+			int count = Integer.parseInt(header.substring(1));
+			byte[][] command = new byte[count][];
+			for (int i = 0; i < count; i++) {
+				int len = Integer.parseInt(readLine().substring(1));
+				byte[] bytes = new byte[len];
+				int pos = 0;
+				while (pos < len) {
+					int n = in.read(bytes, pos, len - pos);
+					if (n < 0) {
+						throw new EOFException();
+					}
+					pos += n;
+				}
+				readLine();
+				command[i] = bytes;
+			}
+			return command;
+		}
+
+		protected String readLine() throws IOException {
+			StringBuilder line = new StringBuilder(16);
+			int c;
+			while ((c = in.read()) != '\n') {
+				if (c < 0) {
+					throw new EOFException();
+				}
+				if (c != '\r') {
+					line.append((char) c);
+				}
+			}
+			return line.toString();
+		}
+
+		protected void writeLine(String line) throws IOException {
+			out.write(line.getBytes(StandardCharsets.US_ASCII));
+			out.write('\r');
+			out.write('\n');
+		}
+
+		protected void writeBulk(byte[] bytes) throws IOException {
+			writeLine("$" + bytes.length);
+			out.write(bytes);
+			out.write('\r');
+			out.write('\n');
+		}
+
+		protected void flush() throws IOException {
+			writes.incrementAndGet();
+			out.flush();
+		}
+
+	}
+
+}
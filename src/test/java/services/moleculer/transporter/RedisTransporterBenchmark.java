@@ -0,0 +1,101 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.datatree.Tree;
+import services.moleculer.ServiceBroker;
+import services.moleculer.monitor.ConstantMonitor;
+
+/**
+ * Publish throughput benchmark of the RedisTransporter against a local Redis
+ * stand-in server. Compares the default mode (every PUBLISH is flushed to the
+ * socket separately) with auto-pipelining (the commands are written in
+ * batches). The time is measured until the last message arrives at the
+ * server. Usage: java services.moleculer.transporter.RedisTransporterBenchmark
+ * [threads] [messages per thread]
+ */
+public class RedisTransporterBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int messages = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		RedisStandIn standIn = new RedisStandIn();
+		try {
+			for (int round = 0; round < 3; round++) {
+				System.out.println("Round " + (round + 1) + " (" + threads + " threads x " + messages + " messages):");
+				run("  flush per command ", standIn, false, threads, messages);
+				run("  auto-pipelining   ", standIn, true, threads, messages);
+			}
+		} finally {
+			standIn.close();
+		}
+	}
+
+	protected static void run(String name, RedisStandIn standIn, boolean pipelining, int threads, int messages)
+			throws Exception {
+		RedisTransporter transporter = new RedisTransporter(standIn.getUrl());
+		transporter.setPipelining(pipelining);
+		ServiceBroker broker = ServiceBroker.builder().transporter(transporter).monitor(new ConstantMonitor())
+				.nodeID("node1").build();
+		broker.start();
+		try {
+			Tree message = new Tree();
+			message.put("ver", "4").put("sender", "node1").put("event", "test.event").putMap("data").put("a", 1);
+
+			AtomicLong counter = standIn.publishedTo.computeIfAbsent("MOL.EVENT.node2", c -> new AtomicLong());
+			long expected = counter.get() + (long) threads * messages;
+			CountDownLatch start = new CountDownLatch(1);
+			for (int t = 0; t < threads; t++) {
+				new Thread(() -> {
+					try {
+						start.await();
+						for (int i = 0; i < messages; i++) {
+							transporter.publish("MOL.EVENT.node2", message);
+						}
+					} catch (InterruptedException interrupted) {
+						return;
+					}
+				}).start();
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			while (counter.get() < expected) {
+				Thread.sleep(1);
+			}
+			long duration = System.nanoTime() - begin;
+			long total = (long) threads * messages;
+			System.out.println(name + (total * 1000000000L / duration) + " messages/sec, " + standIn.writes.getAndSet(0)
+					+ " server flushes");
+		} finally {
+			broker.stop();
+		}
+	}
+
+}
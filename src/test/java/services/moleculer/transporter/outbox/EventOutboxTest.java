@@ -0,0 +1,389 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.outbox;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.ServiceBroker;
+import services.moleculer.eventbus.Listener;
+import services.moleculer.eventbus.Subscribe;
+import services.moleculer.monitor.ConstantMonitor;
+import services.moleculer.service.Name;
+import services.moleculer.service.Service;
+import services.moleculer.transporter.InternalTransporter;
+import services.moleculer.transporter.Transporter;
+
+public class EventOutboxTest extends TestCase {
+
+	// --- VARIABLES ---
+
+	protected File directory;
+
+	protected ServiceBroker client;
+	protected ServiceBroker br1;
+	protected InternalTransporter.Subscriptions subscriptions;
+
+	protected volatile boolean blocked;
+	protected volatile boolean failing;
+
+	protected final Vector<Integer> receivedEvents = new Vector<>();
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testLog() throws Exception {
+		OutboxLog log = new OutboxLog(directory, 4096);
+		log.open();
+		long[] offsets = new long[500];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = log.append(1000 + i, "node" + (i % 3), bytes("event" + i));
+		}
+		assertTrue(log.getSegmentCount() > 2);
+
+		// Read records
+		long offset = log.getStartOffset();
+		for (int i = 0; i < offsets.length; i++) {
+			OutboxLog.Record record = log.read(offset);
+			assertNotNull(record);
+			assertEquals(offsets[i], record.offset);
+			assertEquals(1000 + i, record.timestamp);
+			assertEquals("node" + (i % 3), record.nodeID);
+			assertEquals("event" + i, new String(record.event, StandardCharsets.UTF_8));
+			offset = record.nextOffset;
+		}
+		assertNull(log.read(offset));
+
+		// Release the first 300 records
+		int segments = log.getSegmentCount();
+		log.checkpoint(offsets[300]);
+		assertTrue(log.getSegmentCount() < segments);
+		assertEquals(offsets[300], log.getStartOffset());
+		log.close();
+
+		// Too large record
+		try {
+			log.append(1, "node1", new byte[5000]);
+			fail();
+		} catch (Exception expected) {
+		}
+
+		// Reopen log
+		log = new OutboxLog(directory, 4096);
+		log.open();
+		assertEquals(offsets[300], log.getStartOffset());
+		offset = log.getStartOffset();
+		for (int i = 300; i < offsets.length; i++) {
+			OutboxLog.Record record = log.read(offset);
+			assertEquals("event" + i, new String(record.event, StandardCharsets.UTF_8));
+			offset = record.nextOffset;
+		}
+		assertNull(log.read(offset));
+		log.close();
+	}
+
+	@Test
+	public void testCrashRecovery() throws Exception {
+
+		// Append records in another JVM, and kill it (without closing the log)
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				CrashingWriter.class.getName(), directory.getAbsolutePath(), "1000").inheritIO().start();
+		assertEquals(CrashingWriter.EXIT_CODE, process.waitFor());
+
+		// Simulate a torn (partially written) record at the end of the log
+		File segment = new File(directory, OutboxSegment.fileName(0));
+		OutboxLog log = new OutboxLog(directory, 64 * 1024);
+		log.open();
+		long end = log.getWriteOffset();
+		log.close();
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			raf.seek(end);
+			raf.writeInt(100);
+			raf.writeInt(12345);
+			raf.write(bytes("torn"));
+		}
+
+		// Recover
+		log = new OutboxLog(directory, 64 * 1024);
+		log.open();
+		assertEquals(end, log.getWriteOffset());
+		long offset = log.getStartOffset();
+		for (int i = 0; i < 1000; i++) {
+			OutboxLog.Record record = log.read(offset);
+			assertNotNull(record);
+			assertFalse(record.isDamaged());
+			assertEquals("event" + i, new String(record.event, StandardCharsets.UTF_8));
+			offset = record.nextOffset;
+		}
+		assertNull(log.read(offset));
+
+		// Continue writing
+		log.append(System.currentTimeMillis(), "node1", bytes("next"));
+		OutboxLog.Record record = log.read(offset);
+		assertEquals("next", new String(record.event, StandardCharsets.UTF_8));
+		assertNull(log.read(record.nextOffset));
+		log.close();
+	}
+
+	public static final class CrashingWriter {
+
+		public static final int EXIT_CODE = 33;
+
+		public static void main(String[] args) throws Exception {
+			OutboxLog log = new OutboxLog(new File(args[0]), 64 * 1024);
+			log.open();
+			int count = Integer.parseInt(args[1]);
+			for (int i = 0; i < count; i++) {
+				log.append(System.currentTimeMillis(), "node" + (i % 3), bytes("event" + i));
+			}
+			Runtime.getRuntime().halt(EXIT_CODE);
+		}
+
+	}
+
+	@Test
+	public void testDelivery() throws Exception {
+		startBrokers();
+		blocked = true;
+		for (int i = 0; i < 100; i++) {
+			client.emit("test.event", "value", i);
+		}
+		Thread.sleep(300);
+		assertTrue(receivedEvents.isEmpty());
+		EventOutbox outbox = client.getConfig().getTransporter().getOutbox();
+		assertEquals(100, outbox.getStoredEvents());
+		assertTrue(outbox.getPendingBytes() > 0);
+
+		// One resume offset per unreachable node
+		assertEquals(1, outbox.parked.size());
+
+		// Target becomes reachable
+		blocked = false;
+		waitForEvents(100);
+		assertEquals(100, outbox.getDeliveredEvents());
+		long timeoutAt = System.currentTimeMillis() + 3000;
+		while (outbox.getPendingBytes() > 0 && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, outbox.getPendingBytes());
+	}
+
+	@Test
+	public void testRestart() throws Exception {
+		startBrokers();
+		blocked = true;
+		for (int i = 0; i < 50; i++) {
+			client.emit("test.event", "value", i);
+		}
+		client.stop();
+		Thread.sleep(300);
+		assertTrue(receivedEvents.isEmpty());
+
+		// Replay after restart
+		blocked = false;
+		client = createClient();
+		client.start();
+		waitForEvents(50);
+		assertEquals(50, client.getConfig().getTransporter().getOutbox().getDeliveredEvents());
+	}
+
+	@Test
+	public void testRejectedEvent() throws Exception {
+
+		// The transporter rejects the events by throwing an exception
+		startBrokers();
+		failing = true;
+		for (int i = 0; i < 50; i++) {
+			client.emit("test.event", "value", i);
+		}
+		Thread.sleep(300);
+		assertTrue(receivedEvents.isEmpty());
+		EventOutbox outbox = client.getConfig().getTransporter().getOutbox();
+		assertEquals(0, outbox.getDeliveredEvents());
+		assertEquals(0, outbox.getDroppedEvents());
+		assertTrue(outbox.getPendingBytes() > 0);
+
+		// Sending works again
+		failing = false;
+		waitForEvents(50);
+		assertEquals(50, outbox.getDeliveredEvents());
+		assertEquals(0, outbox.getDroppedEvents());
+	}
+
+	@Test
+	public void testExpiredEvents() throws Exception {
+		startBrokers();
+		blocked = true;
+		EventOutbox outbox = client.getConfig().getTransporter().getOutbox();
+		outbox.setMaxRecordAge(1);
+		for (int i = 0; i < 20; i++) {
+			client.emit("test.event", "value", i);
+		}
+		long timeoutAt = System.currentTimeMillis() + 5000;
+		while (outbox.getDroppedEvents() < 20 && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(20);
+		}
+		assertEquals(20, outbox.getDroppedEvents());
+
+		// Only the new events are delivered
+		blocked = false;
+		for (int i = 20; i < 30; i++) {
+			client.emit("test.event", "value", i);
+		}
+		waitForEvents(10);
+		assertEquals(20, receivedEvents.get(0).intValue());
+		assertEquals(10, outbox.getDeliveredEvents());
+		assertEquals(20, outbox.getDroppedEvents());
+	}
+
+	@Test
+	public void testTargetRestart() throws Exception {
+		startBrokers();
+
+		// Stop the target
+		br1.stop();
+		Transporter transporter = client.getConfig().getTransporter();
+		long timeoutAt = System.currentTimeMillis() + 5000;
+		while (transporter.isOnline("node1") && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(20);
+		}
+		assertFalse(transporter.isOnline("node1"));
+		for (int i = 0; i < 30; i++) {
+			client.emit("test.event", "value", i);
+		}
+		Thread.sleep(300);
+		assertTrue(receivedEvents.isEmpty());
+		assertEquals(30, transporter.getOutbox().getStoredEvents());
+
+		// Restart the target
+		br1 = createTarget();
+		br1.start();
+		waitForEvents(30);
+		assertEquals(30, transporter.getOutbox().getDeliveredEvents());
+	}
+
+	// --- UTILITIES ---
+
+	protected static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	protected void waitForEvents(int count) throws Exception {
+		long timeoutAt = System.currentTimeMillis() + 5000;
+		while (receivedEvents.size() < count && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(20);
+		}
+		assertEquals(count, receivedEvents.size());
+		assertEquals(count, new HashSet<>(receivedEvents).size());
+	}
+
+	// --- SERVICE ---
+
+	@Name("test")
+	protected final class TestService extends Service {
+
+		@Subscribe("test.*")
+		public Listener evt = ctx -> {
+			receivedEvents.add(ctx.params.get("value", -1));
+		};
+
+	}
+
+	// --- SET UP ---
+
+	protected void startBrokers() throws Exception {
+		subscriptions = new InternalTransporter.Subscriptions();
+		br1 = createTarget();
+		br1.start();
+		client = createClient();
+		client.start();
+		client.waitForServices(5000, "test").waitFor(5000);
+	}
+
+	protected ServiceBroker createTarget() {
+		ServiceBroker broker = ServiceBroker.builder().transporter(new InternalTransporter(subscriptions))
+				.monitor(new ConstantMonitor()).nodeID("node1").build();
+		broker.createService(new TestService());
+		return broker;
+	}
+
+	protected ServiceBroker createClient() {
+		InternalTransporter transporter = new InternalTransporter(subscriptions) {
+
+			@Override
+			public boolean isOnline(String nodeID) {
+				return !blocked && super.isOnline(nodeID);
+			}
+
+			@Override
+			public void sendEventPacket(String nodeID, Tree event) {
+				if (failing) {
+					throw new IllegalStateException("Sending failed!");
+				}
+				super.sendEventPacket(nodeID, event);
+			}
+
+		};
+		EventOutbox outbox = new EventOutbox(directory.getAbsolutePath());
+		outbox.setRetryInterval(100);
+		transporter.setOutbox(outbox);
+		return ServiceBroker.builder().transporter(transporter).monitor(new ConstantMonitor()).nodeID("client")
+				.build();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = new File(System.getProperty("java.io.tmpdir"), "outbox-test-" + System.nanoTime());
+	}
+
+	// --- TEAR DOWN ---
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (client != null) {
+			client.stop();
+		}
+		if (br1 != null) {
+			br1.stop();
+		}
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+}
@@ -0,0 +1,249 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.transporter.tcp;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.datatree.Tree;
+import junit.framework.TestCase;
+import services.moleculer.serializer.JsonSerializer;
+import services.moleculer.stream.FileRegion;
+import services.moleculer.transporter.TcpTransporter;
+
+public class SendBufferTest extends TestCase {
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testControlLane() throws Exception {
+		SendBuffer buffer = new SendBuffer("node1", "localhost", 0, false, 4096, 1024);
+		buffer.append(packet('r', 100), SendBuffer.LANE_RPC);
+		buffer.append(packet('b', 100), SendBuffer.LANE_BULK);
+		buffer.append(packet('c', 100), SendBuffer.LANE_CONTROL);
+		buffer.append(packet('d', 100), SendBuffer.LANE_CONTROL);
+		assertEquals("cdrb", drain(buffer));
+	}
+
+	@Test
+	public void testDeficitRoundRobin() throws Exception {
+		SendBuffer buffer = new SendBuffer("node1", "localhost", 0, false, 4096, 1024);
+		for (int i = 0; i < 100; i++) {
+			buffer.append(packet('b', 1024), SendBuffer.LANE_BULK);
+			buffer.append(packet('r', 1024), SendBuffer.LANE_RPC);
+		}
+
+		// 4:1 ratio (by bytes)
+		String order = drain(buffer);
+		String first = order.substring(0, 50);
+		int bulk = first.replace("r", "").length();
+		assertEquals(10, bulk, 1);
+		assertEquals(100, order.replace("b", "").length());
+
+		// Large bulk packet, then the RPC lane catches up
+		buffer.append(packet('B', 64 * 1024), SendBuffer.LANE_BULK);
+		buffer.append(packet('b', 100), SendBuffer.LANE_BULK);
+		for (int i = 0; i < 300; i++) {
+			buffer.append(packet('r', 1024), SendBuffer.LANE_RPC);
+		}
+		order = drain(buffer);
+		int large = order.indexOf('B');
+		int small = order.indexOf('b');
+		assertTrue(large < small);
+		assertTrue(small - large > 200);
+
+		// Without competition
+		for (int i = 0; i < 10; i++) {
+			buffer.append(packet('b', 8192), SendBuffer.LANE_BULK);
+		}
+		assertEquals("bbbbbbbbbb", drain(buffer));
+	}
+
+	@Test
+	public void testOrderWithinLane() throws Exception {
+		SendBuffer buffer = new SendBuffer("node1", "localhost", 0, false, 100, 100);
+		for (int i = 0; i < 10; i++) {
+			buffer.append(packet((char) ('0' + i), 150), SendBuffer.LANE_RPC);
+			buffer.append(packet((char) ('a' + i), 150), SendBuffer.LANE_BULK);
+		}
+		String order = drain(buffer);
+		assertEquals("0123456789", order.replaceAll("[a-z]", ""));
+		assertEquals("abcdefghij", order.replaceAll("[0-9]", ""));
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1", 0));
+		int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+		SocketChannel accepted = server.accept();
+		try {
+			SendBuffer buffer = new SendBuffer("node1", "127.0.0.1", port, false);
+			buffer.connected(null, channel);
+			buffer.append(packet('r', 10), SendBuffer.LANE_RPC);
+			buffer.append(packet('b', 10), SendBuffer.LANE_BULK);
+			buffer.append(packet('c', 10), SendBuffer.LANE_CONTROL);
+			assertFalse(buffer.tryToClose());
+
+			// Write all packets
+			buffer.write();
+			Socket socket = accepted.socket();
+			InputStream in = socket.getInputStream();
+			byte[] bytes = new byte[30];
+			new DataInputStream(in).readFully(bytes);
+			assertEquals('c', bytes[0]);
+			assertEquals('r', bytes[10]);
+			assertEquals('b', bytes[20]);
+
+			// Close unused buffer
+			assertTrue(buffer.tryToClose());
+			assertFalse(buffer.append(packet('r', 10), SendBuffer.LANE_RPC));
+			assertTrue(buffer.getUnsentPackets().isEmpty());
+		} finally {
+			accepted.close();
+			channel.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void testUnsentRegion() throws Exception {
+		File file = File.createTempFile("MoleculerSendBuffer", ".tmp");
+		try {
+			Files.write(file.toPath(), new byte[] { 'd', 'a', 't', 'a' });
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			AtomicInteger references = new AtomicInteger(1);
+			FileRegion region = new FileRegion(channel, 1, 3, references);
+			SendBuffer buffer = new SendBuffer("node1", "localhost", 0, false);
+			buffer.append(packet('r', 10), SendBuffer.LANE_RPC);
+			buffer.append(new byte[] { 'h' }, region);
+
+			// The region is read into the heap (header + body)
+			LinkedList<byte[]> packets = buffer.getUnsentPackets();
+			assertEquals(2, packets.size());
+			assertEquals('r', packets.getFirst()[0]);
+			assertEquals("hata", new String(packets.getLast(), StandardCharsets.US_ASCII));
+			assertEquals(1, references.get());
+			channel.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testStreamClosedInBulkLane() throws Exception {
+		SendBuffer buffer = new SendBuffer("node2", "localhost", 0, false, 4096, 1024);
+		LaneTestTransporter transporter = new LaneTestTransporter(buffer);
+
+		// Backlogged bulk lane
+		for (int seq = 1; seq <= 2000; seq++) {
+			Tree chunk = new Tree();
+			chunk.put("id", "stream1");
+			chunk.put("stream", true);
+			chunk.put("seq", seq);
+			chunk.put("params", "chunk");
+			transporter.publish("MOL.REQ.node2", chunk);
+		}
+
+		// Closing packet (small, but must not overtake the chunks)
+		Tree close = new Tree();
+		close.put("id", "stream1");
+		close.put("stream", false);
+		close.put("seq", 2001);
+		transporter.publish("MOL.REQ.node2", close);
+
+		// Other requests may overtake the stream
+		Tree request = new Tree();
+		request.put("id", "request1");
+		transporter.publish("MOL.REQ.node2", request);
+
+		long expected = 1;
+		boolean requestSent = false;
+		Object item = buffer.next();
+		while (item != null) {
+			byte[] packet = ((ByteBuffer) item).array();
+			Tree message = new JsonSerializer().read(Arrays.copyOfRange(packet, 6, packet.length));
+			if ("request1".equals(message.get("id", ""))) {
+				requestSent = true;
+			} else {
+				assertEquals(expected++, message.get("seq", 0L));
+			}
+			item = buffer.next();
+		}
+		assertEquals(2002, expected);
+		assertTrue(requestSent);
+	}
+
+	// --- UTILITIES ---
+
+	protected byte[] packet(char c, int size) {
+		byte[] bytes = new byte[size];
+		bytes[0] = (byte) c;
+		return bytes;
+	}
+
+	protected static final class LaneTestTransporter extends TcpTransporter {
+
+		protected LaneTestTransporter(SendBuffer buffer) {
+			writer = new TcpWriter(this) {
+
+				@Override
+				protected void send(String nodeID, byte[] packet, FileRegion region, int lane) {
+					buffer.append(packet, lane);
+				}
+
+			};
+		}
+
+	}
+
+	protected String drain(SendBuffer buffer) {
+		StringBuilder order = new StringBuilder();
+		Object item = buffer.next();
+		while (item != null) {
+			order.append((char) ((ByteBuffer) item).get(0));
+			item = buffer.next();
+		}
+		return order.toString();
+	}
+
+}
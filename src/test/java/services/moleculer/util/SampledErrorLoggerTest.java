@@ -0,0 +1,129 @@
+/**
+ * THIS SOFTWARE IS LICENSED UNDER MIT LICENSE.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * Based on Moleculer Framework for NodeJS [https://moleculer.services].
+ * <br><br>
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:<br>
+ * <br>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.<br>
+ * <br>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package services.moleculer.util;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedList;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import junit.framework.TestCase;
+import services.moleculer.error.RequestTimeoutError;
+import services.moleculer.error.ServiceNotFoundError;
+
+public class SampledErrorLoggerTest extends TestCase {
+
+	// --- LOGGED MESSAGES ---
+
+	protected final LinkedList<String> messages = new LinkedList<>();
+
+	protected final Logger logger = (Logger) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class[] { Logger.class }, (proxy, method, args) -> {
+				if (method.getName().equals("error") || method.getName().equals("warn")) {
+					synchronized (messages) {
+						messages.addLast(method.getName() + ":" + args[0]);
+					}
+				}
+				return method.getReturnType() == boolean.class ? false : null;
+			});
+
+	// --- TEST METHODS ---
+
+	@Test
+	public void testSampling() throws Exception {
+		SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 200);
+
+		// Error storm
+		for (int i = 0; i < 1000; i++) {
+			errorLogger.error("Call failed!", new RequestTimeoutError("node2", "test.action"));
+		}
+		assertEquals(1, messages.size());
+		assertEquals("error:Call failed!", messages.getFirst());
+
+		// Different error -> different key
+		errorLogger.error("Call failed!", new ServiceNotFoundError("node2", "test.action"));
+		errorLogger.error("Call failed!", new RequestTimeoutError("node3", "test.action"));
+		assertEquals(3, messages.size());
+
+		// Next interval -> number of suppressed errors
+		Thread.sleep(250);
+		errorLogger.error("Call failed!", new RequestTimeoutError("node2", "test.action"));
+		assertEquals(4, messages.size());
+		assertEquals("error:Call failed! (999 similar errors suppressed in the last 1 seconds)", messages.getLast());
+		errorLogger.error("Call failed!", new RequestTimeoutError("node2", "test.action"));
+		assertEquals(4, messages.size());
+
+		// Warnings with explicit keys
+		errorLogger.warn("retry:test.action", "Retrying request...");
+		errorLogger.warn("retry:test.action", "Retrying request...");
+		assertEquals(5, messages.size());
+		assertEquals("warn:Retrying request...", messages.getLast());
+	}
+
+	@Test
+	public void testDisabledSampling() throws Exception {
+		SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 0);
+		for (int i = 0; i < 10; i++) {
+			errorLogger.error("Call failed!", new RequestTimeoutError("node2", "test.action"));
+		}
+		assertEquals(10, messages.size());
+	}
+
+	@Test
+	public void testMaxKeys() throws Exception {
+		SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 60000);
+		errorLogger.setMaxKeys(10);
+		for (int i = 0; i < 100; i++) {
+			errorLogger.error("key" + i, "Error " + i, null);
+			errorLogger.error("key" + i, "Error " + i, null);
+		}
+
+		// 10 keys are deduplicated, the others are logged without sampling
+		assertEquals(10 + 90 * 2, messages.size());
+		assertTrue(errorLogger.windows.size() <= 10);
+	}
+
+	@Test
+	public void testConcurrentErrors() throws Exception {
+		SampledErrorLogger errorLogger = new SampledErrorLogger(logger, 60000);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					errorLogger.error("Call failed!", new RequestTimeoutError("node2", "test.action"));
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, messages.size());
+		assertEquals(8 * 10000 - 1, errorLogger.windows.values().iterator().next().suppressed.get());
+	}
+
+}